@@ -109,13 +109,41 @@ public class ABox {
 	 */
 	boolean changed = false;
 	
+	/**
+	 * Incremented every time the types or edges of a node change. The nodes 
+	 * record the value after their last change so that the blocking status 
+	 * computed for a node is invalidated only when the node or the nodes it 
+	 * depends on change.
+	 */
+	int labelVersion = 0;
+	
+	/**
+	 * The nodes modified after each branch in the order of modification. Only 
+	 * the nodes in the trail after a branch needs to be restored when we 
+	 * backjump to that branch.
+	 */
+	private List trail;
+	
+	/**
+	 * True while the nodes in the trail are being restored. The changes made 
+	 * by restoring a node only undo changes that are already in the trail so 
+	 * they are not recorded again.
+	 */
+	boolean restoring = false;
+	
+	/**
+	 * The individuals the completion rules should be applied to in the next round 
+	 * (null if the completion strategy sweeps all the individuals)
+	 */
+	CompletionQueue completionQueue;
+	
 	private boolean doExplanation;
 	
 	// cached satisfiability results
 	// the table maps every atomic concept A (and also its negation not(A))
 	// to the root node of its completed tree. If a concept is mapped to 
 	// null value it means it is not satisfiable
-	protected Map cache;
+	protected ConceptCache cache;
 	
 	// pseudo model for this Abox. This is the ABox that results from
 	// completing to the original Abox
@@ -146,10 +174,20 @@ public class ABox {
 	
     Map disjBranchStats;
     
+    // the disjuncts learned to be unsatisfiable, shared by all the copies
+    NogoodStore nogoods;
+    
+    // the index of the types and roles used in the signatures of the cached nodes
+    Map mergeIndex;
+    
     // if we are using copy on write, this is where to copy from
     ABox sourceABox;
     
     Map typeAssertions = new HashMap();
+    
+    // the edges added after this ABox was completed that have not been
+    // initialized by the completion strategy yet
+    List newEdges = new ArrayList();
 	
 	// return true if init() function is called. This indicates parsing 
 	// is completed and ABox is ready for completion
@@ -180,9 +218,12 @@ public class ABox {
 		branch = 0;
 		branches = new ArrayList();
 		disjBranchStats = new HashMap();
+		nogoods = new NogoodStore();
 		
 		toBeMerged = new ArrayList();
 		rulesNotApplied = true;
+		
+		trail = new ArrayList();
 	}	
 
 	public ABox(ABox abox) {
@@ -202,6 +243,8 @@ public class ABox {
 		dtReasoner   = abox.dtReasoner;
 		doExplanation = abox.doExplanation;
 		disjBranchStats = abox.disjBranchStats;
+		nogoods      = abox.nogoods;
+		mergeIndex   = abox.mergeIndex;
 		
 		int extra = (extraIndividual == null) ? 0 : 1;
 		int nodeCount = ( copyIndividuals ? abox.nodes.size() : 0 ) + extra;
@@ -246,6 +289,7 @@ public class ABox {
 		    sourceABox = null;
 		}
 		branch   = abox.branch;
+		trail    = new ArrayList(abox.trail);
 		branches = new ArrayList(abox.branches.size());
 		for(int i = 0, n = abox.branches.size(); i < n; i++) {
 			Branch branch = (Branch) abox.branches.get(i);
@@ -291,6 +335,61 @@ public class ABox {
 		return new ABox(this, extraIndividual, copyIndividuals);	
 	}
 	
+	/**
+	 * Create a copy of this ABox that belongs to the given KB. Unlike other copy 
+	 * functions, the copy does not share any mutable state with this ABox: the 
+	 * satisfiability cache, the pseudo model and the disjunction statistics are 
+	 * copied as well. Therefore, the copy can be used for consistency checks in 
+	 * another thread while this ABox is being used.
+	 * 
+	 * @param kb KB the copy will belong to
+	 * @return
+	 */
+	ABox copy(KnowledgeBase kb) {
+	    ABox copy = new ABox(this);
+	    copy.kb = kb;
+	    // the cached nodes are updated when they are used so they are not shared
+	    copy.cache = cache.copy(kb.timers);
+	    copy.disjBranchStats = new HashMap(disjBranchStats);
+	    copy.nogoods = new NogoodStore();
+	    copy.mergeIndex = new HashMap();
+	    
+	    if( pseudoModel != null ) {
+	        copy.pseudoModel = pseudoModel.copy(kb);
+	        // pseudo model shares the cache with the ABox it belongs to
+	        copy.pseudoModel.cache = copy.cache;
+	        copy.pseudoModel.mergeIndex = copy.mergeIndex;
+	    }
+	    
+	    return copy;
+	}
+	
+	/**
+	 * Add the satisfiability results cached by another ABox to the cache of this ABox 
+	 * and update the statistics. The other ABox should be a copy created with 
+	 * {@link #copy(KnowledgeBase)} and should not be in use when this function is called.
+	 * 
+	 * @param other
+	 */
+	void merge(ABox other) {
+	    for(Iterator i = other.cache.getNodes().entrySet().iterator(); i.hasNext();) {
+            Map.Entry entry = (Map.Entry) i.next();
+            ATermAppl c = (ATermAppl) entry.getKey();
+            CachedNode cached = cache.peek( c );
+            CachedNode otherCached = (CachedNode) entry.getValue();
+            // a concept found satisfiable without a model being cached (incomplete) 
+            // should not hide the model computed by the other ABox
+            if( cached == null || (cached.isIncomplete() && otherCached.isComplete()) )
+                cache.put( c, otherCached );
+        }
+	    
+	    satisfiabilityCount += other.satisfiabilityCount;
+	    consistencyCount += other.consistencyCount;
+	    
+	    other.satisfiabilityCount = 0;
+	    other.consistencyCount = 0;
+	}
+	
 	public void copyOnWrite() {
 	    if( sourceABox == null )
 	        return;
@@ -349,28 +448,52 @@ public class ABox {
 		lastCompletion = null;
 		
 		if(clearSatCache) {
-			cache = new HashMap();		
+			cache = new ConceptCache(kb.timers);		
+			nogoods = new NogoodStore();
+			mergeIndex = new HashMap();
 		}
 	}
 	
+	/**
+	 * Clear the pseudo model and the cached satisfiability results of the concepts that
+	 * use any of the given classes. The results for other concepts are kept.
+	 * 
+	 * @param affectedClasses Classes whose definitions have changed
+	 */
+	public void clearCaches(Set affectedClasses) {
+		clearCaches(false);
+		
+		cache.remove(affectedClasses);
+		nogoods = new NogoodStore();
+		mergeIndex = new HashMap();
+	}
+	
 	Bool getCachedSat(ATermAppl c) {
-	    CachedNode cached = (CachedNode) cache.get(c);
+	    CachedNode cached = cache.get(c);
 		return cached == null
 			? Bool.UNKNOWN
 		    : Bool.create( !cached.isBottom() );
 	}
 
 	Map getAllCached() {
-	    return cache;
+	    return cache.getNodes();
 	}
 	
 	CachedNode getCached(ATermAppl c) {
-		return (CachedNode) cache.get(c);
+		return cache.get(c);
 	}
 
 	boolean cacheUnsatConcept(ATermAppl c) {
-	    if( cache.containsKey( c ) ) {
-	        CachedNode cached = getCached(c);
+	    return cacheUnsatConcept(c, 0);
+	}
+	
+	/**
+	 * Cache the concept as unsatisfiable and its negation as TOP. The cost of 
+	 * computing the result is used by the eviction policy of the cache.
+	 */
+	boolean cacheUnsatConcept(ATermAppl c, int cost) {
+	    if( cache.contains( c ) ) {
+	        CachedNode cached = cache.peek(c);
 	        if( !cached.isBottom() )
 	            throw new InternalReasonerException( "Caching inconsistent results for " + c);
 	        return false;
@@ -378,16 +501,16 @@ public class ABox {
 	    else {
 		    ATermAppl notC = ATermUtils.negate(c);
 		    
-		    cacheConcept(c, BOTTOM_IND, DependencySet.INDEPENDENT);
-		    cacheConcept(notC, TOP_IND, DependencySet.INDEPENDENT);
+		    cacheConcept(c, BOTTOM_IND, DependencySet.INDEPENDENT, cost);
+		    cacheConcept(notC, TOP_IND, DependencySet.INDEPENDENT, cost);
 		    
 		    return true;
 	    }
 	}
 
 	boolean cacheSatConcept(ATermAppl c) {
-	    if( cache.containsKey( c ) ) {
-	        CachedNode cached = getCached(c);
+	    if( cache.contains( c ) ) {
+	        CachedNode cached = cache.peek(c);
 	        if( cached.isBottom() )
 	            throw new InternalReasonerException( "Caching inconsistent results for " + c);
 	        return false;
@@ -399,12 +522,21 @@ public class ABox {
 	}
 	
 	void cacheConcept(ATermAppl c, Individual ind, DependencySet ds) {
+	    cacheConcept(c, ind, ds, 0);
+	}	
+	
+	void cacheConcept(ATermAppl c, Individual ind, DependencySet ds, int cost) {
 	    // TODO should we check for cache override?
-	    cache.put(c, new CachedNode( ind, ds ) );
+	    CachedNode cached = new CachedNode( ind, ds );
+	    cached.cost = cost;
+	    cache.put(c, cached );
 	}	
 	
 	private void cache( ATermAppl x, ATermAppl c, boolean isConsistent ) {
 		if( PelletOptions.USE_CACHING && x != null && c != null ) {
+		    // the size of the completion graph is used as the cost of the result
+		    int cost = lastCompletion.getNodes().size() + lastCompletion.getBranches().size();
+		    
 //			if( ATermUtils.isPrimitiveOrNegated(c) ) {
 				if( isConsistent ) {
 				    ABox lastABox = lastCompletion;
@@ -428,7 +560,7 @@ public class ABox {
 				    if( DEBUG )
 				        System.out.println( "Cache " + rootNode.debugString() );
 				    
-				    cacheConcept(c, rootNode, ds);
+				    cacheConcept(c, rootNode, ds, cost);
 				}
 				else {
 					if(DEBUG) {
@@ -436,7 +568,7 @@ public class ABox {
 						System.out.println(ATermUtils.negate(c) + " is TOP");
 					}
 					
-					cacheUnsatConcept( c );
+					cacheUnsatConcept( c, cost );
 				}
 //			}
 		}		    
@@ -513,23 +645,8 @@ public class ABox {
 				}
 			}								 
 
-			for(Iterator i = roots[root].getTypes(Node.MAX).iterator(); i.hasNext(); ) {
-				ATermAppl mc = (ATermAppl) i.next();
-				ATermAppl maxCard = (ATermAppl) mc.getArgument(0);	
-				
-				Role maxR = getRole(maxCard.getArgument(0));
-				int max = ((ATermInt) maxCard.getArgument(1)).getInt() - 1;
-
-				int n1 = roots[root].getRNeighborEdges(maxR).getFilteredNeighbors(roots[root]).size();
-				int n2 = roots[otherRoot].getRNeighborEdges(maxR).getFilteredNeighbors(roots[otherRoot]).size();
-				
-				if(n1 + n2 > max) {
-				    if( DEBUG ) 
-				        System.out.println( 
-				            roots[root] + " has " + mc + " " + roots[otherRoot] + " has R-neighbor" );
-				    return Bool.UNKNOWN;
-				}
-			}
+			if( exceedsMax( roots[root], roots[otherRoot] ) )
+			    return Bool.UNKNOWN;
 		}	
 		
 		if( kb.getExpressivity().hasFunctionality() ) {
@@ -606,11 +723,96 @@ public class ABox {
 		// c1 is NOT a subclass of c2.
 		return Bool.TRUE;
 	}
+
+	/**
+	 * Checks if the max cardinality restrictions of the root would be violated by 
+	 * the neighbors of the root and the other root together.
+	 */
+	private boolean exceedsMax(Individual root, Individual otherRoot) {
+		for(Iterator i = root.getTypes(Node.MAX).iterator(); i.hasNext(); ) {
+			ATermAppl mc = (ATermAppl) i.next();
+			ATermAppl maxCard = (ATermAppl) mc.getArgument(0);	
+			
+			Role maxR = getRole(maxCard.getArgument(0));
+			int max = ((ATermInt) maxCard.getArgument(1)).getInt() - 1;
+
+			int n1 = root.getRNeighborEdges(maxR).getFilteredNeighbors(root).size();
+			int n2 = otherRoot.getRNeighborEdges(maxR).getFilteredNeighbors(otherRoot).size();
+			
+			if(n1 + n2 > max) {
+			    if( DEBUG ) 
+			        System.out.println( 
+			            root + " has " + mc + " " + otherRoot + " has R-neighbor" );
+			    return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Same as {@link #mergable(Individual, Individual, boolean)} but uses the 
+	 * signatures of the cached nodes so the labels and the edges of the roots are
+	 * not iterated.
+	 */
+	Bool mergable(CachedNode cached1, CachedNode cached2, boolean independent) {
+		Individual root1 = cached1.node;
+		Individual root2 = cached2.node;
+		
+		if( !PelletOptions.USE_MERGE_SIGNATURES 
+		    || root1 == BOTTOM_IND || root1 == TOP_IND || root1 == DUMMY_IND 
+		    || root2 == BOTTOM_IND || root2 == TOP_IND || root2 == DUMMY_IND ) 
+		    return mergable(root1, root2, independent);
+		
+		MergeSignature sig1 = cached1.getSignature(this);
+		MergeSignature sig2 = cached2.getSignature(this);
+		
+		// c in one root and not(c) in the other one
+		if( independent
+		    && (MergeSignature.intersects(sig1.independentTypes, sig2.independentNegatedTypes) 
+		        || MergeSignature.intersects(sig1.independentNegatedTypes, sig2.independentTypes)) )
+		    return Bool.FALSE;
+		
+		if( MergeSignature.intersects(sig1.types, sig2.negatedTypes) 
+		    || MergeSignature.intersects(sig1.negatedTypes, sig2.types) )
+		    return Bool.UNKNOWN;
+		
+		if( MergeSignature.intersects(sig1.allRoles, sig2.neighborRoles)
+		    || MergeSignature.intersects(sig2.allRoles, sig1.neighborRoles) )
+		    return Bool.UNKNOWN;
+		
+		if( sig1.maxExceeded || sig2.maxExceeded )
+		    return Bool.UNKNOWN;
+		
+		if( MergeSignature.intersects(sig1.maxRoles, sig2.neighborRoles) 
+		    && exceedsMax(root1, root2) )
+		    return Bool.UNKNOWN;
+		
+		if( MergeSignature.intersects(sig2.maxRoles, sig1.neighborRoles) 
+		    && exceedsMax(root2, root1) )
+		    return Bool.UNKNOWN;
+		
+		if( kb.getExpressivity().hasFunctionality() ) {
+		    // only the functional roles of the root with fewer edges are checked
+		    MergeSignature sig = sig1.edgeCount < sig2.edgeCount ? sig1 : sig2;
+		    MergeSignature otherSig = sig == sig1 ? sig2 : sig1;
+		    
+		    if( MergeSignature.intersects(sig.functionalRoles, otherSig.neighborRoles) )
+		        return Bool.UNKNOWN;
+		}
+		
+		if( kb.getExpressivity().hasNominal() && sig1.nominal && sig2.nominal )
+		    return Bool.UNKNOWN;
+		
+		return Bool.TRUE;
+	}
 		
 	public boolean isSubClassOf(ATermAppl c1, ATermAppl c2) {	 
         CachedNode cached = getCached( c1 );
-        if( cached != null ) {
-            Bool type = isType( cached.node, c2, cached.depends.isIndependent() );
+        // a concept found satisfiable without a model (incomplete) has no root to
+        // compare, the dummy root would look like a node without any edges
+        if( cached != null && cached.isComplete() ) {
+            Bool type = isType( cached.node, cached, c2, cached.depends.isIndependent() );
 			if( type.isKnown() )
 			    return type.isTrue();
 		}
@@ -665,9 +867,26 @@ public class ABox {
 		boolean isSat = isConsistent( SetUtils.EMPTY_SET, c );
 		t.stop();
 		
+		if( PelletOptions.USE_DISJUNCT_LEARNING && PelletOptions.USE_CACHING && !doExplanation )
+		    learnNogoods();
+		
 		return isSat;
 	}
 
+	/**
+	 * Check the satisfiability of the disjuncts that caused too many clashes so far 
+	 * without losing the results of the last consistency check.
+	 */
+	private void learnNogoods() {
+	    ABox completion = lastCompletion;
+	    Clash clash = lastClash;
+	    
+	    nogoods.learn( this );
+	    
+	    lastCompletion = completion;
+	    lastClash = clash;
+	}
+
 	public CandidateSet getObviousInstances( ATermAppl c ) {
 	    CandidateSet candidates = new CandidateSet( kb.getIndividuals() );
 	    getObviousInstances( c, candidates );
@@ -759,7 +978,7 @@ public class ABox {
 		
 	public Bool isKnownType( Individual pNode, ATermAppl concept, Collection subs ) {		
 //	    Timer t = kb.timers.startTimer( "isKnownType" );
-		Bool isType = isType( pNode, concept, true );    
+		Bool isType = isType( pNode, null, concept, true );    
 		if( isType.isUnknown() ) {
             Set concepts = ATermUtils.isAnd( concept )
                 ? ATermUtils.listToSet( (ATermList) concept.getArgument(0) )
@@ -804,14 +1023,21 @@ public class ABox {
 		return isType;
 	}
 	
-	private Bool isType( Individual pNode, ATermAppl c, boolean isIndependent ) {
+	/**
+	 * Checks if the node is obviously an instance of the concept or obviously not.
+	 * If the node is the root of a cached model then pCached is the cached node, 
+	 * otherwise it is null.
+	 */
+	private Bool isType( Individual pNode, CachedNode pCached, ATermAppl c, boolean isIndependent ) {
 	    ATermAppl notC = ATermUtils.negate(c);
 		
 		CachedNode cached = getCached( notC );
 		if( cached != null ) {
 		    Timer t = kb.timers.startTimer("mergable");
 		    isIndependent &= cached.depends.isIndependent();
-			Bool mergable = mergable( pNode, cached.node, isIndependent );
+			Bool mergable = pCached != null
+				? mergable( pCached, cached, isIndependent )
+				: mergable( pNode, cached.node, isIndependent );
 			t.stop();
 			if( mergable.isKnown() )
 				return mergable.not();
@@ -1020,7 +1246,12 @@ public class ABox {
 //		if(subj == null)
 //		    throw new InternalReasonerException(s + " is not a known individual!");
 		
+		// if onlyPositive is set then the answer returned is sound but not
+		// complete so we cannot return negative answers
+		boolean onlyPositive = false;
+		
 		if( subj.mergedAt() > 0 ) {
+		    onlyPositive = true;
 		    subj = getIndividual( s );
 		}
 		else {        
@@ -1028,9 +1259,8 @@ public class ABox {
 		}
 		
 		Bool hasValue = subj.hasObjectPropertyValue( prop, null );
-		// FIXME we don't need the following check
-//		if( hasValue.isFalse() )
-//		    return Bool.UNKNOWN;
+		if( onlyPositive && hasValue.isFalse() )
+		    return Bool.UNKNOWN;
 		
 		return hasValue;   
 	}
@@ -1131,15 +1361,23 @@ public class ABox {
 	    
 		Individual subj = abox.getIndividual( s );
 
-		// FIXME check this
-		// if we use the initial ABox rather than pseudoModel is it guaranteed 
-		// that the unknowns returned will be complete?
-		if( subj.mergedAt() > 0 )
+		if( subj.mergedAt() > 0 ) {
+		    // the individual was merged to another one in a non-deterministic branch so
+		    // only the values in the initial ABox are certain. The values of the node it
+		    // was merged to in the pseudo model are the other possible values
+		    Set possibles = new HashSet();
+		    getObjectPropertyValues( (Individual) subj.getSame(), role, possibles, possibles, new HashSet(), true );
+		    
 		    subj = getIndividual( s );
-		else 
+		    getObjectPropertyValues( subj, role, knowns, unknowns, new HashSet(), true );
+		    
+		    possibles.removeAll( knowns );
+		    unknowns.addAll( possibles );
+		}
+		else {
 		    subj = (Individual) subj.getSame();
-
-		getObjectPropertyValues( subj, role, knowns, unknowns, new HashSet(), true );
+		    getObjectPropertyValues( subj, role, knowns, unknowns, new HashSet(), true );
+		}
 	}
 
 	void getObjectPropertyValues(Individual subj, Role prop, Set knowns, Set unknowns, Set visited, boolean getSames) {	    
@@ -1399,6 +1637,55 @@ public class ABox {
 		return consistent;
 	}
 
+	/**
+	 * Update the pseudo model after type assertions and object property values have been
+	 * added to this ABox. The assertions are added to a copy of the pseudo model which is
+	 * then completed so the rest of the completion graph is not built again. Returns false,
+	 * without changing the pseudo model, if one of the assertions cannot be added to the
+	 * completed model or the updated model has a clash. The consistency should then be 
+	 * checked from scratch.
+	 * 
+	 * @param additions Type assertions as <code>[x, c]</code> and property values as 
+	 * <code>[p, s, o]</code>
+	 */
+	boolean updatePseudoModel(List additions) {
+	    if( pseudoModel == null || 
+	        !PelletOptions.USE_PSEUDO_MODEL ||
+	        !kb.chooseStrategy( this ).supportsPseudoModelCompletion() )
+	        return false;
+	    
+	    Timer t = kb.timers.startTimer( "updatePseudoModel" );
+	    
+	    lastCompletion = null;
+	    
+	    ABox abox = pseudoModel.copy();
+	    boolean added = true;
+	    for(Iterator i = additions.iterator(); added && i.hasNext(); ) {
+	        ATermAppl[] assertion = (ATermAppl[]) i.next();
+	        if( assertion.length == 2 ) {
+	            added = abox.getNode( assertion[0] ) instanceof Individual;
+	            if( added )
+	                abox.addType( assertion[0], assertion[1] );
+	        }
+	        else
+	            added = abox.addEdge( assertion[0], assertion[1], assertion[2] );
+	    }
+	    
+	    boolean consistent = false;
+	    if( added ) {
+	        ABox completion = kb.chooseStrategy( abox ).complete();
+	        consistent = !completion.isClosed();
+	        if( consistent )
+	            pseudoModel = completion;
+	        
+	        consistencyCount++;
+	    }
+	    
+	    t.stop();
+	    
+	    return consistent;
+	}
+
 	void applyUC(Individual node) {
 		ATermList UC = kb.getTBox().getUC();
 		if(UC != null) {
@@ -1459,6 +1746,63 @@ public class ABox {
 		node.addType(c, ds);
 
 		branch = remember;
+		
+		addToTrail( node );
+	}
+
+	/**
+	 * Add an edge between two individuals after this ABox has been completed, e.g. to a
+	 * copy of the pseudo model. The edge is added to the nodes the individuals have been
+	 * merged to. The completion strategy applies the rules for the asserted edges to the 
+	 * new edge when the ABox is completed again. Returns false if the edge cannot be added 
+	 * because one of the individuals has been merged, or the edge already exists, depending 
+	 * on a non-deterministic choice.
+	 */
+	boolean addEdge(ATermAppl p, ATermAppl s, ATermAppl o) {
+		Role role = getRole( p );
+		Node subj = getNode( s );
+		Node obj = getNode( o );
+		
+		if( role == null || !(subj instanceof Individual) || !(obj instanceof Individual) )
+			return false;
+		
+		if( subj.isMerged() ) {
+			if( !subj.getMergeDependency( true ).isIndependent() )
+				return false;
+			subj = subj.getSame();
+		}
+		if( obj.isMerged() ) {
+			if( !obj.getMergeDependency( true ).isIndependent() )
+				return false;
+			obj = obj.getSame();
+		}
+
+		// an existing edge would not be replaced by the new edge so it should not
+		// depend on a non-deterministic choice either
+		EdgeList edges = ((Individual) subj).getEdgesTo( obj, role );
+		if( !edges.isEmpty() ) {
+			for(int i = 0; i < edges.size(); i++) {
+				if( edges.edgeAt( i ).getDepends().isIndependent() )
+					return true;
+			}
+			return false;
+		}
+
+		// the edge should be added to the initial model (see addType)
+		int remember = branch;
+		branch = DependencySet.NO_BRANCH;
+		
+		Edge edge = ((Individual) subj).addEdge( role, obj, DependencySet.INDEPENDENT );
+		
+		branch = remember;
+		
+		if( edge != null ) {
+			newEdges.add( edge );
+			addToTrail( subj );
+			addToTrail( obj );
+		}
+		
+		return true;
 	}
 
 	public void removeType(ATermAppl x, ATermAppl c) {
@@ -1725,6 +2069,74 @@ public class ABox {
 		this.branch = branch;
 	}
 	
+	/**
+	 * Record that the given node is modified at the current branch. Nothing is 
+	 * recorded if there are no branches yet because such changes are never undone.
+	 * 
+	 * @param node
+	 */
+	void addToTrail(Node node) {
+	    if( !PelletOptions.USE_TRAIL_RESTORE || restoring || branch < 0 || branches == null 
+	        || branches.isEmpty() || node.trailBranch == branch )
+	        return;
+	    
+	    node.trailBranch = branch;
+	    trail.add( new TrailEntry( node.getName(), branch ) );
+	}
+	
+	/**
+	 * Record that the completion rules should be applied to the given node in the next
+	 * round. Nothing is recorded if the completion strategy does not use a queue.
+	 * 
+	 * @param node
+	 */
+	void enqueue(Node node) {
+	    if( completionQueue != null && node instanceof Individual )
+	        completionQueue.add( node );
+	}
+	
+	/**
+	 * Remove the trail entries recorded after the given branch and return the 
+	 * names of the nodes modified after that branch.
+	 * 
+	 * @param branch
+	 * @return
+	 */
+	List popTrail(int branch) {
+	    List names = new ArrayList();
+	    Set seen = new HashSet();
+	    
+	    int size = trail.size();
+	    while( size > 0 ) {
+	        TrailEntry entry = (TrailEntry) trail.get( size - 1 );
+	        if( entry.branch <= branch )
+	            break;
+	        
+	        if( seen.add( entry.name ) ) {
+	            names.add( entry.name );
+	            
+	            Node node = getNode( entry.name );
+	            if( node != null )
+	                node.trailBranch = -1;
+	        }
+	        
+	        size--;
+	    }
+	    trail.subList( size, trail.size() ).clear();
+	    
+	    return names;
+	}
+	
+	private static class TrailEntry {
+	    ATermAppl name;
+	    int branch;
+	    
+	    TrailEntry(ATermAppl name, int branch) {
+	        this.name = name;
+	        this.branch = branch;
+	    }
+	}
+	
 	/**
 	 * Incrment the branch number (should only be called when a non-deterministic rule,
 	 * e.g. disjunction or max rule, is being applied)
@@ -0,0 +1,249 @@
+package org.mindswap.pellet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.mindswap.pellet.utils.ATermUtils;
+
+import aterm.AFun;
+import aterm.ATerm;
+import aterm.ATermAppl;
+import aterm.ATermList;
+
+/**
+ * The changes made to the ABox of a KB after its consistency was checked. The KB uses the
+ * changes to update its reasoning results rather than computing them from scratch (see
+ * {@link PelletOptions#USE_INCREMENTAL_ABOX}):
+ * <ul>
+ * <li>The type assertions and object property values added between two consistency
+ * checks are added to a copy of the pseudo model which is then completed. Any other
+ * change, e.g. a removed assertion or a new individual, requires the pseudo model to be
+ * built again.</li>
+ * <li>Realization finds the types of only the individuals affected by the changes. When
+ * there are no nominals, the types of an individual can change only if the assertions
+ * about the individual, or about an individual connected to it, changed. Only the edges
+ * whose role is used in a restriction, or is functional, are followed since the other
+ * edges cannot propagate any type from one individual to another.</li>
+ * </ul>
+ */
+class ABoxChanges {
+    /**
+     * The type assertions (<code>[x, c]</code>) and property values (<code>[p, s, o]</code>)
+     * added after the pseudo model was built
+     */
+    private List additions = new ArrayList();
+
+    /**
+     * True if the pseudo model cannot be updated with the additions and should be built
+     * again
+     */
+    private boolean rebuildPseudoModel = false;
+
+    /**
+     * The individuals whose assertions changed after the last realization
+     */
+    private Set individuals = new HashSet();
+
+    /**
+     * True if the instances in the taxonomy were computed before these changes
+     */
+    private boolean realized = false;
+
+    /**
+     * The role terms used in the restrictions of the TBox axioms and the type assertions,
+     * collected when first needed
+     */
+    private Set restrictedRoles;
+
+    public void addType( ATermAppl x, ATermAppl c ) {
+        if( !rebuildPseudoModel )
+            additions.add( new ATermAppl[] { x, c } );
+        individuals.add( x );
+
+        if( restrictedRoles != null )
+            collectRoles( c );
+    }
+
+    public void addPropertyValue( Role role, ATermAppl s, ATermAppl o ) {
+        if( role.isObjectRole() ) {
+            if( !rebuildPseudoModel )
+                additions.add( new ATermAppl[] { role.getName(), s, o } );
+            individuals.add( o );
+        }
+        else
+            rebuildPseudoModel();
+
+        individuals.add( s );
+    }
+
+    /**
+     * Record a change about the individual that cannot be added to the pseudo model, e.g.
+     * a removed assertion.
+     */
+    public void update( ATermAppl x ) {
+        rebuildPseudoModel();
+        individuals.add( x );
+    }
+
+    private void rebuildPseudoModel() {
+        rebuildPseudoModel = true;
+        additions.clear();
+    }
+
+    public boolean canUpdatePseudoModel() {
+        return !rebuildPseudoModel;
+    }
+
+    /**
+     * Returns the assertions added after the pseudo model was built. Type assertions are
+     * stored as <code>[x, c]</code> and property values as <code>[p, s, o]</code>.
+     */
+    public List getAdditions() {
+        return additions;
+    }
+
+    /**
+     * Called after the pseudo model is updated or built again.
+     */
+    public void pseudoModelUpdated() {
+        additions.clear();
+        rebuildPseudoModel = false;
+    }
+
+    public boolean canUpdateRealization() {
+        return realized;
+    }
+
+    /**
+     * Called after the KB is realized.
+     */
+    public void realized() {
+        individuals.clear();
+        realized = true;
+    }
+
+    /**
+     * Called when the instances in the taxonomy are lost, e.g. because the taxonomy is
+     * computed again.
+     */
+    public void invalidateRealization() {
+        realized = false;
+    }
+
+    /**
+     * Returns the names of the individuals whose types may have changed, i.e. the
+     * individuals whose assertions changed and the individuals connected to them.
+     */
+    public Set getAffectedIndividuals( KnowledgeBase kb ) {
+        ABox abox = kb.getABox();
+
+        if( restrictedRoles == null ) {
+            restrictedRoles = new HashSet();
+            for( Iterator i = kb.getTBox().getAxioms().iterator(); i.hasNext(); )
+                collectRoles( (ATermAppl) i.next() );
+            for( Iterator i = abox.getIndIterator(); i.hasNext(); ) {
+                Individual ind = (Individual) i.next();
+                for( Iterator j = ind.getTypes().iterator(); j.hasNext(); )
+                    collectRoles( (ATermAppl) j.next() );
+            }
+        }
+
+        Set roles = new HashSet();
+        for( Iterator i = restrictedRoles.iterator(); i.hasNext(); ) {
+            ATermAppl term = (ATermAppl) i.next();
+            Role role = term.getAFun().equals( ATermUtils.INVFUN )
+                ? getInverse( abox.getRole( term.getArgument( 0 ) ) )
+                : abox.getRole( term );
+            if( role != null )
+                roles.add( role );
+        }
+
+        Map propagates = new HashMap();
+        Set affected = new HashSet();
+        List queue = new ArrayList();
+        for( Iterator i = individuals.iterator(); i.hasNext(); ) {
+            ATermAppl x = (ATermAppl) i.next();
+            Individual ind = abox.getIndividual( x );
+            if( ind != null && affected.add( x ) )
+                queue.add( ind );
+        }
+
+        while( !queue.isEmpty() ) {
+            Individual ind = (Individual) queue.remove( queue.size() - 1 );
+
+            for( int e = 0; e < 2; e++ ) {
+                EdgeList edges = (e == 0) ? ind.getOutEdges() : ind.getInEdges();
+                for( int i = 0; i < edges.size(); i++ ) {
+                    Edge edge = edges.edgeAt( i );
+                    Node neighbor = edge.getNeighbor( ind );
+
+                    if( neighbor instanceof Individual
+                        && !affected.contains( neighbor.getName() )
+                        && propagates( edge.getRole(), roles, propagates ) ) {
+                        affected.add( neighbor.getName() );
+                        queue.add( neighbor );
+                    }
+                }
+            }
+        }
+
+        return affected;
+    }
+
+    /**
+     * Returns true if the types of an individual may depend on the types of its neighbors
+     * through the given role.
+     */
+    private static boolean propagates( Role role, Set roles, Map cache ) {
+        Boolean result = (Boolean) cache.get( role );
+        if( result == null ) {
+            Role inv = role.getInverse();
+            boolean propagates = isRestricted( role, roles )
+                || (inv != null && isRestricted( inv, roles ));
+            result = propagates ? Boolean.TRUE : Boolean.FALSE;
+            cache.put( role, result );
+        }
+
+        return result.booleanValue();
+    }
+
+    private static boolean isRestricted( Role role, Set roles ) {
+        if( role.isFunctional() || role.isInverseFunctional() || roles.contains( role ) )
+            return true;
+
+        for( Iterator i = role.getSuperRoles().iterator(); i.hasNext(); ) {
+            Role sup = (Role) i.next();
+            if( sup.isFunctional() || sup.isInverseFunctional() || roles.contains( sup ) )
+                return true;
+        }
+
+        return false;
+    }
+
+    private static Role getInverse( Role role ) {
+        return role == null ? null : role.getInverse();
+    }
+
+    private void collectRoles( ATermAppl term ) {
+        AFun fun = term.getAFun();
+        if( fun.equals( ATermUtils.ALLFUN ) || fun.equals( ATermUtils.SOMEFUN )
+            || fun.equals( ATermUtils.MINFUN ) || fun.equals( ATermUtils.MAXFUN )
+            || fun.equals( ATermUtils.CARDFUN ) )
+            restrictedRoles.add( term.getArgument( 0 ) );
+
+        for( int i = 0; i < term.getArity(); i++ ) {
+            ATerm arg = term.getArgument( i );
+            if( arg instanceof ATermAppl )
+                collectRoles( (ATermAppl) arg );
+            else if( arg instanceof ATermList ) {
+                for( ATermList l = (ATermList) arg; !l.isEmpty(); l = l.getNext() )
+                    collectRoles( (ATermAppl) l.getFirst() );
+            }
+        }
+    }
+}
@@ -25,9 +25,10 @@
  */
 package org.mindswap.pellet;
 
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import org.mindswap.pellet.utils.SetUtils;
 
@@ -35,6 +36,27 @@ import org.mindswap.pellet.utils.SetUtils;
  * @author Evren Sirin
  */
 public abstract class Blocking {
+	/**
+	 * Directly blocked status of the nodes together with the label version of 
+	 * the ABox when the status was computed. The status of a node depends only 
+	 * on the types and edges of the node, its predecessors and its ancestors, 
+	 * so it is computed again only if one of these nodes changed afterwards 
+	 * (see {@link Node#labelVersion}). The status of an ancestor is computed 
+	 * once no matter how many descendants are checked.
+	 * <p>
+	 * The status is computed when it is asked for rather than kept in an index
+	 * updated on every change to the completion graph. Such an index would have
+	 * to be restored on backtracking together with the nodes, whereas the label
+	 * versions tell which entries are out of date without any bookkeeping.
+	 */
+	private Map directlyBlocked = new HashMap();
+	private ABox cachedABox = null;
+	
+	private static class BlockedStatus {
+	    boolean blocked;
+	    int version;
+	}
+	
 	/**
 	 * Return true if first node contains all the types y has
 	 * 
@@ -43,10 +65,11 @@ public abstract class Blocking {
 	 * @return
 	 */
 	protected boolean subset(Individual x, Individual y) {
-		Set xTypes = x.getTypes();
-		Set yTypes = y.getTypes();
+		// the mask rules out most of the non-subsets without looking at the types
+		if( (x.getTypeMask() & ~y.getTypeMask()) != 0 )
+		    return false;
 		
-		return SetUtils.subset(xTypes, yTypes);			
+		return SetUtils.subset(x.getTypeIds(), y.getTypeIds());			
 	}
 	
 	/**
@@ -57,10 +80,10 @@ public abstract class Blocking {
 	 * @return
 	 */
 	protected boolean equals(Individual x, Individual y) {
-		Set xTypes = x.getTypes();
-		Set yTypes = y.getTypes();
+		if( x.getTypeMask() != y.getTypeMask() )
+		    return false;
 		
-		return SetUtils.equals(xTypes, yTypes);			
+		return Arrays.equals(x.getTypeIds(), y.getTypeIds());			
 	}
 	
 	public boolean isBlocked( Individual x ) {
@@ -69,9 +92,10 @@ public abstract class Blocking {
 //		Timer t = x.getABox().getKB().timers.startTimer("blocking");
 
 		List ancestors = x.getAncestors();
+		int[] changed = getLastChanges( ancestors );
 		boolean isBlocked = 
-			isIndirectlyBlocked( ancestors ) || 
-			isDirectlyBlocked( x, ancestors );
+			isIndirectlyBlocked( ancestors, changed ) || 
+			isDirectlyBlockedCached( x, changed[0] );
 		
 //		t.stop();
 		
@@ -81,21 +105,65 @@ public abstract class Blocking {
 	public boolean isIndirectlyBlocked(Individual x) {
 		if( x.isNominal() ) return false;
 
-		return isIndirectlyBlocked( x.getAncestors() );
+		List ancestors = x.getAncestors();
+		return isIndirectlyBlocked( ancestors, getLastChanges( ancestors ) );
 	}
 	
-	// FIXME this can be made much more efficient
-	private boolean isIndirectlyBlocked( List ancestors ) {
-		Iterator i = ancestors.iterator();			
-		while(i.hasNext()) {
-			Individual ancestor = (Individual) i.next();
+	private boolean isIndirectlyBlocked( List ancestors, int[] changed ) {
+		for( int i = 0; i < ancestors.size(); i++ ) {
+			Individual ancestor = (Individual) ancestors.get( i );
 			
-			if( isDirectlyBlocked( ancestor, ancestor.getAncestors() ) )
+			// the ancestors of this ancestor are the ones after it in the list
+			if( isDirectlyBlockedCached( ancestor, changed[i + 1] ) )
 				return true;			
 		}	
 
 		return false;
 	}
 	
+	/**
+	 * Returns an array where the i-th element is the last label version any of 
+	 * the ancestors starting from the i-th ancestor was changed. The last element
+	 * is for the empty list of ancestors.
+	 */
+	private int[] getLastChanges( List ancestors ) {
+	    int[] changed = new int[ ancestors.size() + 1 ];
+	    changed[ ancestors.size() ] = -1;
+	    for( int i = ancestors.size() - 1; i >= 0; i-- ) {
+	        Node ancestor = (Node) ancestors.get( i );
+	        changed[i] = Math.max( changed[i + 1], ancestor.labelVersion );
+	    }
+	    
+	    return changed;
+	}
+	
+	private boolean isDirectlyBlockedCached( Individual x, int ancestorsChanged ) {
+	    ABox abox = x.getABox();
+	    if( abox != cachedABox ) {
+	        directlyBlocked.clear();
+	        cachedABox = abox;
+	    }
+	    
+	    int changed = Math.max( ancestorsChanged, x.labelVersion );
+	    EdgeList inEdges = x.getInEdges();
+	    for( int i = 0; i < inEdges.size(); i++ ) {
+	        Node pred = inEdges.edgeAt( i ).getFrom();
+	        changed = Math.max( changed, pred.labelVersion );
+	    }
+	    
+	    BlockedStatus status = (BlockedStatus) directlyBlocked.get( x );
+	    if( status == null ) {
+	        status = new BlockedStatus();
+	        directlyBlocked.put( x, status );
+	    }
+	    else if( status.version >= changed )
+	        return status.blocked;
+	    
+	    status.blocked = isDirectlyBlocked( x, x.getAncestors() );
+	    status.version = abox.labelVersion;
+	    
+	    return status.blocked;
+	}
+	
 	public abstract boolean isDirectlyBlocked( Individual x, List ancestors );
 }
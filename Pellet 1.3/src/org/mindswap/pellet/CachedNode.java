@@ -11,6 +11,12 @@ package org.mindswap.pellet;
 public class CachedNode {    
     Individual node;
     DependencySet depends;
+    MergeSignature signature;
+    
+    // used by the eviction policy of the cache
+    long lastUsed;
+    int uses;
+    int cost;
     
     public CachedNode( Individual node, DependencySet depends ) {
         this.node = node;
@@ -33,6 +39,29 @@ public class CachedNode {
         return node == ABox.BOTTOM_IND;      
     }
     
+    /**
+     * Returns a copy of this node with the same root and usage information. The
+     * signature is not copied since it depends on the ABox.
+     */
+    CachedNode copy() {
+        CachedNode copy = new CachedNode( node, depends );
+        copy.lastUsed = lastUsed;
+        copy.uses = uses;
+        copy.cost = cost;
+        
+        return copy;
+    }
+    
+    /**
+     * Returns the signature of the cached node that is used for model merging
+     */
+    MergeSignature getSignature( ABox abox ) {
+        if( signature == null || signature.index != abox.mergeIndex )
+            signature = new MergeSignature( abox, node );
+        
+        return signature;
+    }
+    
     public String toString() {
         return node + " " + depends;
     }
@@ -0,0 +1,154 @@
+package org.mindswap.pellet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A queue of the individuals whose types or edges changed since the last round of rule
+ * applications. The ABox adds an individual to the queue every time a type or an edge is
+ * added to it or it is restored. Each round of the completion iterates only over the
+ * individuals polled from the queue rather than all the individuals in the ABox. The
+ * polled individuals are ordered by their depth so the nodes closer to the root are
+ * processed first as a full sweep would do.
+ *
+ * <p>An individual of the last round is added back to the queue if there are still
+ * rules to apply to it, e.g. because it was blocked or the round was interrupted, so
+ * that it is visited again in the next round even if it does not change.</p>
+ */
+class CompletionQueue extends IndividualIterator {
+    private static final Comparator DEPTH_COMPARATOR = new Comparator() {
+        public int compare( Object o1, Object o2 ) {
+            return ((Node) o1).depth - ((Node) o2).depth;
+        }
+    };
+
+    private static final Individual[] NO_INDS = new Individual[0];
+
+    private ABox abox;
+
+    private List queue = new ArrayList();
+
+    /**
+     * The individuals polled for the current round
+     */
+    private Individual[] polled = NO_INDS;
+
+    public CompletionQueue( ABox abox ) {
+        super( abox, false );
+
+        this.abox = abox;
+
+        start = stop = index = 0;
+    }
+
+    public void add( Node node ) {
+        if( !node.queued ) {
+            node.queued = true;
+            queue.add( node );
+        }
+    }
+
+    /**
+     * Add all the individuals in the ABox to the queue.
+     */
+    public void addAll() {
+        for( IndividualIterator i = abox.getIndIterator(); i.hasNext(); ) {
+            Individual ind = (Individual) i.next();
+            ind.queued = false;
+            add( ind );
+        }
+    }
+
+    /**
+     * Start a new round with the individuals that changed since the last round and the
+     * individuals of the last round that still have rules to apply. Returns this queue
+     * as an iterator over the individuals of the new round.
+     */
+    public IndividualIterator poll() {
+        for( int i = 0; i < polled.length; i++ ) {
+            Individual ind = polled[i];
+            if( ind != null && !ind.isPruned() && hasRulesToApply( ind ) )
+                add( ind );
+        }
+
+        List inds = new ArrayList( queue.size() );
+        for( int i = 0; i < queue.size(); i++ ) {
+            Individual ind = (Individual) queue.get( i );
+            ind.queued = false;
+            if( !ind.isPruned() )
+                inds.add( ind );
+        }
+        queue.clear();
+
+        Collections.sort( inds, DEPTH_COMPARATOR );
+
+        polled = (Individual[]) inds.toArray( new Individual[inds.size()] );
+
+        start = index = 0;
+        stop = polled.length;
+
+        return this;
+    }
+
+    /**
+     * Add all the individuals of the last round back to the queue. Should be called
+     * when the round is interrupted by a clash because the rules have not been applied
+     * to all the individuals of the round.
+     */
+    public void requeueAll() {
+        for( int i = 0; i < polled.length; i++ ) {
+            if( polled[i] != null )
+                add( polled[i] );
+        }
+
+        polled = NO_INDS;
+        start = stop = index = 0;
+    }
+
+    /**
+     * Drop the individuals that have been removed from the ABox. Should be called after
+     * the ABox is restored to a previous branch.
+     */
+    public void removeDeleted() {
+        Map nodes = abox.getNodeMap();
+
+        for( int i = 0; i < polled.length; i++ ) {
+            if( polled[i] != null && nodes.get( polled[i].getName() ) != polled[i] )
+                polled[i] = null;
+        }
+
+        for( int i = queue.size() - 1; i >= 0; i-- ) {
+            Node node = (Node) queue.get( i );
+            if( nodes.get( node.getName() ) != node )
+                queue.remove( i );
+        }
+    }
+
+    /**
+     * Checks if any of the rules applied in rounds has not been applied to all the types
+     * of the individual. Max and nominal rules do not keep track of the applied types so
+     * the changed flags are used for those.
+     */
+    private boolean hasRulesToApply( Individual ind ) {
+        return ind.canApply( Node.ATOM ) || ind.canApply( Node.OR ) || ind.canApply( Node.SOME )
+            || ind.canApply( Node.MIN )
+            || (ind.canApply( Node.MAX ) && ind.isChanged( Node.MAX ))
+            || (ind.canApply( Node.NOM ) && ind.isChanged( Node.NOM ) && !PelletOptions.USE_PSEUDO_NOMINALS);
+    }
+
+    protected void findNext() {
+        for( ; index < stop; index++ ) {
+            if( polled[index] != null && !polled[index].isPruned() )
+                break;
+        }
+    }
+
+    public Object next() {
+        findNext();
+
+        return polled[index++];
+    }
+}
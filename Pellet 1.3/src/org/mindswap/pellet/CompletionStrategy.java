@@ -4,8 +4,10 @@
 package org.mindswap.pellet;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -98,6 +100,19 @@ public abstract class CompletionStrategy {
                 applyNominalRule(n);
     		}	
             
+    		// apply the rules for asserted edges to the edges added after completion
+    		for(Iterator j = abox.newEdges.iterator(); j.hasNext();) {
+    		    Edge edge = (Edge) j.next();
+    		    
+    		    if( edge.getFrom().isPruned() || edge.getTo().isPruned() )
+    		        continue;
+    		    
+                applyDomainRange( edge );
+                applyAllValues( edge );
+                applyFunctionalRole( edge );
+    		}
+    		abox.newEdges.clear();
+    		
             return;
         }
             
@@ -841,11 +856,7 @@ public abstract class CompletionStrategy {
                     if(node.hasType(disj[index])) continue LOOP;
                 }
 
-                DisjunctionBranch newBranch = new DisjunctionBranch(
-                    abox, this, node, disjunction, node.getDepends(disjunction), disj);
-                addBranch(newBranch);
-
-                newBranch.tryNext();
+                applyDisjunction(node, disjunction, disj);
                 
                 if(abox.isClosed() || node.isMerged() ) return;
             }
@@ -853,6 +864,37 @@ public abstract class CompletionStrategy {
         }
     }
 
+    /**
+     * Create a branch for the given disjunction of the node and try the first disjunct.
+     * The disjuncts learned to be unsatisfiable are not tried and if only one disjunct
+     * is left it is added to the node without creating a branch.
+     */
+    protected void applyDisjunction(Individual node, ATermAppl disjunction, ATermAppl[] disj) {
+        DependencySet ds = node.getDepends(disjunction);
+
+        if( PelletOptions.USE_DISJUNCT_LEARNING && PelletOptions.USE_CACHING && !abox.doExplanation() ) {
+            ATermAppl[] pruned = abox.nogoods.prune( abox, disj );
+            if( pruned == null ) {
+                abox.setClash( Clash.atomic( node, ds ) );
+                return;
+            }
+            else if( pruned.length == 1 ) {
+                addType( node, pruned[0], ds );
+                return;
+            }
+            else if( pruned != disj ) {
+                // keep the disjunct statistics for the remaining disjuncts separately
+                disjunction = ATermUtils.makeOr( ATermUtils.makeList( pruned ) );
+                disj = pruned;
+            }
+        }
+
+        DisjunctionBranch newBranch = new DisjunctionBranch(abox, this, node, disjunction, ds, disj);
+        addBranch(newBranch);
+
+        newBranch.tryNext();
+    }
+
     /**
      * 
      * applyMaxRule
@@ -1341,6 +1383,50 @@ public abstract class CompletionStrategy {
         return pairs;
     }
 
+    /**
+     * Called by backtrack() when none of the tries of the branch worked. The
+     * failure depends on the clashes of all the tries and not only on the last
+     * one, e.g. the last merge of a max branch does not depend on the clashes of
+     * the previous merges. Otherwise backjumping could skip a branch whose other
+     * choices would avoid the earlier clashes.
+     */
+    protected void branchExhausted(Branch br) {
+        abox.getClash().depends = br.getCombinedClash().copy();
+        abox.getClash().depends.remove(br.branch);
+    }
+
+	/**
+	 * Returns the individuals among the given nodes and their neighbors. An 
+	 * all values restriction has to be applied again after restore only if
+	 * its subject or the neighbor it applies to was restored.
+	 */
+	private Collection getNeighborhood(List nodes) {
+		Set neighborhood = new LinkedHashSet();
+		for(int i = 0; i < nodes.size(); i++) {
+			Node node = (Node) nodes.get(i);
+			if(node.isPruned())
+				continue;
+			
+			if(node instanceof Individual) {
+				Individual ind = (Individual) node;
+				neighborhood.add(ind);
+				
+				EdgeList outEdges = ind.getOutEdges();
+				for(int e = 0; e < outEdges.size(); e++) {
+					Node to = outEdges.edgeAt(e).getTo();
+					if(to instanceof Individual)
+						neighborhood.add(to);
+				}
+			}
+			
+			EdgeList inEdges = node.getInEdges();
+			for(int e = 0; e < inEdges.size(); e++)
+				neighborhood.add(inEdges.edgeAt(e).getFrom());
+		}
+		
+		return neighborhood;
+	}
+	
 	public void restore(Branch br) {
 //	    Timers timers = abox.getKB().timers;
 //		Timer timer = timers.startTimer("restore");
@@ -1358,27 +1444,58 @@ public abstract class CompletionStrategy {
 		if(ABox.DEBUG) System.out.println("RESTORE: Branch " + br.branch);
 		if(ABox.DEBUG && br.nodeCount < nodeList.size())
 		    System.out.println("Remove nodes " + nodeList.subList(br.nodeCount, nodeList.size()));
-		for(int i = 0; i < nodeList.size(); i++) {
-			ATerm x = (ATerm) nodeList.get(i);
+		// the individuals the all values rule should be applied to again (null for all)
+		Collection affected = null;
+		if( PelletOptions.USE_TRAIL_RESTORE ) {
+			// only the nodes modified after the branch can be affected
+			List modified = abox.popTrail(br.branch);
 			
-			Node node = abox.getNode(x);
-			if(i >= br.nodeCount) 
-				nodes.remove(x);
-//			if(node.branch > br.branch) {
-//				if(ABox.DEBUG) System.out.println("Remove node " + x);	
-//				nodes.remove(x);
-//				int lastIndex = nodeList.size() - 1;
-//				nodeList.set(i, nodeList.get(lastIndex));
-//				nodeList.remove(lastIndex);
-//				i--;
-//			}
-			else
-				node.restore(br.branch);
-		}		
+			for(int i = br.nodeCount; i < nodeList.size(); i++)
+				nodes.remove(nodeList.get(i));
+			
+			List restored = new ArrayList();
+			abox.restoring = true;
+			for(int i = 0; i < modified.size(); i++) {
+				Node node = abox.getNode((ATerm) modified.get(i));
+				if(node != null) {
+					node.restore(br.branch);
+					restored.add(node);
+				}
+			}
+			abox.restoring = false;
+			
+			affected = getNeighborhood(restored);
+		}
+		else {
+			for(int i = 0; i < nodeList.size(); i++) {
+				ATerm x = (ATerm) nodeList.get(i);
+			
+				Node node = abox.getNode(x);
+				if(i >= br.nodeCount) 
+					nodes.remove(x);
+//				if(node.branch > br.branch) {
+//					if(ABox.DEBUG) System.out.println("Remove node " + x);	
+//					nodes.remove(x);
+//					int lastIndex = nodeList.size() - 1;
+//					nodeList.set(i, nodeList.get(lastIndex));
+//					nodeList.remove(lastIndex);
+//					i--;
+//				}
+				else
+					node.restore(br.branch);
+			}		
+		}
 		nodeList.subList(br.nodeCount, nodeList.size()).clear();
-
-		for(Iterator i = abox.getIndIterator(); i.hasNext(); ) {
-			Individual ind = (Individual) i.next();
+		
+		if( abox.completionQueue != null )
+			abox.completionQueue.removeDeleted();
+
+		Iterator inds = (affected == null) ? (Iterator) abox.getIndIterator() : affected.iterator();
+		while(inds.hasNext()) {
+			Individual ind = (Individual) inds.next();
+			// a previous individual might have been merged to this one 
+			if(ind.isPruned())
+				continue;
 //			applyConjunctions(ind);			
 			applyAllValues(ind);
 //			applyNominalRule(ind);
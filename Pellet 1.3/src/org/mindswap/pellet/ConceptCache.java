@@ -0,0 +1,217 @@
+package org.mindswap.pellet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.mindswap.pellet.utils.ATermUtils;
+import org.mindswap.pellet.utils.Timer;
+import org.mindswap.pellet.utils.Timers;
+
+import aterm.ATermAppl;
+
+/**
+ * The concept satisfiability cache of an ABox. Maps a concept to the root node of its
+ * cached model (see {@link CachedNode}). If {@link PelletOptions#CACHE_CAPACITY} is
+ * positive the number of cached concepts is bounded. When the capacity is exceeded, a
+ * tenth of the entries is evicted at once. The entries are picked by the policy
+ * {@link PelletOptions#CACHE_EVICTION_POLICY}:
+ * <ul>
+ * <li>{@link PelletOptions#LRU} evicts the least recently used entries first</li>
+ * <li>{@link PelletOptions#LFU} evicts the least frequently used entries first</li>
+ * <li>{@link PelletOptions#COST} evicts the entries that were cheapest to compute first,
+ * i.e. the ones whose completion graph had the fewest nodes and branches</li>
+ * </ul>
+ * Ties are broken by evicting the least recently used entry. The entries for TOP and
+ * BOTTOM are never evicted.
+ *
+ * <p>The number of hits, misses and evictions are counted by the timers
+ * <code>conceptCacheHit</code>, <code>conceptCacheMiss</code> and
+ * <code>conceptCacheEviction</code> of the KB.</p>
+ */
+class ConceptCache {
+    private static final Comparator LRU_COMPARATOR = new Comparator() {
+        public int compare( Object o1, Object o2 ) {
+            return compareLastUsed( (CachedNode) o1, (CachedNode) o2 );
+        }
+    };
+
+    private static final Comparator LFU_COMPARATOR = new Comparator() {
+        public int compare( Object o1, Object o2 ) {
+            CachedNode n1 = (CachedNode) o1;
+            CachedNode n2 = (CachedNode) o2;
+            return n1.uses != n2.uses
+                ? (n1.uses < n2.uses ? -1 : 1)
+                : compareLastUsed( n1, n2 );
+        }
+    };
+
+    private static final Comparator COST_COMPARATOR = new Comparator() {
+        public int compare( Object o1, Object o2 ) {
+            CachedNode n1 = (CachedNode) o1;
+            CachedNode n2 = (CachedNode) o2;
+            return n1.cost != n2.cost
+                ? (n1.cost < n2.cost ? -1 : 1)
+                : compareLastUsed( n1, n2 );
+        }
+    };
+
+    private Map nodes = new HashMap();
+
+    /**
+     * Incremented every time an entry is added or found so the entries can be ordered
+     * by their last use
+     */
+    private long clock = 0;
+
+    private Timer hits;
+    private Timer misses;
+    private Timer evictions;
+
+    public ConceptCache( Timers timers ) {
+        hits = getTimer( timers, "conceptCacheHit" );
+        misses = getTimer( timers, "conceptCacheMiss" );
+        evictions = getTimer( timers, "conceptCacheEviction" );
+    }
+
+    private static Timer getTimer( Timers timers, String name ) {
+        Timer timer = timers.getTimer( name );
+
+        return timer == null ? timers.createTimer( name ) : timer;
+    }
+
+    private static int compareLastUsed( CachedNode n1, CachedNode n2 ) {
+        return n1.lastUsed < n2.lastUsed ? -1 : (n1.lastUsed == n2.lastUsed ? 0 : 1);
+    }
+
+    /**
+     * Returns a copy of this cache whose counters are kept by the given timers. The
+     * cached nodes are copied as well because they are updated when they are used.
+     */
+    public ConceptCache copy( Timers timers ) {
+        ConceptCache copy = new ConceptCache( timers );
+        copy.clock = clock;
+
+        for( Iterator i = nodes.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry entry = (Map.Entry) i.next();
+            copy.nodes.put( entry.getKey(), ((CachedNode) entry.getValue()).copy() );
+        }
+
+        return copy;
+    }
+
+    /**
+     * Returns the cached node for the concept or null if the concept is not cached.
+     * The lookup is counted as a hit or a miss and the node is marked as used.
+     */
+    public CachedNode get( ATermAppl c ) {
+        CachedNode cached = (CachedNode) nodes.get( c );
+        if( cached == null )
+            misses.increment();
+        else {
+            hits.increment();
+            cached.lastUsed = ++clock;
+            cached.uses++;
+        }
+
+        return cached;
+    }
+
+    /**
+     * Returns the cached node for the concept without counting the lookup
+     */
+    public CachedNode peek( ATermAppl c ) {
+        return (CachedNode) nodes.get( c );
+    }
+
+    public boolean contains( ATermAppl c ) {
+        return nodes.containsKey( c );
+    }
+
+    public void put( ATermAppl c, CachedNode cached ) {
+        cached.lastUsed = ++clock;
+        nodes.put( c, cached );
+
+        int capacity = PelletOptions.CACHE_CAPACITY;
+        if( capacity > 0 && nodes.size() > capacity )
+            evict( c, capacity - Math.max( 1, capacity / 10 ) );
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Removes the entries for the concepts that use any of the given classes. Removed
+     * entries are not counted as evictions.
+     */
+    public void remove( Set classes ) {
+        for( Iterator i = nodes.keySet().iterator(); i.hasNext(); ) {
+            ATermAppl c = (ATermAppl) i.next();
+            Set prims = ATermUtils.findPrimitives( c );
+            for( Iterator j = prims.iterator(); j.hasNext(); ) {
+                if( classes.contains( j.next() ) ) {
+                    i.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns an unmodifiable view of the cached concepts and their nodes
+     */
+    public Map getNodes() {
+        return Collections.unmodifiableMap( nodes );
+    }
+
+    /**
+     * Evict entries until the size of the cache is not greater than the given size.
+     * The entry for the concept that has just been added is not evicted.
+     */
+    private void evict( ATermAppl added, int size ) {
+        List candidates = new ArrayList( nodes.size() );
+        for( Iterator i = nodes.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry entry = (Map.Entry) i.next();
+            ATermAppl c = (ATermAppl) entry.getKey();
+            if( !isPinned( c ) && !c.equals( added ) )
+                candidates.add( entry );
+        }
+
+        final Comparator comparator = getComparator();
+        Collections.sort( candidates, new Comparator() {
+            public int compare( Object o1, Object o2 ) {
+                return comparator.compare( ((Map.Entry) o1).getValue(), ((Map.Entry) o2).getValue() );
+            }
+        } );
+
+        int count = Math.min( nodes.size() - size, candidates.size() );
+        Object[] evicted = new Object[count];
+        for( int i = 0; i < count; i++ )
+            evicted[i] = ((Map.Entry) candidates.get( i )).getKey();
+
+        for( int i = 0; i < count; i++ ) {
+            nodes.remove( evicted[i] );
+            evictions.increment();
+        }
+    }
+
+    private Comparator getComparator() {
+        String policy = PelletOptions.CACHE_EVICTION_POLICY;
+        if( PelletOptions.LFU.equals( policy ) )
+            return LFU_COMPARATOR;
+        else if( PelletOptions.COST.equals( policy ) )
+            return COST_COMPARATOR;
+        else
+            return LRU_COMPARATOR;
+    }
+
+    private static boolean isPinned( ATermAppl c ) {
+        return c.equals( ATermUtils.TOP ) || c.equals( ATermUtils.BOTTOM );
+    }
+}
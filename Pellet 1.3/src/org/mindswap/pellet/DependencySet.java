@@ -31,7 +31,12 @@ import java.util.BitSet;
  */
 
 /**
- * DependencySet for concepts and edges in the ABox for backjumping
+ * DependencySet for concepts and edges in the ABox for backjumping. The set of
+ * branches is stored as an array of words where the trailing empty words are 
+ * always removed. The words are shared between the copies of a set and are 
+ * copied only when a set is modified. Union of two sets does not allocate new 
+ * words if one set already contains the other, which is the case for most of the
+ * unions done by the completion rules, e.g. union with an independent set. 
  *
  * @author Evren Sirin
  *
@@ -39,6 +44,8 @@ import java.util.BitSet;
 public class DependencySet {
     public static final int NO_BRANCH = -1;
     
+    private static final long[] NO_WORDS = new long[0];
+    
     /**
      * An empty dependency set
      */
@@ -55,10 +62,25 @@ public class DependencySet {
 	 */
 	public static final DependencySet DUMMY = new DependencySet(1);
 	
+	static {
+		// the constant sets should never be modified
+		EMPTY.shared = true;
+		INDEPENDENT.shared = true;
+		DUMMY.shared = true;
+	}
+	
 	/**
-	 * index of branches this assertion depends on 
+	 * index of branches this assertion depends on. Branch <code>b</code> is in the
+	 * set if the bit <code>b % 64</code> of the word <code>b / 64</code> is set. The
+	 * last word is never zero. 
 	 */
-	private BitSet depends;
+	private long[] depends;
+	
+	/**
+	 * True if the words are shared with another set and should be copied before 
+	 * this set is modified
+	 */
+	private boolean shared;
 	
 	/**
 	 * branch number when this assertion was added to ABox
@@ -69,7 +91,7 @@ public class DependencySet {
 	 * Create an empty set
 	 */
 	private DependencySet() {
-		depends = new BitSet();
+		depends = NO_WORDS;
 	}
 	
 	/**
@@ -78,27 +100,35 @@ public class DependencySet {
 	 * @param branch Branch number
 	 */
 	public DependencySet(int branch) {
-		this.depends = new BitSet();		
-		
-		depends.set(branch);
+		depends = new long[(branch >> 6) + 1];
+		depends[branch >> 6] = 1L << (branch & 63);
 	}
 	
 	/**
-	 * Creates a dependecy set with the given BitSet (no separate copy of BitSet is created 
-	 * so if BitSet is modified this DependencySet will be affected).
+	 * Creates a dependecy set with the branches in the given BitSet (the BitSet is 
+	 * copied so modifying the BitSet will not affect this DependencySet).
 	 */
-	public DependencySet(BitSet depends) {
-		this.depends = depends;		
+	public DependencySet(BitSet bits) {
+		depends = new long[(bits.length() + 63) >> 6];
+		for(int b = bits.nextSetBit(0); b >= 0; b = bits.nextSetBit(b + 1))
+			depends[b >> 6] |= 1L << (b & 63);
+	}
+	
+	private DependencySet(long[] depends, boolean shared) {
+		this.depends = depends;
+		this.shared = shared;
 	}
 		
 	/**
-	 * Creates a new DependencySet object where the BitSet is shared (changing one will change
-	 * the other).
+	 * Creates a new DependencySet object with the same branches. The branches are 
+	 * shared until one of the sets is modified so creating a copy is cheap.
 	 * 
 	 * @return
 	 */
 	public DependencySet copy() {
-		return new DependencySet(this.depends);
+		shared = true;
+		
+		return new DependencySet(depends, true);
 	}
 
 	/**
@@ -108,7 +138,9 @@ public class DependencySet {
 	 * @return
 	 */
 	public boolean contains(int b) {
-		return depends.get(b);
+		int word = b >> 6;
+		
+		return b >= 0 && word < depends.length && (depends[word] & (1L << (b & 63))) != 0;
 	}
 
 	/**
@@ -117,7 +149,19 @@ public class DependencySet {
 	 * @param b
 	 */
 	public void add(int b) {
-		depends.set(b);
+		int word = b >> 6;
+		if( word >= depends.length ) {
+			long[] newDepends = new long[word + 1];
+			System.arraycopy(depends, 0, newDepends, 0, depends.length);
+			depends = newDepends;
+			shared = false;
+		}
+		else if( shared ) {
+			depends = (long[]) depends.clone();
+			shared = false;
+		}
+		
+		depends[word] |= 1L << (b & 63);
 	}
 	
 	/**
@@ -126,7 +170,26 @@ public class DependencySet {
 	 * @param b
 	 */
 	public void remove(int b) {
-		depends.clear(b);
+		if( !contains(b) )
+			return;
+		
+		int word = b >> 6;
+		if( shared ) {
+			depends = (long[]) depends.clone();
+			shared = false;
+		}
+		
+		depends[word] &= ~(1L << (b & 63));
+		
+		int length = depends.length;
+		while( length > 0 && depends[length - 1] == 0 )
+			length--;
+		
+		if( length < depends.length ) {
+			long[] newDepends = (length == 0) ? NO_WORDS : new long[length];
+			System.arraycopy(depends, 0, newDepends, 0, length);
+			depends = newDepends;
+		}
 	}	
 
 	/**
@@ -144,7 +207,13 @@ public class DependencySet {
 	 * @return
 	 */
 	public int size() {
-		return depends.cardinality();
+		int size = 0;
+		for(int i = 0; i < depends.length; i++) {
+			for(long word = depends[i]; word != 0; word &= word - 1)
+				size++;
+		}
+		
+		return size;
 	}
 
 	/**
@@ -153,7 +222,16 @@ public class DependencySet {
 	 * @return
 	 */
 	public int max() {
-		return depends.length() - 1;
+		int last = depends.length - 1;
+		if( last < 0 )
+			return -1;
+		
+		long word = depends[last];
+		int bit = 63;
+		while( (word & (1L << bit)) == 0 )
+			bit--;
+		
+		return (last << 6) + bit;
 	}
 
 	/**
@@ -164,13 +242,48 @@ public class DependencySet {
 	 * @return
 	 */
 	public DependencySet union(DependencySet ds) {
-		BitSet newDepends = (BitSet) depends.clone();
-		newDepends.or(ds.depends);
+		if( containsAll(depends, ds.depends) )
+			return copy();
+		if( containsAll(ds.depends, depends) )
+			return ds.copy();
+		
+		long[] longer = depends, shorter = ds.depends;
+		if( longer.length < shorter.length ) {
+			longer = ds.depends;
+			shorter = depends;
+		}
 		
-		return new DependencySet(newDepends);
+		long[] newDepends = (long[]) longer.clone();
+		for(int i = 0; i < shorter.length; i++)
+			newDepends[i] |= shorter[i];
+		
+		return new DependencySet(newDepends, false);
+	}
+	
+	private static boolean containsAll(long[] sup, long[] sub) {
+		if( sub.length > sup.length )
+			return false;
+		
+		for(int i = 0; i < sub.length; i++) {
+			if( (sub[i] & ~sup[i]) != 0 )
+				return false;
+		}
+		
+		return true;
 	}
 	
 	public String toString() {
-		return "[" + branch + "-" + depends.toString() + "]";
+		StringBuffer buffer = new StringBuffer();
+		buffer.append("[").append(branch).append("-{");
+		for(int b = 0, n = 0; b < depends.length << 6; b++) {
+			if( contains(b) ) {
+				if( n++ > 0 )
+					buffer.append(", ");
+				buffer.append(b);
+			}
+		}
+		buffer.append("}]");
+		
+		return buffer.toString();
 	}
 }
@@ -188,6 +188,9 @@ class DisjunctionBranch extends Branch {
 					stats[order[tryNext]]++;
 				}
 				
+				if( PelletOptions.USE_DISJUNCT_LEARNING )
+				    abox.nogoods.clash( abox, d );
+				
 				// do not restore if we do not have any more branches to try. after
 				// backtrack the correct branch will restore it anyway. more
 				// importantly restore clears the clash info causing exceptions
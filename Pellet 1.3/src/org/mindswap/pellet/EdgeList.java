@@ -26,9 +26,11 @@ package org.mindswap.pellet;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /*
@@ -41,8 +43,22 @@ import java.util.Set;
  *
  */
 public class EdgeList {
+	/**
+	 * Lists with fewer edges are always searched linearly
+	 */
+	private static final int INDEX_THRESHOLD = 32;
+	
 	private List list;
 	
+	/**
+	 * Index built the first time a large list is searched. Maps each role to the 
+	 * edges with that role and each node to the edges where the node is either 
+	 * the subject or the object. The edges in the index are kept in the same order 
+	 * as the list so the lookups return the same results as a linear search.
+	 */
+	private Map roleIndex;
+	private Map nodeIndex;
+	
 	public EdgeList() {
 		list = new ArrayList();
 	}
@@ -70,14 +86,30 @@ public class EdgeList {
 			return;
 
 		list.addAll(edges.list);		
+		
+		if( roleIndex != null ) {
+			for(int i = 0, n = edges.list.size(); i < n; i++)
+				index((Edge) edges.list.get(i));
+		}
 	}
 		
 	public void addEdge(Edge e) {
 		list.add(e);
+		
+		if( roleIndex != null )
+			index(e);
 	}
 	
 	public boolean removeEdge(Edge edge) {
-	    return list.remove(edge);			
+		int i = list.indexOf(edge);
+		if( i == -1 )
+			return false;
+		
+		Edge removed = (Edge) list.remove(i);
+		if( roleIndex != null )
+			unindex(removed);
+		
+	    return true;			
 	}
 	
 	public Edge edgeAt(int i) {
@@ -104,14 +136,105 @@ public class EdgeList {
 	}
 	
 	public Iterator iterator() {
-		return list.iterator();
+		final Iterator i = list.iterator();
+		
+		// the index is updated when the edges are removed by the iterator 
+		return new Iterator() {
+			private Edge last;
+			
+			public boolean hasNext() {
+				return i.hasNext();
+			}
+
+			public Object next() {
+				last = (Edge) i.next();
+				return last;
+			}
+
+			public void remove() {
+				i.remove();
+				if( roleIndex != null )
+					unindex(last);
+			}			
+		};
+	}
+	
+	/**
+	 * Builds the index if this list is large enough and returns true if the index
+	 * can be used.
+	 */
+	private boolean useIndex() {
+		if( roleIndex == null ) {
+			if( list.size() < INDEX_THRESHOLD )
+				return false;
+			
+			roleIndex = new HashMap();
+			nodeIndex = new HashMap();
+			for(int i = 0, n = list.size(); i < n; i++)
+				index((Edge) list.get(i));
+		}
+		
+		return true;
+	}
+	
+	private void index(Edge e) {
+		addToIndex(roleIndex, e.getRole(), e);
+		addToIndex(nodeIndex, e.getFrom(), e);
+		if( e.getTo() != e.getFrom() )
+			addToIndex(nodeIndex, e.getTo(), e);
+	}
+	
+	private void unindex(Edge e) {
+		removeFromIndex(roleIndex, e.getRole(), e);
+		removeFromIndex(nodeIndex, e.getFrom(), e);
+		if( e.getTo() != e.getFrom() )
+			removeFromIndex(nodeIndex, e.getTo(), e);
+	}
+	
+	private static void addToIndex(Map index, Object key, Edge e) {
+		List edges = (List) index.get(key);
+		if( edges == null ) {
+			edges = new ArrayList();
+			index.put(key, edges);
+		}
+		edges.add(e);
+	}
+	
+	private static void removeFromIndex(Map index, Object key, Edge e) {
+		List edges = (List) index.get(key);
+		// there might be equal edges with different dependencies so the 
+		// identical edge is removed
+		for(int i = 0, n = edges.size(); i < n; i++) {
+			if( edges.get(i) == e ) {
+				edges.remove(i);
+				break;
+			}
+		}
+		
+		if( edges.isEmpty() )
+			index.remove(key);
+	}
+	
+	/**
+	 * Returns the edges that should be searched for the given subject and object,
+	 * i.e. the edges of the node from the index if the index can be used or all 
+	 * the edges otherwise.
+	 */
+	private List candidates(Individual from, Node to) {
+		if( (from == null && to == null) || !useIndex() )
+			return list;
+		
+		List edges = (List) nodeIndex.get( (to != null) ? (Node) to : from );
+		
+		return (edges == null) ? Collections.EMPTY_LIST : edges;
 	}
 	
 	private EdgeList findEdges(Role role, Individual from, Node to) {
 		EdgeList result = new EdgeList();
 		
-		for(int i = 0, n = list.size(); i < n; i++) {
-			Edge e = (Edge) list.get(i);
+		List edges = candidates(from, to);
+		for(int i = 0, n = edges.size(); i < n; i++) {
+			Edge e = (Edge) edges.get(i);
             if( (from == null || from.equals( e.getFrom() )) &&
                 (role == null || e.getRole().isSubRoleOf(role)) &&
                 (to == null || to.equals( e.getTo() )) )
@@ -136,6 +259,27 @@ public class EdgeList {
 	public EdgeList getEdges(Role role) {
 		EdgeList result = new EdgeList();
 		
+		if( useIndex() ) {
+			List edges = null;
+			int count = 0;
+			for(Iterator i = roleIndex.entrySet().iterator(); i.hasNext(); ) {
+				Map.Entry entry = (Map.Entry) i.next();
+				if( ((Role) entry.getKey()).isSubRoleOf(role) ) {
+					edges = (List) entry.getValue();
+					count++;
+				}
+			}
+
+			// if the edges have more than one sub role of the given role then
+			// the lists are not merged, linear search finds them in order 
+			if( count == 0 )
+				return result;
+			else if( count == 1 ) {
+				result.list.addAll(edges);
+				return result;
+			}
+		}
+		
 		for(int i = 0, n = list.size(); i < n; i++) {
 			Edge e = (Edge) list.get(i);
             if( e.getRole().isSubRoleOf(role))
@@ -150,6 +294,14 @@ public class EdgeList {
 	public EdgeList getEdgesContaining(final Node node) {
 		EdgeList result = new EdgeList();
 		
+		if( useIndex() ) {
+			List edges = (List) nodeIndex.get(node);
+			if( edges != null )
+				result.list.addAll(edges);
+			
+			return result;
+		}
+		
 		for(int i = 0, n = list.size(); i < n; i++) {
 			Edge e = (Edge) list.get(i);
             if( e.getFrom().equals(node) || e.getTo().equals(node) )
@@ -260,8 +412,18 @@ public class EdgeList {
 	}
 	
 	public boolean hasEdge(Individual from, Role role, Node to) {
-		for(int i = 0, n = list.size(); i < n; i++) {
-			Edge e = (Edge) list.get(i);
+		if( from == null && to == null && role != null && useIndex() ) {
+			for(Iterator i = roleIndex.keySet().iterator(); i.hasNext(); ) {
+				if( ((Role) i.next()).isSubRoleOf(role) )
+					return true;
+			}
+			
+			return false;
+		}
+		
+		List edges = candidates(from, to);
+		for(int i = 0, n = edges.size(); i < n; i++) {
+			Edge e = (Edge) edges.get(i);
             if( (from == null || from.equals( e.getFrom() )) &&
                 (role == null || e.getRole().isSubRoleOf(role)) &&
                 (to == null || to.equals( e.getTo() )) )
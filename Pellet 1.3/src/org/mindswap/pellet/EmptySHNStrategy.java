@@ -300,7 +300,7 @@ public class EmptySHNStrategy extends CompletionStrategy {
 	            CachedNode cached1 = abox.getCached( c1 );
 	            CachedNode cached2 = abox.getCached( c2 );
 	            if( cached1 != null && cached1.isComplete() && cached2 != null && cached2.isComplete() ) {
-	                sat = abox.mergable( cached1.node, cached2.node,
+	                sat = abox.mergable( cached1, cached2,
 	                    cached1.depends.isIndependent() && cached2.depends.isIndependent());
 	                if( sat.isKnown() ) {
 //	                    doubleCache++;
@@ -351,6 +351,9 @@ public class EmptySHNStrategy extends CompletionStrategy {
 		abox.setClash(null);
 		abox.anonCount = br.anonCount;
 		
+		// all the nodes are restored below so the trail is not needed
+		abox.popTrail(br.branch);
+		
 		mergeList.clear();
 		
 		List nodeList = abox.getNodeNames();
@@ -359,6 +362,7 @@ public class EmptySHNStrategy extends CompletionStrategy {
 		if(ABox.DEBUG) System.out.println("RESTORE: Branch " + br.branch);
 		if(ABox.DEBUG && br.nodeCount < nodeList.size())
 		    System.out.println("Remove nodes " + nodeList.subList(br.nodeCount, nodeList.size()));
+		abox.restoring = true;
 		for(int i = 0; i < nodeList.size(); i++) {
 			ATerm x = (ATerm) nodeList.get(i);
 			
@@ -385,6 +389,7 @@ public class EmptySHNStrategy extends CompletionStrategy {
 				    cachedNodes.remove( node );
 			}
 		}		
+		abox.restoring = false;
 		nodeList.subList(br.nodeCount, nodeList.size()).clear();
 
 		for(Iterator i = abox.getIndIterator(); i.hasNext(); ) {
@@ -430,6 +435,8 @@ public class EmptySHNStrategy extends CompletionStrategy {
     
                     branchFound = newBranch.tryNext();
                 }                    
+                else
+                    branchExhausted(newBranch);
             }
 
             if(!branchFound) {
@@ -485,12 +492,9 @@ public class EmptySHNStrategy extends CompletionStrategy {
 
             if(!disjuncts.isEmpty()) continue;
 
-            DisjunctionBranch newBranch = new DisjunctionBranch(abox, this, node,
-                disjunction, node.getDepends(disjunction), disj);
+            applyDisjunction(node, disjunction, disj);
 
-            addBranch(newBranch);
-
-            if(newBranch.tryNext() == false) return;
+            if(abox.isClosed()) return;
         }
         node.applyNext[Node.OR] = size;
 
@@ -85,8 +85,9 @@ public class Individual extends Node {
 		
 		nominalLevel = ind.nominalLevel;
 
+		// type lists are shared until modified, see copyTypes()
 		for(int i = 0; i < TYPES; i++) {
-			types[i] = new ArrayList(ind.types[i]);		
+			types[i] = ind.types[i];		
 			applyNext[i] = ind.applyNext[i];		
 		}
 	
@@ -127,6 +128,8 @@ public class Individual extends Node {
 	    
 	    if( nominalLevel != BLOCKABLE )
 	        ancestors = null;
+	    
+	    edgesChanged();
 	}
 
 	public int getNominalLevel() {
@@ -218,6 +221,29 @@ public class Individual extends Node {
 		return applyNext[type] < types[type].size();
 	}
 	
+	protected void copyTypes() {
+		super.copyTypes();
+		
+		for(int i = 0; i < TYPES; i++)
+			types[i] = new ArrayList(types[i]);
+	}
+	
+	private DependencySet copyDepends(DependencySet ds) {
+		ds = ds.copy();
+		ds.branch = abox.getBranch();
+
+		// if we are checking entailment using a pseduo model, abox.branch
+		// is set to -1. however, since applyAllValues is done automatically
+		// and the edge used in applyAllValues may depend on a branch we want
+		// this type to be deleted when that edge goes away, i.e. we backtrack
+		// to a position before the max dependecy of this type
+		int max = ds.max();
+		if(ds.branch == -1 && max != 0)
+		    ds.branch = max + 1;
+
+		return ds;
+	}
+
 	public void addType(ATermAppl c, DependencySet ds) {
 	    if( isPruned() )
 	        throw new InternalReasonerException( "Adding type to a pruned node " + this + " " + c );
@@ -233,25 +259,36 @@ public class Individual extends Node {
 //					
 //					addType(conj, ds);
 //				}			
-//			}		    
-			return;		
+//			}
+			// a type found to be independent of any branch, e.g. when new assertions
+			// are added to a completed ABox, should not be lost by backtracking to a
+			// branch it was previously found to depend on
+			if( ds.isIndependent() && !getDepends(c).isIndependent() ) {
+				if( sharedTypes )
+				    copyTypes();
+
+				depends.put(c, copyDepends(ds));
+
+				typesChanged();
+
+				if (c.getAFun().equals(ATermUtils.ANDFUN)) {
+					for(ATermList cs = (ATermList) c.getArgument(0); !cs.isEmpty(); cs = cs.getNext())
+						addType((ATermAppl) cs.getFirst(), ds);
+				}
+			}
+			return;
 		}
 
-		ds = ds.copy();
-		ds.branch = abox.getBranch();
-		
-		// if we are checking entailment using a pseduo model, abox.branch 
-		// is set to -1. however, since applyAllValues is done automatically
-		// and the edge used in applyAllValues may depend on a branch we want
-		// this type to be deleted when that edge goes away, i.e. we backtrack
-		// to a position before the max dependecy of this type
-		int max = ds.max();
-		if(ds.branch == -1 && max != 0)
-		    ds.branch = max + 1;
-		
+		ds = copyDepends(ds);
+
+		if( sharedTypes )
+		    copyTypes();
+
 		depends.put(c, ds);
 
 		abox.changed = true;
+		
+		typesChanged();
 
 		ATermAppl notC = ATermUtils.negate(c);
 		DependencySet clashDepends = (DependencySet) depends.get(notC);
@@ -325,6 +362,7 @@ public class Individual extends Node {
 			else {
 				System.err.println("Warning: Adding invalid class constructor - " + c);				
 				depends.put(ATermUtils.BOTTOM, ds);
+				typesChanged();
 			}				
 		}		
 	}
@@ -498,9 +536,14 @@ public class Individual extends Node {
 	}
 	
 	public void removeType(ATermAppl c) {
+		if( sharedTypes )
+		    copyTypes();
+		
 		depends.remove(c);
 
 		setChanged(true);
+		
+		typesChanged();
 
 		if (ATermUtils.isPrimitive(c)) {
 			types[ATOM].remove(c);
@@ -860,6 +903,8 @@ public class Individual extends Node {
 		setChanged(MAX, true);
         
         inEdges.addEdge( edge );
+        
+        edgesChanged();
 	}	
 
 	protected void addOutEdge(Edge edge) {
@@ -867,6 +912,8 @@ public class Individual extends Node {
 		setChanged(MAX, true);
 
 		outEdges.addEdge(edge);						
+		
+		edgesChanged();
 	}
 	
 	public Edge addEdge( Role r, Node x, DependencySet ds ) {		
@@ -892,6 +939,8 @@ public class Individual extends Node {
 		outEdges.addEdge(edge);
 		x.addInEdge(edge);
 		
+		edgesChanged();
+		
 		return edge;
 	}
 	
@@ -950,6 +999,8 @@ public class Individual extends Node {
             throw new InternalReasonerException(
                 "Trying to remove a non-existing edge " + edge);
 		
+		edgesChanged();
+		
 		return true;
 	}
 	
@@ -965,6 +1016,8 @@ public class Individual extends Node {
 	public void prune( DependencySet ds ) {    
 	    pruned = ds;
 	    
+	    edgesChanged();
+	    
 	    for(int i = 0; i < outEdges.size(); i++) {
             Edge edge = outEdges.edgeAt( i );
             Node succ = edge.getTo();
@@ -25,10 +25,12 @@
  */
 package org.mindswap.pellet;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -87,6 +89,25 @@ public class KnowledgeBase {
 	protected Taxonomy roleTaxonomy;
 
 	private boolean consistent;
+	
+	/**
+	 * The ABox changes made after the last consistency check, or null if the changes are
+	 * not tracked (see {@link PelletOptions#USE_INCREMENTAL_ABOX})
+	 */
+	private ABoxChanges aboxChanges;
+	
+	/**
+	 * The classes affected by the TBox changes made after the last classification, or 
+	 * null if the KB needs to be classified from scratch (see 
+	 * {@link PelletOptions#USE_INCREMENTAL_CLASSIFICATION})
+	 */
+	private Set affectedClasses;
+	
+	/**
+	 * Set when a datatype is defined. Datatype definitions are not tracked by the TBox
+	 * so they always cause classification from scratch. 
+	 */
+	private boolean datatypesChanged;
     
     private SizeEstimate estimate;
 
@@ -133,6 +154,26 @@ public class KnowledgeBase {
 
 	private Set rules;	
 	
+	/**
+	 * Workers used for parallel instance retrieval. The pool is created when it is first
+	 * needed and kept, together with the KB copies of its workers, until the KB is changed
+	 * (see {@link #getRetrievalPool()}).
+	 */
+	private WorkerPool retrievalPool;
+	
+	/**
+	 * The status and the taxonomy of the KB when the retrieval pool was created. The 
+	 * copies of the workers are not valid any more if these values change. 
+	 */
+	private int retrievalPoolStatus;
+	private Taxonomy retrievalPoolTaxonomy;
+	
+	/**
+	 * Time in milliseconds after which the workers of an unused retrieval pool are 
+	 * stopped so that the threads and the KB copies are not kept forever.
+	 */
+	private static final long RETRIEVAL_POOL_IDLE_TIMEOUT = 60000;
+	
 	/**
 	 * 
 	 */
@@ -169,6 +210,38 @@ public class KnowledgeBase {
 //		timers.createTimer("consistency");
 	}
 	
+	/**
+	 * Create a copy of an existing KB that can be used by a different thread. The 
+	 * reasoning state of the KB (consistency, classification, etc.) is preserved. 
+	 * TBox, RBox, taxonomy and expressivity are shared because they are not modified 
+	 * by the tableau algorithm but the ABox and all its caches are copied. Each copy 
+	 * has its own timers and size estimate so that the state of the original KB is not 
+	 * modified by other threads.
+	 * 
+	 * @param kb
+	 * @param timers
+	 */
+	private KnowledgeBase(KnowledgeBase kb, Timers timers) {
+		this.timers = timers;
+		timers.mainTimer.setTimeout( kb.timers.mainTimer.getTimeout() );
+		
+		tbox = kb.tbox;
+		rbox = kb.rbox;
+		expressivity = kb.expressivity;
+		individuals = kb.individuals;
+		instances = new HashMap( kb.instances );
+		
+		taxonomy = kb.taxonomy;
+		estimate = new SizeEstimate( this );
+		rules = kb.rules;
+		ontology = kb.ontology;
+		
+		consistent = kb.consistent;
+		status = kb.status;
+		
+		abox = kb.abox.copy( this );
+	}
+	
 	public Expressivity getExpressivity() {
 	    prepare();
 	    
@@ -187,6 +260,10 @@ public class KnowledgeBase {
 //		typeChecks = new HashMap();
 		
 		builder = null;
+		aboxChanges = null;
+		affectedClasses = null;
+		
+		discardRetrievalPool( false );
 		
 		status = ALL_CHANGED;		
 	}
@@ -195,6 +272,60 @@ public class KnowledgeBase {
 	    return new KnowledgeBase(this); 	
 	}
 	
+	/**
+	 * Create a copy of this KB to be used by another thread. Reasoning tasks that do not 
+	 * change the KB, e.g. satisfiability, subsumption and instance checks, can be run on
+	 * the copy in parallel with the tasks run on this KB (or on other copies). The copy 
+	 * shares TBox, RBox and taxonomy with this KB so neither this KB nor the copy should
+	 * be modified while the copy is in use. Results cached by the copy can be added back
+	 * to this KB with {@link #merge(KnowledgeBase)}. 
+	 * 
+	 * @return
+	 */
+	public KnowledgeBase copyForThread() {
+	    return copyForThread( false );
+	}
+	
+	/**
+	 * Create a copy of this KB to be used by another thread as in {@link #copyForThread()}.
+	 * If <code>copyTaxonomy</code> is true and this KB is classified, the copy gets its 
+	 * own copy of the taxonomy and its own taxonomy builder. Such a copy can answer the
+	 * subclass, superclass and equivalence queries for class expressions that are not in
+	 * the taxonomy, which adds them to the taxonomy, while this KB or other copies are 
+	 * being used.
+	 * 
+	 * @param copyTaxonomy
+	 * @return
+	 */
+	public KnowledgeBase copyForThread( boolean copyTaxonomy ) {
+	    ensureConsistency();
+	    
+	    KnowledgeBase copy = new KnowledgeBase( this, new Timers() );
+	    
+	    if( copyTaxonomy && taxonomy != null ) {
+	        copy.taxonomy = taxonomy.copy();
+	        copy.builder = copy.getTaxonomyBuilder();
+	        copy.builder.setTaxonomy( copy.taxonomy );
+	    }
+	    
+	    return copy;
+	}
+	
+	/**
+	 * Add the satisfiability results cached by a copy of this KB (created by 
+	 * {@link #copyForThread()}) to this KB. The statistics and timer values 
+	 * of the copy are also added to this KB. The copy should not be in use 
+	 * when this function is called.
+	 * 
+	 * @param copy
+	 */
+	public void merge( KnowledgeBase copy ) {
+	    abox.merge( copy.abox );
+	    
+	    timers.addAll( copy.timers );
+	    copy.timers.resetAll();
+	}
+	
 	public void loadKRSS( Reader reader ) throws IOException {
 	    KRSSLoader loader = new KRSSLoader();
 	    loader.load( reader, this );
@@ -303,6 +434,8 @@ public class KnowledgeBase {
 			node = abox.addIndividual(i);
 			node.setOntology(ontology);
 			individuals.add(i);
+			if( aboxChanges != null )
+				aboxChanges.update(i);
 			if( log.isDebugEnabled() ) log.debug("individual " + i);			
 		}
 		else if(node instanceof Literal)
@@ -314,18 +447,28 @@ public class KnowledgeBase {
 	public void addType(ATermAppl i, ATermAppl c) {
 		status |= ABOX_CHANGED;
 		abox.addType(i, c);
+		if( aboxChanges != null )
+			aboxChanges.addType(i, c);
 		if( log.isDebugEnabled() ) log.debug("type " + i + " " + c);		
 	}
 	
 	public void addSame(ATermAppl i1, ATermAppl i2) {
 		status |= ABOX_CHANGED;
 		abox.addSame(i1, i2);
+		if( aboxChanges != null ) {
+			aboxChanges.update(i1);
+			aboxChanges.update(i2);
+		}
 		if( log.isDebugEnabled() ) log.debug("same " + i1 + " " + i2);
 	}
 	
 	public void addDifferent(ATermAppl i1, ATermAppl i2) {
 		status |= ABOX_CHANGED;
 		abox.addDifferent(i1, i2);
+		if( aboxChanges != null ) {
+			aboxChanges.update(i1);
+			aboxChanges.update(i2);
+		}
 		if( log.isDebugEnabled() ) log.debug("diff " + i1 + " " + i2);
 	}
 	
@@ -378,6 +521,8 @@ public class KnowledgeBase {
 		}
 
 		subj.addEdge(role, obj, DependencySet.INDEPENDENT);
+		if( aboxChanges != null )
+			aboxChanges.addPropertyValue(role, s, o);
 		
 		if( log.isDebugEnabled() ) log.debug("prop-value " + s + " " + p + " " + o);	
 		
@@ -521,6 +666,7 @@ public class KnowledgeBase {
 		DatatypeReasoner dtReasoner = getDatatypeReasoner();
 		if(!dtReasoner.isDefined(p.toString())) {
 			status |= TBOX_CHANGED;
+			datatypesChanged = true;
 			
 			dtReasoner.defineUnknownDatatype( p.toString() );
 			if( log.isDebugEnabled() ) log.debug("datatype " + p);
@@ -531,6 +677,7 @@ public class KnowledgeBase {
 		DatatypeReasoner dtReasoner = getDatatypeReasoner();
 		if(!dtReasoner.isDefined(p.toString())) {
 			status |= TBOX_CHANGED;
+			datatypesChanged = true;
 			
 			dtReasoner.loadUserDefinedDatatype( p.toString() );
 			if( log.isDebugEnabled() ) log.debug("datatype " + p);
@@ -541,9 +688,9 @@ public class KnowledgeBase {
 		DatatypeReasoner dtReasoner = getDatatypeReasoner();
 		if(!dtReasoner.isDefined(datatypeURI.toString())) {
 			status |= TBOX_CHANGED;
+			datatypesChanged = true;
 			
-			Datatype dataRange = dtReasoner.enumeration(ATermUtils.listToSet(values));
-			getDatatypeReasoner().defineDatatype(datatypeURI.toString(), dataRange);
+			dtReasoner.defineEnumeration(datatypeURI.toString(), ATermUtils.listToSet(values));
 			if( log.isDebugEnabled() ) log.debug("datarange " + datatypeURI.toString() + " " + values);
 		}
 	}
@@ -582,8 +729,13 @@ public class KnowledgeBase {
 		    Edge edge = edges.edgeAt(i);
 		    if(edge.getRole().equals(role)) {
 		        subj.removeEdge(edge);
+		        obj.removeInEdge(edge);
 		        status |= ABOX_CHANGED;
 		        removed = true;
+				if( aboxChanges != null ) {
+					aboxChanges.update(i1);
+					aboxChanges.update(i2);
+				}
 		        break;
 		    }
 		}		
@@ -605,6 +757,8 @@ public class KnowledgeBase {
 		}			
 				
 		subj.removeType(c);
+		if( aboxChanges != null )
+			aboxChanges.update(ind);
 		
 		if( log.isDebugEnabled() ) log.debug("Remove Type " + ind + " " + c);		
 	}
@@ -612,6 +766,10 @@ public class KnowledgeBase {
 	public void prepare() {
 		if(!isChanged()) return;
 		
+		// copies of the worker threads do not have the changes but the results they
+		// cached are still valid for the ABox before changes
+		discardRetrievalPool( true );
+		
 		boolean explain = abox.doExplanation();
 		abox.setDoExplanation(true);
 		
@@ -620,6 +778,15 @@ public class KnowledgeBase {
 		boolean reuseTaxonomy = 
 		    (taxonomy != null) && !isTBoxChanged() && 
 		    (!expressivity.hasNominal() || PelletOptions.USE_PSEUDO_NOMINALS);
+		
+		// after changes to class definitions the existing taxonomy can be updated
+		// if the role hierarchy, domains and ranges stay the same 
+		boolean updateTaxonomy = 
+		    PelletOptions.USE_INCREMENTAL_CLASSIFICATION && (taxonomy != null) && 
+		    isTBoxChanged() && !isRBoxChanged() && !datatypesChanged;
+		Map domainsAndRanges = updateTaxonomy ? getDomainsAndRanges() : null;
+		datatypesChanged = false;
+		affectedClasses = null;
 
 		// size of Tg before absorbption
 		int sizeTg = 0;
@@ -645,12 +812,21 @@ public class KnowledgeBase {
 //		    Timer t = timers.startTimer("rbox");
 			rbox.computeRoleHierarchy();		
 //			t.stop();
+			
+			Set affected = tbox.getAffectedClasses();
+			if( updateTaxonomy && affected != null && 
+				isDomainsAndRangesUnchanged( domainsAndRanges, affected ) )
+				affectedClasses = affected;
 		}
 		else if( isRBoxChanged() ) {
 			if( log.isDebugEnabled() ) log.debug("Role hierarchy...");
 			rbox.computeRoleHierarchy();
 		}
 		
+		// ABox changes are used only if nothing else changed
+		if( isTBoxChanged() || isRBoxChanged() )
+			aboxChanges = null;
+		
 		// The prepartion of TBox and RBox is finished so we set the 
 		// status to UNCHANGED now. Expressivity check can only work 
 		// with prepared KB's
@@ -659,6 +835,9 @@ public class KnowledgeBase {
 		if( log.isDebugEnabled() ) log.debug("Expressivity...");
 		expressivity.compute();	    
 		
+		if( expressivity.hasNominal() && !PelletOptions.USE_PSEUDO_NOMINALS )
+			affectedClasses = null;
+		
 		if( log.isDebugEnabled() ) log.debug("ABox init...");
 //		abox.initialize();		
 		instances.clear();
@@ -667,11 +846,28 @@ public class KnowledgeBase {
         estimate = new SizeEstimate( this );
 		abox.setDoExplanation( explain );
 		
-		abox.clearCaches( !reuseTaxonomy );
+		// keep the pseudo model if the consistency check can update it with
+		// the ABox additions
+		boolean updatePseudoModel =
+		    (aboxChanges != null) && aboxChanges.canUpdatePseudoModel() &&
+		    (!expressivity.hasNominal() || PelletOptions.USE_PSEUDO_NOMINALS);
+		if( affectedClasses != null )
+		    abox.clearCaches( affectedClasses );
+		else if( !updatePseudoModel )
+		    abox.clearCaches( !reuseTaxonomy );
+		
 		if( reuseTaxonomy )
 		    status |= CLASSIFICATION;
-		else
+		else if( affectedClasses != null ) {
+		    // the taxonomy is updated by the next classification
+		    if( log.isDebugEnabled() ) log.debug("Classes affected by TBox changes: " + affectedClasses);
+		}
+		else {
 		    taxonomy = null;
+		    if( aboxChanges != null )
+		        aboxChanges.invalidateRealization();
+		    loadSatisfiabilityCache();
+		}
 
 		timer.stop();
 
@@ -690,6 +886,127 @@ public class KnowledgeBase {
 		}	
 	}
     
+    /**
+     * Returns the domain and range of every role
+     */
+    private Map getDomainsAndRanges() {
+        Map map = new HashMap();
+        for( Iterator i = rbox.getRoles().iterator(); i.hasNext(); ) {
+            Role role = (Role) i.next();
+            map.put( role.getName(), Arrays.asList( new ATermAppl[] { role.getDomain(), role.getRange() } ) );
+        }
+        
+        return map;
+    }
+    
+    /**
+     * Checks if the domains and ranges of roles are same as the given ones and do not 
+     * use any of the affected classes. Otherwise the definitions of all the classes with
+     * restrictions on these roles are affected.  
+     */
+    private boolean isDomainsAndRangesUnchanged( Map domainsAndRanges, Set affected ) {
+        Map current = getDomainsAndRanges();
+        if( !current.equals( domainsAndRanges ) )
+            return false;
+        
+        for( Iterator i = current.values().iterator(); i.hasNext(); ) {
+            List list = (List) i.next();
+            for( Iterator j = list.iterator(); j.hasNext(); ) {
+                ATermAppl c = (ATermAppl) j.next();
+                if( c != null && SetUtils.intersects( ATermUtils.findPrimitives( c ), affected ) )
+                    return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Load the satisfiability results saved for this TBox from the directory specified
+     * by {@link PelletOptions#SATISFIABILITY_CACHE_DIRECTORY}, if any.
+     */
+    private void loadSatisfiabilityCache() {
+        File dir = getSatisfiabilityCacheDirectory();
+        if( dir == null || !SatisfiabilityCache.isApplicable( this ) )
+            return;
+        
+        File file = SatisfiabilityCache.getFile( this, dir );
+        if( !file.exists() )
+            return;
+        
+        Timer timer = timers.startTimer( "loadSatCache" );
+        try {
+            int count = SatisfiabilityCache.load( this, file );
+            if( log.isInfoEnabled() ) log.info( "Loaded " + count + " satisfiability results from " + file );
+        }
+        catch( IOException e ) {
+            log.warn( "Cannot load satisfiability results from " + file + ": " + e.getMessage() );
+        }
+        timer.stop();
+    }
+    
+    /**
+     * Save the satisfiability results of this TBox to the directory specified by 
+     * {@link PelletOptions#SATISFIABILITY_CACHE_DIRECTORY}, if any.
+     */
+    private void saveSatisfiabilityCache() {
+        File dir = getSatisfiabilityCacheDirectory();
+        if( dir == null || !SatisfiabilityCache.isApplicable( this ) )
+            return;
+        
+        File file = SatisfiabilityCache.getFile( this, dir );
+        Timer timer = timers.startTimer( "saveSatCache" );
+        try {
+            SatisfiabilityCache.save( this, file );
+        }
+        catch( IOException e ) {
+            log.warn( "Cannot save satisfiability results to " + file + ": " + e.getMessage() );
+        }
+        timer.stop();
+    }
+    
+    private File getSatisfiabilityCacheDirectory() {
+        String dir = PelletOptions.SATISFIABILITY_CACHE_DIRECTORY;
+        if( dir == null || dir.length() == 0 )
+            return null;
+        
+        return new File( dir );
+    }
+    
+    /**
+     * Save the concept satisfiability results computed so far to the given file. The
+     * results can be loaded with {@link #loadSatisfiabilityCache(File)} by another KB
+     * with the same TBox. Nothing is saved if the results cannot be reused,
+     * see {@link SatisfiabilityCache#isApplicable(KnowledgeBase)}.
+     * 
+     * @return the number of saved results
+     * @see SatisfiabilityCache
+     */
+    public int saveSatisfiabilityCache( File file ) throws IOException {
+        prepare();
+        
+        if( !SatisfiabilityCache.isApplicable( this ) )
+            return 0;
+        
+        return SatisfiabilityCache.save( this, file );
+    }
+    
+    /**
+     * Load the concept satisfiability results saved by a KB with the same TBox. Nothing 
+     * is loaded if the results were saved for a different TBox.
+     * 
+     * @return the number of loaded results
+     * @see SatisfiabilityCache
+     */
+    public int loadSatisfiabilityCache( File file ) throws IOException {
+        prepare();
+        
+        if( !SatisfiabilityCache.isApplicable( this ) )
+            return 0;
+        
+        return SatisfiabilityCache.load( this, file );
+    }
+    
     public String getInfo() {
         prepare();
         
@@ -755,9 +1072,25 @@ public class KnowledgeBase {
 		
 		Timer timer = timers.startTimer("consistency");
 		
-		consistent = abox.isConsistent();
+		// the pseudo model is kept by prepare() only if it can be updated with the 
+		// ABox additions, otherwise (or if the update fails) it is built from scratch
+		if( abox.getPseudoModel() != null && aboxChanges != null && 
+		    abox.updatePseudoModel( aboxChanges.getAdditions() ) )
+		    consistent = true;
+		else
+		    consistent = abox.isConsistent();
 		abox.setDoExplanation(explain);
 		
+		if( consistent && PelletOptions.USE_INCREMENTAL_ABOX && 
+		    rules == null && !(this instanceof EconnectedKB) ) {
+		    if( aboxChanges == null )
+		        aboxChanges = new ABoxChanges();
+		    else
+		        aboxChanges.pseudoModelUpdated();
+		}
+		else
+		    aboxChanges = null;
+		
 		if(!consistent) {
 			System.err.println("WARNING: Inconsistent ontology. Reason: " + getExplanation());
 		}		
@@ -787,7 +1120,12 @@ public class KnowledgeBase {
 
 		builder = getTaxonomyBuilder();
 		    
-		taxonomy = builder.classify();
+		// after TBox changes only the affected classes are classified again
+		if( affectedClasses != null ) 
+			taxonomy = builder.classify( taxonomy, affectedClasses );
+		else
+			taxonomy = builder.classify();
+		affectedClasses = null;
 
 		timer.stop();
 
@@ -798,6 +1136,8 @@ public class KnowledgeBase {
 		}
 		
 		status |= CLASSIFICATION;
+		
+		saveSatisfiabilityCache();
 	}
 
 	public void realize() {
@@ -810,17 +1150,64 @@ public class KnowledgeBase {
 
 		Timer timer = timers.startTimer("realize");
 
-		taxonomy = builder.realize();
+		// after ABox changes only the individuals affected by the changes are realized
+		if( aboxChanges != null && aboxChanges.canUpdateRealization() )
+			taxonomy = builder.realize( aboxChanges.getAffectedIndividuals( this ) );
+		else
+			taxonomy = builder.realize();
 
 		timer.stop();
 		
 		// if user canceled return
 		if( taxonomy == null ) {
 		    builder = null;
+		    if( aboxChanges != null )
+		        aboxChanges.invalidateRealization();
 		    return;	
 		}
 		
 		status |= REALIZATION;		
+		if( aboxChanges != null )
+			aboxChanges.realized();
+	}
+	
+	/**
+	 * Mark the TBox and RBox as prepared after their preprocessed state was restored 
+	 * directly instead of adding the axioms, e.g. from a snapshot. The next call to 
+	 * {@link #prepare()} does not split, absorb or normalize the TBox and does not 
+	 * compute the role hierarchy.
+	 */
+	void setTBoxPrepared() {
+		// the ABox is still processed so that the expressivity and the caches are computed
+		status = (status & ~(TBOX_CHANGED | RBOX_CHANGED)) | ABOX_CHANGED;
+		datatypesChanged = false;
+	}
+	
+	/**
+	 * Use the given taxonomy as the result of classification, and realization if 
+	 * <code>realized</code> is true, instead of computing it. This KB should have the
+	 * same classes and axioms as the KB the taxonomy was computed for. The consistency 
+	 * of the KB is checked first since instance checks need the pseudo model.
+	 */
+	void restoreTaxonomy( Taxonomy taxonomy, boolean realized ) {
+		if( !isConsistent() )
+			return;
+		
+		this.taxonomy = taxonomy;
+		
+		builder = getTaxonomyBuilder();
+		builder.setTaxonomy( taxonomy );
+		
+		status |= CLASSIFICATION;
+		if( realized )
+			status |= REALIZATION;
+		
+		if( aboxChanges != null ) {
+			if( realized )
+				aboxChanges.realized();
+			else
+				aboxChanges.invalidateRealization();
+		}
 	}
 
 	/**
@@ -2387,9 +2774,62 @@ public class KnowledgeBase {
 		return result;
 	}
 	
+	/**
+	 * Return the individuals among the given candidates that have the given value for 
+	 * the property. The candidates are checked together so at most one instance 
+	 * retrieval is done for all the candidates whose property values are not obvious.
+	 * 
+	 * @param r
+	 * @param o An individual for object properties or a literal for data properties
+	 * @param candidates
+	 * @return List of ATermAppl objects.
+	 */
+	public List retrieveIndividualsWithProperty(ATermAppl r, ATermAppl o, Collection candidates) {
+		ensureConsistency();
+		
+		List knowns = new ArrayList();
+		List unknowns = new ArrayList();
+		
+		if(!isProperty(r)) {
+		    if( PelletOptions.SILENT_UNDEFINED_ENTITY_HANDLING )
+		        return knowns;
+		    else
+		        throw new UnsupportedFeatureException(r + " is not a known property!");
+		}
+		
+		if(isDatatypeProperty(r) ? !ATermUtils.isLiteral(o) : !isIndividual(o))
+		    return knowns;
+		
+		Iterator i = candidates.iterator();
+		while(i.hasNext()) {
+			ATermAppl x = (ATermAppl) i.next();
+			
+			if(!isIndividual(x))
+			    continue;
+			
+			Bool hasObviousValue = abox.hasObviousPropertyValue( x, r, o );
+			if( hasObviousValue.isUnknown() )
+				unknowns.add( x );
+			else if( hasObviousValue.isTrue() )
+			    knowns.add( x );
+		}
+		
+		if( !unknowns.isEmpty() ) {
+			ATermAppl c = ATermUtils.normalize( ATermUtils.makeHasValue( r, o ) );
+
+			binaryInstanceRetrieval(c, unknowns, knowns);
+		}
+		
+		return knowns;
+	}
+	
 	public void binaryInstanceRetrieval(ATermAppl c, List candidates, Collection results) {
 		if( candidates.isEmpty() )
 			return;
+		else if( PelletOptions.RETRIEVAL_THREADS > 1 && 
+		         candidates.size() > getParallelRetrievalThreshold() ) {
+		    parallelInstanceRetrieval(c, candidates, results);
+		}
 		else{
 			List[] partitions = partition(candidates);
 			partitionInstanceRetrieval(c, partitions, results);
@@ -2420,6 +2860,96 @@ public class KnowledgeBase {
 		}
 	}
 	
+	/**
+	 * Split the candidates into partitions no bigger than the parallel retrieval threshold 
+	 * and run binary instance retrieval on each partition using a separate worker thread.
+	 * The instances found are added to the results in the order of partitions.
+	 */
+	private void parallelInstanceRetrieval(final ATermAppl c, List candidates, Collection results) {
+		List partitions = new ArrayList();
+		forkPartitions( candidates, partitions );
+		
+		final List[] partitionResults = new List[ partitions.size() ];
+		List tasks = new ArrayList();
+		for( int i = 0; i < partitions.size(); i++ ) {
+		    final int index = i;
+		    final List partition = (List) partitions.get( i );
+		    tasks.add( new WorkerPool.Task() {
+		        public void run( KnowledgeBase kb ) {
+		            List instances = new ArrayList();
+		            // partitions are not bigger than the threshold so the 
+		            // retrieval on the worker will be sequential
+		            kb.binaryInstanceRetrieval( c, partition, instances );
+		            partitionResults[index] = instances;
+		        }
+		    });
+		}
+		
+		WorkerPool pool = getRetrievalPool();
+		pool.execute( tasks );
+		
+		for( int i = 0; i < partitionResults.length; i++ )
+		    results.addAll( partitionResults[i] );
+	}
+	
+	/**
+	 * Return the worker pool for parallel instance retrieval. The same pool is used 
+	 * for all the retrievals until the KB is changed, classified or realized so the
+	 * KB copies of the workers are created only once for each state of the KB.
+	 */
+	private WorkerPool getRetrievalPool() {
+		// a pool stopped after being idle for too long cannot be reserved
+		if( retrievalPool != null && 
+		    (!retrievalPool.reserve() || 
+		     retrievalPoolStatus != status || retrievalPoolTaxonomy != taxonomy ||
+		     retrievalPool.size() != PelletOptions.RETRIEVAL_THREADS) )
+		    discardRetrievalPool( true );
+		
+		if( retrievalPool == null ) {
+		    retrievalPool = new WorkerPool( this, PelletOptions.RETRIEVAL_THREADS );
+		    retrievalPool.setIdleTimeout( RETRIEVAL_POOL_IDLE_TIMEOUT );
+		    retrievalPool.reserve();
+		    retrievalPoolStatus = status;
+		    retrievalPoolTaxonomy = taxonomy;
+		}
+		
+		return retrievalPool;
+	}
+	
+	/**
+	 * Stop the workers of the retrieval pool. The results cached by the workers are 
+	 * added to this KB if <code>merge</code> is true.
+	 */
+	private void discardRetrievalPool( boolean merge ) {
+		if( retrievalPool != null ) {
+		    if( merge )
+		        retrievalPool.shutdown();
+		    else
+		        retrievalPool.stop();
+		    retrievalPool = null;
+		    retrievalPoolTaxonomy = null;
+		}
+	}
+	
+	/**
+	 * Returns {@link PelletOptions#PARALLEL_RETRIEVAL_THRESHOLD} or one if the option is 
+	 * less than one. Otherwise, the candidates would be split forever since a partition 
+	 * would never be small enough.
+	 */
+	private static int getParallelRetrievalThreshold() {
+	    return Math.max( 1, PelletOptions.PARALLEL_RETRIEVAL_THRESHOLD );
+	}
+	
+	private void forkPartitions( List candidates, List partitions ) {
+	    if( candidates.size() <= getParallelRetrievalThreshold() )
+	        partitions.add( candidates );
+	    else {
+	        List[] halves = partition( candidates );
+	        forkPartitions( halves[0], partitions );
+	        forkPartitions( halves[1], partitions );
+	    }
+	}
+	
 	private List[] partition( List candidates ) {
 		List[] partitions = new List[2];
 		int n = candidates.size(); 
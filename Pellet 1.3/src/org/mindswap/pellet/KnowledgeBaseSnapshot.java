@@ -0,0 +1,579 @@
+package org.mindswap.pellet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mindswap.pellet.datatypes.Datatype;
+import org.mindswap.pellet.datatypes.DatatypeReasoner;
+import org.mindswap.pellet.exceptions.UnsupportedFeatureException;
+import org.mindswap.pellet.tbox.TBox;
+import org.mindswap.pellet.taxonomy.Taxonomy;
+import org.mindswap.pellet.taxonomy.TaxonomyNode;
+import org.mindswap.pellet.utils.ATermIO;
+import org.mindswap.pellet.utils.ATermUtils;
+import org.mindswap.pellet.utils.Timer;
+
+import aterm.AFun;
+import aterm.ATerm;
+import aterm.ATermAppl;
+import aterm.ATermFactory;
+import aterm.ATermInt;
+import aterm.ATermList;
+
+/**
+ * Saves a KB to a binary file and loads it back without parsing the original ontology
+ * and without preprocessing, classifying or realizing it again. The snapshot contains 
+ * the definitions of the user-defined datatypes, classes, TBox axioms together with the
+ * absorbed and normalized TBox, the roles with the computed role hierarchy, ABox 
+ * assertions, the class taxonomy with the realized instances and the concept 
+ * satisfiability results. All these are stored as a single ATerm written with
+ * {@link ATermIO} so the subterms common to axioms, taxonomy and cached concepts are
+ * written only once. The file is memory-mapped when it is loaded.
+ *
+ * <p>When a snapshot is loaded the prepared TBox and RBox are restored directly and 
+ * the datatypes are defined without loading their XML Schemas. The consistency of the
+ * ABox is checked because the pseudo model is needed for instance checks. The taxonomy
+ * and the satisfiability results are restored directly, so no subsumption or instance 
+ * checks are done for classification and realization.</p>
+ *
+ * <p>E-connected KBs, KBs with rules and KBs with datatypes created directly from
+ * {@link Datatype} objects are not supported.</p>
+ */
+public class KnowledgeBaseSnapshot {
+    public static Log log = LogFactory.getLog( KnowledgeBaseSnapshot.class );
+
+    /**
+     * Version of the file format. Should be incremented every time the format changes
+     * so that old snapshots are rejected.
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    private static final String HEADER = "PelletKnowledgeBaseSnapshot";
+
+    private static final ATermFactory factory = ATermUtils.getFactory();
+
+    private static final AFun SNAPSHOT = factory.makeAFun( "snapshot", 9, false );
+    private static final AFun DATATYPE = factory.makeAFun( "datatype", 2, false );
+    private static final AFun TBOX = factory.makeAFun( "tbox", 5, false );
+    private static final AFun ROLE = factory.makeAFun( "role", 10, false );
+    private static final AFun INDIVIDUAL = factory.makeAFun( "individual", 4, false );
+    private static final AFun EDGE = factory.makeAFun( "edge", 2, false );
+    private static final AFun PAIR = factory.makeAFun( "pair", 2, false );
+    private static final AFun TAXONOMY = factory.makeAFun( "taxonomy", 3, false );
+    private static final AFun NODE = factory.makeAFun( "node", 4, false );
+    private static final AFun NO_TAXONOMY = factory.makeAFun( "none", 0, false );
+
+    private static final int TRANSITIVE = 1;
+    private static final int FUNCTIONAL = 2;
+    private static final int INVERSE_FUNCTIONAL = 4;
+
+    private KnowledgeBaseSnapshot() {
+    }
+
+    /**
+     * Save the KB to the given file. The KB is prepared first if necessary. The taxonomy
+     * is saved only if the KB is classified and the instances of the classes are saved
+     * only if the KB is realized.
+     */
+    public static void save( KnowledgeBase kb, File file ) throws IOException {
+        if( kb instanceof EconnectedKB )
+            throw new UnsupportedFeatureException( "Snapshots of E-connected KBs are not supported" );
+        if( kb.getRules() != null && !kb.getRules().isEmpty() )
+            throw new UnsupportedFeatureException( "Snapshots of KBs with rules are not supported" );
+
+        Timer timer = kb.timers.startTimer( "saveSnapshot" );
+
+        kb.prepare();
+
+        List unsat = new ArrayList();
+        List sat = new ArrayList();
+        SatisfiabilityCache.collect( kb.getABox(), unsat, sat );
+
+        ATerm[] args = new ATerm[] {
+            datatypesToTerm( kb ),
+            ordered( kb.getTBox().getClasses() ),
+            tboxToTerm( kb ),
+            rolesToTerm( kb ),
+            individualsToTerm( kb ),
+            samesToTerm( kb ),
+            taxonomyToTerm( kb ),
+            ATermUtils.makeList( unsat ),
+            ATermUtils.makeList( sat ) };
+        ATerm snapshot = factory.makeAppl( SNAPSHOT, args );
+
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+        try {
+            out.writeUTF( HEADER );
+            out.writeInt( FORMAT_VERSION );
+            new ATermIO().write( out, snapshot );
+        }
+        finally {
+            out.close();
+        }
+
+        timer.stop();
+
+        if( log.isInfoEnabled() )
+            log.info( "Saved snapshot to " + file + " (" + file.length() + " bytes)" );
+    }
+
+    /**
+     * Load a KB from a snapshot file created by {@link #save(KnowledgeBase, File)}.
+     */
+    public static KnowledgeBase load( File file ) throws IOException {
+        KnowledgeBase kb = new KnowledgeBase();
+
+        Timer timer = kb.timers.startTimer( "loadSnapshot" );
+
+        ATermAppl snapshot;
+        FileInputStream in = new FileInputStream( file );
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+
+            DataInputStream data = new DataInputStream( new ByteBufferInputStream( buffer ) );
+            if( !HEADER.equals( data.readUTF() ) )
+                throw new IOException( file + " is not a KB snapshot" );
+
+            int version = data.readInt();
+            if( version != FORMAT_VERSION )
+                throw new IOException( "Unsupported snapshot format version " + version + " in " + file );
+
+            try {
+                snapshot = (ATermAppl) new ATermIO().read( data );
+            }
+            catch( ClassCastException e ) {
+                throw new IOException( "Cannot parse snapshot " + file );
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        loadDatatypes( kb, (ATermList) snapshot.getArgument( 0 ) );
+
+        for( ATermList list = (ATermList) snapshot.getArgument( 1 ); !list.isEmpty(); list = list.getNext() )
+            kb.addClass( (ATermAppl) list.getFirst() );
+
+        loadTBox( kb, (ATermAppl) snapshot.getArgument( 2 ) );
+
+        loadRoles( kb, (ATermList) snapshot.getArgument( 3 ) );
+
+        loadIndividuals( kb, (ATermList) snapshot.getArgument( 4 ) );
+
+        for( ATermList list = (ATermList) snapshot.getArgument( 5 ); !list.isEmpty(); list = list.getNext() ) {
+            ATermAppl pair = (ATermAppl) list.getFirst();
+            kb.addSame( (ATermAppl) pair.getArgument( 0 ), (ATermAppl) pair.getArgument( 1 ) );
+        }
+
+        // only the ABox is processed since the TBox and RBox are already prepared
+        kb.setTBoxPrepared();
+        kb.prepare();
+
+        SatisfiabilityCache.restore( kb.getABox(), (ATermList) snapshot.getArgument( 7 ),
+            (ATermList) snapshot.getArgument( 8 ) );
+
+        ATermAppl taxonomy = (ATermAppl) snapshot.getArgument( 6 );
+        if( taxonomy.getAFun().equals( TAXONOMY ) ) {
+            boolean realized = ((ATermInt) taxonomy.getArgument( 0 )).getInt() != 0;
+            kb.restoreTaxonomy( termToTaxonomy( taxonomy ), realized );
+        }
+
+        timer.stop();
+
+        return kb;
+    }
+
+    private static ATerm datatypesToTerm( KnowledgeBase kb ) {
+        DatatypeReasoner dtReasoner = kb.getDatatypeReasoner();
+
+        List datatypes = new ArrayList();
+        for( Iterator i = dtReasoner.getDatatypeURIs().iterator(); i.hasNext(); ) {
+            Datatype dt = (Datatype) i.next();
+            String uri = dtReasoner.getDatatypeURI( dt );
+
+            if( uri == null || dtReasoner.isBuiltIn( uri ) )
+                continue;
+
+            ATermAppl definition = dtReasoner.getDefinition( uri );
+            if( definition == null )
+                throw new UnsupportedFeatureException( "Snapshots of KBs with datatype " + uri 
+                    + " that was not defined by a data range or an XML Schema are not supported" );
+
+            datatypes.add( factory.makeAppl( DATATYPE, ATermUtils.makeTermAppl( uri ), definition ) );
+        }
+
+        return ATermUtils.makeList( datatypes );
+    }
+
+    private static void loadDatatypes( KnowledgeBase kb, ATermList datatypes ) {
+        DatatypeReasoner dtReasoner = kb.getDatatypeReasoner();
+        for( ; !datatypes.isEmpty(); datatypes = datatypes.getNext() ) {
+            ATermAppl datatype = (ATermAppl) datatypes.getFirst();
+            String name = ((ATermAppl) datatype.getArgument( 0 )).getName();
+
+            dtReasoner.defineDatatype( name, (ATermAppl) datatype.getArgument( 1 ) );
+        }
+    }
+
+    private static ATerm tboxToTerm( KnowledgeBase kb ) {
+        TBox tbox = kb.getTBox();
+
+        List unfoldings = new ArrayList();
+        for( Iterator i = tbox.getUnfoldingMap().entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry entry = (Map.Entry) i.next();
+            unfoldings.add( factory.makeAppl( PAIR, (ATerm) entry.getKey(), (ATerm) entry.getValue() ) );
+        }
+
+        ATermList uc = tbox.getUC();
+
+        ATerm[] args = new ATerm[] {
+            ordered( tbox.getAxioms() ),
+            ordered( tbox.getUnfoldableAxioms() ),
+            ordered( tbox.getGeneralAxioms() ),
+            ATermUtils.makeList( unfoldings ),
+            (uc == null) ? ATermUtils.EMPTY_LIST : ATermUtils.makeList( uc ) };
+
+        return factory.makeAppl( TBOX, args );
+    }
+
+    private static void loadTBox( KnowledgeBase kb, ATermAppl term ) {
+        TBox tbox = kb.getTBox();
+
+        for( ATermList list = (ATermList) term.getArgument( 0 ); !list.isEmpty(); list = list.getNext() )
+            tbox.addAxiom( (ATermAppl) list.getFirst() );
+
+        Map unfoldingMap = new HashMap();
+        for( ATermList list = (ATermList) term.getArgument( 3 ); !list.isEmpty(); list = list.getNext() ) {
+            ATermAppl pair = (ATermAppl) list.getFirst();
+            unfoldingMap.put( pair.getArgument( 0 ), pair.getArgument( 1 ) );
+        }
+
+        ATermList uc = (ATermList) term.getArgument( 4 );
+
+        tbox.restore( toList( (ATermList) term.getArgument( 1 ) ), 
+            toList( (ATermList) term.getArgument( 2 ) ), unfoldingMap,
+            uc.isEmpty() ? null : (ATermList) uc.getFirst() );
+    }
+
+    private static ATerm rolesToTerm( KnowledgeBase kb ) {
+        List roles = new ArrayList();
+        for( Iterator i = kb.getRBox().getRoles().iterator(); i.hasNext(); ) {
+            Role role = (Role) i.next();
+
+            int flags = 0;
+            if( role.isTransitive() )
+                flags |= TRANSITIVE;
+            if( role.isFunctional() )
+                flags |= FUNCTIONAL;
+            if( role.isInverseFunctional() )
+                flags |= INVERSE_FUNCTIONAL;
+
+            Role inverse = role.getInverse();
+
+            ATerm[] args = new ATerm[] {
+                role.getName(),
+                factory.makeInt( role.getType() ),
+                factory.makeInt( flags ),
+                optional( inverse == null ? null : inverse.getName() ),
+                roleNames( role.getSubRoles() ),
+                roleNames( role.getSuperRoles() ),
+                roleNames( role.getTransitiveSubRoles() ),
+                roleNames( role.getFunctionalSupers() ),
+                optional( role.getDomain() ),
+                optional( role.getRange() ) };
+            roles.add( factory.makeAppl( ROLE, args ) );
+        }
+
+        return ATermUtils.makeList( roles );
+    }
+
+    private static void loadRoles( KnowledgeBase kb, ATermList roles ) {
+        // the roles are created first since they refer to each other
+        Map roleMap = new HashMap();
+        for( ATermList list = roles; !list.isEmpty(); list = list.getNext() ) {
+            ATermAppl term = (ATermAppl) list.getFirst();
+            ATermAppl p = (ATermAppl) term.getArgument( 0 );
+            int flags = ((ATermInt) term.getArgument( 2 )).getInt();
+
+            Role role = new Role( p, ((ATermInt) term.getArgument( 1 )).getInt() );
+            role.setTransitive( (flags & TRANSITIVE) != 0 );
+            role.setFunctional( (flags & FUNCTIONAL) != 0 );
+            role.setInverseFunctional( (flags & INVERSE_FUNCTIONAL) != 0 );
+
+            ATermList domain = (ATermList) term.getArgument( 8 );
+            if( !domain.isEmpty() )
+                role.setDomain( (ATermAppl) domain.getFirst() );
+
+            ATermList range = (ATermList) term.getArgument( 9 );
+            if( !range.isEmpty() )
+                role.setRange( (ATermAppl) range.getFirst() );
+
+            roleMap.put( p, role );
+        }
+
+        // the computed sub and super roles should be set before transitive subs and 
+        // functional supers are added 
+        for( ATermList list = roles; !list.isEmpty(); list = list.getNext() ) {
+            ATermAppl term = (ATermAppl) list.getFirst();
+            Role role = (Role) roleMap.get( term.getArgument( 0 ) );
+
+            ATermList inv = (ATermList) term.getArgument( 3 );
+            if( !inv.isEmpty() )
+                role.setInverse( (Role) roleMap.get( inv.getFirst() ) );
+
+            role.setSubRoles( roles( roleMap, (ATermList) term.getArgument( 4 ) ) );
+            role.setSuperRoles( roles( roleMap, (ATermList) term.getArgument( 5 ) ) );
+        }
+
+        RBox rbox = kb.getRBox();
+        for( ATermList list = roles; !list.isEmpty(); list = list.getNext() ) {
+            ATermAppl term = (ATermAppl) list.getFirst();
+            Role role = (Role) roleMap.get( term.getArgument( 0 ) );
+
+            for( Iterator i = roles( roleMap, (ATermList) term.getArgument( 6 ) ).iterator(); i.hasNext(); )
+                role.addTransitiveSubRole( (Role) i.next() );
+            for( Iterator i = roles( roleMap, (ATermList) term.getArgument( 7 ) ).iterator(); i.hasNext(); )
+                role.addFunctionalSuper( (Role) i.next() );
+
+            rbox.addRole( role );
+        }
+    }
+
+    private static ATermList roleNames( Set roles ) {
+        List names = new ArrayList();
+        for( Iterator i = roles.iterator(); i.hasNext(); )
+            names.add( ((Role) i.next()).getName() );
+
+        return ATermUtils.makeList( names );
+    }
+
+    private static Set roles( Map roleMap, ATermList names ) {
+        Set roles = new HashSet();
+        for( ; !names.isEmpty(); names = names.getNext() )
+            roles.add( roleMap.get( names.getFirst() ) );
+
+        return roles;
+    }
+
+    private static ATerm individualsToTerm( KnowledgeBase kb ) {
+        List individuals = new ArrayList();
+        for( Iterator i = kb.getABox().getIndIterator(); i.hasNext(); ) {
+            Individual ind = (Individual) i.next();
+            ATermAppl name = ind.getName();
+
+            // TOP and the nominal for the individual itself are added automatically
+            ATermAppl self = ATermUtils.makeValue( name );
+            List types = new ArrayList();
+            for( Iterator j = ind.getTypes().iterator(); j.hasNext(); ) {
+                ATermAppl c = (ATermAppl) j.next();
+                if( !c.equals( ATermUtils.TOP ) && !c.equals( self ) )
+                    types.add( c );
+            }
+
+            List edges = new ArrayList();
+            EdgeList outEdges = ind.getOutEdges();
+            for( int j = 0; j < outEdges.size(); j++ ) {
+                Edge edge = outEdges.edgeAt( j );
+                Node to = edge.getTo();
+                ATermAppl value = to.isLiteral() ? ((Literal) to).getTerm() : to.getName();
+
+                edges.add( factory.makeAppl( EDGE, edge.getRole().getName(), value ) );
+            }
+
+            List differents = new ArrayList();
+            for( Iterator j = ind.getDifferents().iterator(); j.hasNext(); )
+                differents.add( ((Node) j.next()).getName() );
+
+            individuals.add( factory.makeAppl( INDIVIDUAL, name, ATermUtils.makeList( types ),
+                ATermUtils.makeList( edges ), ATermUtils.makeList( differents ) ) );
+        }
+
+        return ATermUtils.makeList( individuals );
+    }
+
+    private static void loadIndividuals( KnowledgeBase kb, ATermList individuals ) {
+        // all the individuals should be defined before the property values are added
+        for( ATermList list = individuals; !list.isEmpty(); list = list.getNext() ) {
+            ATermAppl ind = (ATermAppl) list.getFirst();
+            kb.addIndividual( (ATermAppl) ind.getArgument( 0 ) );
+        }
+
+        for( ATermList list = individuals; !list.isEmpty(); list = list.getNext() ) {
+            ATermAppl ind = (ATermAppl) list.getFirst();
+            ATermAppl name = (ATermAppl) ind.getArgument( 0 );
+
+            for( ATermList types = (ATermList) ind.getArgument( 1 ); !types.isEmpty(); types = types.getNext() )
+                kb.addType( name, (ATermAppl) types.getFirst() );
+
+            for( ATermList edges = (ATermList) ind.getArgument( 2 ); !edges.isEmpty(); edges = edges.getNext() ) {
+                ATermAppl edge = (ATermAppl) edges.getFirst();
+                kb.addPropertyValue( (ATermAppl) edge.getArgument( 0 ), name, (ATermAppl) edge.getArgument( 1 ) );
+            }
+
+            for( ATermList diffs = (ATermList) ind.getArgument( 3 ); !diffs.isEmpty(); diffs = diffs.getNext() )
+                kb.addDifferent( name, (ATermAppl) diffs.getFirst() );
+        }
+    }
+
+    private static ATerm samesToTerm( KnowledgeBase kb ) {
+        List sames = new ArrayList();
+        for( Iterator i = kb.getABox().toBeMerged.iterator(); i.hasNext(); ) {
+            NodeMerge merge = (NodeMerge) i.next();
+            sames.add( factory.makeAppl( PAIR, merge.y, merge.z ) );
+        }
+
+        return ATermUtils.makeList( sames );
+    }
+
+    private static ATerm taxonomyToTerm( KnowledgeBase kb ) {
+        if( !kb.isClassified() )
+            return factory.makeAppl( NO_TAXONOMY );
+
+        Taxonomy taxonomy = kb.getTaxonomy();
+
+        List nodes = new ArrayList();
+        List aliases = new ArrayList();
+        for( Iterator i = taxonomy.getClasses().iterator(); i.hasNext(); ) {
+            ATermAppl c = (ATermAppl) i.next();
+            TaxonomyNode node = taxonomy.getNode( c );
+
+            // hidden nodes are created for the class expressions classified after
+            // the classification and they are not linked from the other nodes
+            if( node.isHidden() )
+                continue;
+
+            if( !node.getName().equals( c ) ) {
+                if( !node.contains( c ) )
+                    aliases.add( factory.makeAppl( PAIR, c, node.getName() ) );
+                continue;
+            }
+
+            List equivalents = new ArrayList( node.getEquivalents() );
+            equivalents.remove( c );
+
+            List supers = new ArrayList();
+            for( Iterator j = node.getSupers().iterator(); j.hasNext(); )
+                supers.add( ((TaxonomyNode) j.next()).getName() );
+
+            ATerm[] args = new ATerm[] {
+                c,
+                ATermUtils.makeList( equivalents ),
+                ATermUtils.makeList( supers ),
+                ATermUtils.makeList( node.getInstances() ) };
+            nodes.add( factory.makeAppl( NODE, args ) );
+        }
+
+        return factory.makeAppl( TAXONOMY, factory.makeInt( kb.isRealized() ? 1 : 0 ),
+            ATermUtils.makeList( nodes ), ATermUtils.makeList( aliases ) );
+    }
+
+    private static Taxonomy termToTaxonomy( ATermAppl term ) {
+        Taxonomy taxonomy = new Taxonomy();
+        taxonomy.getTop().removeSub( taxonomy.getBottom() );
+
+        ATermList nodes = (ATermList) term.getArgument( 1 );
+        for( ATermList list = nodes; !list.isEmpty(); list = list.getNext() ) {
+            ATermAppl node = (ATermAppl) list.getFirst();
+            ATermAppl c = (ATermAppl) node.getArgument( 0 );
+
+            TaxonomyNode taxonomyNode = taxonomy.getNode( c );
+            if( taxonomyNode == null )
+                taxonomyNode = taxonomy.addNode( c );
+
+            for( ATermList eqs = (ATermList) node.getArgument( 1 ); !eqs.isEmpty(); eqs = eqs.getNext() )
+                taxonomy.addEquivalentNode( (ATermAppl) eqs.getFirst(), taxonomyNode );
+
+            for( ATermList inds = (ATermList) node.getArgument( 3 ); !inds.isEmpty(); inds = inds.getNext() )
+                taxonomyNode.addInstance( (ATermAppl) inds.getFirst() );
+        }
+
+        // the super nodes are added after all the nodes are created and the sub
+        // nodes are updated automatically
+        for( ATermList list = nodes; !list.isEmpty(); list = list.getNext() ) {
+            ATermAppl node = (ATermAppl) list.getFirst();
+            TaxonomyNode taxonomyNode = taxonomy.getNode( (ATermAppl) node.getArgument( 0 ) );
+
+            List supers = new ArrayList();
+            for( ATermList sups = (ATermList) node.getArgument( 2 ); !sups.isEmpty(); sups = sups.getNext() )
+                supers.add( taxonomy.getNode( (ATermAppl) sups.getFirst() ) );
+            taxonomyNode.addSupers( supers );
+        }
+
+        for( ATermList list = (ATermList) term.getArgument( 2 ); !list.isEmpty(); list = list.getNext() ) {
+            ATermAppl alias = (ATermAppl) list.getFirst();
+            ATermAppl c = (ATermAppl) alias.getArgument( 0 );
+            taxonomy.addEquivalentNode( c, taxonomy.getNode( (ATermAppl) alias.getArgument( 1 ) ) );
+        }
+
+        return taxonomy;
+    }
+
+    /**
+     * Create a list with the elements in iteration order. The order of the classes
+     * and the axioms affects the told subsumers computed before classification so it
+     * is kept the same as in the saved KB.
+     */
+    private static ATermList ordered( Collection collection ) {
+        return ATermUtils.makeList( (ATerm[]) collection.toArray( new ATerm[collection.size()] ) );
+    }
+
+    private static List toList( ATermList list ) {
+        List result = new ArrayList();
+        for( ; !list.isEmpty(); list = list.getNext() )
+            result.add( list.getFirst() );
+
+        return result;
+    }
+
+    private static ATermList optional( ATermAppl term ) {
+        return (term == null) ? ATermUtils.EMPTY_LIST : ATermUtils.makeList( term );
+    }
+
+    /**
+     * Reads the contents of a (memory-mapped) byte buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private ByteBuffer buffer;
+
+        public ByteBufferInputStream( ByteBuffer buffer ) {
+            this.buffer = buffer;
+        }
+
+        public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+        }
+
+        public int read( byte[] bytes, int offset, int length ) {
+            if( !buffer.hasRemaining() )
+                return -1;
+
+            length = Math.min( length, buffer.remaining() );
+            buffer.get( bytes, offset, length );
+
+            return length;
+        }
+
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
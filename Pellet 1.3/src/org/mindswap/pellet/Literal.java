@@ -387,6 +387,8 @@ public class Literal extends Node {
 	
 	final public void prune( DependencySet ds ) {
 	    pruned = ds;
+	    
+	    edgesChanged();
 	}
 	
 	public void unprune( int branch ) {
@@ -0,0 +1,181 @@
+package org.mindswap.pellet;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.mindswap.pellet.utils.ATermUtils;
+
+import aterm.ATerm;
+import aterm.ATermAppl;
+import aterm.ATermInt;
+
+/**
+ * A compact summary of the root of a cached model used to check if two cached models
+ * can be merged. The types and the roles of the root are stored as bit sets where each
+ * type or role is identified by a small integer from an index shared by all the
+ * signatures built for an ABox. The checks that iterate over the labels and the edges of
+ * the roots in {@link ABox#mergable(Individual, Individual, boolean)} are then done by
+ * intersecting the bit sets.
+ *
+ * <p>The signature of a root gives exactly the same answer as comparing the roots
+ * directly. Only the max cardinality restrictions are checked on the roots, and only if
+ * the other root has a neighbor for the restricted role, since the number of neighbors
+ * depends on both roots.</p>
+ */
+class MergeSignature {
+    private static final long[] EMPTY = new long[0];
+
+    /**
+     * The index used to number the types and roles of this signature
+     */
+    final Map index;
+
+    final Individual root;
+
+    /**
+     * The types of the root, and the concepts whose negation is a type of the root
+     */
+    long[] types = EMPTY, negatedTypes = EMPTY;
+
+    /**
+     * Same as above but only for the types that do not depend on a branch
+     */
+    long[] independentTypes = EMPTY, independentNegatedTypes = EMPTY;
+
+    /**
+     * The roles used in the universal and max cardinality restrictions of the root
+     */
+    long[] allRoles = EMPTY, maxRoles = EMPTY;
+
+    /**
+     * The roles for which the root has a neighbor
+     */
+    long[] neighborRoles = EMPTY;
+
+    /**
+     * The functional roles for which the root has a neighbor through a direct edge
+     */
+    long[] functionalRoles = EMPTY;
+
+    int edgeCount;
+
+    /**
+     * True if the root is or has a named individual
+     */
+    boolean nominal;
+
+    /**
+     * True if the root itself has more neighbors than one of its max cardinality
+     * restrictions allow
+     */
+    boolean maxExceeded;
+
+    MergeSignature( ABox abox, Individual root ) {
+        this.index = abox.mergeIndex;
+        this.root = root;
+
+        for( Iterator i = root.getTypes().iterator(); i.hasNext(); ) {
+            ATermAppl c = (ATermAppl) i.next();
+            boolean independent = root.getDepends( c ).isIndependent();
+
+            if( ATermUtils.isNot( c ) ) {
+                int id = id( c.getArgument( 0 ) );
+                negatedTypes = set( negatedTypes, id );
+                if( independent )
+                    independentNegatedTypes = set( independentNegatedTypes, id );
+            }
+            else {
+                int id = id( c );
+                types = set( types, id );
+                if( independent )
+                    independentTypes = set( independentTypes, id );
+            }
+        }
+
+        for( Iterator i = root.getTypes( Node.ALL ).iterator(); i.hasNext(); ) {
+            ATermAppl av = (ATermAppl) i.next();
+            allRoles = set( allRoles, id( abox.getRole( av.getArgument( 0 ) ).getName() ) );
+        }
+
+        for( Iterator i = root.getTypes( Node.MAX ).iterator(); i.hasNext(); ) {
+            ATermAppl mc = (ATermAppl) i.next();
+            ATermAppl maxCard = (ATermAppl) mc.getArgument( 0 );
+            Role maxR = abox.getRole( maxCard.getArgument( 0 ) );
+            int max = ((ATermInt) maxCard.getArgument( 1 )).getInt() - 1;
+
+            maxRoles = set( maxRoles, id( maxR.getName() ) );
+            if( root.getRNeighborEdges( maxR ).getFilteredNeighbors( root ).size() > max )
+                maxExceeded = true;
+        }
+
+        for( Iterator i = root.getOutEdges().iterator(); i.hasNext(); ) {
+            Role role = ((Edge) i.next()).getRole();
+
+            for( Iterator j = role.getSuperRoles().iterator(); j.hasNext(); )
+                neighborRoles = set( neighborRoles, id( ((Role) j.next()).getName() ) );
+            neighborRoles = set( neighborRoles, id( role.getName() ) );
+
+            if( role.isFunctional() )
+                functionalRoles = set( functionalRoles, id( role.getName() ) );
+        }
+
+        for( Iterator i = root.getInEdges().iterator(); i.hasNext(); ) {
+            Role role = ((Edge) i.next()).getRole();
+
+            // the in edge is an r-neighbor for every r whose inverse is a super role
+            for( Iterator j = role.getSuperRoles().iterator(); j.hasNext(); ) {
+                Role invR = ((Role) j.next()).getInverse();
+                if( invR != null )
+                    neighborRoles = set( neighborRoles, id( invR.getName() ) );
+            }
+            Role invR = role.getInverse();
+            if( invR != null ) {
+                neighborRoles = set( neighborRoles, id( invR.getName() ) );
+
+                if( invR.isFunctional() )
+                    functionalRoles = set( functionalRoles, id( invR.getName() ) );
+            }
+        }
+
+        edgeCount = root.getOutEdges().size() + root.getInEdges().size();
+
+        nominal = root.isNamedIndividual();
+        for( Iterator i = root.getTypes( Node.NOM ).iterator(); !nominal && i.hasNext(); ) {
+            ATermAppl nom = (ATermAppl) i.next();
+            ATermAppl name = (ATermAppl) nom.getArgument( 0 );
+
+            nominal = !ATermUtils.isAnon( name );
+        }
+    }
+
+    private int id( ATerm term ) {
+        Integer id = (Integer) index.get( term );
+        if( id == null ) {
+            id = new Integer( index.size() );
+            index.put( term, id );
+        }
+
+        return id.intValue();
+    }
+
+    private static long[] set( long[] bits, int id ) {
+        int word = id >> 6;
+        if( word >= bits.length ) {
+            long[] newBits = new long[word + 1];
+            System.arraycopy( bits, 0, newBits, 0, bits.length );
+            bits = newBits;
+        }
+        bits[word] |= 1L << (id & 63);
+
+        return bits;
+    }
+
+    static boolean intersects( long[] bits1, long[] bits2 ) {
+        for( int i = 0, n = Math.min( bits1.length, bits2.length ); i < n; i++ ) {
+            if( (bits1[i] & bits2[i]) != 0 )
+                return true;
+        }
+
+        return false;
+    }
+}
@@ -23,6 +23,7 @@
 package org.mindswap.pellet;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -105,6 +106,41 @@ public abstract class Node {
 	
 	int branch;
 	
+	/**
+	 * Signature of the types of this node used to compare the labels of nodes 
+	 * without looking up the types in the hash map, see {@link #getTypeIds()} 
+	 * and {@link #getTypeMask()}. Computed lazily after the types change.
+	 * Only blocking compares whole labels this way. Checks about single types,
+	 * such as {@link #hasType(ATerm)} or the negated types looked up when
+	 * models are merged, still use the hash map which is not slower for them.
+	 */
+	private boolean signatureValid = false;
+	private int[] typeIds;
+	private long typeMask;
+	
+	/**
+	 * True if the types of this node are shared with a copy of this node. 
+	 * Copying a node does not copy its types, the types are copied when either 
+	 * node modifies them for the first time (see {@link #copyTypes()}).
+	 */
+	protected boolean sharedTypes = false;
+	
+	/**
+	 * The last branch this node has been added to the trail of the ABox.
+	 */
+	int trailBranch = -1;
+	
+	/**
+	 * The label version of the ABox when the types or edges of this node changed 
+	 * the last time. See {@link Blocking}.
+	 */
+	int labelVersion = 0;
+	
+	/**
+	 * True if this node is in the completion queue of the ABox.
+	 */
+	boolean queued = false;
+	
 	protected Node(ATermAppl name, ABox abox) {
 		this.name = name;
 		this.abox = abox;		
@@ -142,7 +178,14 @@ public abstract class Node {
 		// do not copy differents right now because we need to
 		// update node references later anyway
 		differents = node.differents;
-		depends = new HashMap(node.depends);
+		// share the types with the original node until one of them is modified
+		depends = node.depends;
+		sharedTypes = true;
+		node.sharedTypes = true;
+		
+		signatureValid = node.signatureValid;
+		typeIds = node.typeIds;
+		typeMask = node.typeMask;
 		
         
         if(abox == null) {
@@ -180,8 +223,12 @@ public abstract class Node {
             Set sames = new HashSet( merged.size() );
             for(Iterator i = merged.iterator(); i.hasNext();) {
                 Node node = (Node) i.next();
+                Node same = abox.getNode( node.getName() );
 
-                sames.add( abox.getNode( node.getName() ) );
+                // an anonymous node may have been removed from the ABox by a 
+                // restore after it was merged to this node
+                if( same != null )
+                    sames.add( same );
             }
             merged = sames;
         }
@@ -270,6 +317,8 @@ public abstract class Node {
 	
 	protected void addInEdge(Edge edge) {
         inEdges.addEdge( edge );   
+        
+        edgesChanged();
     }
 
     public EdgeList getInEdges() {
@@ -283,16 +332,22 @@ public abstract class Node {
             throw new InternalReasonerException(
                 "Trying to remove a non-existing edge " + edge);
         
+        edgesChanged();
+        
         return true;
     }
     
     public void removeInEdges() {
         inEdges = new EdgeList();
+        
+        edgesChanged();
     }
 
 	public boolean restore(int branch) {
 		//if(DEBUG) System.out.println("Node " + name  + (isMerged() ? "(" + mergedTo + ")" : ""));
 		
+	    edgesChanged();
+	    
 	    if( pruned != null ) {
 			if( pruned.branch > branch ) {			
 				if(DEBUG) System.out.println("RESTORE: " + this + " merged node " + mergedTo + " " + mergeDepends);
@@ -309,9 +364,12 @@ public abstract class Node {
 	    }
 		
 		List conjunctions = new ArrayList();
+		List removed = new ArrayList();
 		
 		status = CHANGED;
 		
+		// types are not removed while iterating because the types might be 
+		// shared with another copy of this node
 		Iterator i = getTypes().iterator();
 		while(i.hasNext()) {									
 			ATermAppl c = (ATermAppl) i.next();	
@@ -324,14 +382,16 @@ public abstract class Node {
 			
 			if( removeType ) {				
 				if(DEBUG) System.out.println("RESTORE: " + this + " remove type " + c + " " + d + " " + branch);
-				i.remove();
-				removeType(c);
+				removed.add(c);
 			}
 			else if( PelletOptions.USE_SMART_RESTORE && ATermUtils.isAnd( c ) ) {
 			    conjunctions.add( c );
 			}			    
 		}						
 		
+		for(i = removed.iterator(); i.hasNext(); )
+			removeType((ATermAppl) i.next());
+		
 		// with smart restore there is a possibility that we remove a conjunct 
 		// but not the conjunction. this is the case if conjunct was added before 
 		// the conjunction but depended on an earlier branch. so we need to make
@@ -521,15 +581,25 @@ public abstract class Node {
 		if(ds.branch == -1 && max != 0)
 		    ds.branch = max + 1;
 		
+		if( sharedTypes )
+		    copyTypes();
+		
 		depends.put(c, ds);
 		
 		abox.changed = true;
+		
+		typesChanged();
 	}
 
 	public void removeType(ATermAppl c) {
+		if( sharedTypes )
+		    copyTypes();
+		
 		depends.remove(c);
 
 		status = CHANGED;
+		
+		typesChanged();
 	}
 
 	public boolean hasType(ATerm c) {
@@ -613,8 +683,89 @@ public abstract class Node {
 	}	
 
 	public void removeTypes() {
+		if( sharedTypes )
+		    copyTypes();
+		
 		depends.clear();
 		status = CHANGED;
+		
+		typesChanged();
+	}
+	
+	/**
+	 * Returns the identifiers of the types of this node (see 
+	 * {@link ATermUtils#getId(ATerm)}) as a sorted array. Two nodes have the 
+	 * same types if and only if they have the same arrays. The returned array 
+	 * should not be modified.
+	 */
+	final public int[] getTypeIds() {
+	    if( !signatureValid )
+	        computeSignature();
+	    
+	    return typeIds;
+	}
+	
+	/**
+	 * Returns a bit mask where the bit selected by the identifier of each type 
+	 * of this node is set. If the types of this node is a subset of the types
+	 * of another node then the mask of this node is a subset of the mask of 
+	 * the other node.
+	 */
+	final public long getTypeMask() {
+	    if( !signatureValid )
+	        computeSignature();
+	    
+	    return typeMask;
+	}
+	
+	private void computeSignature() {
+	    typeIds = new int[depends.size()];
+	    typeMask = 0;
+	    
+	    int n = 0;
+	    for( Iterator i = depends.keySet().iterator(); i.hasNext(); ) {
+	        int id = ATermUtils.getId( (ATerm) i.next() );
+	        typeIds[n++] = id;
+	        typeMask |= 1L << (id & 63);	        
+	    }
+	    Arrays.sort( typeIds );
+	    
+	    signatureValid = true;
+	}
+	
+	/**
+	 * Copies the types shared with another copy of this node so that they can be
+	 * modified. Should be called before the types are modified if 
+	 * {@link #sharedTypes} is true.
+	 */
+	protected void copyTypes() {
+	    depends = new HashMap( depends );
+	    sharedTypes = false;
+	}
+	
+	/**
+	 * Should be called every time the types of this node change. 
+	 */
+	protected void typesChanged() {
+	    signatureValid = false;
+	    
+	    if( abox != null ) {
+	        labelVersion = ++abox.labelVersion;
+	        abox.addToTrail( this );
+	        abox.enqueue( this );
+	    }
+	}
+	
+	/**
+	 * Should be called every time the edges or differences of this node change or
+	 * the node is merged, pruned or restored.
+	 */
+	protected void edgesChanged() {
+	    if( abox != null ) {
+	        labelVersion = ++abox.labelVersion;
+	        abox.addToTrail( this );
+	        abox.enqueue( this );
+	    }
 	}
 
 	final public int prunedAt() {	    
@@ -633,6 +784,8 @@ public abstract class Node {
 
 	public void unprune( int branch ) {
         pruned = null;
+        
+        edgesChanged();
 
         for(int i = 0; i < inEdges.size(); i++) {
             Edge edge = inEdges.edgeAt( i );
@@ -713,6 +866,8 @@ public abstract class Node {
 		mergedTo.removeMerged( this );
 		mergeDepends = DependencySet.INDEPENDENT;
 		mergedTo = this;	    
+		
+		edgesChanged();
 	}
 	
 	private void addMerged( Node node ) {
@@ -739,6 +894,8 @@ public abstract class Node {
 		mergeDepends = ds.copy();
 		mergeDepends.branch = abox.getBranch();
 		node.addMerged( this );
+		
+		edgesChanged();
 	}
 	
 	public boolean isSame(Node node) {
@@ -769,6 +926,8 @@ public abstract class Node {
 		ds.branch = abox.getBranch();
 		differents.put(node, ds);
 		node.setDifferent(this, ds);
+		
+		edgesChanged();
 	}
 	
 	public void inheritDifferents( Node y, DependencySet ds ) {
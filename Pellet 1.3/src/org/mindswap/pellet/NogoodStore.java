@@ -0,0 +1,113 @@
+package org.mindswap.pellet;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import aterm.ATermAppl;
+
+/**
+ * Learns the disjuncts that can never be satisfied so the disjunction rule does not try
+ * them again in the later satisfiability tests of the same KB. The dependency sets of the
+ * clashes only refer to branch numbers, i.e. they do not say which deterministic facts of
+ * a test caused the clash, so a clash found in one test cannot be reused in another test
+ * as it is. Instead, the store counts how many times each disjunct caused a clash and the
+ * satisfiability of the disjuncts that keep failing is checked once the current test is
+ * over. The unsatisfiable disjuncts end up in the concept cache of the ABox, which is
+ * shared by all the tests, and are pruned by the disjunction rule from then on.
+ *
+ * <p>The number of disjuncts being counted is bounded by
+ * {@link PelletOptions#DISJUNCT_LEARNING_CAPACITY} and the disjuncts that have not caused
+ * a clash for the longest time are evicted first.</p>
+ */
+class NogoodStore {
+    private Map failures = new LinkedHashMap( 16, 0.75f, true ) {
+        protected boolean removeEldestEntry( Map.Entry eldest ) {
+            return size() > PelletOptions.DISJUNCT_LEARNING_CAPACITY;
+        }
+    };
+
+    /**
+     * The disjuncts whose satisfiability will be checked after the current test
+     */
+    private List candidates = new ArrayList();
+
+    private boolean learning = false;
+
+    /**
+     * Record that trying the given disjunct caused a clash.
+     */
+    public void clash( ABox abox, ATermAppl disjunct ) {
+        if( abox.getCached( disjunct ) != null || candidates.contains( disjunct ) )
+            return;
+
+        int[] count = (int[]) failures.get( disjunct );
+        if( count == null ) {
+            count = new int[1];
+            failures.put( disjunct, count );
+        }
+
+        if( ++count[0] >= PelletOptions.DISJUNCT_LEARNING_THRESHOLD ) {
+            failures.remove( disjunct );
+            if( candidates.size() < PelletOptions.DISJUNCT_LEARNING_CAPACITY )
+                candidates.add( disjunct );
+        }
+    }
+
+    /**
+     * Returns the disjuncts that are not known to be unsatisfiable or null if all the
+     * disjuncts are unsatisfiable. The given array is returned if nothing is pruned.
+     */
+    public ATermAppl[] prune( ABox abox, ATermAppl[] disj ) {
+        int pruned = 0;
+        for( int i = 0; i < disj.length; i++ ) {
+            if( isNogood( abox, disj[i] ) )
+                pruned++;
+        }
+
+        if( pruned == 0 )
+            return disj;
+        if( pruned == disj.length )
+            return null;
+
+        ATermAppl[] result = new ATermAppl[disj.length - pruned];
+        for( int i = 0, j = 0; i < disj.length; i++ ) {
+            if( !isNogood( abox, disj[i] ) )
+                result[j++] = disj[i];
+        }
+
+        return result;
+    }
+
+    private boolean isNogood( ABox abox, ATermAppl disjunct ) {
+        CachedNode cached = abox.getCached( disjunct );
+
+        return cached != null && cached.isBottom();
+    }
+
+    /**
+     * Check the satisfiability of the disjuncts that failed too many times. Should be
+     * called on the ABox of the KB after a satisfiability test is completed. The results
+     * are cached by the ABox.
+     */
+    public void learn( ABox abox ) {
+        if( learning || candidates.isEmpty() )
+            return;
+
+        List disjuncts = new ArrayList( candidates );
+        candidates.clear();
+
+        learning = true;
+        try {
+            for( int i = 0; i < disjuncts.size(); i++ ) {
+                ATermAppl disjunct = (ATermAppl) disjuncts.get( i );
+                if( abox.getCached( disjunct ) == null )
+                    abox.isSatisfiable( disjunct );
+            }
+        }
+        finally {
+            learning = false;
+        }
+    }
+}
@@ -643,7 +643,7 @@ public class PECSHIONStrategy extends CompletionStrategy {
                 branchFound = newBranch.tryNext();
             }
             else
-                abox.getClash().depends.remove(lastBranch);
+                branchExhausted(newBranch);
             if(!branchFound) {
                 if(ABox.DEBUG) System.out.println("Failed at branch " + lastBranch);
             }
@@ -73,6 +73,63 @@ public class PelletOptions {
             value = getBooleanProperty( properties, "REORDER_QUERY" );
             if( value != null )
                 REORDER_QUERY = value.booleanValue();        
+            
+            value = getBooleanProperty( properties, "BULK_QUERY_EVALUATION" );
+            if( value != null )
+                BULK_QUERY_EVALUATION = value.booleanValue();        
+            
+            value = getBooleanProperty( properties, "USE_INCREMENTAL_ABOX" );
+            if( value != null )
+                USE_INCREMENTAL_ABOX = value.booleanValue();        
+            
+            value = getBooleanProperty( properties, "USE_INCREMENTAL_CLASSIFICATION" );
+            if( value != null )
+                USE_INCREMENTAL_CLASSIFICATION = value.booleanValue();        
+            
+            Integer intValue = getPositiveIntProperty( properties, "CLASSIFICATION_THREADS" );
+            if( intValue != null )
+                CLASSIFICATION_THREADS = intValue.intValue();
+            
+            intValue = getPositiveIntProperty( properties, "RETRIEVAL_THREADS" );
+            if( intValue != null )
+                RETRIEVAL_THREADS = intValue.intValue();
+            
+            intValue = getPositiveIntProperty( properties, "PARALLEL_RETRIEVAL_THRESHOLD" );
+            if( intValue != null )
+                PARALLEL_RETRIEVAL_THRESHOLD = intValue.intValue();
+            
+            intValue = getPositiveIntProperty( properties, "REALIZATION_THREADS" );
+            if( intValue != null )
+                REALIZATION_THREADS = intValue.intValue();
+            
+            intValue = getPositiveIntProperty( properties, "REALIZATION_BATCH_SIZE" );
+            if( intValue != null )
+                REALIZATION_BATCH_SIZE = intValue.intValue();
+            
+            intValue = getPositiveIntProperty( properties, "LOADER_THREADS" );
+            if( intValue != null )
+                LOADER_THREADS = intValue.intValue();
+            
+            intValue = getPositiveIntProperty( properties, "LOADER_BATCH_SIZE" );
+            if( intValue != null )
+                LOADER_BATCH_SIZE = intValue.intValue();
+            
+            String stringValue = properties.getProperty( "SATISFIABILITY_CACHE_DIRECTORY" );
+            if( stringValue != null )
+                SATISFIABILITY_CACHE_DIRECTORY = stringValue.trim();
+            
+            intValue = getIntProperty( properties, "CACHE_CAPACITY" );
+            if( intValue != null )
+                CACHE_CAPACITY = intValue.intValue();
+            
+            stringValue = properties.getProperty( "CACHE_EVICTION_POLICY" );
+            if( stringValue != null ) {
+                stringValue = stringValue.trim().toUpperCase();
+                if( stringValue.equals( LRU ) || stringValue.equals( LFU ) || stringValue.equals( COST ) )
+                    CACHE_EVICTION_POLICY = stringValue;
+                else
+                    log.error( "Ignoring invalid value for property CACHE_EVICTION_POLICY" );
+            }
         }
         catch( FileNotFoundException e ) {
             log.error( "Pellet configuration file cannot be found" );
@@ -97,6 +154,32 @@ public class PelletOptions {
         return null;
     }
     
+    private static Integer getIntProperty( Properties properties, String property ) {
+        String value = properties.getProperty( property );
+        
+        if( value != null ) {
+            try {
+                return Integer.valueOf( value.trim() );
+            }
+            catch( NumberFormatException e ) {
+                log.error( "Ignoring invalid value for property " + property );
+            }
+        }
+        
+        return null;
+    }
+    
+    private static Integer getPositiveIntProperty( Properties properties, String property ) {
+        Integer value = getIntProperty( properties, property );
+        
+        if( value != null && value.intValue() < 1 ) {
+            log.error( "Ignoring invalid value for property " + property );
+            return null;
+        }
+        
+        return value;
+    }
+    
     /**
      * When this option is set completion will go on even if a clash is detected until the
      * completion graph is saturated. Turning this option has very severe performance effect
@@ -128,6 +211,23 @@ public class PelletOptions {
      */
 	public static boolean USE_DISJUNCT_SORTING = true && !SATURATE_TABLEAU;
 	
+	/**
+	 * Check the satisfiability of the disjuncts that repeatedly cause clashes and
+	 * never try the disjuncts found to be unsatisfiable in the following satisfiability
+	 * tests. Requires caching to be enabled.
+	 */
+	public static boolean USE_DISJUNCT_LEARNING = true && !SATURATE_TABLEAU;
+	
+	/**
+	 * Number of clashes a disjunct should cause before its satisfiability is checked
+	 */
+	public static int DISJUNCT_LEARNING_THRESHOLD = 3;
+	
+	/**
+	 * Maximum number of disjuncts whose clashes are counted at a time
+	 */
+	public static int DISJUNCT_LEARNING_CAPACITY = 1000;
+	
 	public static boolean SHOW_CLASSIFICATION_PROGRESS = false;
 	
 	public static final String NO_SORTING = "NO";
@@ -187,6 +287,30 @@ public class PelletOptions {
 	
 	public static boolean USE_ADVANCED_CACHING = true;
 	
+	/**
+	 * Maximum number of concepts whose satisfiability results are cached by an ABox. 
+	 * Zero or a negative value means the cache is unbounded. 
+	 */
+	public static int CACHE_CAPACITY = 0;
+	
+	public static final String LRU = "LRU";
+	public static final String LFU = "LFU";
+	public static final String COST = "COST";
+	
+	/**
+	 * The policy used to decide which cached results are evicted when the cache is 
+	 * full. One of {@link #LRU} (least recently used), {@link #LFU} (least frequently
+	 * used) and {@link #COST} (cheapest to compute). 
+	 */
+	public static String CACHE_EVICTION_POLICY = LRU;
+	
+	/**
+	 * Summarize the root of each cached model as bit sets of its types and roles so 
+	 * that checking if two cached models can be merged does not iterate over the 
+	 * labels and the edges of the roots.
+	 */
+	public static boolean USE_MERGE_SIGNATURES = true;
+	
 	/**
 	 * To decide if individual <code>i</code> has type class <code>c</code> check 
 	 * if the edges from cached model of <code>c</code> to nominal nodes also exists
@@ -200,6 +324,19 @@ public class PelletOptions {
 	 */
 	public static boolean USE_SMART_RESTORE = true;
 	
+	/**
+	 * Keep a trail of the nodes modified after each branch and during backjumping 
+	 * restore only the nodes modified after the branch rather than all the nodes.
+	 */
+	public static boolean USE_TRAIL_RESTORE = true;
+	
+	/**
+	 * Keep a queue of the individuals whose types or edges changed during completion
+	 * and apply the completion rules in each round only to those individuals rather
+	 * than sweeping all the individuals in the ABox.
+	 */
+	public static boolean USE_COMPLETION_QUEUE = true;
+	
 	/**
 	 * When a consistency check starts in ABox use the cached pseudo model as the starting point
 	 * rather than the original ABox. Since all the branching information is already stored in
@@ -207,6 +344,23 @@ public class PelletOptions {
 	 */
     public static boolean USE_PSEUDO_MODEL = true;
     
+    /**
+     * Keep track of the ABox assertions added and removed after a consistency check so 
+     * that the next consistency check updates the pseudo model with the added assertions 
+     * rather than building it from scratch and realization finds the types of only the 
+     * individuals affected by the changes. Changes to TBox or RBox always cause the 
+     * reasoning to start from scratch.
+     */
+    public static boolean USE_INCREMENTAL_ABOX = true;
+    
+    /**
+     * After classes are added or their definitions change, keep the existing class 
+     * hierarchy and classify again only the new classes and the classes whose definitions 
+     * depend on the changed ones. Changes to general concept inclusions, datatypes or 
+     * properties always cause the classification to start from scratch.
+     */
+    public static boolean USE_INCREMENTAL_CLASSIFICATION = true;
+    
     /**
      * Treat nominals (classes defined by enumeration) as named atomic concepts rather than
      * individual names. Turning this option improves the performance but soundness and completeness
@@ -293,7 +447,17 @@ public class PelletOptions {
     
     public static boolean SIMPLIFY_QUERY = true;
     
-    public static boolean REORDER_QUERY = false;
+    public static boolean REORDER_QUERY = true;
+    
+    /**
+     * Evaluate queries with only distinguished variables set-at-a-time by joining each
+     * query pattern with all the bindings computed so far and checking the entailments
+     * for all the bindings of a pattern with a single retrieval. All the results are 
+     * computed before the query execution returns so this is only useful when all the 
+     * results will be consumed. If false, the patterns are evaluated with nested loops 
+     * one binding at a time and the results are computed lazily as they are consumed.
+     */
+    public static boolean BULK_QUERY_EVALUATION = false;
     
     public static boolean CACHE_RETRIEVAL = false;
 
@@ -303,6 +467,67 @@ public class PelletOptions {
      */
     public static boolean USE_NEW_QUERY_PARSER = true;
     
+    /**
+     * Number of threads used to classify the KB. When set to a value greater than one
+     * the satisfiability and subsumption tests done during classification are distributed 
+     * to a pool of worker threads each of which uses its own copy of the ABox. The 
+     * taxonomy is still built by a single thread so the result is exactly the same as 
+     * serial classification. 
+     */
+    public static int CLASSIFICATION_THREADS = 1;
+    
+    /**
+     * Number of threads used for instance retrieval. When set to a value greater than one
+     * the candidate individuals are split into partitions that are processed in parallel 
+     * by a pool of worker threads each of which uses its own copy of the ABox.
+     */
+    public static int RETRIEVAL_THREADS = 1;
+    
+    /**
+     * When the number of candidates for instance retrieval is less than or equal to this 
+     * value the retrieval is done sequentially. The candidates are partitioned until each
+     * partition is not bigger than this threshold and each partition is handled by one 
+     * thread. 
+     */
+    public static int PARALLEL_RETRIEVAL_THRESHOLD = 32;
+    
+    /**
+     * Number of threads used to realize the KB. When set to a value greater than one
+     * individuals are realized in batches by a pool of worker threads each of which uses 
+     * its own copy of the ABox. The taxonomy is not modified until all the individuals 
+     * are realized.
+     */
+    public static int REALIZATION_THREADS = 1;
+    
+    /**
+     * Number of individuals in each batch processed by a worker thread during parallel 
+     * realization.
+     */
+    public static int REALIZATION_BATCH_SIZE = 100;
+    
+    /**
+     * Number of threads used by {@link org.mindswap.pellet.jena.BulkLoader} to convert
+     * the instance triples to terms while the input is being parsed. The assertions are 
+     * still added to the KB by a single thread in the order they were parsed.
+     */
+    public static int LOADER_THREADS = 1;
+    
+    /**
+     * Number of instance triples in each batch converted by a worker thread of 
+     * {@link org.mindswap.pellet.jena.BulkLoader}.
+     */
+    public static int LOADER_BATCH_SIZE = 10000;
+    
+    /**
+     * Directory where the concept satisfiability results are saved after classification
+     * and loaded from when a KB with the same TBox is prepared again, possibly in another
+     * JVM. The results are stored in a separate file for each different TBox. An empty 
+     * string or null disables saving and loading the results.
+     * 
+     * @see SatisfiabilityCache
+     */
+    public static String SATISFIABILITY_CACHE_DIRECTORY = "";
+    
     public static String DEFAULT_CONFIGURATION_FILE = "pellet.properties";
     
     static {
@@ -0,0 +1,260 @@
+package org.mindswap.pellet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.mindswap.pellet.exceptions.UnsupportedFeatureException;
+import org.mindswap.pellet.taxonomy.Taxonomy;
+import org.mindswap.pellet.taxonomy.TaxonomyNode;
+import org.mindswap.pellet.utils.ATermUtils;
+import org.mindswap.pellet.utils.Bool;
+
+import aterm.ATermAppl;
+
+/**
+ * A read-only view of a realized KB that can be queried by multiple threads at the same
+ * time. The class hierarchy and the instances of named classes are answered directly
+ * from the taxonomy, which is not modified after realization, without any locking. The
+ * questions that require a tableau check (satisfiability of class expressions, instance
+ * checks for class expressions, property values, etc.) are answered using a private copy
+ * of the KB created for each thread the first time it uses the snapshot.
+ *
+ * <p>The copy of a thread is kept until the thread calls {@link #release()}, the thread
+ * dies or the snapshot is closed with {@link #close()}. Threads from a pool that only use 
+ * the snapshot for a single request should call {@link #release()} when they are done.</p>
+ *
+ * <p>The original KB should not be modified while the snapshot is being used. A new
+ * snapshot should be created after the KB is changed.</p>
+ */
+public class QuerySnapshot {
+    private KnowledgeBase kb;
+
+    private Taxonomy taxonomy;
+
+    /**
+     * Map from individual names to the list of taxonomy nodes that have the individual 
+     * as a direct instance. Computed once since the taxonomy does not change.
+     */
+    private Map directTypes;
+
+    /**
+     * Map from threads to the copies of the KB they use. Threads are weak keys so the 
+     * copy of a thread can be garbage collected after the thread dies. The map is set to
+     * null when the snapshot is closed.
+     */
+    private Map copies = new WeakHashMap();
+
+    /**
+     * Create a snapshot of the given KB. The KB will be realized first if it is not
+     * realized already.
+     *
+     * @param kb
+     */
+    public QuerySnapshot( KnowledgeBase kb ) {
+        kb.realize();
+
+        if( !kb.isRealized() )
+            throw new IllegalStateException( "Cannot create a snapshot of a KB that is not realized" );
+
+        // the snapshot keeps its own copy so that the copies for threads are not
+        // affected by queries answered through the original KB
+        this.kb = kb.copyForThread();
+        this.taxonomy = kb.getTaxonomy();
+        this.directTypes = computeDirectTypes();
+    }
+
+    private Map computeDirectTypes() {
+        Map map = new HashMap();
+        Set visited = new HashSet();
+        for( Iterator i = taxonomy.getClasses().iterator(); i.hasNext(); ) {
+            TaxonomyNode node = taxonomy.getNode( (ATermAppl) i.next() );
+            if( !visited.add( node ) )
+                continue;
+
+            for( Iterator j = node.getInstances().iterator(); j.hasNext(); ) {
+                ATermAppl ind = (ATermAppl) j.next();
+                List nodes = (List) map.get( ind );
+                if( nodes == null ) {
+                    nodes = new ArrayList( 2 );
+                    map.put( ind, nodes );
+                }
+                nodes.add( node );
+            }
+        }
+
+        return map;
+    }
+
+    /**
+     * Return the copy of the KB that belongs to the calling thread. The returned KB
+     * should only be used by the calling thread and should not be modified.
+     */
+    public KnowledgeBase getKB() {
+        Thread thread = Thread.currentThread();
+        
+        // copying reads the state of the KB and updates its timers so copies are not 
+        // created concurrently
+        synchronized( this ) {
+            if( copies == null )
+                throw new IllegalStateException( "The snapshot is closed" );
+
+            KnowledgeBase copy = (KnowledgeBase) copies.get( thread );
+            if( copy == null ) {
+                // the copy has its own taxonomy so that the hierarchy of class expressions
+                // can be computed on it
+                copy = kb.copyForThread( true );
+                copies.put( thread, copy );
+            }
+
+            return copy;
+        }
+    }
+
+    /**
+     * Discard the copy of the KB used by the calling thread, if any. A new copy is created
+     * if the thread uses the snapshot again.
+     */
+    public synchronized void release() {
+        if( copies != null )
+            copies.remove( Thread.currentThread() );
+    }
+
+    /**
+     * Discard the copies of the KB used by all the threads. The snapshot cannot answer 
+     * the questions that need a tableau check after it is closed.
+     */
+    public synchronized void close() {
+        copies = null;
+    }
+
+    public Set getClasses() {
+        return kb.getClasses();
+    }
+
+    public Set getIndividuals() {
+        return kb.getIndividuals();
+    }
+
+    public boolean isClass( ATermAppl c ) {
+        return kb.isClass( c );
+    }
+
+    public boolean isIndividual( ATermAppl ind ) {
+        return kb.isIndividual( ind );
+    }
+
+    public boolean isSatisfiable( ATermAppl c ) {
+        if( taxonomy.contains( c ) )
+            return !taxonomy.getAllEquivalents( c ).contains( ATermUtils.BOTTOM );
+
+        return getKB().isSatisfiable( c );
+    }
+
+    public boolean isSubClassOf( ATermAppl c1, ATermAppl c2 ) {
+        if( c1.equals( c2 ) )
+            return true;
+
+        Bool isSubNode = taxonomy.isSubNodeOf( c1, c2 );
+        if( isSubNode.isKnown() )
+            return isSubNode.isTrue();
+
+        return getKB().isSubClassOf( c1, c2 );
+    }
+
+    public boolean isEquivalentClass( ATermAppl c1, ATermAppl c2 ) {
+        return isSubClassOf( c1, c2 ) && isSubClassOf( c2, c1 );
+    }
+
+    public Set getSuperClasses( ATermAppl c, boolean direct ) {
+        return taxonomy.getSupers( getNamedClass( c ), direct );
+    }
+
+    public Set getSubClasses( ATermAppl c, boolean direct ) {
+        return taxonomy.getSubs( getNamedClass( c ), direct );
+    }
+
+    public Set getEquivalentClasses( ATermAppl c ) {
+        return taxonomy.getEquivalents( getNamedClass( c ) );
+    }
+
+    public Set getAllEquivalentClasses( ATermAppl c ) {
+        return taxonomy.getAllEquivalents( getNamedClass( c ) );
+    }
+
+    public boolean isType( ATermAppl x, ATermAppl c ) {
+        if( taxonomy.contains( c ) && kb.isIndividual( x ) )
+            return isInstance( x, taxonomy.getNode( c ) );
+
+        return getKB().isType( x, c );
+    }
+
+    /**
+     * Checks if the given node can be reached from one of the direct type nodes of the
+     * individual by following the super links. This is equivalent to checking if the 
+     * individual is in the instances of the node without computing all the instances.
+     */
+    private boolean isInstance( ATermAppl x, TaxonomyNode node ) {
+        List nodes = (List) directTypes.get( x );
+        if( nodes == null )
+            return false;
+
+        Set visited = new HashSet();
+        List queue = new ArrayList( nodes );
+        while( !queue.isEmpty() ) {
+            TaxonomyNode next = (TaxonomyNode) queue.remove( queue.size() - 1 );
+            if( next == node )
+                return true;
+            if( visited.add( next ) )
+                queue.addAll( next.getSupers() );
+        }
+
+        return false;
+    }
+
+    public Set getTypes( ATermAppl ind, boolean direct ) {
+        if( !kb.isIndividual( ind ) )
+            return getKB().getTypes( ind, direct );
+
+        return taxonomy.getTypes( ind, direct );
+    }
+
+    public Set getInstances( ATermAppl c ) {
+        if( taxonomy.contains( c ) )
+            return taxonomy.getInstances( c );
+
+        return getKB().getInstances( c );
+    }
+
+    public Set getInstances( ATermAppl c, boolean direct ) {
+        if( taxonomy.contains( c ) )
+            return taxonomy.getInstances( c, direct );
+
+        return getKB().getInstances( c, direct );
+    }
+
+    public boolean hasPropertyValue( ATermAppl s, ATermAppl p, ATermAppl o ) {
+        return getKB().hasPropertyValue( s, p, o );
+    }
+
+    public List getPropertyValues( ATermAppl p, ATermAppl s ) {
+        return getKB().getPropertyValues( p, s );
+    }
+
+    private ATermAppl getNamedClass( ATermAppl c ) {
+        if( !taxonomy.contains( c ) ) {
+            ATermAppl normalized = ATermUtils.normalize( c );
+            if( !taxonomy.contains( normalized ) )
+                throw new UnsupportedFeatureException(
+                    c + " is not a named class, hierarchy of class expressions cannot be computed on a snapshot" );
+            c = normalized;
+        }
+
+        return c;
+    }
+}
@@ -334,6 +334,20 @@ public class RBox {
 		}
 	}
 				
+	/**
+	 * Add a role whose hierarchy and characteristics were already computed by 
+	 * {@link #computeRoleHierarchy()}, e.g. a role restored from a snapshot. The 
+	 * functional supers of the role should be set before it is added.
+	 */
+	void addRole(Role role) {
+		roles.put(role.getName(), role);
+		
+		if( role.isFunctional() && role.getFunctionalSupers().contains( role ) )
+		    functionalRoles.add( role );
+		
+		taxonomy = null;
+	}
+	
 	/**
 	 * check if the term is declared as a role
 	 */
@@ -152,6 +152,22 @@ public class Role {
 		}
 	}
 	
+	/**
+	 * Sets the normalized domain computed by {@link RBox#computeRoleHierarchy()}
+	 */
+	void setDomain(ATermAppl a) {
+	    domain = a;
+	    domains = null;
+	}
+	
+	/**
+	 * Sets the normalized range computed by {@link RBox#computeRoleHierarchy()}
+	 */
+	void setRange(ATermAppl a) {
+	    range = a;
+	    ranges = null;
+	}
+	
 	public void addDomain(ATermAppl a) {
 	    if( domains == null )
 	        domains = new HashSet();
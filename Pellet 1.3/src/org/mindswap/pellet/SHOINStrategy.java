@@ -192,7 +192,7 @@ public class SHOINStrategy extends CompletionStrategy {
                 branchFound = newBranch.tryNext();
             }
             else
-                abox.getClash().depends.remove(lastBranch);
+                branchExhausted(newBranch);
             if(!branchFound) {
                 if(ABox.DEBUG)
                     System.out.println("FAIL: Branch " + lastBranch);
@@ -214,118 +214,136 @@ public class SHOINStrategy extends CompletionStrategy {
         
         initialize();
         
-        while(!abox.isComplete()) {
-            while(abox.changed && !abox.isClosed()) {                
-                completionTimer.check();
+        // with a queue each round visits only the individuals changed since the last round
+        CompletionQueue queue = null;
+        if( PelletOptions.USE_COMPLETION_QUEUE ) {
+            queue = new CompletionQueue( abox );
+            queue.addAll();
+            abox.completionQueue = queue;
+        }
+        
+        try {
+            while(!abox.isComplete()) {
+                while(abox.changed && !abox.isClosed()) {                
+                    completionTimer.check();
 
-                abox.changed = false;
+                    abox.changed = false;
                
-                if(ABox.DEBUG) {
-                    System.out.println("Branch: " + abox.getBranch() +
-                        ", Depth: " + abox.treeDepth + ", Size: " + abox.getNodes().size() + 
-                        ", Mem: " + (Runtime.getRuntime().freeMemory()/1000) + "kb");
-                    abox.validate();
-                    printBlocked();
-                    abox.printTree();
-                }
-
-                IndividualIterator i = abox.getIndIterator();
-
-                if( !PelletOptions.USE_PSEUDO_NOMINALS ) {
-                    t = timers.startTimer( "rule-nominal");
-	                applyNominalRule(i);
-                    t.stop();
-	                if(abox.isClosed()) break;
-                }
+                    if(ABox.DEBUG) {
+                        System.out.println("Branch: " + abox.getBranch() +
+                            ", Depth: " + abox.treeDepth + ", Size: " + abox.getNodes().size() + 
+                            ", Mem: " + (Runtime.getRuntime().freeMemory()/1000) + "kb");
+                        abox.validate();
+                        printBlocked();
+                        abox.printTree();
+                    }
+
+                    IndividualIterator i = (queue == null) ? abox.getIndIterator() : queue.poll();
+
+                    if( !PelletOptions.USE_PSEUDO_NOMINALS ) {
+                        t = timers.startTimer( "rule-nominal");
+    	                applyNominalRule(i);
+                        t.stop();
+    	                if(abox.isClosed()) break;
+                    }
                 
-                t = timers.startTimer("rule-guess");
-                applyGuessingRule(i);
-                t.stop();
-                if(abox.isClosed()) break;
+                    t = timers.startTimer("rule-guess");
+                    applyGuessingRule(i);
+                    t.stop();
+                    if(abox.isClosed()) break;
                 
-                t = timers.startTimer("rule-max");
-                applyMaxRule(i);
-                t.stop();
-                if(abox.isClosed()) break;
-                                
-                if( fullDatatypeReasoning ) {
-                    t = timers.startTimer("check-dt-count");
-                    checkDatatypeCount(i);
+                    t = timers.startTimer("rule-max");
+                    applyMaxRule(i);
                     t.stop();
                     if(abox.isClosed()) break;
+                                
+                    if( fullDatatypeReasoning ) {
+                        t = timers.startTimer("check-dt-count");
+                        checkDatatypeCount(i);
+                        t.stop();
+                        if(abox.isClosed()) break;
     
-                    t = timers.startTimer("rule-lit");
-                    applyLiteralRule();
+                        t = timers.startTimer("rule-lit");
+                        applyLiteralRule();
+                        t.stop();
+                        if(abox.isClosed()) break;
+                    }
+                
+                    t = timers.startTimer("rule-unfold");
+                    applyUnfoldingRule(i);
+                    t.stop();
+                    if(abox.isClosed()) break;
+
+                    t = timers.startTimer("rule-disj");
+                    applyDisjunctionRule(i);
                     t.stop();
                     if(abox.isClosed()) break;
-                }
-                
-                t = timers.startTimer("rule-unfold");
-                applyUnfoldingRule(i);
-                t.stop();
-                if(abox.isClosed()) break;
-
-                t = timers.startTimer("rule-disj");
-                applyDisjunctionRule(i);
-                t.stop();
-                if(abox.isClosed()) break;
                 
-                t = timers.startTimer("rule-some");
-                applySomeValuesRule(i);
-                t.stop();
-                if(abox.isClosed()) break;
-
-                t = timers.startTimer("rule-min");
-                applyMinRule(i);
-                t.stop();
-                if(abox.isClosed()) break;
+                    t = timers.startTimer("rule-some");
+                    applySomeValuesRule(i);
+                    t.stop();
+                    if(abox.isClosed()) break;
+
+                    t = timers.startTimer("rule-min");
+                    applyMinRule(i);
+                    t.stop();
+                    if(abox.isClosed()) break;
                                 
-//                t = timers.startTimer("rule-max");
-//                applyMaxRule(i);
-//                t.stop();
-//                if(abox.isClosed()) break;
-//                
-//                t = timers.startTimer("rule-lit");
-//                applyLiteralRule();
-//                t.stop();
-//                if(abox.isClosed()) break;
-            }
+    //                t = timers.startTimer("rule-max");
+    //                applyMaxRule(i);
+    //                t.stop();
+    //                if(abox.isClosed()) break;
+    //                
+    //                t = timers.startTimer("rule-lit");
+    //                applyLiteralRule();
+    //                t.stop();
+    //                if(abox.isClosed()) break;
+                }
 
-            if( abox.isClosed() ) {
-                if(ABox.DEBUG)
-                    System.out.println(
-                        "Clash at Branch (" + abox.getBranch() + ") " + abox.getClash());
+                if( queue != null && abox.isClosed() )
+                    queue.requeueAll();
 
-                if(backtrack())
-                    abox.setClash( null );
-                else
-                    abox.setComplete( true );
-            }
-            else {
-            	if (PelletOptions.SATURATE_TABLEAU) {
-            		Branch unexploredBranch = null;
-                	for (int i=abox.getBranches().size()-1; i>=0; i--) {
-                		unexploredBranch = (Branch) abox.getBranches().get(i);
-                        unexploredBranch.tryNext++;
-                		if (unexploredBranch.tryNext < unexploredBranch.tryCount) {
-                			restore(unexploredBranch);
-                            System.out.println("restoring branch "+ unexploredBranch.branch + " tryNext = "+unexploredBranch.tryNext + " tryCount = "+unexploredBranch.tryCount);
-                			unexploredBranch.tryNext();
-                			break;
-                		}
-                		else { 
-                            System.out.println("removing branch "+ unexploredBranch.branch);
-                            abox.getBranches().remove(i);
-                            unexploredBranch = null;
-                        }
-                	}
-                	if(unexploredBranch == null) {
-                		abox.setComplete( true );	
+                if( abox.isClosed() ) {
+                    if(ABox.DEBUG)
+                        System.out.println(
+                            "Clash at Branch (" + abox.getBranch() + ") " + abox.getClash());
+
+                    if(backtrack())
+                        abox.setClash( null );
+                    else
+                        abox.setComplete( true );
+                }
+                else {
+                	if (PelletOptions.SATURATE_TABLEAU) {
+                		Branch unexploredBranch = null;
+                    	for (int i=abox.getBranches().size()-1; i>=0; i--) {
+                    		unexploredBranch = (Branch) abox.getBranches().get(i);
+                            unexploredBranch.tryNext++;
+                    		if (unexploredBranch.tryNext < unexploredBranch.tryCount) {
+                    			restore(unexploredBranch);
+                                System.out.println("restoring branch "+ unexploredBranch.branch + " tryNext = "+unexploredBranch.tryNext + " tryCount = "+unexploredBranch.tryCount);
+                    			unexploredBranch.tryNext();
+                    			break;
+                    		}
+                    		else { 
+                                System.out.println("removing branch "+ unexploredBranch.branch);
+                                abox.getBranches().remove(i);
+                                unexploredBranch = null;
+                            }
+                    	}
+                    	if(unexploredBranch == null) {
+                    		abox.setComplete( true );	
+                    	}
                 	}
-            	}
-                else abox.setComplete( true );
+                    else abox.setComplete( true );
+                }
             }
         }
+        finally {
+            // the queue should not be updated after the completion is finished, even if it
+            // is interrupted by a timeout
+            abox.completionQueue = null;
+        }
         
         completionTimer.stop();
 
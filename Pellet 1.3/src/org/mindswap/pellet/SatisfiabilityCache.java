@@ -0,0 +1,331 @@
+package org.mindswap.pellet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mindswap.pellet.datatypes.Datatype;
+import org.mindswap.pellet.datatypes.DatatypeReasoner;
+import org.mindswap.pellet.exceptions.InternalReasonerException;
+import org.mindswap.pellet.utils.ATermIO;
+import org.mindswap.pellet.utils.ATermUtils;
+
+import aterm.ATermAppl;
+import aterm.ATermList;
+
+/**
+ * Saves the concept satisfiability results cached in the ABox to a file and loads them
+ * back so that the results computed by one JVM can be reused by another one reasoning
+ * with the same TBox. The file starts with a format version and a fingerprint computed
+ * from the TBox axioms, the role definitions, the datatype definitions and the options 
+ * that affect the preprocessing of the TBox. The results in a file are loaded only if both the format
+ * version and the fingerprint match the KB.
+ *
+ * <p>Only the satisfiability results are stored, not the pseudo models of the concepts
+ * because the cached models refer to the nodes of completion graphs. The unsatisfiable
+ * concepts and the satisfiable class expressions (e.g. the conjunctions tested for
+ * subsumption) are answered from the loaded results without running the tableau. A model
+ * is still built the first time the satisfiability of a named class is checked since the
+ * models of named classes are used for model merging.</p>
+ *
+ * <p>The results depend on the ABox only if there are nominals in the KB, so nothing is
+ * saved or loaded for such KBs unless pseudo nominals are used. Nothing is saved or 
+ * loaded either if the KB has a user-defined datatype without a definition that can be
+ * included in the fingerprint, e.g. a datatype created directly from a {@link Datatype}
+ * object.</p>
+ */
+public class SatisfiabilityCache {
+    public static Log log = LogFactory.getLog( SatisfiabilityCache.class );
+
+    /**
+     * Version of the file format. Should be incremented every time the format or the
+     * meaning of the cached results changes so that old files are ignored.
+     */
+    public static final int FORMAT_VERSION = 3;
+
+    public static final String FILE_EXTENSION = ".satcache";
+
+    private static final String HEADER = "PelletSatisfiabilityCache";
+
+    private SatisfiabilityCache() {
+    }
+
+    /**
+     * Returns true if the satisfiability results for the given KB can be saved and reused.
+     */
+    public static boolean isApplicable( KnowledgeBase kb ) {
+        return PelletOptions.USE_CACHING
+            && !(kb instanceof EconnectedKB)
+            && (!kb.getExpressivity().hasNominal() || PelletOptions.USE_PSEUDO_NOMINALS)
+            && hasDefinitions( kb.getDatatypeReasoner() );
+    }
+
+    /**
+     * Returns true if the definitions of all the user-defined datatypes are known.
+     */
+    private static boolean hasDefinitions( DatatypeReasoner dtReasoner ) {
+        for( Iterator i = dtReasoner.getDatatypeURIs().iterator(); i.hasNext(); ) {
+            String uri = dtReasoner.getDatatypeURI( (Datatype) i.next() );
+            if( uri != null && !dtReasoner.isBuiltIn( uri ) && dtReasoner.getDefinition( uri ) == null )
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Computes the fingerprint of the TBox and RBox of a prepared KB. Two KBs with the
+     * same fingerprint have the same concept satisfiability results.
+     */
+    public static String fingerprint( KnowledgeBase kb ) {
+        StringBuffer buffer = new StringBuffer();
+
+        buffer.append( "version " ).append( FORMAT_VERSION ).append( '\n' );
+        buffer.append( "options" );
+        buffer.append( ' ' ).append( PelletOptions.USE_PSEUDO_NOMINALS );
+        buffer.append( ' ' ).append( PelletOptions.USE_ABSORPTION );
+        buffer.append( ' ' ).append( PelletOptions.USE_ROLE_ABSORPTION );
+        buffer.append( ' ' ).append( PelletOptions.USE_NOMINAL_ABSORPTION );
+        buffer.append( ' ' ).append( PelletOptions.USE_HASVALUE_ABSORPTION );
+        buffer.append( ' ' ).append( PelletOptions.USE_UNIQUE_NAME_ASSUMPTION );
+        buffer.append( '\n' );
+        buffer.append( "expressivity " ).append( kb.getExpressivity() ).append( '\n' );
+
+        Set axioms = new TreeSet();
+        for( Iterator i = kb.getTBox().getAxioms().iterator(); i.hasNext(); )
+            axioms.add( i.next().toString() );
+        append( buffer, "axiom", axioms );
+
+        Set roles = new TreeSet();
+        for( Iterator i = kb.getRBox().getRoles().iterator(); i.hasNext(); )
+            roles.add( describe( (Role) i.next() ) );
+        append( buffer, "role", roles );
+
+        // the same datatype URI may refer to different value spaces in different KBs
+        // so the definitions of the user-defined datatypes are included
+        Set datatypes = new TreeSet();
+        DatatypeReasoner dtReasoner = kb.getDatatypeReasoner();
+        for( Iterator i = dtReasoner.getDatatypeURIs().iterator(); i.hasNext(); ) {
+            String uri = dtReasoner.getDatatypeURI( (Datatype) i.next() );
+            if( uri == null )
+                continue;
+
+            ATermAppl definition = dtReasoner.getDefinition( uri );
+            datatypes.add( definition == null ? uri : uri + " " + definition );
+        }
+        append( buffer, "datatype", datatypes );
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+            byte[] bytes = digest.digest( buffer.toString().getBytes( "UTF-8" ) );
+
+            StringBuffer hex = new StringBuffer();
+            for( int i = 0; i < bytes.length; i++ ) {
+                int b = bytes[i] & 0xff;
+                if( b < 0x10 )
+                    hex.append( '0' );
+                hex.append( Integer.toHexString( b ) );
+            }
+
+            return hex.toString();
+        }
+        catch( NoSuchAlgorithmException e ) {
+            throw new InternalReasonerException( "SHA-1 is not supported by this JVM" );
+        }
+        catch( IOException e ) {
+            throw new InternalReasonerException( "UTF-8 is not supported by this JVM" );
+        }
+    }
+
+    /**
+     * Returns the file in the given directory where the results for the KB are stored.
+     */
+    public static File getFile( KnowledgeBase kb, File directory ) {
+        return new File( directory, fingerprint( kb ) + FILE_EXTENSION );
+    }
+
+    /**
+     * Saves the satisfiability results cached in the ABox of a prepared KB to the given
+     * file. The file is written to a temporary file first and then renamed so that a
+     * file being written is never read by another process.
+     *
+     * @return the number of saved results
+     */
+    public static int save( KnowledgeBase kb, File file ) throws IOException {
+        List unsat = new ArrayList();
+        List sat = new ArrayList();
+        collect( kb.getABox(), unsat, sat );
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        if( dir != null && !dir.exists() )
+            dir.mkdirs();
+
+        File tmp = File.createTempFile( file.getName(), ".tmp", dir );
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) );
+        try {
+            out.writeUTF( HEADER );
+            out.writeInt( FORMAT_VERSION );
+            out.writeUTF( fingerprint( kb ) );
+
+            // concepts share lots of subterms which are written only once
+            ATermIO io = new ATermIO();
+            io.write( out, ATermUtils.makeList( unsat ) );
+            io.write( out, ATermUtils.makeList( sat ) );
+        }
+        finally {
+            out.close();
+        }
+
+        if( (file.exists() && !file.delete()) || !tmp.renameTo( file ) ) {
+            tmp.delete();
+            throw new IOException( "Cannot write satisfiability cache file " + file );
+        }
+
+        if( log.isDebugEnabled() )
+            log.debug( "Saved " + unsat.size() + " unsatisfiable and " + sat.size()
+                + " satisfiable concepts to " + file );
+
+        return unsat.size() + sat.size();
+    }
+
+    /**
+     * Loads the satisfiability results from the given file into the cache of the ABox
+     * of a prepared KB. Nothing is loaded if the file has a different format version or
+     * was saved for a KB with a different fingerprint. The results already cached in the
+     * ABox are not overwritten.
+     *
+     * @return the number of loaded results
+     */
+    public static int load( KnowledgeBase kb, File file ) throws IOException {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+        try {
+            if( !HEADER.equals( in.readUTF() ) )
+                throw new IOException( file + " is not a satisfiability cache file" );
+
+            int version = in.readInt();
+            if( version != FORMAT_VERSION ) {
+                log.info( "Ignoring satisfiability cache file " + file + " with format version " + version );
+                return 0;
+            }
+
+            if( !fingerprint( kb ).equals( in.readUTF() ) ) {
+                log.info( "Ignoring satisfiability cache file " + file + " saved for a different TBox" );
+                return 0;
+            }
+
+            ATermList unsat, sat;
+            try {
+                ATermIO io = new ATermIO();
+                unsat = (ATermList) io.read( in );
+                sat = (ATermList) io.read( in );
+            }
+            catch( ClassCastException e ) {
+                throw new IOException( "Cannot parse satisfiability cache file " + file );
+            }
+
+            int count = restore( kb.getABox(), unsat, sat );
+
+            if( log.isDebugEnabled() )
+                log.debug( "Loaded " + count + " concepts from " + file );
+
+            return count;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Collects the unsatisfiable concepts and the satisfiable class expressions cached
+     * in the ABox.
+     */
+    static void collect( ABox abox, List unsat, List sat ) {
+        Map cache = abox.getAllCached();
+        for( Iterator i = cache.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry entry = (Map.Entry) i.next();
+            ATermAppl c = (ATermAppl) entry.getKey();
+            CachedNode cached = (CachedNode) entry.getValue();
+
+            if( c.equals( ATermUtils.TOP ) || c.equals( ATermUtils.BOTTOM ) )
+                continue;
+
+            if( cached.isBottom() )
+                unsat.add( c );
+            // the concepts cached as TOP are the negations of unsatisfiable concepts
+            // and will be cached again when the unsatisfiable concepts are loaded.
+            // satisfiable named classes without a model are not useful because the
+            // model will be built anyway
+            else if( !cached.isTop() && !ATermUtils.isPrimitiveOrNegated( c ) )
+                sat.add( c );
+        }
+    }
+
+    /**
+     * Adds the given satisfiability results to the cache of the ABox without overwriting
+     * the results already cached.
+     *
+     * @return the number of results added
+     */
+    static int restore( ABox abox, ATermList unsat, ATermList sat ) {
+        int count = 0;
+        for( ; !unsat.isEmpty(); unsat = unsat.getNext() ) {
+            ATermAppl c = (ATermAppl) unsat.getFirst();
+            if( abox.getCached( c ) == null && abox.getCached( ATermUtils.negate( c ) ) == null ) {
+                abox.cacheUnsatConcept( c );
+                count++;
+            }
+        }
+        for( ; !sat.isEmpty(); sat = sat.getNext() ) {
+            ATermAppl c = (ATermAppl) sat.getFirst();
+            if( abox.getCached( c ) == null ) {
+                abox.cacheSatConcept( c );
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private static String describe( Role role ) {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append( role.getName() );
+        buffer.append( ' ' ).append( role.getTypeName() );
+        if( role.isTransitive() )
+            buffer.append( " transitive" );
+        if( role.isFunctional() )
+            buffer.append( " functional" );
+        if( role.isInverseFunctional() )
+            buffer.append( " inverseFunctional" );
+        if( role.getInverse() != null )
+            buffer.append( " inverse=" ).append( role.getInverse().getName() );
+        buffer.append( " domain=" ).append( role.getDomain() );
+        buffer.append( " range=" ).append( role.getRange() );
+
+        Set supers = new TreeSet();
+        for( Iterator i = role.getSuperRoles().iterator(); i.hasNext(); )
+            supers.add( ((Role) i.next()).getName().toString() );
+        buffer.append( " supers=" ).append( supers );
+
+        return buffer.toString();
+    }
+
+    private static void append( StringBuffer buffer, String prefix, Set lines ) {
+        for( Iterator i = lines.iterator(); i.hasNext(); )
+            buffer.append( prefix ).append( ' ' ).append( i.next() ).append( '\n' );
+    }
+}
@@ -0,0 +1,283 @@
+package org.mindswap.pellet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.mindswap.pellet.exceptions.InternalReasonerException;
+
+/**
+ * A fixed number of worker threads that run reasoning tasks in parallel. Each worker
+ * owns a private copy of the KB created with {@link KnowledgeBase#copyForThread()} and
+ * every task is run against the copy of the worker that picks it up. The tableau
+ * algorithm does not share any mutable state between different copies so tasks can
+ * safely run at the same time. After the tasks are completed the results cached by
+ * the workers can be added back to the original KB by calling {@link #merge()}.
+ *
+ * <p>The KB should not be modified while the pool is being used and the pool should
+ * be shut down when it is no longer needed.</p>
+ */
+public class WorkerPool {
+    /**
+     * A reasoning task that will be run by one of the workers.
+     */
+    public interface Task {
+        /**
+         * Run the task using the given KB which is the private copy of the worker
+         * running this task.
+         */
+        public void run( KnowledgeBase kb );
+    }
+
+    private KnowledgeBase kb;
+
+    private KnowledgeBase[] copies;
+
+    private Thread[] threads;
+
+    // the tasks being executed and the index of the next task to be picked up
+    private List tasks = Collections.EMPTY_LIST;
+    private int next = 0;
+
+    // number of tasks picked up but not finished yet
+    private int running = 0;
+
+    // first failure that occurred while running the current tasks
+    private Throwable failure;
+
+    // true if execute function is in progress
+    private boolean busy = false;
+
+    private boolean shutdown = false;
+
+    // time in milliseconds after which idle workers stop, 0 if they never stop
+    private long idleTimeout = 0;
+
+    // true if the pool should not be stopped before the next execute call
+    private boolean reserved = false;
+
+    /**
+     * Create a pool with the given number of workers for the KB. The KB should be
+     * consistent.
+     *
+     * @param kb
+     * @param size
+     */
+    public WorkerPool( KnowledgeBase kb, int size ) {
+        if( size < 1 )
+            throw new IllegalArgumentException( "Invalid number of workers: " + size );
+
+        this.kb = kb;
+
+        copies = new KnowledgeBase[size];
+        threads = new Thread[size];
+        for( int i = 0; i < size; i++ ) {
+            copies[i] = kb.copyForThread();
+            threads[i] = new Worker( copies[i], i );
+            threads[i].start();
+        }
+    }
+
+    /**
+     * Set the time after which the pool is stopped automatically if no tasks are
+     * executed. This allows the threads and the KB copies of a pool that is kept 
+     * for later use to be released when the pool is not needed any more. Results of 
+     * the workers are not merged when the pool stops this way. A value of 0 (the 
+     * default) means the pool is never stopped automatically.
+     *
+     * @param idleTimeout Timeout in milliseconds
+     */
+    public synchronized void setIdleTimeout( long idleTimeout ) {
+        this.idleTimeout = idleTimeout;
+        notifyAll();
+    }
+
+    /**
+     * Make sure the pool is not stopped because of the idle timeout before the next 
+     * call to {@link #execute(List)} completes. Returns false if the pool has already 
+     * been stopped and cannot be used any more.
+     */
+    public synchronized boolean reserve() {
+        if( shutdown )
+            return false;
+
+        reserved = true;
+
+        return true;
+    }
+
+    /**
+     * Return the number of workers in this pool.
+     */
+    public int size() {
+        return threads.length;
+    }
+
+    /**
+     * Run all the given tasks using the workers of this pool and wait until all the
+     * tasks are completed. If any of the tasks throws an exception the remaining tasks
+     * are skipped and the exception is thrown from this function.
+     *
+     * @param tasks List of {@link Task} objects
+     */
+    public synchronized void execute( List tasks ) {
+        if( shutdown )
+            throw new IllegalStateException( "Worker pool has been shut down" );
+
+        if( tasks.isEmpty() ) {
+            reserved = false;
+            return;
+        }
+
+        // tasks submitted by different threads are run one batch at a time
+        while( busy ) {
+            try {
+                wait();
+            }
+            catch( InterruptedException e ) {
+                throw new InternalReasonerException( "Parallel reasoning task was interrupted" );
+            }
+        }
+
+        busy = true;
+        this.tasks = new ArrayList( tasks );
+        this.next = 0;
+        this.failure = null;
+
+        notifyAll();
+
+        boolean interrupted = false;
+        while( next < this.tasks.size() || running > 0 ) {
+            try {
+                wait();
+            }
+            catch( InterruptedException e ) {
+                // stop handing out new tasks but wait for the running ones
+                interrupted = true;
+                next = this.tasks.size();
+            }
+        }
+
+        this.tasks = Collections.EMPTY_LIST;
+        this.next = 0;
+        busy = false;
+        reserved = false;
+        notifyAll();
+
+        if( interrupted )
+            Thread.currentThread().interrupt();
+
+        if( failure != null ) {
+            Throwable t = failure;
+            failure = null;
+            if( t instanceof RuntimeException )
+                throw (RuntimeException) t;
+            else if( t instanceof Error )
+                throw (Error) t;
+            else
+                throw new InternalReasonerException( "Parallel reasoning task failed: " + t );
+        }
+        else if( interrupted )
+            throw new InternalReasonerException( "Parallel reasoning task was interrupted" );
+    }
+
+    /**
+     * Add the satisfiability results cached by the workers, statistics and timers
+     * to the original KB.
+     */
+    public synchronized void merge() {
+        for( int i = 0; i < copies.length; i++ )
+            kb.merge( copies[i] );
+    }
+
+    /**
+     * Merge the results of the workers to the original KB and stop all the worker
+     * threads. The pool cannot be used after this function is called.
+     */
+    public synchronized void shutdown() {
+        if( shutdown )
+            return;
+
+        merge();
+
+        stop();
+    }
+
+    /**
+     * Stop all the worker threads without merging their results to the original KB.
+     * The pool cannot be used after this function is called.
+     */
+    public synchronized void stop() {
+        shutdown = true;
+        notifyAll();
+    }
+
+    private synchronized Task nextTask() throws InterruptedException {
+        while( !shutdown && next >= tasks.size() ) {
+            if( idleTimeout > 0 && !busy && !reserved ) {
+                long start = System.currentTimeMillis();
+                wait( idleTimeout );
+                if( !busy && !reserved && next >= tasks.size() && 
+                    System.currentTimeMillis() - start >= idleTimeout )
+                    stop();
+            }
+            else
+                wait();
+        }
+
+        if( shutdown )
+            return null;
+
+        running++;
+
+        return (Task) tasks.get( next++ );
+    }
+
+    private synchronized void taskFinished( Throwable t ) {
+        running--;
+
+        if( t != null && failure == null ) {
+            failure = t;
+            // skip the tasks that have not been started
+            next = tasks.size();
+        }
+
+        if( running == 0 && next >= tasks.size() )
+            notifyAll();
+    }
+
+    private class Worker extends Thread {
+        private KnowledgeBase copy;
+
+        Worker( KnowledgeBase copy, int index ) {
+            super( "Pellet worker " + index );
+            this.copy = copy;
+            setDaemon( true );
+        }
+
+        public void run() {
+            while( true ) {
+                Task task = null;
+                try {
+                    task = nextTask();
+                }
+                catch( InterruptedException e ) {
+                    return;
+                }
+
+                if( task == null )
+                    return;
+
+                Throwable failure = null;
+                try {
+                    task.run( copy );
+                }
+                catch( Throwable t ) {
+                    failure = t;
+                }
+
+                taskFinished( failure );
+            }
+        }
+    }
+}
@@ -26,11 +26,14 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.xerces.impl.dv.XSSimpleType;
 import org.apache.xerces.xs.StringList;
@@ -51,7 +54,10 @@ import org.w3c.dom.bootstrap.DOMImplementationRegistry;
 import org.w3c.dom.ls.DOMImplementationLS;
 import org.w3c.dom.ls.LSInput;
 
+import aterm.AFun;
 import aterm.ATermAppl;
+import aterm.ATermFactory;
+import aterm.ATermInt;
 import aterm.ATermList;
 
 /**
@@ -61,6 +67,16 @@ import aterm.ATermList;
 public class DatatypeReasoner {
     public static boolean DEBUG = false;
 
+    private static final ATermFactory factory = ATermUtils.getFactory();
+
+    private static final AFun ENUMERATION = factory.makeAFun( "enumeration", 1, false );
+
+    private static final AFun RESTRICTION = factory.makeAFun( "restriction", 3, false );
+
+    private static final AFun FACET = factory.makeAFun( "facet", 2, false );
+
+    private static final AFun UNKNOWN = factory.makeAFun( "unknown", 0, false );
+
     private Map uriToDatatype = new Hashtable();
 
     private Map datatypeToURI = new Hashtable();
@@ -71,6 +87,10 @@ public class DatatypeReasoner {
 
     private Map loadedSchemas = new HashMap();
 
+    private Map definitions = new HashMap();
+
+    private Set builtIns;
+
     private int datatypeCount = 0;
 
     public DatatypeReasoner() {
@@ -159,6 +179,8 @@ public class DatatypeReasoner {
 //        defineDatatype( Namespaces.XSD + "NMTOKEN", XSDString.instance );
 //        defineDatatype( Namespaces.XSD + "Name", XSDString.instance );
 //        defineDatatype( Namespaces.XSD + "NCName", XSDString.instance );
+
+        builtIns = new HashSet( uriToDatatype.keySet() );
     }
 
     final public Set getDatatypeURIs() {
@@ -173,6 +195,14 @@ public class DatatypeReasoner {
         return datatypeToURI.containsKey( datatype );
     }
 
+    /**
+     * Returns true if the datatype is defined by every reasoner, e.g. the XML Schema
+     * datatypes.
+     */
+    final public boolean isBuiltIn( String datatypeURI ) {
+        return builtIns.contains( datatypeURI );
+    }
+
     public void defineDatatype( String name, Datatype dt ) {
         if( uriToDatatype.containsKey( name ) )
             throw new RuntimeException( name + " is already defined" );
@@ -185,6 +215,8 @@ public class DatatypeReasoner {
 
     public void defineUnknownDatatype( String name ) {
         defineDatatype( name, new UnknownDatatype() );
+
+        definitions.put( name, factory.makeAppl( UNKNOWN ) );
     }
 
     public XSNamedMap parseXMLSchema( URL url ) throws Exception {
@@ -261,11 +293,11 @@ public class DatatypeReasoner {
                     + simpleType.getLexicalFacetValue( XSSimpleType.FACET_MAXINCLUSIVE ) );
 
             String baseType = Namespaces.XSD + simpleType.getBaseType().getName();
-            XSDAtomicType xsdType = (XSDAtomicType) getDatatype( baseType );
 
             // loop over all the facets
             if( DEBUG )
                 System.out.println( "Facets: " );
+            List facetList = new ArrayList();
             XSObjectList facets = simpleType.getFacets();
             for( int i = 0; i < facets.getLength(); i++ ) {
                 XSFacet facet = (XSFacet) facets.item( i );
@@ -273,22 +305,24 @@ public class DatatypeReasoner {
                     System.out.println( i + ") Facet kind: " + facet.getFacetKind()
                         + " Facet name = " + facet.getName() + " Facet value: "
                         + facet.getLexicalFacetValue() );
-                Object facetValue = xsdType.getValue( facet.getLexicalFacetValue(), baseType );
-                xsdType = xsdType.deriveByRestriction( facet.getFacetKind(), facetValue );
+                facetList.add( factory.makeAppl( FACET, 
+                    factory.makeInt( facet.getFacetKind() ), 
+                    ATermUtils.makeTermAppl( facet.getLexicalFacetValue() ) ) );
             }
 
             // enumeration case
+            List enumList = new ArrayList();
             StringList enumValues = simpleType.getLexicalEnumeration();
-            if( enumValues != null && enumValues.getLength() > 0 ) {
-                if( DEBUG ) {
-                    for( int k = 0; k < enumValues.getLength(); k++ ) {
+            if( enumValues != null ) {
+                for( int k = 0; k < enumValues.getLength(); k++ ) {
+                    if( DEBUG )
                         System.out.println( "enum: " + enumValues.item( k ) );
-                    }
+                    enumList.add( ATermUtils.makeTermAppl( enumValues.item( k ) ) );
                 }
-                xsdType = xsdType.deriveByRestriction( XSSimpleTypeDefinition.FACET_ENUMERATION, enumValues );
             }
 
-            defineDatatype( name, xsdType );
+            defineDatatype( name, factory.makeAppl( RESTRICTION, ATermUtils.makeTermAppl( baseType ),
+                ATermUtils.makeList( facetList ), ATermUtils.makeList( enumList ) ) );
         }
         catch( IOException e ) {
             if( DEBUG )
@@ -296,7 +330,7 @@ public class DatatypeReasoner {
             System.err
                 .println( "WARNING: Cannot load XML schema associated with the user-defined datatype "
                     + name );
-            defineDatatype( name, new UnknownDatatype() );
+            defineUnknownDatatype( name );
         }
         catch( Exception e ) {
             if( DEBUG )
@@ -304,8 +338,50 @@ public class DatatypeReasoner {
             System.err
                 .println( "WARNING: Cannot process the definition of the user-defined datatype "
                     + name );
-            defineDatatype( name, new UnknownDatatype() );
+            defineUnknownDatatype( name );
+        }
+    }
+
+    /**
+     * Define a datatype from a definition returned by {@link #getDefinition(String)}. 
+     * Datatypes derived from XML Schema types are defined again from the facets in the
+     * definition without loading the schema.
+     */
+    public void defineDatatype( String name, ATermAppl definition ) {
+        AFun fun = definition.getAFun();
+        if( fun.equals( ENUMERATION ) ) {
+            defineEnumeration( name, ATermUtils.listToSet( (ATermList) definition.getArgument( 0 ) ) );
         }
+        else if( fun.equals( RESTRICTION ) ) {
+            String baseType = ((ATermAppl) definition.getArgument( 0 )).getName();
+            XSDAtomicType xsdType = (XSDAtomicType) getDatatype( baseType );
+
+            ATermList facets = (ATermList) definition.getArgument( 1 );
+            for( ; !facets.isEmpty(); facets = facets.getNext() ) {
+                ATermAppl facet = (ATermAppl) facets.getFirst();
+                int kind = ((ATermInt) facet.getArgument( 0 )).getInt();
+                String lexicalValue = ((ATermAppl) facet.getArgument( 1 )).getName();
+                Object facetValue = xsdType.getValue( lexicalValue, baseType );
+                xsdType = xsdType.deriveByRestriction( kind, facetValue );
+            }
+
+            ATermList enumValues = (ATermList) definition.getArgument( 2 );
+            if( !enumValues.isEmpty() ) {
+                List values = new ArrayList();
+                for( ; !enumValues.isEmpty(); enumValues = enumValues.getNext() )
+                    values.add( ((ATermAppl) enumValues.getFirst()).getName() );
+                xsdType = xsdType.deriveByRestriction( XSSimpleTypeDefinition.FACET_ENUMERATION, values );
+            }
+
+            defineDatatype( name, xsdType );
+
+            definitions.put( name, definition );
+        }
+        else if( fun.equals( UNKNOWN ) ) {
+            defineUnknownDatatype( name );
+        }
+        else
+            throw new UnsupportedFeatureException( "Invalid datatype definition " + definition );
     }
 
     public String defineDatatype( Datatype dt ) {
@@ -323,6 +399,7 @@ public class DatatypeReasoner {
         // clean up the cached results
         uriToDatatype.remove( name );
         datatypeToURI.remove( dt );
+        definitions.remove( name );
         normalized.remove( dt );
 
         ATermAppl term = ATermUtils.makeTermAppl( name );
@@ -399,6 +476,33 @@ public class DatatypeReasoner {
         return normalize( new BaseUnionDatatype( enums ) );
     }
 
+    /**
+     * Define a datatype whose value space is the given set of literals. 
+     */
+    public void defineEnumeration( String name, Set values ) {
+        defineDatatype( name, enumeration( values ) );
+
+        // the literals are sorted so that the same enumerations have equal definitions
+        Map sorted = new TreeMap();
+        for( Iterator i = values.iterator(); i.hasNext(); ) {
+            ATermAppl value = (ATermAppl) i.next();
+            sorted.put( value.toString(), value );
+        }
+        definitions.put( name, factory.makeAppl( ENUMERATION, 
+            ATermUtils.makeList( new ArrayList( sorted.values() ) ) ) );
+    }
+
+    /**
+     * Returns a term that describes how the datatype with the given name was defined.
+     * Datatypes with equal definitions have the same value space and the definition can
+     * be used to define the same datatype in another reasoner without loading the XML 
+     * Schema again. Returns null for the built-in datatypes and the datatypes that were 
+     * defined directly with a {@link Datatype} object.
+     */
+    public ATermAppl getDefinition( String name ) {
+        return (ATermAppl) definitions.get( name );
+    }
+
     public Datatype getDatatype( ATermAppl datatypeTerm ) {
         Datatype datatype = (Datatype) termToDatatype.get( datatypeTerm );
 
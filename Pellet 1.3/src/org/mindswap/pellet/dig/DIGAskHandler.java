@@ -22,6 +22,8 @@
 
 package org.mindswap.pellet.dig;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -44,11 +46,23 @@ import aterm.ATermAppl;
 public class DIGAskHandler extends DIGTellHandler {
     private DIGResponse response;
     
+    /**
+     * The number of asks written since {@link #startAsks(Writer)} was called
+     */
+    private int askCount;
+    
     public DIGAskHandler() {
         response = new DIGResponse( DIGConstants.RESPONSES );
     }
     
     public Document asks( Element asks ) {
+        // answering asks changes the reasoning state of the KB
+        synchronized( kb ) {
+            return asksInternal( asks );
+        }
+    }
+    
+    private Document asksInternal( Element asks ) {
         Document doc = null;
         
         if( !kb.isConsistent() ) {
@@ -58,87 +72,8 @@ public class DIGAskHandler extends DIGTellHandler {
             response = new DIGResponse( DIGConstants.RESPONSES );
 
             ElementList askElements = getElements( asks );
-            for(int i = 0; i < askElements.getLength(); i++) {
-                Element ask = askElements.item( i );
-                String tag = getTagName( ask );
-                String id = getId( ask );
-                
-                Element[] params = getElementArray( ask );
-                
-                if( tag.equals( TOLD_VALUES ) ) {
-                    toldValues( params[0], params[1], id );
-                }
-                else {
-                    Element result = null;            
-                    if( tag.equals( ALL_CONCEPT_NAMES ) ) {
-                        result = allConceptNames();
-                    }
-                    else if( tag.equals( ALL_ROLE_NAMES ) ) {
-                        result = allRoleNames();
-                    }
-                    else if( tag.equals( ALL_INDIVIDUALS ) ) {
-                        result = allIndividuals();
-                    }
-                    else if( tag.equals( SATISFIABLE ) ) {
-                        result = satisfiable( params[0] );
-                    }
-                    else if( tag.equals( SUBSUMES ) ) {
-                        result = subsumes( params[0], params[1] );
-                    }
-                    else if( tag.equals( PARENTS ) ) {
-                        result = parents( params[0] );
-                    }
-                    else if( tag.equals( ANCESTORS ) ) {
-                        result = ancestors( params[0] );
-                    }
-                    else if( tag.equals( CHILDREN ) ) {
-                        result = children( params[0] );
-                    }
-                    else if( tag.equals( DESCENDANTS ) ) {
-                        result = descendants( params[0] );
-                    }
-                    else if( tag.equals( EQUIVALENTS ) ) {
-                        result = equivalents( params[0] );
-                    }
-                    else if( tag.equals( DISJOINT ) ) {
-                        result = disjoint( params[0], params[1] );
-                    }
-                    else if( tag.equals( RPARENTS ) ) {
-                        result = rparents( params[0] );
-                    }
-                    else if( tag.equals( RANCESTORS ) ) {
-                        result = rancestors( params[0] );
-                    }
-                    else if( tag.equals( RCHILDREN ) ) {
-                        result = rchildren( params[0] );
-                    }
-                    else if( tag.equals( RDESCENDANTS ) ) {
-                        result = rdescendants( params[0] );
-                    }
-                    else if( tag.equals( INSTANCES ) ) {
-                        result = instances( params[0] );
-                    }
-                    else if( tag.equals( INSTANCE ) ) {
-                        result = instance( params[0], params[1] );
-                    }
-                    else if( tag.equals( TYPES ) ) {
-                        result = types( params[0] );
-                    }
-                    else if( tag.equals( ROLE_FILLERS ) ) {
-                        result = roleFillers( params[0], params[1] );
-                    }
-                    else if( tag.equals( RELATED_INDIVIDUALS ) ) {
-                        result = relatedIndividuals( params[0] );
-                    }
-                    else {
-                        result = response.addError( 
-                            DIGErrors.UNKNOWN_ASK_OPERATION, tag + " is not a known ask operation" );
-                        log.error( "ERROR (" + DIGErrors.UNKNOWN_ASK_OPERATION + ") : " + tag + " is not a known ask operation" );
-                    }
-
-                    result.setAttribute( ID, id );
-                }
-            }
+            for(int i = 0; i < askElements.getLength(); i++)
+                ask( askElements.item( i ) );
             
             if( askElements.isEmpty() )
                 response.addElement( DIGConstants.OK );
@@ -149,6 +84,143 @@ public class DIGAskHandler extends DIGTellHandler {
         return doc;
     }
 
+    /**
+     * Start a response whose elements are written to the given writer as soon as each ask
+     * is answered, so the response is never kept in memory as a whole. The asks are given
+     * one at a time with {@link #writeAsk(Element)} and the response is completed with
+     * {@link #endAsks()}. Returns false, without writing anything, if the KB is not
+     * consistent.
+     */
+    public boolean startAsks( Writer out ) throws IOException {
+        synchronized( kb ) {
+            if( !kb.isConsistent() )
+                return false;
+        }
+        
+        response = new DIGResponse( DIGConstants.RESPONSES, out );
+        askCount = 0;
+        
+        return true;
+    }
+
+    /**
+     * Answer the ask and write its result to the response started by
+     * {@link #startAsks(Writer)}. The response header has already been written so a failing
+     * ask is answered with an error element rather than failing the whole response. The
+     * result is written only after the ask is answered so the error element replaces any
+     * partial result of the failing ask.
+     */
+    public void writeAsk( Element ask ) throws IOException {
+        try {
+            // the KB is locked only while the ask is answered, not while the result
+            // is written
+            synchronized( kb ) {
+                ask( ask );
+            }
+        }
+        catch( RuntimeException e ) {
+            log.error( "ERROR (" + DIGErrors.GENERAL_ASK_ERROR + ") : " + e );
+            response.discard();
+            Element error = response.addError( DIGErrors.GENERAL_ASK_ERROR, e.getMessage() );
+            error.setAttribute( ID, getId( ask ) );
+        }
+        
+        askCount++;
+        response.flush();
+    }
+
+    public void endAsks() throws IOException {
+        if( askCount == 0 )
+            response.addElement( DIGConstants.OK );
+        
+        response.close();
+    }
+
+    /**
+     * Process a single ask command, i.e. one child of an <code>asks</code> element, and
+     * add its result to the current response.
+     */
+    public void ask( Element ask ) {
+        String tag = getTagName( ask );
+        String id = getId( ask );
+        
+        Element[] params = getElementArray( ask );
+        
+        if( tag.equals( TOLD_VALUES ) ) {
+            toldValues( params[0], params[1], id );
+        }
+        else {
+            Element result = null;            
+            if( tag.equals( ALL_CONCEPT_NAMES ) ) {
+                result = allConceptNames();
+            }
+            else if( tag.equals( ALL_ROLE_NAMES ) ) {
+                result = allRoleNames();
+            }
+            else if( tag.equals( ALL_INDIVIDUALS ) ) {
+                result = allIndividuals();
+            }
+            else if( tag.equals( SATISFIABLE ) ) {
+                result = satisfiable( params[0] );
+            }
+            else if( tag.equals( SUBSUMES ) ) {
+                result = subsumes( params[0], params[1] );
+            }
+            else if( tag.equals( PARENTS ) ) {
+                result = parents( params[0] );
+            }
+            else if( tag.equals( ANCESTORS ) ) {
+                result = ancestors( params[0] );
+            }
+            else if( tag.equals( CHILDREN ) ) {
+                result = children( params[0] );
+            }
+            else if( tag.equals( DESCENDANTS ) ) {
+                result = descendants( params[0] );
+            }
+            else if( tag.equals( EQUIVALENTS ) ) {
+                result = equivalents( params[0] );
+            }
+            else if( tag.equals( DISJOINT ) ) {
+                result = disjoint( params[0], params[1] );
+            }
+            else if( tag.equals( RPARENTS ) ) {
+                result = rparents( params[0] );
+            }
+            else if( tag.equals( RANCESTORS ) ) {
+                result = rancestors( params[0] );
+            }
+            else if( tag.equals( RCHILDREN ) ) {
+                result = rchildren( params[0] );
+            }
+            else if( tag.equals( RDESCENDANTS ) ) {
+                result = rdescendants( params[0] );
+            }
+            else if( tag.equals( INSTANCES ) ) {
+                result = instances( params[0] );
+            }
+            else if( tag.equals( INSTANCE ) ) {
+                result = instance( params[0], params[1] );
+            }
+            else if( tag.equals( TYPES ) ) {
+                result = types( params[0] );
+            }
+            else if( tag.equals( ROLE_FILLERS ) ) {
+                result = roleFillers( params[0], params[1] );
+            }
+            else if( tag.equals( RELATED_INDIVIDUALS ) ) {
+                result = relatedIndividuals( params[0] );
+            }
+            else {
+                result = response.addError( 
+                    DIGErrors.UNKNOWN_ASK_OPERATION, tag + " is not a known ask operation" );
+                log.error( "ERROR (" + DIGErrors.UNKNOWN_ASK_OPERATION + ") : " + tag + " is not a known ask operation" );
+            }
+
+            result.setAttribute( ID, id );
+        }
+    }
+
     public Element allConceptNames() {
         Element conceptSet = response.addElement( CONCEPT_SET );
         
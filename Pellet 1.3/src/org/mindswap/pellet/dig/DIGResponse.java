@@ -1,5 +1,8 @@
 package org.mindswap.pellet.dig;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
@@ -9,6 +12,8 @@ import org.apache.xerces.dom.DocumentImpl;
 import org.mindswap.pellet.utils.ATermUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 
 import aterm.ATermAppl;
 
@@ -24,6 +29,12 @@ public class DIGResponse {
     private Document doc;
     private Element root;    
     
+    /**
+     * The writer the response is written to or null if the response is only built as a
+     * document
+     */
+    private Writer out;
+    
     public DIGResponse( String rootTag ) {
         doc = new DocumentImpl();
         
@@ -37,10 +48,125 @@ public class DIGResponse {
         doc.appendChild( root );
     }
     
+    /**
+     * Create a response that is written to the given writer while it is being built. The
+     * XML declaration and the start tag of the root element are written immediately. The
+     * elements added to the root are written and removed from the document every time
+     * {@link #flush()} is called and {@link #close()} ends the root element.
+     */
+    public DIGResponse( String rootTag, Writer out ) throws IOException {
+        this( rootTag );
+        
+        this.out = out;
+        
+        out.write( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+        writeStartTag( out, root );
+        out.write( ">\n" );
+    }
+    
     public Document getDocument() {
         return doc;
     }
     
+    /**
+     * Write the elements added to the root since the last flush and remove them from the
+     * document. The elements are serialized completely before anything is written so a 
+     * failure while serializing does not leave a partial element in the output. Does 
+     * nothing if this response is not written to a writer.
+     */
+    public void flush() throws IOException {
+        if( out == null )
+            return;
+        
+        StringWriter buffer = new StringWriter();
+        for( Node child = root.getFirstChild(); child != null; child = child.getNextSibling() )
+            write( buffer, child, 1 );
+        
+        String elements = buffer.toString();
+        if( DIGHandler.log.isDebugEnabled() ) DIGHandler.log.debug( "\n" + elements );
+        
+        out.write( elements );
+        out.flush();
+        
+        discard();
+    }
+    
+    /**
+     * Remove the elements added to the root since the last flush without writing them.
+     */
+    public void discard() {
+        for( Node child = root.getFirstChild(); child != null; child = root.getFirstChild() )
+            root.removeChild( child );
+    }
+    
+    public void close() throws IOException {
+        flush();
+        
+        out.write( "</" + root.getTagName() + ">\n" );
+        out.flush();
+    }
+    
+    private static void write( Writer out, Node node, int depth ) throws IOException {
+        if( node.getNodeType() == Node.TEXT_NODE ) {
+            out.write( escape( node.getNodeValue() ) );
+            return;
+        }
+        
+        Element element = (Element) node;
+        
+        indent( out, depth );
+        writeStartTag( out, element );
+        
+        Node first = element.getFirstChild();
+        if( first == null )
+            out.write( "/>\n" );
+        else if( first.getNodeType() == Node.TEXT_NODE ) {
+            // text is only used for the values and the error details
+            out.write( ">" );
+            for( Node child = first; child != null; child = child.getNextSibling() )
+                write( out, child, depth + 1 );
+            out.write( "</" + element.getTagName() + ">\n" );
+        }
+        else {
+            out.write( ">\n" );
+            for( Node child = first; child != null; child = child.getNextSibling() )
+                write( out, child, depth + 1 );
+            indent( out, depth );
+            out.write( "</" + element.getTagName() + ">\n" );
+        }
+    }
+    
+    private static void writeStartTag( Writer out, Element element ) throws IOException {
+        out.write( "<" + element.getTagName() );
+        
+        NamedNodeMap attributes = element.getAttributes();
+        for( int i = 0; i < attributes.getLength(); i++ ) {
+            Node attr = attributes.item( i );
+            out.write( " " + attr.getNodeName() + "=\"" + escape( attr.getNodeValue() ) + "\"" );
+        }
+    }
+    
+    private static void indent( Writer out, int depth ) throws IOException {
+        for( int i = 0; i < depth; i++ )
+            out.write( "    " );
+    }
+    
+    private static String escape( String str ) {
+        StringBuffer sb = new StringBuffer( str.length() );
+        for( int i = 0; i < str.length(); i++ ) {
+            char c = str.charAt( i );
+            switch( c ) {
+            case '<': sb.append( "&lt;" ); break;
+            case '>': sb.append( "&gt;" ); break;
+            case '&': sb.append( "&amp;" ); break;
+            case '"': sb.append( "&quot;" ); break;
+            default: sb.append( c );
+            }
+        }
+        
+        return sb.toString();
+    }
+    
     protected Element addElement( String tag ) {
         return addElement( tag, root );
     }
@@ -0,0 +1,173 @@
+package org.mindswap.pellet.dig;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.xerces.dom.DocumentImpl;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Processes a DIG request while it is being parsed so that the request is never kept in
+ * memory as a whole. For <code>tells</code> and <code>asks</code> requests, only the
+ * command being parsed is built as a DOM element. Each command is processed by the reasoner
+ * as soon as its end tag is read and then discarded. The results of the asks are written
+ * to the output as soon as they are computed. Other requests are small so they are built
+ * as a document and processed with {@link PelletDIGReasoner#process(Document)}.
+ *
+ * <p>The KB of a <code>tells</code> or <code>asks</code> request is locked with
+ * {@link PelletDIGReasoner#lockKB(String, boolean)} as soon as the start tag of the request
+ * is read. The reasoner releases the lock after the whole request is parsed.</p>
+ */
+class DIGStreamHandler extends DefaultHandler {
+    private PelletDIGReasoner reasoner;
+
+    private Writer out;
+
+    private Document doc;
+
+    /**
+     * The root element of the request
+     */
+    private Element request;
+
+    /**
+     * The element whose children are being parsed
+     */
+    private Element current;
+
+    /**
+     * True if the children of the request are processed one at a time
+     */
+    private boolean streamed;
+
+    /**
+     * The error response for a streamed request that cannot be processed, e.g. because
+     * the KB is not known. The children of the request are skipped if there is an error.
+     */
+    private Document error;
+
+    public DIGStreamHandler( PelletDIGReasoner reasoner, Writer out ) {
+        this.reasoner = reasoner;
+        this.out = out;
+    }
+
+    public void startDocument() {
+        doc = new DocumentImpl();
+        request = current = null;
+        streamed = false;
+        error = null;
+    }
+
+    public void startElement( String uri, String localName, String qName, Attributes attrs )
+        throws SAXException {
+        Element element = doc.createElement( qName );
+        for( int i = 0; i < attrs.getLength(); i++ )
+            element.setAttribute( attrs.getQName( i ), attrs.getValue( i ) );
+
+        if( request == null ) {
+            request = element;
+            doc.appendChild( request );
+            startRequest();
+        }
+        else
+            current.appendChild( element );
+
+        current = element;
+    }
+
+    public void endElement( String uri, String localName, String qName ) throws SAXException {
+        Element element = current;
+        Node parent = element.getParentNode();
+        current = (parent instanceof Element) ? (Element) parent : null;
+
+        if( element == request )
+            endRequest();
+        else if( streamed && current == request ) {
+            if( error == null )
+                processCommand( element );
+            request.removeChild( element );
+        }
+    }
+
+    public void characters( char[] ch, int start, int length ) {
+        // the whitespace between the streamed commands would pile up in the request
+        if( current == null || (streamed && current == request) )
+            return;
+
+        // the parser may report a text in several chunks, e.g. around entity references
+        String text = new String( ch, start, length );
+        Node last = current.getLastChild();
+        if( last instanceof Text )
+            ((Text) last).appendData( text );
+        else
+            current.appendChild( doc.createTextNode( text ) );
+    }
+
+    private void startRequest() throws SAXException {
+        String cmdName = DIGHandler.getTagName( request );
+        if( DIGHandler.log.isDebugEnabled() ) DIGHandler.log.debug( "Request " + cmdName + " " + DIGHandler.getURI( request ) );
+        boolean isTells = cmdName.equals( DIGConstants.TELLS );
+        boolean isAsks = cmdName.equals( DIGConstants.ASKS );
+
+        streamed = isTells || isAsks;
+        if( !streamed )
+            return;
+
+        try {
+            String uri = DIGHandler.getURI( request );
+
+            if( !reasoner.lockKB( uri, isTells ) )
+                error = DIGResponse.createErrorResponse( DIGErrors.UNKNOWN_OR_STALE_KB_URI, uri
+                    + " is not known KB URI" );
+            else if( isAsks && !reasoner.startAsks( out ) )
+                error = DIGResponse.createErrorResponse( DIGErrors.GENERAL_ASK_ERROR, "Inconsistent KB" );
+        }
+        catch( IOException e ) {
+            throw new SAXException( e );
+        }
+        catch( RuntimeException e ) {
+            e.printStackTrace();
+            error = DIGResponse.createErrorResponse( isTells
+                ? DIGErrors.GENERAL_TELL_ERROR
+                : DIGErrors.GENERAL_ASK_ERROR, e.getMessage() );
+        }
+    }
+
+    private void processCommand( Element cmd ) throws SAXException {
+        if( DIGHandler.log.isDebugEnabled() ) DIGHandler.log.debug( "\n" + reasoner.serialize( cmd ) + "\n" );
+        
+        try {
+            if( DIGHandler.getTagName( request ).equals( DIGConstants.TELLS ) )
+                reasoner.tell( cmd );
+            else
+                reasoner.writeAsk( cmd );
+        }
+        catch( IOException e ) {
+            throw new SAXException( e );
+        }
+    }
+
+    private void endRequest() throws SAXException {
+        try {
+            if( !streamed ) {
+                if( DIGHandler.log.isDebugEnabled() ) DIGHandler.log.debug( "\n" + reasoner.serialize( doc ) + "\n" );
+                reasoner.write( reasoner.process( doc ), out );
+            }
+            else if( error != null )
+                reasoner.write( error, out );
+            else if( DIGHandler.getTagName( request ).equals( DIGConstants.TELLS ) )
+                reasoner.write( DIGResponse.createOkResponse(), out );
+            else
+                reasoner.endAsks();
+        }
+        catch( IOException e ) {
+            throw new SAXException( e );
+        }
+    }
+}
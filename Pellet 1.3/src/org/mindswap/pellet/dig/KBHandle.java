@@ -0,0 +1,111 @@
+package org.mindswap.pellet.dig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mindswap.pellet.KnowledgeBase;
+import org.mindswap.pellet.utils.ReadWriteLock;
+
+/**
+ * A KB managed by the DIG reasoner and the lock that controls the access to it. Tells
+ * are processed while holding the write lock. Asks are processed while holding the read
+ * lock so asks on the same KB can be answered at the same time. Answering an ask
+ * changes the reasoning state of a KB (cached results, lazy classification, etc.) so
+ * each reader uses its own KB: the first reader uses the KB itself and the readers that
+ * arrive while it is in use get a copy created by {@link KnowledgeBase#copyForThread(boolean)}.
+ * Each copy has its own taxonomy since asks about class expressions add the expressions
+ * to the taxonomy. The copies are kept for the later readers until the KB is changed by 
+ * a writer.
+ */
+class KBHandle {
+    private KnowledgeBase kb;
+
+    private ReadWriteLock lock = new ReadWriteLock();
+
+    /**
+     * The number of readers using the KB itself
+     */
+    private int kbReaders = 0;
+
+    /**
+     * The copies of the KB that are not used by any reader
+     */
+    private List copies = new ArrayList();
+
+    public KBHandle( KnowledgeBase kb ) {
+        this.kb = kb;
+    }
+
+    public KnowledgeBase getKB() {
+        return kb;
+    }
+
+    /**
+     * Acquire the read lock and return the KB the caller should use to answer asks. The
+     * returned KB should be given back with {@link #unlockRead(KnowledgeBase)}.
+     */
+    public KnowledgeBase lockRead() {
+        lock.lockRead();
+
+        synchronized( this ) {
+            if( kbReaders == 0 ) {
+                kbReaders++;
+                return kb;
+            }
+
+            if( !copies.isEmpty() )
+                return (KnowledgeBase) copies.remove( copies.size() - 1 );
+        }
+
+        KnowledgeBase copy = null;
+        try {
+            // the asks answered using the KB itself are synchronized on the KB so the
+            // copy is not created while its state is being changed
+            synchronized( kb ) {
+                // asks on an inconsistent KB are not answered so there is nothing to copy
+                if( kb.isConsistent() ) {
+                    // the KB is realized first so the copy does not have to do it again
+                    kb.realize();
+                    copy = kb.copyForThread( true );
+                }
+            }
+        }
+        catch( RuntimeException e ) {
+            lock.unlockRead();
+            throw e;
+        }
+
+        if( copy == null ) {
+            synchronized( this ) {
+                kbReaders++;
+            }
+            return kb;
+        }
+
+        return copy;
+    }
+
+    public void unlockRead( KnowledgeBase reader ) {
+        synchronized( this ) {
+            if( reader == kb )
+                kbReaders--;
+            else
+                copies.add( reader );
+        }
+
+        lock.unlockRead();
+    }
+
+    public void lockWrite() {
+        lock.lockWrite();
+
+        // the copies will not reflect the changes made by the writer
+        synchronized( this ) {
+            copies.clear();
+        }
+    }
+
+    public void unlockWrite() {
+        lock.unlockWrite();
+    }
+}
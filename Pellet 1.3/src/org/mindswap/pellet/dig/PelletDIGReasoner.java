@@ -27,11 +27,13 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.rmi.server.UID;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.apache.xerces.parsers.DOMParser;
+import org.apache.xerces.parsers.SAXParser;
 import org.apache.xml.serialize.OutputFormat;
 import org.apache.xml.serialize.XMLSerializer;
 import org.mindswap.pellet.KnowledgeBase;
@@ -57,6 +59,13 @@ public class PelletDIGReasoner extends DIGAskHandler {
     private Map allKBs;
     private String selectedKB;
     
+    /**
+     * The KB locked by this reasoner for the request being processed and the KB
+     * used to answer the asks (see {@link KBHandle#lockRead()})
+     */
+    private KBHandle lockedKB;
+    private KnowledgeBase reader;
+    
     private Document identifier;
     
     private static final String[] supportLang = {
@@ -81,31 +90,52 @@ public class PelletDIGReasoner extends DIGAskHandler {
 	    INSTANCES, TYPES, INSTANCE, ROLE_FILLERS, RELATED_INDIVIDUALS, TOLD_VALUES
     };
     
-    private DOMParser parser;
+    private SAXParser parser;
 	
     public PelletDIGReasoner() {
-        allKBs = new HashMap();
+        this( Collections.synchronizedMap( new HashMap() ) );
+    }
+
+    /**
+     * Create a reasoner that shares the KBs of the given reasoner. The requests processed
+     * by each reasoner are handled one at a time but different reasoners sharing the same
+     * KBs can process requests at the same time. The access to the KBs is controlled by
+     * a read/write lock for each KB so tells are processed one at a time whereas asks
+     * on the same KB are answered at the same time.
+     */
+    public PelletDIGReasoner( PelletDIGReasoner reasoner ) {
+        this( reasoner.allKBs );
+    }
+    
+    private PelletDIGReasoner( Map allKBs ) {
+        this.allKBs = allKBs;
         
-        parser = new DOMParser();
-    	try {
-            parser.setFeature("http://apache.org/xml/features/dom/include-ignorable-whitespace", false);
-        } 
-    	catch(Exception e) {
-           throw new RuntimeException( e );
-        }
+        parser = new SAXParser();
 
         selectedKB = "";
     }
 
+    /**
+     * Process the DIG request read from the input stream and write the response to the
+     * output stream. The request is processed while it is being parsed (see
+     * {@link DIGStreamHandler}) so the memory used does not grow with the number of tells
+     * or asks in the request.
+     */
     public void process( InputStream in, OutputStream out ) throws SAXException, IOException {
-        parser.parse( new InputSource( new InputStreamReader( in ) ) );
-
-		Document doc = parser.getDocument();
-        		
-		if( log.isDebugEnabled() ) log.debug( "\n" + serialize( doc ) + "\n");
-		
-        Document result = process( doc );
+        Writer writer = new OutputStreamWriter( out, "UTF-8" );
+        
+        parser.setContentHandler( new DIGStreamHandler( this, writer ) );
+        try {
+            parser.parse( new InputSource( new InputStreamReader( in ) ) );
+        }
+        finally {
+            unlockKB();
+        }
         
+        writer.flush();
+    }
+    
+    void write( Document result, Writer out ) throws IOException {
         OutputFormat format  = new OutputFormat( result ); 
         format.setLineWidth( 0 );             
         format.setPreserveSpace( false );
@@ -113,7 +143,7 @@ public class PelletDIGReasoner extends DIGAskHandler {
         format.setIndenting( true );
         format.setOmitXMLDeclaration( false );
         
-        XMLSerializer serial = new XMLSerializer( new OutputStreamWriter( out ), format );
+        XMLSerializer serial = new XMLSerializer( out, format );
         serial.asDOMSerializer();                            
 
         serial.serialize( result.getDocumentElement() );
@@ -151,26 +181,30 @@ public class PelletDIGReasoner extends DIGAskHandler {
             try {
                 String uri = getURI( cmdNode );
                 
-                if( selectKB( uri ) )
+                if( lockKB( uri, false ) )
                     result = asks( cmdNode );
                 else
                     result = DIGResponse.createErrorResponse( DIGErrors.UNKNOWN_OR_STALE_KB_URI, uri + " is not known KB URI" );
             } catch( Exception e ) {
                 e.printStackTrace();
                 result = DIGResponse.createErrorResponse( DIGErrors.GENERAL_ASK_ERROR, e.getMessage() );           
+            } finally {
+                unlockKB();
             }
         }
         else if( cmdName.equals( DIGConstants.TELLS ) ) {
             try {
                 String uri = getURI( cmdNode );
 
-                if( selectKB( uri ) )
+                if( lockKB( uri, true ) )
                     result = tells( cmdNode );
                 else
                     result = DIGResponse.createErrorResponse( DIGErrors.UNKNOWN_OR_STALE_KB_URI, uri + " is not known KB URI" );
             } catch( Exception e ) {
                 e.printStackTrace();
                 return DIGResponse.createErrorResponse( DIGErrors.GENERAL_TELL_ERROR, e.getMessage() );
+            } finally {
+                unlockKB();
             }
         }
         else
@@ -183,17 +217,66 @@ public class PelletDIGReasoner extends DIGAskHandler {
         if( uri.equals( selectedKB ) )
             return true;
         
-        if( !allKBs.containsKey( uri ) )
+        KBHandle handle = (KBHandle) allKBs.get( uri );
+        if( handle == null )
             return false;
         
         selectedKB = uri;
         
-        KnowledgeBase kb = (KnowledgeBase) allKBs.get( uri );
+        setKB( handle.getKB() );
+        
+        return true;
+    }
+
+    /**
+     * Select the KB with the given URI and lock it until {@link #unlockKB()} is called.
+     * With a read lock, the selected KB is the one returned by {@link KBHandle#lockRead()}
+     * which might be a copy of the KB. Returns false if there is no such KB.
+     */
+    public boolean lockKB( String uri, boolean write ) {
+        unlockKB();
+        
+        KBHandle handle = (KBHandle) allKBs.get( uri );
+        if( handle == null )
+            return false;
+        
+        if( write )
+            handle.lockWrite();
+        else
+            reader = handle.lockRead();
+        lockedKB = handle;
         
-        setKB( kb );
+        // the KB might have been released while waiting for the lock
+        if( allKBs.get( uri ) != handle ) {
+            unlockKB();
+            return false;
+        }
+        
+        selectedKB = uri;
+        setKB( write ? handle.getKB() : reader );
         
         return true;
     }
+    
+    /**
+     * Release the lock acquired by {@link #lockKB(String, boolean)}, if any.
+     */
+    public void unlockKB() {
+        if( lockedKB == null )
+            return;
+        
+        if( reader != null )
+            lockedKB.unlockRead( reader );
+        else
+            lockedKB.unlockWrite();
+        
+        lockedKB = null;
+        reader = null;
+        
+        // the selected KB should not be used without the lock
+        selectedKB = "";
+        setKB( null );
+    }
 
     public void unselectKB( String uri ) {
         if( !uri.equals( selectedKB ) )
@@ -242,7 +325,7 @@ public class PelletDIGReasoner extends DIGAskHandler {
     public KnowledgeBase newKB( String newURI ) {
         KnowledgeBase newKB = new KnowledgeBase();
         
-        allKBs.put( newURI, newKB );
+        allKBs.put( newURI, new KBHandle( newKB ) );
         
         return newKB;
     }
@@ -250,7 +333,18 @@ public class PelletDIGReasoner extends DIGAskHandler {
     public boolean releaseKB(String uri) {
         unselectKB( uri );
         
-        allKBs.remove( uri );
+        KBHandle handle = (KBHandle) allKBs.get( uri );
+        if( handle == null )
+            return true;
+        
+        // wait until the KB is not used by other requests
+        handle.lockWrite();
+        try {
+            allKBs.remove( uri );
+        }
+        finally {
+            handle.unlockWrite();
+        }
         
         return true;
     }
@@ -44,11 +44,18 @@ import org.mortbay.util.MultiException;
  * An implementation of DIG server. This is a simple HTTP server that listens for the DIG 
  * commands and processes them through PelletDIGReasoner. 
  * 
- * The port that the server uses can be selected by the command line option:
+ * By default the requests are processed one at a time. In concurrent mode each request
+ * is processed by its own reasoner so requests for different KBs, and asks for the same
+ * KB, are processed at the same time by the threads of the server.
+ * 
+ * The server can be configured by the command line options:
  * <pre>
- * Usage: java PelletDIGServer [-port portNum]
+ * Usage: java PelletDIGServer [-port portNum] [-concurrent] [-threads num]
  *  -port portNum           The port number user by the server (default
  *                          port number used is 8081)
+ *  -concurrent             Process the requests at the same time
+ *  -threads num            The maximum number of threads used to process
+ *                          the requests (default is 10)
  *  -help                   Print this information
  * </pre>  
  * 
@@ -61,8 +68,16 @@ public class PelletDIGServer extends AbstractHttpHandler implements HttpHandler
     protected static Log log = LogFactory.getLog( PelletDIGServer.class );
     
     private PelletDIGReasoner reasoner;
+    
+    private boolean concurrent;
 
     public PelletDIGServer() {
+        this( false );
+    }
+
+    public PelletDIGServer( boolean concurrent ) {
+        this.concurrent = concurrent;
+        
         reasoner = new PelletDIGReasoner();
     }
 
@@ -71,7 +86,16 @@ public class PelletDIGServer extends AbstractHttpHandler implements HttpHandler
             
             response.setContentType( "text/html" );
 
-            reasoner.process( request.getInputStream(), response.getOutputStream() );
+            if( concurrent ) {
+                // a reasoner keeps the state of the request it is processing
+                PelletDIGReasoner requestReasoner = new PelletDIGReasoner( reasoner );
+                requestReasoner.process( request.getInputStream(), response.getOutputStream() );
+            }
+            else {
+                synchronized( reasoner ) {
+                    reasoner.process( request.getInputStream(), response.getOutputStream() );
+                }
+            }
 
         } catch(Exception e) {            
             e.printStackTrace();
@@ -81,18 +105,25 @@ public class PelletDIGServer extends AbstractHttpHandler implements HttpHandler
     
     public static int DEFAULT_PORT = 8081;
     
+    public static int DEFAULT_THREADS = 10;
+    
 	static void usage() {
 		System.out.println("Pellet DIG Server");
 		System.out.println("DIG Server that is backed by Pellet reasoner");
 		System.out.println("");
-		System.out.println("Usage: java PelletDIGServer [-port portNum]");
+		System.out.println("Usage: java PelletDIGServer [-port portNum] [-concurrent] [-threads num]");
 		System.out.println("   -port portNum           The port number user by the server (default");		
 		System.out.println("                           port number used is 8081)");		
+		System.out.println("   -concurrent             Process the requests at the same time");		
+		System.out.println("   -threads num            The maximum number of threads used to process");		
+		System.out.println("                           the requests (default is 10)");		
 		System.out.println("   -help                   Print this information");		
 	}
 
     public static void main(String[] args) {
         int port = DEFAULT_PORT;
+        int threads = DEFAULT_THREADS;
+        boolean concurrent = false;
 
 		for (int i = 0; i < args.length; i++) {
 			String arg = args[i];
@@ -109,6 +140,21 @@ public class PelletDIGServer extends AbstractHttpHandler implements HttpHandler
     				System.exit(1);
                 }
 			} 
+			else if (arg.equalsIgnoreCase("-concurrent")) { 
+			    concurrent = true;
+			} 
+			else if (arg.equalsIgnoreCase("-threads")) { 
+			    try {
+                    threads = Integer.parseInt( args[++i] );
+                } catch(NumberFormatException e1) {
+    				System.err.println("Invalid number of threads: " + args[i]);
+    				System.exit(1);
+                }
+			    if( threads < 2 ) {
+    				System.err.println("Number of threads should be at least 2: " + args[i]);
+    				System.exit(1);
+			    }
+			} 
 			else {
 				System.err.println("Unrecognized option: " + arg);
 				usage();
@@ -124,12 +170,12 @@ public class PelletDIGServer extends AbstractHttpHandler implements HttpHandler
             SocketListener listener=new SocketListener();
             listener.setPort( port );
             listener.setMinThreads( 2 );
-            listener.setMaxThreads( 10 );
+            listener.setMaxThreads( threads );
             server.addListener( listener );
 
             // Create a context 
             HttpContext context = server.addContext("/");
-            context.addHandler(new PelletDIGServer());
+            context.addHandler(new PelletDIGServer( concurrent ));
 
             // Start the http server
             server.start ();
@@ -141,6 +187,8 @@ public class PelletDIGServer extends AbstractHttpHandler implements HttpHandler
             System.out.print( " (" + vinfo.getReleaseDate() + ")");
             System.out.println();
             System.out.println( "Port: " + port );
+            if( concurrent )
+                System.out.println( "Concurrent mode with " + threads + " threads" );
             
             log.debug( "Debug is enabled" );
         } 
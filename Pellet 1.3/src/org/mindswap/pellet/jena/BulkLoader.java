@@ -0,0 +1,413 @@
+package org.mindswap.pellet.jena;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mindswap.pellet.EconnectedKB;
+import org.mindswap.pellet.KnowledgeBase;
+import org.mindswap.pellet.PelletOptions;
+import org.mindswap.pellet.exceptions.InternalReasonerException;
+import org.mindswap.pellet.exceptions.UnsupportedFeatureException;
+import org.mindswap.pellet.utils.ATermUtils;
+import org.mindswap.pellet.utils.FileUtils;
+import org.mindswap.pellet.utils.Timer;
+
+import aterm.ATermAppl;
+
+import com.hp.hpl.jena.graph.Factory;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.TripleMatch;
+import com.hp.hpl.jena.graph.impl.GraphBase;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.RDFReader;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.NullIterator;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+ * Loads large RDF documents to a KB without creating a Jena model for the instance data.
+ * The document is parsed as a stream and the triples that are simple ABox assertions, 
+ * i.e. a named individual having a named class or owl:Thing as a type or a value for a 
+ * property that is not an RDF, RDFS or OWL property, are collected in batches. All the 
+ * other triples (class and property definitions, anonymous individuals, etc.) and the 
+ * imported ontologies are stored in an in-memory graph that is loaded by 
+ * {@link OWLLoader}.
+ * 
+ * <p>The batches are converted to terms while the document is being parsed. If 
+ * {@link PelletOptions#LOADER_THREADS} is greater than one the conversion is done by a 
+ * pool of worker threads each of which caches the terms created for URIs so that every 
+ * URI is converted once per worker. After the rest of the document is loaded the
+ * assertions are added to the KB in the order they were parsed so the result is the 
+ * same as loading the whole document with {@link OWLLoader}.</p>
+ * 
+ * <p>E-connected KBs are not supported.</p>
+ */
+public class BulkLoader {
+    protected static Log log = LogFactory.getLog( BulkLoader.class );
+    
+    /**
+     * Maximum number of URI terms cached by each worker. The cache is cleared when it
+     * becomes larger than this value. 
+     */
+    private static final int MAX_CACHED_TERMS = 100000;
+    
+    private OWLLoader loader;
+    
+    // triples that are not simple ABox assertions
+    private Graph schema;
+    
+    // batches of ABox assertions in the order they were parsed
+    private List batches;
+    
+    // the batch being filled by the parser
+    private Batch current;
+    
+    // term cache used when there are no worker threads
+    private Map cache;
+    
+    private Thread[] workers;
+    
+    // batches waiting to be converted by the workers
+    private LinkedList queue;
+    
+    // true when the parser will not submit any more batches
+    private boolean parsed;
+    
+    // first failure that occurred in a worker
+    private Throwable failure;
+    
+    public BulkLoader() {
+        loader = new OWLLoader();
+    }
+    
+    public List getWarnings() {
+        return loader.getWarnings();
+    }
+    
+    /**
+     * Load the RDF/XML document from the given URI (with its imports)
+     */
+    public void load( String uri, KnowledgeBase kb ) throws UnsupportedFeatureException {
+        load( uri, "RDF/XML", kb );
+    }
+    
+    /**
+     * Load the document from the given URI (with its imports). The format is one of the
+     * languages supported by Jena, e.g. "RDF/XML" or "N-TRIPLE".
+     */
+    public void load( String uri, String format, KnowledgeBase kb ) throws UnsupportedFeatureException {
+        uri = FileUtils.toURI( uri );
+        
+        InputStream in = null;
+        try {
+            in = new URL( uri ).openStream();
+            load( in, format, uri, kb );
+        }
+        catch( IOException e ) {
+            throw new RuntimeException( e );
+        }
+        finally {
+            try {
+                if( in != null ) 
+                    in.close();
+            }
+            catch( IOException e ) {
+                log.warn( "Cannot close " + uri + ": " + e.getMessage() );
+            }
+        }
+    }
+    
+    /**
+     * Load the document from the input stream (with its imports). The format is one of 
+     * the languages supported by Jena, e.g. "RDF/XML" or "N-TRIPLE".
+     */
+    public void load( InputStream in, String format, String base, KnowledgeBase kb ) throws UnsupportedFeatureException {
+        if( kb instanceof EconnectedKB )
+            throw new UnsupportedFeatureException( "Bulk loading is not supported for E-connected ontologies" );
+        
+        Timer timer = kb.timers.startTimer( "bulkLoad" );
+        
+        schema = Factory.createGraphMem();
+        batches = new ArrayList();
+        current = new Batch();
+        
+        parse( in, format, base );
+        
+        loadImports();
+        
+        int count = 0;
+        loader.load( schema, kb, false );
+        for( Iterator i = batches.iterator(); i.hasNext(); ) {
+            Batch batch = (Batch) i.next();
+            batch.process( loader );
+            count += batch.size;
+        }
+        loader.processUntypedResources();
+        
+        if( log.isInfoEnabled() ) 
+            log.info( "Loaded " + count + " ABox assertions in bulk and " + schema.size() + " other triples" );
+        
+        schema = null;
+        batches = null;
+        current = null;
+        
+        timer.stop();
+    }
+    
+    private void parse( InputStream in, String format, String base ) {
+        startWorkers();
+        try {
+            Model sink = ModelFactory.createModelForGraph( new Sink() );
+            RDFReader reader = sink.getReader( format );
+            if( format.startsWith( "RDF/XML" ) ) {
+                reader.setProperty( "WARN_REDEFINITION_OF_ID", "EM_IGNORE" );
+                reader.setProperty( "WARN_BAD_NAME", "EM_IGNORE" );
+            }
+            reader.read( sink, in, base );
+            
+            if( current.size > 0 )
+                submit( current );
+        }
+        finally {
+            stopWorkers();
+        }
+        
+        if( failure != null ) {
+            Throwable t = failure;
+            failure = null;
+            if( t instanceof RuntimeException )
+                throw (RuntimeException) t;
+            else if( t instanceof Error )
+                throw (Error) t;
+            else
+                throw new InternalReasonerException( "Bulk loading failed: " + t );
+        }
+    }
+    
+    private void loadImports() {
+        List imports = new ArrayList();
+        for( Iterator i = schema.find( Node.ANY, OWL.imports.asNode(), Node.ANY ); i.hasNext(); ) {
+            Node o = ((Triple) i.next()).getObject();
+            if( o.isURI() )
+                imports.add( o.getURI() );
+        }
+        
+        ModelReader reader = new ModelReader();
+        for( Iterator i = imports.iterator(); i.hasNext(); ) {
+            String uri = (String) i.next();
+            Model model = reader.read( uri, true );
+            schema.getBulkUpdateHandler().add( model.getGraph() );
+        }
+    }
+    
+    /**
+     * Returns true if the triple is added to the KB as a type or a property value of a 
+     * named individual and does not need to be stored in the schema graph 
+     */
+    private static boolean isABoxAssertion( Triple triple ) {
+        Node s = triple.getSubject();
+        Node p = triple.getPredicate();
+        Node o = triple.getObject();
+        
+        if( !s.isURI() )
+            return false;
+        
+        if( p.equals( RDF.type.asNode() ) )
+            return o.isURI() && (o.equals( OWL.Thing.asNode() ) || !OWLLoader.isBuiltIn( o ));
+        
+        return !OWLLoader.isBuiltIn( p ) && !o.isBlank();
+    }
+    
+    private static ATermAppl node2term( Node node, Map cache ) {
+        if( node.isLiteral() )
+            return OWLLoader.literal2term( node.getLiteral() );
+        
+        ATermAppl term = (ATermAppl) cache.get( node );
+        if( term == null ) {
+            if( cache.size() > MAX_CACHED_TERMS )
+                cache.clear();
+            
+            term = OWLLoader.uri2term( node.getURI() );
+            cache.put( node, term );
+        }
+        
+        return term;
+    }
+
+    private void startWorkers() {
+        queue = new LinkedList();
+        parsed = false;
+        failure = null;
+        
+        if( PelletOptions.LOADER_THREADS <= 1 ) {
+            cache = new HashMap();
+            return;
+        }
+        
+        workers = new Thread[PelletOptions.LOADER_THREADS];
+        for( int i = 0; i < workers.length; i++ ) {
+            workers[i] = new Worker( i );
+            workers[i].start();
+        }
+    }
+    
+    private void stopWorkers() {
+        synchronized( this ) {
+            parsed = true;
+            notifyAll();
+        }
+        
+        if( workers != null ) {
+            try {
+                for( int i = 0; i < workers.length; i++ )
+                    workers[i].join();
+            }
+            catch( InterruptedException e ) {
+                throw new InternalReasonerException( "Bulk loading was interrupted" );
+            }
+        }
+        
+        workers = null;
+        queue = null;
+        cache = null;
+    }
+    
+    private void submit( Batch batch ) {
+        batches.add( batch );
+        
+        if( workers == null )
+            batch.convert( cache );
+        else
+            enqueue( batch );
+    }
+    
+    private synchronized void enqueue( Batch batch ) {
+        queue.addLast( batch );
+        notifyAll();
+    }
+    
+    private synchronized Batch nextBatch() throws InterruptedException {
+        while( queue.isEmpty() && !parsed && failure == null )
+            wait();
+        
+        if( queue.isEmpty() || failure != null )
+            return null;
+        
+        return (Batch) queue.removeFirst();
+    }
+    
+    private synchronized void workerFailed( Throwable t ) {
+        if( failure == null )
+            failure = t;
+        notifyAll();
+    }
+    
+    /**
+     * A batch of ABox triples and the terms created for their nodes. For every triple 
+     * the terms for the subject, the predicate (null for type assertions) and the object 
+     * are stored consecutively.
+     */
+    private static class Batch {
+        private Triple[] triples = new Triple[Math.max( 1, PelletOptions.LOADER_BATCH_SIZE )];
+        private ATermAppl[] terms;
+        private int size = 0;
+        
+        /**
+         * Add a triple to the batch and return true if the batch is full
+         */
+        boolean add( Triple triple ) {
+            triples[size++] = triple;
+            
+            return size == triples.length;
+        }
+        
+        void convert( Map cache ) {
+            terms = new ATermAppl[3 * size];
+            for( int i = 0; i < size; i++ ) {
+                Triple triple = triples[i];
+                Node o = triple.getObject();
+                
+                terms[3 * i] = node2term( triple.getSubject(), cache );
+                if( !triple.getPredicate().equals( RDF.type.asNode() ) )
+                    terms[3 * i + 1] = node2term( triple.getPredicate(), cache );
+                terms[3 * i + 2] = o.equals( OWL.Thing.asNode() ) ? ATermUtils.TOP : node2term( o, cache );
+            }
+        }
+        
+        void process( OWLLoader loader ) {
+            for( int i = 0; i < size; i++ ) {
+                ATermAppl st = terms[3 * i];
+                ATermAppl pt = terms[3 * i + 1];
+                ATermAppl ot = terms[3 * i + 2];
+                
+                if( pt == null )
+                    loader.processType( st, ot );
+                else
+                    loader.processPropertyValue( triples[i], st, pt, ot );
+            }
+        }
+    }
+    
+    /**
+     * Graph that receives the triples from the parser. ABox assertions are added to the 
+     * current batch and the other triples to the schema graph.
+     */
+    private class Sink extends GraphBase {
+        public void performAdd( Triple triple ) {
+            if( !isABoxAssertion( triple ) )
+                schema.add( triple );
+            else if( current.add( triple ) ) {
+                submit( current );
+                current = new Batch();
+            }
+        }
+        
+        protected ExtendedIterator graphBaseFind( TripleMatch m ) {
+            return NullIterator.instance;
+        }
+    }
+    
+    private class Worker extends Thread {
+        private Map cache = new HashMap();
+        
+        Worker( int index ) {
+            super( "Pellet loader " + index );
+            setDaemon( true );
+        }
+        
+        public void run() {
+            while( true ) {
+                Batch batch = null;
+                try {
+                    batch = nextBatch();
+                }
+                catch( InterruptedException e ) {
+                    return;
+                }
+                
+                if( batch == null )
+                    return;
+                
+                try {
+                    batch.convert( cache );
+                }
+                catch( Throwable t ) {
+                    workerFailed( t );
+                }
+            }
+        }
+    }
+}
@@ -25,6 +25,8 @@
  */
 package org.mindswap.pellet.jena;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -53,6 +55,14 @@ public class DisjointMultiUnion extends MultiUnion implements GraphListener {
     
     private Set changedGraphs;
     
+    /**
+     * The triples added to and deleted from the subgraphs since the changes were reset.
+     * The triples are recorded as long as every change is reported triple by triple.
+     */
+    private List addedTriples;
+    private List deletedTriples;
+    private boolean changesRecorded = true;
+    
     public DisjointMultiUnion() {
         this( false );
     }
@@ -61,6 +71,8 @@ public class DisjointMultiUnion extends MultiUnion implements GraphListener {
         super();
         
         changedGraphs = new HashSet();
+        addedTriples = new ArrayList();
+        deletedTriples = new ArrayList();
         this.listenChanges = listenChanges;
     }
 
@@ -136,55 +148,97 @@ public class DisjointMultiUnion extends MultiUnion implements GraphListener {
     
     public void notifyAddTriple(Graph g, Triple t) {       
         changedGraphs.add( g );
+        addedTriples.add( t );
     }
 
     public void notifyAddArray(Graph g, Triple[] triples) {       
         changedGraphs.add( g );
+        addedTriples.addAll( Arrays.asList( triples ) );
     }
 
     public void notifyAddList(Graph g, List triples) {       
         changedGraphs.add( g );
+        addedTriples.addAll( triples );
     }
 
     public void notifyAddIterator(Graph g, Iterator it) {       
         changedGraphs.add( g );
+        while( it.hasNext() )
+            addedTriples.add( it.next() );
     }
 
     public void notifyAddGraph(Graph g, Graph added) {        
         changedGraphs.add( g );
+        changesRecorded = false;
     }
 
     public void notifyDeleteTriple(Graph g, Triple t) {       
         deletion = true;
+        deletedTriples.add( t );
     }
 
     public void notifyDeleteList(Graph g, List L) {               
         deletion |= !L.isEmpty();
+        deletedTriples.addAll( L );
     }
 
     public void notifyDeleteArray(Graph g, Triple[] triples) {       
         deletion |= (triples.length > 0);
+        deletedTriples.addAll( Arrays.asList( triples ) );
     }
 
     public void notifyDeleteIterator(Graph g, Iterator it) {
-        deletion |= it.hasNext();        
+        while( it.hasNext() ) {
+            deletion = true;
+            deletedTriples.add( it.next() );
+        }
     }
 
     public void notifyDeleteGraph(Graph g, Graph removed) {                
         deletion = true;
+        changesRecorded = false;
     }
 
     public void notifyEvent(Graph source, Object value) {
         deletion = true;
+        changesRecorded = false;
     }
 
     public boolean isStatementDeleted() {
         return deletion;
     }
     
+    /**
+     * Returns true if all the triples added to or deleted from the subgraphs since the
+     * changes were reset are returned by {@link #getAddedTriples()} and
+     * {@link #getDeletedTriples()}.
+     */
+    public boolean isChangesRecorded() {
+        return changesRecorded;
+    }
+    
+    public List getAddedTriples() {
+        return addedTriples;
+    }
+    
+    public List getDeletedTriples() {
+        return deletedTriples;
+    }
+    
     public void resetChanged() {
         deletion = false;
         changedGraphs.clear();
+        addedTriples.clear();
+        deletedTriples.clear();
+        changesRecorded = true;
+    }
+    
+    /**
+     * Returns true if this union and the other union have the same subgraphs.
+     */
+    public boolean hasSameGraphs(DisjointMultiUnion other) {
+        return m_subGraphs.containsAll( other.m_subGraphs ) 
+            && other.m_subGraphs.containsAll( m_subGraphs );
     }
 
     public DisjointMultiUnion minus(DisjointMultiUnion other) {
@@ -282,16 +282,7 @@ public class OWLLoader {
 
         if(aTerm == null) {
 	        if(node.isLiteral()) {
-	            LiteralLabel label = node.getLiteral();
-	
-	            String value = label.getLexicalForm();
-	            String datatypeURI = label.getDatatypeURI();
-	            String lang = label.language();
-	
-	            if(datatypeURI != null) 
-	                aTerm = ATermUtils.makeTypedLiteral(value, datatypeURI);                
-	            else
-	                aTerm = ATermUtils.makePlainLiteral(value, lang);
+	            aTerm = literal2term(node.getLiteral());
 	        }
 	        else if(hasObject(node, OWL.onProperty.asNode())) {
 	            aTerm = createRestriction(node);
@@ -338,22 +329,7 @@ public class OWLLoader {
 	            }
 	        }
 	        else {
-	            String uri = node.getURI();
-
-	            if(PelletOptions.USE_LOCAL_NAME) {	        
-		            if( uri.startsWith( Namespaces.XSD ) )
-		                aTerm = ATermUtils.makeTermAppl( uri);
-		            else
-		                aTerm = ATermUtils.makeTermAppl( URIUtils.getLocalName( uri ) );
-		        }
-		        else if(PelletOptions.USE_QNAME) {
-		            if( uri.startsWith( Namespaces.XSD ) )
-		                aTerm = ATermUtils.makeTermAppl( uri);
-		            else
-		                aTerm = ATermUtils.makeTermAppl( qnames.shortForm( uri ) );
-		        }
-		        else 
-		            aTerm = ATermUtils.makeTermAppl( uri );
+	            aTerm = uri2term(node.getURI());
 	        }
 	
 	        terms.put(node, aTerm);
@@ -362,6 +338,37 @@ public class OWLLoader {
         return aTerm;
     }
     
+    static ATermAppl literal2term(LiteralLabel label) {
+        String value = label.getLexicalForm();
+        String datatypeURI = label.getDatatypeURI();
+        String lang = label.language();
+
+        if(datatypeURI != null) 
+            return ATermUtils.makeTypedLiteral(value, datatypeURI);                
+        else
+            return ATermUtils.makePlainLiteral(value, lang);
+    }
+    
+    static ATermAppl uri2term(String uri) {
+        if(PelletOptions.USE_LOCAL_NAME) {	        
+            if( uri.startsWith( Namespaces.XSD ) )
+                return ATermUtils.makeTermAppl( uri);
+            else
+                return ATermUtils.makeTermAppl( URIUtils.getLocalName( uri ) );
+        }
+        else if(PelletOptions.USE_QNAME) {
+            if( uri.startsWith( Namespaces.XSD ) )
+                return ATermUtils.makeTermAppl( uri);
+            
+            // qname provider is shared by the threads of the bulk loader
+            synchronized( qnames ) {
+                return ATermUtils.makeTermAppl( qnames.shortForm( uri ) );
+            }
+        }
+        else 
+            return ATermUtils.makeTermAppl( uri );
+    }
+    
     private boolean defineClass(ATermAppl c) {
         if(ATermUtils.isPrimitive(c)) {
             kb.addClass(c);
@@ -755,12 +762,22 @@ public class OWLLoader {
             else {
                 ATermAppl ot = node2term(o);
                 
-                defineIndividual(st);
-                defineClass(ot);
-                kb.addType(st, ot);
+                processType(st, ot);
             } // else
         } // while
     } // processTypes
+    
+    /**
+     * Process the type assertion of an individual where the type is a named class or 
+     * owl:Thing (TOP). 
+     */
+    void processType(ATermAppl st, ATermAppl ot) {
+        defineIndividual(st);
+        if(!ot.equals(ATermUtils.TOP)) {
+            defineClass(ot);
+            kb.addType(st, ot);
+        }
+    }
 
     private void processLinkTriples( Graph graph ) throws UnsupportedFeatureException {
         for( Iterator i = graph.find( Triple.ANY ); i.hasNext(); ) {
@@ -1098,48 +1115,55 @@ public class OWLLoader {
                 }
             } // startsWith( Namespaces.OWL )
             else {
-                ATermAppl pt = node2term(p);
-                Role role = kb.getProperty(pt);
-                int type = (role == null) ? Role.UNTYPED : role.getType();
+                processPropertyValue( triple, st, node2term( p ), ot );
+            }
+        }
+    }
+    
+    /**
+     * Process a triple whose predicate is not an RDF, RDFS or OWL property, i.e. the 
+     * value of an object, datatype or annotation property
+     */
+    void processPropertyValue( Triple triple, ATermAppl st, ATermAppl pt, ATermAppl ot ) {
+        Role role = kb.getProperty(pt);
+        int type = (role == null) ? Role.UNTYPED : role.getType();
 
-                if( type == Role.ANNOTATION ) {
-                    continue;
-                }
+        if( type == Role.ANNOTATION ) {
+            return;
+        }
 
-                if(o.isLiteral()) {       
-                    if( defineDatatypeProperty(pt) ) {
-                        String datatypeURI = ((ATermAppl) ot.getArgument( 2 )).getName();
+        if(triple.getObject().isLiteral()) {       
+            if( defineDatatypeProperty(pt) ) {
+                String datatypeURI = ((ATermAppl) ot.getArgument( 2 )).getName();
 
-                        if( defineIndividual(st) ) {                            
-                            defineDatatypeProperty(pt);
-                            if( !datatypeURI.equals("") )
-                                defineDatatype(ATermUtils.makeTermAppl(datatypeURI));
+                if( defineIndividual(st) ) {                            
+                    defineDatatypeProperty(pt);
+                    if( !datatypeURI.equals("") )
+                        defineDatatype(ATermUtils.makeTermAppl(datatypeURI));
     
-                            kb.addPropertyValue(pt, st, ot);
-                        }
-                        else if( type == Role.UNTYPED )
-                            defineAnnotationProperty( pt );
-                        else
-                            addWarning( "Ignoring ObjectProperty used with a class expression: " + triple );
-                    }
-                    else
-                        addWarning( "Ignoring literal value used with ObjectProperty : " + triple );
-                }
-                else {
-                    if( !defineObjectProperty(pt) ) 
-                        addWarning( "Ignoring object value used with DatatypeProperty: " + triple );
-                    else if( !defineIndividual(st) )
-                        addWarning( "Ignoring class expression used in subject position: " + triple );
-                    else if( !defineIndividual(ot) )
-                        addWarning( "Ignoring class expression used in object position: " + triple );
-                    else
-	                    kb.addPropertyValue(pt, st, ot);
+                    kb.addPropertyValue(pt, st, ot);
                 }
+                else if( type == Role.UNTYPED )
+                    defineAnnotationProperty( pt );
+                else
+                    addWarning( "Ignoring ObjectProperty used with a class expression: " + triple );
             }
+            else
+                addWarning( "Ignoring literal value used with ObjectProperty : " + triple );
+        }
+        else {
+            if( !defineObjectProperty(pt) ) 
+                addWarning( "Ignoring object value used with DatatypeProperty: " + triple );
+            else if( !defineIndividual(st) )
+                addWarning( "Ignoring class expression used in subject position: " + triple );
+            else if( !defineIndividual(ot) )
+                addWarning( "Ignoring class expression used in object position: " + triple );
+            else
+                kb.addPropertyValue(pt, st, ot);
         }
     }
 
-    private void processUntypedResources() {
+    void processUntypedResources() {
         Iterator i = restrictions.keySet().iterator();
         while(i.hasNext()) {
             Node node = (Node) i.next();
@@ -1248,6 +1272,15 @@ public class OWLLoader {
     }
     
     public void load( Graph graph, KnowledgeBase kb ) throws UnsupportedFeatureException {
+        load( graph, kb, true );
+    }
+    
+    /**
+     * Load the graph to the KB. If <code>processUntyped</code> is false the properties 
+     * that are not typed in the graph are not defined yet so that more triples can be 
+     * processed before {@link #processUntypedResources()} is called.
+     */
+    void load( Graph graph, KnowledgeBase kb, boolean processUntyped ) throws UnsupportedFeatureException {
         clear();
 
         setGraph( graph );
@@ -1279,9 +1312,155 @@ public class OWLLoader {
         processTriples( graph );
 //        kb.timers.stopTimer("processTriples");
 //        kb.timers.startTimer("processUntypedResources");
-        processUntypedResources();
+        if( processUntyped )
+            processUntypedResources();
 //        kb.timers.startTimer("processUntypedResources");
     }
 
+    
+    /**
+     * Load the triples added to and deleted from the graph after it was loaded to the KB,
+     * if all of them are simple ABox assertions: types of named individuals that are named 
+     * classes and values of known properties. Only the changed assertions are added to or 
+     * removed from the KB so the KB can update its reasoning results incrementally (see 
+     * {@link PelletOptions#USE_INCREMENTAL_ABOX}). Returns false without changing the KB if
+     * any of the triples is not such an assertion, a data value is deleted or all the 
+     * triples about an individual are deleted. In that case, the graph should be loaded 
+     * again.
+     * 
+     * @param added The triples added to the graph
+     * @param deleted The triples deleted from the graph
+     * @return <code>true</code> if the changes were loaded
+     */
+    public boolean loadABoxChanges( List added, List deleted ) {
+        if( kb == null || graph == null || kb instanceof EconnectedKB )
+            return false;
+        
+        for( Iterator i = added.iterator(); i.hasNext(); ) {
+            Triple triple = (Triple) i.next();
+            if( !isABoxAssertion( triple ) )
+                return false;
+        }
+        
+        for( Iterator i = deleted.iterator(); i.hasNext(); ) {
+            Triple triple = (Triple) i.next();
+            if( graph.contains( triple ) ) 
+                continue;
+            
+            // the KB does not support removing data values
+            if( !isABoxAssertion( triple ) || 
+                (triple.getObject().isLiteral() && !isSkipped( triple )) )
+                return false;
+            
+            // the individual would not exist in the KB if the graph was loaded again
+            if( !isUsed( triple.getSubject() ) || 
+                (!isType( triple ) && !isUsed( triple.getObject() )) )
+                return false;
+        }
+        
+        for( Iterator i = deleted.iterator(); i.hasNext(); ) {
+            Triple triple = (Triple) i.next();
+            if( graph.contains( triple ) || isSkipped( triple ) ) 
+                continue;
+            
+            ATermAppl st = node2term( triple.getSubject() );
+            ATermAppl ot = node2term( triple.getObject() );
+            if( isType( triple ) ) 
+                kb.removeType( st, ot );
+            else 
+                kb.removeObjectPropertyValue( node2term( triple.getPredicate() ), st, ot );
+        }
+        
+        for( Iterator i = added.iterator(); i.hasNext(); ) {
+            Triple triple = (Triple) i.next();
+            if( !graph.contains( triple ) || isSkipped( triple ) ) 
+                continue;
+
+            ATermAppl st = node2term( triple.getSubject() );
+            ATermAppl ot = node2term( triple.getObject() );
+            defineIndividual( st );
+            if( isType( triple ) ) 
+                kb.addType( st, ot );
+            else {
+                if( !triple.getObject().isLiteral() )
+                    defineIndividual( ot );
+                else {
+                    String datatypeURI = ((ATermAppl) ot.getArgument( 2 )).getName();
+                    if( !datatypeURI.equals( "" ) )
+                        defineDatatype( ATermUtils.makeTermAppl( datatypeURI ) );
+                }
+                kb.addPropertyValue( node2term( triple.getPredicate() ), st, ot );
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Returns true if the triple can be loaded by {@link #loadABoxChanges(List, List)}.
+     */
+    private boolean isABoxAssertion( Triple triple ) {
+        Node s = triple.getSubject();
+        Node p = triple.getPredicate();
+        Node o = triple.getObject();
+
+        if( !s.isURI() || !isIndividual( node2term( s ) ) )
+            return false;
+        
+        if( p.equals( RDF.type.asNode() ) ) {
+            if( o.equals( OWL.Thing.asNode() ) )
+                return true;
+            
+            return o.isURI() && !isBuiltIn( o ) && kb.isClass( node2term( o ) );
+        }
+        
+        if( isBuiltIn( p ) ) 
+            return false;
+        
+        int type = kb.getPropertyType( node2term( p ) );
+        if( type == Role.OBJECT )
+            return o.isURI() && isIndividual( node2term( o ) );
+        else if( type == Role.DATATYPE )
+            return o.isLiteral();
+        else
+            return type == Role.ANNOTATION;
+    }
+    
+    /**
+     * Returns true if the term is not used as a class or a property in the KB, i.e. it
+     * would be an individual if the graph was loaded again.
+     */
+    private boolean isIndividual( ATermAppl term ) {
+        return !kb.isClass( term ) && !kb.isProperty( term ) && !kb.isDatatype( term );
+    }
+    
+    static boolean isBuiltIn( Node node ) {
+        String nameSpace = node.getNameSpace();
+        
+        return Namespaces.RDF.equals( nameSpace ) || Namespaces.RDFS.equals( nameSpace ) 
+            || Namespaces.OWL.equals( nameSpace );
+    }
+    
+    private static boolean isType( Triple triple ) {
+        return triple.getPredicate().equals( RDF.type.asNode() );
+    }
+
+    /**
+     * Returns true if the triple does not correspond to an assertion in the KB, i.e. it is
+     * an annotation or an <code>owl:Thing</code> type
+     */
+    private boolean isSkipped( Triple triple ) {
+        return isType( triple ) 
+            ? triple.getObject().equals( OWL.Thing.asNode() )
+            : kb.isAnnotationProperty( node2term( triple.getPredicate() ) );
+    }
+    
+    /**
+     * Returns true if the graph has a triple where the node is the subject or the object
+     */
+    private boolean isUsed( Node node ) {
+        return graph.find( node, Node.ANY, Node.ANY ).hasNext()
+            || graph.find( Node.ANY, Node.ANY, node ).hasNext();
+    }
 
 } // OWLParser
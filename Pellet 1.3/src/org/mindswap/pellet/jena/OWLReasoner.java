@@ -965,7 +965,10 @@ public class OWLReasoner {
         ARQParser parser = (ARQParser) QueryEngine.createParser();
 	    Query query = parser.parse( sparql, kb );
 
-	    ResultSet results = new PelletResultSet( QueryEngine.exec( query ), model );	    
+	    long offset = sparql.hasOffset() ? sparql.getOffset() : 0;
+	    long limit = sparql.hasLimit() ? sparql.getLimit() : Long.MAX_VALUE;
+	    
+	    ResultSet results = new PelletResultSet( QueryEngine.exec( query ), model, offset, limit );	    
 	    
 	    return results;
 	}
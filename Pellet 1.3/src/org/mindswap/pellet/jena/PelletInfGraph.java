@@ -32,6 +32,7 @@ import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mindswap.pellet.KnowledgeBase;
+import org.mindswap.pellet.PelletOptions;
 import org.mindswap.pellet.Role;
 import org.mindswap.pellet.exceptions.InternalReasonerException;
 import org.mindswap.pellet.utils.ATermUtils;
@@ -226,9 +227,18 @@ public class PelletInfGraph extends BaseInfGraph implements InfGraph {
 
         Graph rawGraph = getRawGraph();
         DisjointMultiUnion newUnion = new DisjointMultiUnion( rawGraph );
-        DisjointMultiUnion diff = union.isStatementDeleted() ? null : newUnion.minus( union );
-        
-        if( diff != null ) {
+
+        // if only ABox assertions changed, the KB is updated with the changed assertions
+        // so the reasoning results can be updated incrementally
+        boolean loaded = PelletOptions.USE_INCREMENTAL_ABOX &&
+            union.isChangesRecorded() && union.hasSameGraphs( newUnion ) &&
+            reasoner.getLoader().loadABoxChanges( union.getAddedTriples(), union.getDeletedTriples() );
+        DisjointMultiUnion diff = loaded || union.isStatementDeleted() ? null : newUnion.minus( union );
+
+        if( loaded ) {
+            if( log.isDebugEnabled() ) log.debug("Loaded ABox changes...");
+        }
+        else if( diff != null ) {
             if( log.isDebugEnabled() ) log.debug("Loading diff..."); 
             reasoner.load( diff );
         }
@@ -28,6 +28,7 @@ package org.mindswap.pellet.jena;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.mindswap.pellet.query.QueryResultBinding;
 import org.mindswap.pellet.query.QueryResults;
@@ -51,14 +52,34 @@ public class PelletResultSet implements ResultSet {
     private List varTerms;
     
     private QueryResults answers;
+    private Iterator bindings;
     private int index;
-    private int size;
+    private long limit;
 
     public PelletResultSet( QueryResults answers, Model model ) {
+        this( answers, model, 0, Long.MAX_VALUE );
+    }
+    
+    /**
+     * Create a result set that skips the first <code>offset</code> answers and returns 
+     * at most <code>limit</code> answers. The answers are retrieved from the underlying 
+     * QueryResults one at a time as the result set is consumed so answers that are 
+     * computed lazily will be streamed and answers after the limit are never computed.
+     * 
+     * @param answers
+     * @param model
+     * @param offset
+     * @param limit
+     */
+    public PelletResultSet( QueryResults answers, Model model, long offset, long limit ) {
         this.answers = answers;
         this.model = model;
         this.index = 0;
-        this.size = answers.size();
+        this.limit = limit;
+        this.bindings = answers.iterator();
+        
+        for( long i = 0; i < offset && bindings.hasNext(); i++ )
+            bindings.next();
         
         varTerms = answers.getResultVars();
     }
@@ -72,11 +93,15 @@ public class PelletResultSet implements ResultSet {
     }
 
     public boolean hasNext() {
-        return index < size;
+        return index < limit && bindings.hasNext();
     }
     
     public QuerySolution nextSolution() {
-        QueryResultBinding binding = answers.get(index++);
+        if( !hasNext() )
+            throw new NoSuchElementException();
+        
+        QueryResultBinding binding = (QueryResultBinding) bindings.next();
+        index++;
         ResultBinding result = new ResultBinding( model ); 
 		
 		for ( Iterator i = varTerms.iterator(); i.hasNext(); ) {
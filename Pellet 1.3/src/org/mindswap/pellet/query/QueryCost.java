@@ -3,11 +3,13 @@
  */
 package org.mindswap.pellet.query;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.mindswap.pellet.KnowledgeBase;
+import org.mindswap.pellet.Role;
 import org.mindswap.pellet.utils.ATermUtils;
 import org.mindswap.pellet.utils.SizeEstimate;
 
@@ -28,6 +30,13 @@ public class QueryCost {
     public static double costIC = 1;
     public static double costRR = 2;
     public static double costRC = 1;
+    
+    /**
+     * Queries with at most this many patterns are reordered by an exhaustive dynamic 
+     * programming search, larger queries are reordered greedily. The exhaustive search 
+     * takes O(2^n * n^2) time so this value should be kept small.
+     */
+    public static int MAX_EXACT_REORDER = 8;
 
     public QueryCost( KnowledgeBase kb ) {
         this.kb = kb; 
@@ -101,7 +110,9 @@ public class QueryCost {
     }
     
     protected ATermAppl inv( ATermAppl pred ) {
-        return kb.getRBox().getRole( pred ).getInverse().getName();
+        Role inv = kb.getRBox().getRole( pred ).getInverse();
+        
+        return (inv == null) ? null : inv.getName();
     }
     
     protected double estimateCost( int index, Set bound ) {
@@ -110,38 +121,304 @@ public class QueryCost {
                 
         QueryPattern pattern = (QueryPattern) patterns.get(index);        
                       
+        double cost = cost( pattern, bound );
+        double branch = branch( pattern, bound );
+        
+        bound.add( pattern.getSubject() );
+        if( !pattern.isTypePattern() )
+            bound.add( pattern.getObject() );
+        
+        return cost + branch * estimateCost( index + 1, bound );
+    }
+    
+    /**
+     * Returns the cost of evaluating the pattern once when the given terms are bound.
+     */
+    protected double cost( QueryPattern pattern, Set bound ) {
+        if( pattern.isTypePattern() ) 
+            return bound.contains( pattern.getSubject() ) ? costIC : costIR;
+        else if( bound.contains( pattern.getSubject() ) && bound.contains( pattern.getObject() ) ) 
+            return costRC;
+        else
+            return costRR;
+    }
+    
+    /**
+     * Returns the estimated number of bindings a single evaluation of the pattern
+     * generates when the given terms are bound, i.e. how many times the rest of the 
+     * query will be evaluated.  
+     */
+    protected double branch( QueryPattern pattern, Set bound ) {
         ATermAppl subj = pattern.getSubject();
         ATermAppl pred = pattern.getPredicate();
         ATermAppl obj = pattern.getObject();
         
-        double cost = -1.0;
         if( pattern.isTypePattern() ) { 
             if( bound.contains( subj ) )
-                cost = costIC + estimateCost( index + 1, bound );
-            else {
-                bound.add( subj );
-                cost = costIR + estimate.size( obj ) * estimateCost( index + 1, bound );
-            }
+                return 1.0;
+            else
+                return estimate.size( obj );
         }
         else {
-            if( bound.contains( subj ) && bound.contains( obj ) ) {
-                cost = costRC + estimateCost( index + 1, bound );
+            if( bound.contains( subj ) && bound.contains( obj ) ) 
+                return 1.0;
+            else if( bound.contains( subj ) ) 
+                return estimate.avg( pred );
+            else if( bound.contains( obj ) ) {
+                // without an inverse the values cannot be retrieved starting from 
+                // the object so all the values of the property are considered
+                ATermAppl invPred = inv( pred );
+                return (invPred == null) ? estimate.size( pred ) : estimate.avg( invPred );
             }
-            else if( bound.contains( subj ) ) {
-                bound.add( obj );
-                cost = costRR + estimate.avg( pred ) * estimateCost( index + 1, bound );
+            else 
+                return estimate.size( pred );
+        }
+    }
+    
+    /**
+     * Finds an order of the given patterns that minimizes the estimated cost. Since the
+     * cost of evaluating the remaining patterns depends only on which patterns have been 
+     * evaluated before, the best order for small queries is found by dynamic programming
+     * over the subsets of patterns which requires O(2^n * n^2) time instead of trying 
+     * all n! orderings. For larger queries a greedy order is computed in O(n^3) time by 
+     * choosing the pattern with the lowest cost when combined with the cheapest pattern 
+     * that could follow it. The original list is returned if there is no better order.
+     * 
+     * @param patterns List of {@link QueryPattern}s
+     * @return List of {@link QueryPattern}s
+     */
+    public List reorder( List patterns ) {
+        int n = patterns.size();
+        
+        if( n <= 1 )
+            return patterns;
+        
+        List bestOrder = ( n <= MAX_EXACT_REORDER ) 
+            ? exactOrder( patterns )
+            : greedyOrder( patterns );
+        
+        if( bestOrder == null || bestOrder.equals( patterns ) )
+            return patterns;
+        
+        return bestOrder;
+    }
+    
+    private List exactOrder( List patterns ) {
+        int n = patterns.size();
+        int full = (1 << n) - 1;
+        
+        // best[s] is the minimum cost of evaluating the patterns not in the set s
+        // after the patterns in s have been evaluated and next[s] is the first 
+        // pattern to evaluate to achieve that cost 
+        double[] best = new double[ full + 1 ];
+        int[] next = new int[ full + 1 ];
+        
+        best[full] = 1.0;
+        for( int s = full - 1; s >= 0; s-- ) {
+            Set bound = new HashSet();
+            Set terms = new HashSet();
+            boolean allSemiGround = bind( patterns, s, bound, terms );
+            
+            best[s] = Double.POSITIVE_INFINITY;
+            next[s] = -1;
+            for( int i = 0; i < n; i++ ) {
+                int bit = 1 << i;
+                if( (s & bit) != 0 || best[s | bit] == Double.POSITIVE_INFINITY )
+                    continue;
+                
+                QueryPattern pattern = (QueryPattern) patterns.get( i );
+                if( !isAllowed( pattern, s == 0, terms, allSemiGround ) )
+                    continue;
+                
+                double cost = cost( pattern, bound ) + branch( pattern, bound ) * best[s | bit];
+                if( cost < best[s] ) {
+                    best[s] = cost;
+                    next[s] = i;
+                }
             }
-            else if( bound.contains( obj ) ) {
-                bound.add( subj );
-                cost = costRR + estimate.avg( inv( pred ) ) * estimateCost( index + 1, bound );
+        }
+        
+        if( next[0] == -1 )
+            return null;
+        
+        List order = new ArrayList();
+        for( int s = 0; s != full; s |= 1 << next[s] ) 
+            order.add( patterns.get( next[s] ) );
+        
+        return order;
+    }
+    
+    private List greedyOrder( List patterns ) {
+        int n = patterns.size();
+        int[] order = new int[ n ];
+        boolean[] used = new boolean[ n ];
+        
+        Set bound = new HashSet();
+        Set terms = new HashSet();
+        boolean allSemiGround = true;
+        for( int k = 0; k < n; k++ ) {
+            double minCost = Double.POSITIVE_INFINITY;
+            int min = -1;
+            for( int i = 0; i < n; i++ ) {
+                QueryPattern pattern = (QueryPattern) patterns.get( i );
+                if( used[i] || !isAllowed( pattern, k == 0, terms, allSemiGround ) )
+                    continue;
+                
+                used[i] = true;
+                boolean canComplete = canComplete( patterns, used, pattern, terms, 
+                    allSemiGround && isSemiGround( pattern ) );
+                used[i] = false;
+                if( !canComplete )
+                    continue;
+                
+                double cost = cost( pattern, bound );
+                double branch = branch( pattern, bound );
+                if( k < n - 1 && branch > 0 ) {
+                    used[i] = true;
+                    branch *= lookahead( patterns, used, pattern, bound, terms, 
+                        allSemiGround && isSemiGround( pattern ) ); 
+                    used[i] = false;
+                }
+                cost += branch;
+                
+                if( cost < minCost ) {
+                    minCost = cost;
+                    min = i;
+                }
             }
-            else {
-                bound.add( subj );
-                bound.add( obj );
-                cost = costRR + estimate.size( pred ) * estimateCost( index + 1, bound );
+            
+            if( min == -1 )
+                return null;
+            
+            QueryPattern pattern = (QueryPattern) patterns.get( min );
+            order[k] = min;
+            used[min] = true;
+            allSemiGround &= isSemiGround( pattern );
+            bind( pattern, bound, terms );
+        }
+        
+        List result = new ArrayList();
+        for( int k = 0; k < n; k++ ) 
+            result.add( patterns.get( order[k] ) );
+        
+        return result;
+    }
+    
+    private double lookahead( List patterns, boolean[] used, QueryPattern last, 
+        Set bound, Set terms, boolean allSemiGround ) {
+        Set newBound = new HashSet( bound );
+        Set newTerms = new HashSet( terms );
+        bind( last, newBound, newTerms );
+        
+        double minCost = Double.POSITIVE_INFINITY;
+        for( int i = 0; i < patterns.size(); i++ ) {
+            QueryPattern pattern = (QueryPattern) patterns.get( i );
+            if( used[i] || !isAllowed( pattern, false, newTerms, allSemiGround ) )
+                continue;
+            
+            double cost = cost( pattern, newBound ) + branch( pattern, newBound );
+            if( cost < minCost ) 
+                minCost = cost;
+        }
+        
+        return minCost;
+    }
+    
+    /**
+     * Checks if the unused patterns can be ordered after the last pattern. Semi-ground 
+     * patterns can only be evaluated before all the other patterns and evaluating more 
+     * patterns never prevents a pattern from being evaluated otherwise. Therefore, 
+     * it is enough to evaluate all the semi-ground patterns that are allowed first and 
+     * then the remaining patterns in any allowed order.
+     */
+    private boolean canComplete( List patterns, boolean[] used, QueryPattern last, 
+        Set terms, boolean allSemiGround ) {
+        boolean[] done = (boolean[]) used.clone();
+        Set newTerms = new HashSet( terms );
+        newTerms.add( last.getSubject() );
+        newTerms.add( last.getObject() );
+        
+        for( int phase = 0; phase < 2; phase++ ) {
+            boolean semiGroundPhase = ( phase == 0 );
+            if( semiGroundPhase && !allSemiGround )
+                continue;
+            
+            boolean changed = true;
+            while( changed ) {
+                changed = false;
+                for( int i = 0; i < patterns.size(); i++ ) {
+                    QueryPattern pattern = (QueryPattern) patterns.get( i );
+                    if( done[i] || ( semiGroundPhase && !isSemiGround( pattern ) ) 
+                        || !isAllowed( pattern, false, newTerms, semiGroundPhase ) )
+                        continue;
+                    
+                    done[i] = true;
+                    newTerms.add( pattern.getSubject() );
+                    newTerms.add( pattern.getObject() );
+                    changed = true;
+                }
+            }
+        }
+        
+        for( int i = 0; i < done.length; i++ ) {
+            if( !done[i] )
+                return false;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Adds the terms bound by the patterns in the given set to the bound sets and 
+     * returns true if all these patterns are semi-ground.
+     */
+    private boolean bind( List patterns, int set, Set bound, Set terms ) {
+        boolean allSemiGround = true;
+        for( int i = 0; i < patterns.size(); i++ ) {
+            if( (set & (1 << i)) != 0 ) {
+                QueryPattern pattern = (QueryPattern) patterns.get( i );
+                allSemiGround &= isSemiGround( pattern );
+                bind( pattern, bound, terms );
             }
         }
         
-        return cost;
+        return allSemiGround;
+    }
+    
+    private void bind( QueryPattern pattern, Set bound, Set terms ) {
+        bound.add( pattern.getSubject() );
+        if( !pattern.isTypePattern() )
+            bound.add( pattern.getObject() );
+        
+        terms.add( pattern.getSubject() );
+        terms.add( pattern.getObject() );
+    }
+    
+    private boolean isSemiGround( QueryPattern pattern ) {
+        return !pattern.isTypePattern() 
+            && ( !ATermUtils.isVar( pattern.getSubject() ) || !ATermUtils.isVar( pattern.getObject() ) );
+    }
+    
+    /**
+     * Checks if the pattern can be evaluated next with the same conditions as 
+     * {@link #notOptimal()}.
+     */
+    private boolean isAllowed( QueryPattern pattern, boolean first, Set bound, boolean allSemiGround ) {
+        if( first )
+            return true;
+        
+        ATermAppl subj = pattern.getSubject();
+        ATermAppl obj = pattern.getObject();
+        
+        if( pattern.isTypePattern() ) 
+            return !ATermUtils.isVar( subj ) || bound.contains( subj );
+        else if( ATermUtils.isVar( subj ) &&  ATermUtils.isVar( obj ) ) 
+            return bound.contains( subj ) || bound.contains( obj );
+        else if( ATermUtils.isVar( subj ) ) 
+            return bound.contains( subj ) && allSemiGround;
+        else if( ATermUtils.isVar( obj ) ) 
+            return bound.contains( obj ) && allSemiGround;
+        else
+            return true;
     }
 }
@@ -28,7 +28,6 @@
  */
 package org.mindswap.pellet.query;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -50,7 +49,6 @@ import org.mindswap.pellet.query.impl.QueryImpl;
 import org.mindswap.pellet.query.impl.QueryResultBindingImpl;
 import org.mindswap.pellet.query.impl.QueryResultsImpl;
 import org.mindswap.pellet.query.impl.SimpleQueryExec;
-import org.mindswap.pellet.utils.PermutationGenerator;
 import org.mindswap.pellet.utils.Timer;
 
 import aterm.ATermAppl;
@@ -59,6 +57,18 @@ import com.hp.hpl.jena.query.Syntax;
 
 
 /**
+ * Entry point for answering queries. The query executors used by the engine do not keep
+ * any state between executions so queries can be answered by multiple threads at the same
+ * time as long as each thread uses its own KB, e.g. the copy returned by
+ * {@link org.mindswap.pellet.QuerySnapshot#getKB()}. 
+ * 
+ * <p>A single KB cannot be queried concurrently. Answering a query changes the reasoning
+ * state of the KB (cached satisfiability results, pseudo model, lazy classification) and
+ * the results of streaming executions are computed while they are being iterated, so the
+ * caller should not use a KB in another thread until the results obtained from it are
+ * consumed. Applications that answer queries in parallel should create a 
+ * {@link org.mindswap.pellet.QuerySnapshot} of the KB and query it from each thread.</p>
+ * 
  * @author Evren Sirin
  */
 public class QueryEngine {
@@ -66,15 +76,13 @@ public class QueryEngine {
     
     public static Syntax DEFAULT_SYNTAX = Syntax.syntaxSPARQL;
     
-    private static DistVarsQueryExec distVars = new DistVarsQueryExec();
-    private static OptimizedQueryExec optimized = new OptimizedQueryExec();
-    private static SimpleQueryExec simple = new SimpleQueryExec();
-    private static NoDistVarsQueryExec noVars = new NoDistVarsQueryExec();
+    private static final DistVarsQueryExec distVars = new DistVarsQueryExec();
+    private static final OptimizedQueryExec optimized = new OptimizedQueryExec();
+    private static final SimpleQueryExec simple = new SimpleQueryExec();
+    private static final NoDistVarsQueryExec noVars = new NoDistVarsQueryExec();
     
-    private static QueryExec[] queryExecs = 
+    private static final QueryExec[] queryExecs = 
     	{noVars, distVars, optimized, simple};
-    
-    private static QuerySplitter splitter = new QuerySplitter();
 
     public static QueryParser createParser() {
         return createParser( DEFAULT_SYNTAX );
@@ -132,7 +140,7 @@ public class QueryEngine {
         }
             
         List queries = PelletOptions.SPLIT_QUERY              
-            ? splitter.split( query )
+            ? new QuerySplitter().split( query )
             : Collections.singletonList( query );
         
         if( queries.isEmpty() ) {
@@ -178,41 +186,28 @@ public class QueryEngine {
     }
     
     private static Query reorder( Query query ) {        
-        double minCost = Double.POSITIVE_INFINITY;
-        
         prepare( query );
         
         QueryCost queryCost = new QueryCost( query.getKB() );
         
         List patterns = query.getQueryPatterns();
-        List bestOrder = null;
-        int n = patterns.size();
-        
-        PermutationGenerator gen = new PermutationGenerator( n );
-        for(int i = 0; gen.hasMore(); i++) {
-            int[] perm = gen.getNext();
-            List newPatterns = new ArrayList();
-            for(int j = 0; j < n; j++) 
-                newPatterns.add( patterns.get( perm[j] ) );
-
-            double cost = queryCost.estimateCost( newPatterns );
-            if( cost < minCost ) {
-                minCost = cost;
-                bestOrder = newPatterns;
-            }
-        }
+        List bestOrder = queryCost.reorder( patterns );
         
         if( bestOrder == patterns )
             return query;
         
         Query newQuery = new QueryImpl( query.getKB() );
-        for(int j = 0; j < n; j++) {
+        for(int j = 0; j < bestOrder.size(); j++) {
             newQuery.addPattern( (QueryPattern) bestOrder.get( j ) );
         }
         for( Iterator j = query.getResultVars().iterator(); j.hasNext(); ) {
             ATermAppl var = (ATermAppl) j.next();
             newQuery.addResultVar( var );
         }
+        for( Iterator j = query.getDistVars().iterator(); j.hasNext(); ) {
+            ATermAppl var = (ATermAppl) j.next();
+            newQuery.addDistVar( var );
+        }
         return newQuery;
     }
     
@@ -225,6 +220,8 @@ public class QueryEngine {
             return;
         
         KnowledgeBase kb = queries[0].getKB();
+        // the size estimate is created when the KB is prepared
+        kb.prepare();
 
         Set concepts = new HashSet();
         Set properties = new HashSet();        
@@ -3,6 +3,7 @@
  */
 package org.mindswap.pellet.query;
 
+import java.util.Iterator;
 import java.util.List;
 
 import org.mindswap.pellet.output.TableData;
@@ -22,6 +23,12 @@ public interface QueryResults {
     
     public boolean isEmpty();
     
+    /**
+     * Returns an iterator over the {@link QueryResultBinding}s. Results that are 
+     * computed lazily generate the bindings as the iterator is consumed.
+     */
+    public Iterator iterator();
+    
     public Query getQuery();
     
     public List getResultVars();
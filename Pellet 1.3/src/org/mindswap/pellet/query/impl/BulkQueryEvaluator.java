@@ -0,0 +1,310 @@
+package org.mindswap.pellet.query.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mindswap.pellet.KnowledgeBase;
+import org.mindswap.pellet.datatypes.Datatype;
+import org.mindswap.pellet.query.Query;
+import org.mindswap.pellet.query.QueryEngine;
+import org.mindswap.pellet.query.QueryPattern;
+import org.mindswap.pellet.query.QueryResultBinding;
+import org.mindswap.pellet.query.QueryResults;
+import org.mindswap.pellet.utils.ATermUtils;
+
+import aterm.ATermAppl;
+
+/**
+ * Evaluates a query with only distinguished variables set-at-a-time. The bindings
+ * computed for the patterns processed so far are kept in a table and each pattern is
+ * joined with the whole table at once. The rows of the table are grouped by the values
+ * of the variables the pattern shares with the table, so the values for a pattern are
+ * retrieved once per distinct value instead of once per binding. Entailment checks for
+ * the patterns whose variables are all bound are done with one retrieval for all the
+ * candidates (one retrieval for each distinct object value for property patterns)
+ * instead of checking the bindings one by one.
+ *
+ * <p>Ground patterns are not evaluated here, the query should be checked with
+ * {@link DistVarsQueryExec} for those first.</p>
+ */
+class BulkQueryEvaluator {
+    public static Log log = LogFactory.getLog( QueryEngine.class );
+
+    private Query query;
+    private KnowledgeBase kb;
+
+    // the variables bound so far, vars.get(i) is bound to row[i] in each row
+    private List vars;
+    private List rows;
+
+    BulkQueryEvaluator( Query query ) {
+        this.query = query;
+        this.kb = query.getKB();
+    }
+
+    public QueryResults evaluate() {
+        vars = new ArrayList();
+        rows = new ArrayList();
+        rows.add( new ATermAppl[0] );
+
+        List patterns = query.getQueryPatterns();
+        for( int i = 0; i < patterns.size() && !rows.isEmpty(); i++ ) {
+            QueryPattern pattern = (QueryPattern) patterns.get( i );
+
+            if( pattern.isGround() )
+                continue;
+
+            if( log.isTraceEnabled() )
+                log.trace( "Join pattern " + pattern + " with " + rows.size() + " bindings" );
+
+            if( pattern.isTypePattern() )
+                joinType( pattern.getSubject(), pattern.getObject() );
+            else
+                joinProperty( pattern.getSubject(), pattern.getPredicate(), pattern.getObject() );
+        }
+
+        return createResults();
+    }
+
+    private void joinType( ATermAppl x, ATermAppl c ) {
+        int index = vars.indexOf( x );
+
+        if( index == -1 ) {
+            extend( x, kb.getInstances( c ) );
+        }
+        else {
+            Set instances = new HashSet( kb.retrieve( c, distinctValues( index ) ) );
+
+            List newRows = new ArrayList();
+            for( Iterator i = rows.iterator(); i.hasNext(); ) {
+                ATermAppl[] row = (ATermAppl[]) i.next();
+                if( instances.contains( row[index] ) )
+                    newRows.add( row );
+            }
+            rows = newRows;
+        }
+    }
+
+    private void joinProperty( ATermAppl s, ATermAppl p, ATermAppl o ) {
+        Datatype datatype = null;
+        if( ATermUtils.isVar( o ) && query.getLitVars().contains( o ) )
+            datatype = query.getDatatype( o );
+
+        boolean sBound = !ATermUtils.isVar( s ) || vars.contains( s );
+        boolean oBound = !ATermUtils.isVar( o ) || vars.contains( o );
+
+        if( sBound && oBound ) {
+            filterPairs( s, p, o );
+        }
+        else if( sBound ) {
+            Map values = new HashMap();
+            for( Iterator i = rows.iterator(); i.hasNext(); ) {
+                ATermAppl sValue = getValue( s, (ATermAppl[]) i.next() );
+                if( !values.containsKey( sValue ) )
+                    values.put( sValue, getValues( p, sValue, datatype ) );
+            }
+            extend( s, o, values );
+        }
+        else if( oBound ) {
+            Map values = new HashMap();
+            for( Iterator i = rows.iterator(); i.hasNext(); ) {
+                ATermAppl oValue = getValue( o, (ATermAppl[]) i.next() );
+                if( !values.containsKey( oValue ) )
+                    values.put( oValue, kb.getIndividualsWithProperty( p, oValue ) );
+            }
+            extend( o, s, values );
+        }
+        else {
+            // only the individuals that may have a value for the property need to
+            // be considered as subjects
+            List subjects = kb.retrieveIndividualsWithProperty( p );
+
+            Map values = new HashMap();
+            for( Iterator i = subjects.iterator(); i.hasNext(); ) {
+                ATermAppl sValue = (ATermAppl) i.next();
+                Collection oValues = getValues( p, sValue, datatype );
+
+                if( s.equals( o ) ) {
+                    if( oValues.contains( sValue ) )
+                        values.put( sValue, null );
+                }
+                else if( !oValues.isEmpty() )
+                    values.put( sValue, oValues );
+            }
+
+            if( s.equals( o ) )
+                extend( s, values.keySet() );
+            else
+                extendPairs( s, o, values );
+        }
+    }
+
+    /**
+     * Keeps the rows where the (subject, object) pair satisfies the property. The pairs
+     * are grouped by the object value and one retrieval is done for each group.
+     */
+    private void filterPairs( ATermAppl s, ATermAppl p, ATermAppl o ) {
+        Map subjects = new HashMap();
+        for( Iterator i = rows.iterator(); i.hasNext(); ) {
+            ATermAppl[] row = (ATermAppl[]) i.next();
+            ATermAppl oValue = getValue( o, row );
+            Set set = (Set) subjects.get( oValue );
+            if( set == null ) {
+                set = new HashSet();
+                subjects.put( oValue, set );
+            }
+            set.add( getValue( s, row ) );
+        }
+
+        Map satisfied = new HashMap();
+        for( Iterator i = subjects.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry entry = (Map.Entry) i.next();
+            ATermAppl oValue = (ATermAppl) entry.getKey();
+            Collection candidates = (Collection) entry.getValue();
+
+            satisfied.put( oValue, new HashSet( kb.retrieveIndividualsWithProperty( p, oValue, candidates ) ) );
+        }
+
+        List newRows = new ArrayList();
+        for( Iterator i = rows.iterator(); i.hasNext(); ) {
+            ATermAppl[] row = (ATermAppl[]) i.next();
+            Set set = (Set) satisfied.get( getValue( o, row ) );
+            if( set.contains( getValue( s, row ) ) )
+                newRows.add( row );
+        }
+        rows = newRows;
+    }
+
+    /**
+     * Returns the values for the subject the same way
+     * {@link DistVarsQueryExec} enumerates them.
+     */
+    private Collection getValues( ATermAppl p, ATermAppl sValue, Datatype datatype ) {
+        if( datatype == null )
+            return kb.getObjectPropertyValues( p, sValue );
+        else
+            return kb.getDataPropertyValues( p, sValue, datatype );
+    }
+
+    private ATermAppl getValue( ATermAppl term, ATermAppl[] row ) {
+        int index = vars.indexOf( term );
+
+        return (index == -1) ? term : row[index];
+    }
+
+    private Collection distinctValues( int index ) {
+        Set values = new HashSet();
+        for( Iterator i = rows.iterator(); i.hasNext(); ) {
+            ATermAppl[] row = (ATermAppl[]) i.next();
+            values.add( row[index] );
+        }
+
+        return values;
+    }
+
+    /**
+     * Adds a new variable to the table with the given values, i.e. the cross product
+     * of the table with the values.
+     */
+    private void extend( ATermAppl var, Collection values ) {
+        List newRows = new ArrayList();
+        for( Iterator i = rows.iterator(); i.hasNext(); ) {
+            ATermAppl[] row = (ATermAppl[]) i.next();
+            for( Iterator j = values.iterator(); j.hasNext(); )
+                newRows.add( append( row, (ATermAppl) j.next() ) );
+        }
+
+        vars.add( var );
+        rows = newRows;
+    }
+
+    /**
+     * Adds a new variable to the table whose values depend on the value of a bound term.
+     * The map has the values of the new variable for each value of the bound term.
+     */
+    private void extend( ATermAppl bound, ATermAppl var, Map values ) {
+        List newRows = new ArrayList();
+        for( Iterator i = rows.iterator(); i.hasNext(); ) {
+            ATermAppl[] row = (ATermAppl[]) i.next();
+            Collection varValues = (Collection) values.get( getValue( bound, row ) );
+            for( Iterator j = varValues.iterator(); j.hasNext(); )
+                newRows.add( append( row, (ATermAppl) j.next() ) );
+        }
+
+        vars.add( var );
+        rows = newRows;
+    }
+
+    /**
+     * Adds two new variables to the table. The map has the values of the second
+     * variable for each value of the first one.
+     */
+    private void extendPairs( ATermAppl var1, ATermAppl var2, Map values ) {
+        List newRows = new ArrayList();
+        for( Iterator i = rows.iterator(); i.hasNext(); ) {
+            ATermAppl[] row = (ATermAppl[]) i.next();
+            for( Iterator j = values.entrySet().iterator(); j.hasNext(); ) {
+                Map.Entry entry = (Map.Entry) j.next();
+                ATermAppl[] newRow = append( row, (ATermAppl) entry.getKey() );
+                Collection values2 = (Collection) entry.getValue();
+                for( Iterator k = values2.iterator(); k.hasNext(); )
+                    newRows.add( append( newRow, (ATermAppl) k.next() ) );
+            }
+        }
+
+        vars.add( var1 );
+        vars.add( var2 );
+        rows = newRows;
+    }
+
+    private ATermAppl[] append( ATermAppl[] row, ATermAppl value ) {
+        ATermAppl[] newRow = new ATermAppl[row.length + 1];
+        System.arraycopy( row, 0, newRow, 0, row.length );
+        newRow[row.length] = value;
+
+        return newRow;
+    }
+
+    private QueryResults createResults() {
+        QueryResults results = new QueryResultsImpl( query );
+
+        // It is possible that dist vars are not same as result vars (some vars may
+        // be forced to be distinguished because of other query structure). Filter
+        // those forced vars out of the results
+        List resultVars = query.getResultVars();
+        boolean project = !resultVars.containsAll( vars );
+
+        Set projected = new HashSet();
+        for( Iterator i = rows.iterator(); i.hasNext(); ) {
+            ATermAppl[] row = (ATermAppl[]) i.next();
+
+            QueryResultBinding binding = new QueryResultBindingImpl();
+            if( project ) {
+                for( int j = 0; j < resultVars.size(); j++ ) {
+                    ATermAppl var = (ATermAppl) resultVars.get( j );
+                    int index = vars.indexOf( var );
+                    binding.setValue( var, (index == -1) ? null : row[index] );
+                }
+
+                if( !projected.add( binding ) )
+                    continue;
+            }
+            else {
+                for( int j = 0; j < vars.size(); j++ )
+                    binding.setValue( (ATermAppl) vars.get( j ), row[j] );
+            }
+
+            results.add( binding );
+        }
+
+        return results;
+    }
+}
@@ -24,8 +24,10 @@ package org.mindswap.pellet.query.impl;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -52,224 +54,326 @@ import aterm.ATermList;
 public class DistVarsQueryExec implements QueryExec {
     public static Log log = LogFactory.getLog( QueryEngine.class );
     
-    protected Query query;
-    protected KnowledgeBase kb;
-	
-	protected List patterns;
-	protected Set vars;
-	
-//	protected Map varMap;
-	
 	public DistVarsQueryExec() {
 	}
 	
-	public void prepare() {		
-		kb = query.getKB();
-		patterns = query.getQueryPatterns();
-        vars = query.getObjVars();
-        unsatisfied = null;
-//        varMap = new HashMap();
-		
-		if(kb == null) 
-		    throw new RuntimeException("No input data set is given for query!");
-		
-	    // warm up the reasoner by computing the satisfiability of classes
-	    // used in the query so that cached models can be used for instance
-	    // checking
-	    if( PelletOptions.USE_CACHING && !kb.isClassified() ) {
-	        for(Iterator i = vars.iterator(); i.hasNext();) {
-                ATermAppl var = (ATermAppl) i.next();
-//                CandidateSet candidates = new CandidateSet( kb.getIndividuals() );
-//                varMap.put( var, candidates );
-                
-	            ATermList list = query.getClasses( var );
-	            for( ; !list.isEmpty(); list = list.getNext() ) {
-	                ATermAppl c = (ATermAppl) list.getFirst();
-	                ATermAppl notC = ATermUtils.makeNot( c );
-	                
-	                kb.isSatisfiable( c );
-	                kb.isSatisfiable( notC );
-
-//	                kb.getABox().getObviousInstances( c, candidates );
-	            }
-	        }	    
-	    }
-	}
-	
     public boolean supports( Query q ) {
         return q.getDistVars().containsAll( q.getVars() );
     }
     
 	public boolean execBoolean(Query query) {	
-	    this.query = query;
-	
 		if(!query.getVars().isEmpty())
 		    throw new RuntimeException("Boolean query cannot have variables!");
 		
-		prepare();
+		Execution execution = new Execution( query );
 		
-		return isQuerySatisfied();
+		return execution.isQuerySatisfied();
 	}
 	
 	public QueryResults exec( Query query ) {	
-	    this.query = query;
-	    
-		prepare();
+		Execution execution = new Execution( query );
 		
-		QueryResults results = new QueryResultsImpl( query );
-            
-        if( isQuerySatisfied() ) {
-            if( log.isDebugEnabled() )
-                log.debug( "Bind nonground triples" );
-			exec( 0, new QueryResultBindingImpl(), results );
-        }
+        if( !execution.isQuerySatisfied() )
+            return new QueryResultsImpl( query );
+        
+        if( log.isDebugEnabled() )
+            log.debug( "Bind nonground triples" );
         
-		return results;
+        if( PelletOptions.BULK_QUERY_EVALUATION )
+            return new BulkQueryEvaluator( query ).evaluate();
+        
+        // the bindings are computed as the results are consumed
+		return new StreamingQueryResults( query, execution.iterator() );
 	}
-
-    ATermAppl unsatisfied = null;
-	protected void exec( int index, QueryResultBinding binding, QueryResults results ) {
-		if(patterns.size() <= index) {
-		    // It is possible that dist vars are not same as result vars (some
-		    // vars may be forced to be distinguished because of othe query
-		    // structure). Filter those forced vars out of the results
-		    if( !results.getResultVars().containsAll( binding.getVars() ) ) {
-		        QueryResultBinding newBinding = new QueryResultBindingImpl();
-		        List resultVars = results.getResultVars();
-	            for(int i = 0; i < resultVars.size(); i++) {
-	                ATermAppl var = (ATermAppl) resultVars.get(i);
-	                ATermAppl value = binding.getValue(var);
-	                                
-	                newBinding.setValue(var, value);
-	            }
-	            binding = newBinding;
-	            if( results.contains( binding ))
-	                return;
-		    }
-		        
-		    results.add(binding);
-
-			return; 
-		} 
+	
+	/**
+	 * The state of a single query execution. A new execution is created for each query
+	 * so that the same DistVarsQueryExec can answer multiple queries at the same time.
+	 */
+	private static class Execution {
+	    private Query query;
+	    private KnowledgeBase kb;
 		
-		QueryPattern pattern0 = (QueryPattern) patterns.get(index);
+	    private List patterns;
+	    private Set vars;
+	    
+	    Execution( Query query ) {
+	        this.query = query;
+	        
+	        prepare();
+	    }
+	    
+		private void prepare() {		
+			kb = query.getKB();
+			patterns = query.getQueryPatterns();
+	        vars = query.getObjVars();
+	//        varMap = new HashMap();
+		
+			if(kb == null) 
+			    throw new RuntimeException("No input data set is given for query!");
 		
-        if( log.isTraceEnabled() )
-            log.trace( "Check pattern " + pattern0 + " " + binding);
+		    // warm up the reasoner by computing the satisfiability of classes
+		    // used in the query so that cached models can be used for instance
+		    // checking
+		    if( PelletOptions.USE_CACHING && !kb.isClassified() ) {
+		        for(Iterator i = vars.iterator(); i.hasNext();) {
+	                ATermAppl var = (ATermAppl) i.next();
+	//                CandidateSet candidates = new CandidateSet( kb.getIndividuals() );
+	//                varMap.put( var, candidates );
+                
+		            ATermList list = query.getClasses( var );
+		            for( ; !list.isEmpty(); list = list.getNext() ) {
+		                ATermAppl c = (ATermAppl) list.getFirst();
+		                ATermAppl notC = ATermUtils.makeNot( c );
+	                
+		                kb.isSatisfiable( c );
+		                kb.isSatisfiable( notC );
+
+	//	                kb.getABox().getObviousInstances( c, candidates );
+		            }
+		        }	    
+		    }
+		}
+	
+		/**
+		 * Returns an iterator that evaluates the non-ground patterns with nested loops
+		 * and generates the bindings one by one as it is consumed.
+		 */
+		Iterator iterator() {
+		    return new ResultIterator();
+		}
 		
-		boolean alreadySatisfied = false;
-		Collection sValues = null;
-		Collection oValues = null;			
-		if( !pattern0.isGround() ) {		    
-		    QueryPattern pattern = pattern0.apply( binding );
+		/**
+		 * Iterates over the bindings for a pattern once the previous patterns are bound.
+		 */
+		private class PatternIterator {
+		    private QueryResultBinding binding;
 		    
-		    ATermAppl subj = pattern.getSubject();
-		    ATermAppl pred = pattern.getPredicate();
-		    ATermAppl obj = pattern.getObject();
+		    private ATermAppl subj;
+		    private ATermAppl pred;
+		    private ATermAppl obj;
 		    
-			if( ATermUtils.isVar( subj ) ) {
-				if( pattern.isTypePattern() ) { 
-                    sValues = kb.getInstances( obj );
-					alreadySatisfied = true;
-				}
-				else if( !ATermUtils.isVar( obj ) ) {
-					sValues = kb.getIndividualsWithProperty( pred, obj );
+		    private Datatype datatype;
+		    private Collection oValues;
+		    private boolean alreadySatisfied;
+		    
+		    private Iterator i;
+		    private Iterator j;
+		    private ATermAppl sValue;
+		    
+		    // a ground pattern has been checked already so the binding is returned once
+		    private boolean ground;
+		    
+		    PatternIterator( QueryPattern pattern0, QueryResultBinding binding ) {
+		        this.binding = binding;
+		        
+		        if( log.isTraceEnabled() )
+		            log.trace( "Check pattern " + pattern0 + " " + binding);
+		        
+		        ground = pattern0.isGround();
+		        if( ground )
+		            return;
+		        
+			    QueryPattern pattern = pattern0.apply( binding );
+		    
+			    subj = pattern.getSubject();
+			    pred = pattern.getPredicate();
+			    obj = pattern.getObject();
+			    
+			    Collection sValues = null;
+				if( ATermUtils.isVar( subj ) ) {
+					if( pattern.isTypePattern() ) { 
+	                    sValues = kb.getInstances( obj );
+						alreadySatisfied = true;
+					}
+					else if( !ATermUtils.isVar( obj ) ) {
+						sValues = kb.getIndividualsWithProperty( pred, obj );
+					}
+					else {
+						sValues = kb.getIndividuals();//kb.retrieveIndividualsWithProperty( pred );
+					}					
 				}
 				else {
-					sValues = kb.getIndividuals();//kb.retrieveIndividualsWithProperty( pred );
-				}					
-			}
-			else {
-			    sValues = Collections.singletonList( subj );
-			}
-			
-			Datatype datatype = null;
-			if(ATermUtils.isVar( obj )) {
-			    if(query.getLitVars().contains( obj ))
-			        datatype = query.getDatatype( obj );
-
-				if( !ATermUtils.isVar( subj ) ) {
-				    if( datatype == null )
-						oValues = kb.getObjectPropertyValues( pred, subj );
-				    else
-				        oValues = kb.getDataPropertyValues( pred, subj, datatype);
-					alreadySatisfied = true;
+				    sValues = Collections.singletonList( subj );
 				}
-			}
-			else
-				oValues = Collections.singletonList( obj );
 			
-			Iterator i = sValues.iterator();
-			while(i.hasNext()) {
-				ATermAppl sValue = (ATermAppl) i.next();
+				if(ATermUtils.isVar( obj )) {
+				    if(query.getLitVars().contains( obj ))
+				        datatype = query.getDatatype( obj );
 
-				Iterator j = null;
-				if(oValues != null)
-					j = oValues.iterator();
-				else if( datatype == null ) {
-					j = kb.getObjectPropertyValues( pred, sValue ).iterator();
-                    alreadySatisfied = true;
-                }
-			    else {
-			        j = kb.getDataPropertyValues( pred, sValue, datatype ).iterator();
-                    alreadySatisfied = true;
-                }
-								
-				while( j.hasNext() ) {
+					if( !ATermUtils.isVar( subj ) ) {
+					    if( datatype == null )
+							oValues = kb.getObjectPropertyValues( pred, subj );
+					    else
+					        oValues = kb.getDataPropertyValues( pred, subj, datatype);
+						alreadySatisfied = true;
+					}
+				}
+				else
+					oValues = Collections.singletonList( obj );
+				
+				i = sValues.iterator();
+		    }
+		    
+		    /**
+		     * Returns the next binding that satisfies this pattern or null if there are
+		     * no more bindings.
+		     */
+		    QueryResultBinding next() {
+		        if( ground ) {
+		            QueryResultBinding result = binding;
+		            binding = null;
+		            return result;
+		        }
+		        
+		        while( true ) {
+			        while( j == null || !j.hasNext() ) {
+			            if( !i.hasNext() )
+			                return null;
+			            
+						sValue = (ATermAppl) i.next();
+						
+						if(oValues != null)
+							j = oValues.iterator();
+						else if( datatype == null ) {
+							j = kb.getObjectPropertyValues( pred, sValue ).iterator();
+		                    alreadySatisfied = true;
+		                }
+					    else {
+					        j = kb.getDataPropertyValues( pred, sValue, datatype ).iterator();
+		                    alreadySatisfied = true;
+		                }
+			        }
+			        
 				    ATermAppl oValue = (ATermAppl) j.next();
-					    
-                    boolean satisfied = alreadySatisfied || isTripleSatisfied( sValue, pred, oValue ); 
+				    
+				    // the same variable used as subject and object should get the same value
+				    if( ATermUtils.isVar( subj ) && subj.equals( obj ) && !sValue.equals( oValue ) )
+				        continue;
+				    
+	                boolean satisfied = alreadySatisfied || isTripleSatisfied( sValue, pred, oValue ); 
 					if( satisfied ) {
 					    QueryResultBinding newBinding = (QueryResultBinding) binding.clone();
 						if(ATermUtils.isVar( subj )) newBinding.setValue( subj, sValue );
 						if(ATermUtils.isVar( obj )) newBinding.setValue( obj, oValue);
 						
-						exec( index+1, newBinding, results );
-                        
-//                        if( unsatisfied != null ) {
-//                            if( unsatisfied == pattern0.getObject() )
-//                                unsatisfied = null;
-//                            else
-//                                break;
-//                        }
-					}			
-//                    else if( pattern.isGround() && pattern.isTypePattern() ) 
-//                        unsatisfied = pattern0.getSubject();
-				}					
-			}
+						return newBinding;
+					}
+		        }
+		    }
+		}
+		
+		/**
+		 * Iterates over the results of the query by keeping a stack of pattern iterators 
+		 * where the iterator at each position enumerates the bindings for the corresponding
+		 * pattern extending the current binding of the previous pattern. 
+		 */
+		private class ResultIterator implements Iterator {
+		    private PatternIterator[] stack;
+		    private int depth;
+		    
+		    private List resultVars;
+		    
+		    // results projected to the result vars, used to eliminate duplicates 
+		    private Set projected = new HashSet();
+		    
+		    private QueryResultBinding next;
+		    
+		    ResultIterator() {
+		        resultVars = query.getResultVars();
+		        
+		        if( patterns.isEmpty() ) {
+		            next = new QueryResultBindingImpl();
+		            depth = -1;
+		        }
+		        else {
+		            stack = new PatternIterator[ patterns.size() ];
+		            stack[0] = new PatternIterator( (QueryPattern) patterns.get( 0 ), new QueryResultBindingImpl() );
+		            depth = 0;
+		        }
+		    }
+		    
+		    public boolean hasNext() {
+		        if( next == null )
+		            next = computeNext();
+		        
+		        return next != null;
+		    }
+		    
+		    public Object next() {
+		        if( !hasNext() )
+		            throw new NoSuchElementException();
+		        
+		        QueryResultBinding result = next;
+		        next = null;
+		        
+		        return result;
+		    }
+		    
+		    private QueryResultBinding computeNext() {
+		        while( depth >= 0 ) {
+		            QueryResultBinding binding = stack[depth].next();
+		            
+		            if( binding == null ) {
+		                stack[depth--] = null;
+		            }
+		            else if( depth < stack.length - 1 ) {
+		                depth++;
+		                stack[depth] = new PatternIterator( (QueryPattern) patterns.get( depth ), binding );
+		            }
+		            else if( !resultVars.containsAll( binding.getVars() ) ) {
+					    // It is possible that dist vars are not same as result vars (some
+					    // vars may be forced to be distinguished because of othe query
+					    // structure). Filter those forced vars out of the results
+				        QueryResultBinding newBinding = new QueryResultBindingImpl();
+			            for(int i = 0; i < resultVars.size(); i++) {
+			                ATermAppl var = (ATermAppl) resultVars.get(i);
+			                ATermAppl value = binding.getValue(var);
+		                                
+			                newBinding.setValue(var, value);
+			            }
+			            
+			            if( projected.add( newBinding ) )
+			                return newBinding;
+		            }
+		            else
+		                return binding;
+		        }
+		        
+		        return null;
+		    }
+		    
+		    public void remove() {
+		        throw new UnsupportedOperationException();
+		    }
 		}
-		else
-			exec( index+1, binding, results );
-	}
 
-	private boolean isQuerySatisfied() {
-	    log.debug( "Check ground triples" );
+		boolean isQuerySatisfied() {
+		    log.debug( "Check ground triples" );
 
-		boolean querySatisfied = true;
-		for(int i = 0; querySatisfied && i < patterns.size(); i++) {
-			QueryPattern triple = (QueryPattern) patterns.get(i);
+			boolean querySatisfied = true;
+			for(int i = 0; querySatisfied && i < patterns.size(); i++) {
+				QueryPattern triple = (QueryPattern) patterns.get(i);
 
-			if(triple.isGround())
-			    querySatisfied = isTripleSatisfied(triple.getSubject(), triple.getPredicate(), triple.getObject());			
-		}
+				if(triple.isGround())
+				    querySatisfied = isTripleSatisfied(triple.getSubject(), triple.getPredicate(), triple.getObject());			
+			}
 
-		return querySatisfied;
-	}
+			return querySatisfied;
+		}
 
-	private boolean isTripleSatisfied(ATermAppl s, ATermAppl p, ATermAppl o) {
-        if( log.isTraceEnabled() )
-            log.trace( "Check triple " + s + " " + (p  == null ? "rdf:type" : p.getName())+ " " + o);
+		private boolean isTripleSatisfied(ATermAppl s, ATermAppl p, ATermAppl o) {
+	        if( log.isTraceEnabled() )
+	            log.trace( "Check triple " + s + " " + (p  == null ? "rdf:type" : p.getName())+ " " + o);
 	    
-		if(ATermUtils.isVar( s ) || ATermUtils.isVar( o ))
-			throw new RuntimeException("No value assigned to variables when checking triple in query!");
+			if(ATermUtils.isVar( s ) || ATermUtils.isVar( o ))
+				throw new RuntimeException("No value assigned to variables when checking triple in query!");
 						
-		boolean tripleSatisfied = (p == null) 
-			? kb.isType(s, o)		
-		    : kb.hasPropertyValue(s, p, o);
+			boolean tripleSatisfied = (p == null) 
+				? kb.isType(s, o)		
+			    : kb.hasPropertyValue(s, p, o);
 				
-		return tripleSatisfied;
-	}		
+			return tripleSatisfied;
+		}
+	}
 }
-
-
-
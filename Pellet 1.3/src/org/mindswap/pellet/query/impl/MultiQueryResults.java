@@ -3,6 +3,9 @@
  */
 package org.mindswap.pellet.query.impl;
 
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 import org.mindswap.pellet.query.Query;
 import org.mindswap.pellet.query.QueryResultBinding;
 import org.mindswap.pellet.query.QueryResults;
@@ -21,8 +24,10 @@ public class MultiQueryResults extends QueryResultsImpl implements QueryResults
 
         this.queryResults = queryResults;
 
+        // results are the cross product of the results for each query
+        size = 1;
         for(int i = 0; i < queryResults.length; i++) {
-            size += queryResults[i].size();
+            size *= queryResults[i].size();
         }
     }
 
@@ -39,7 +44,7 @@ public class MultiQueryResults extends QueryResultsImpl implements QueryResults
     }
 
     public QueryResultBinding get( int index ) {
-        if( index > size ) throw new IndexOutOfBoundsException();
+        if( index < 0 || index >= size ) throw new IndexOutOfBoundsException();
 
         QueryResultBinding result = new QueryResultBindingImpl();
 
@@ -60,4 +65,25 @@ public class MultiQueryResults extends QueryResultsImpl implements QueryResults
     public boolean isEmpty() {
         return size == 0;
     }
+
+    public Iterator iterator() {
+        return new Iterator() {
+            private int index = 0;
+
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            public Object next() {
+                if( !hasNext() )
+                    throw new NoSuchElementException();
+
+                return get( index++ );
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
 }
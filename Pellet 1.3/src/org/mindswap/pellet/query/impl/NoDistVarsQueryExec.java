@@ -25,8 +25,6 @@ import aterm.ATermAppl;
 public class NoDistVarsQueryExec implements QueryExec {
     public static Log log = LogFactory.getLog( QueryEngine.class );
     
-    private KnowledgeBase kb;
-    
     public NoDistVarsQueryExec() {        
     }
     
@@ -48,7 +46,7 @@ public class NoDistVarsQueryExec implements QueryExec {
     public boolean execBoolean( Query query ) {				
 		boolean querySatisfied; 
 		
-		kb = query.getKB();
+		KnowledgeBase kb = query.getKB();
 	    
 		if( query.getConstants().isEmpty() ) {
 		    throw new UnsupportedFeatureException( 
@@ -5,6 +5,8 @@ package org.mindswap.pellet.query.impl;
 
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import org.mindswap.pellet.output.ATermAbstractSyntaxRenderer;
@@ -52,6 +54,10 @@ public class QueryResultsImpl implements QueryResults {
         return results.isEmpty();
     }
     
+    public Iterator iterator() {
+        return Collections.unmodifiableList( results ).iterator();
+    }
+    
     public Query getQuery() {
         return query;
     }
@@ -0,0 +1,118 @@
+/*
+ * Created on Oct 17, 2006
+ */
+package org.mindswap.pellet.query.impl;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.mindswap.pellet.query.Query;
+import org.mindswap.pellet.query.QueryResultBinding;
+import org.mindswap.pellet.query.QueryResults;
+
+/**
+ * Query results that are computed lazily by pulling bindings from an iterator when
+ * they are requested. Functions that access the results by index or need the number
+ * of results compute (and keep in memory) as many bindings as necessary. If
+ * {@link #iterator()} is called before any binding is computed, the bindings are
+ * returned directly from the underlying iterator without being stored so that
+ * arbitrarily many results can be processed with constant memory. In that case, the
+ * results can only be iterated once.
+ *
+ * <p>The KB should not be modified until the results are processed.</p>
+ */
+public class StreamingQueryResults extends QueryResultsImpl implements QueryResults {
+    private Iterator bindings;
+
+    private boolean streamed = false;
+
+    public StreamingQueryResults( Query query, Iterator bindings ) {
+        super( query );
+
+        this.bindings = bindings;
+    }
+
+    public void add( QueryResultBinding binding ) {
+        throw new UnsupportedOperationException( "StreamingQueryResults do not support addition!" );
+    }
+
+    public boolean contains( QueryResultBinding binding ) {
+        if( super.contains( binding ) )
+            return true;
+
+        while( fetch() ) {
+            if( super.get( super.size() - 1 ).equals( binding ) )
+                return true;
+        }
+
+        return false;
+    }
+
+    public QueryResultBinding get( int index ) {
+        while( super.size() <= index && fetch() )
+            ;
+
+        return super.get( index );
+    }
+
+    public int size() {
+        while( fetch() )
+            ;
+
+        return super.size();
+    }
+
+    public boolean isEmpty() {
+        return super.isEmpty() && !fetch();
+    }
+
+    public Iterator iterator() {
+        if( !streamed && super.isEmpty() ) {
+            streamed = true;
+
+            return bindings;
+        }
+
+        return new Iterator() {
+            private int index = 0;
+
+            public boolean hasNext() {
+                return index < StreamingQueryResults.super.size() || fetch();
+            }
+
+            public Object next() {
+                if( !hasNext() )
+                    throw new NoSuchElementException();
+
+                return StreamingQueryResults.super.get( index++ );
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    public String toString() {
+        if( streamed )
+            return "Streamed results of the query " + getQuery();
+
+        return super.toString();
+    }
+
+    /**
+     * Compute the next binding and store it. Returns false if there are no more
+     * bindings.
+     */
+    private boolean fetch() {
+        if( streamed )
+            throw new IllegalStateException( "Streaming query results have already been iterated" );
+
+        if( !bindings.hasNext() )
+            return false;
+
+        super.add( (QueryResultBinding) bindings.next() );
+
+        return true;
+    }
+}
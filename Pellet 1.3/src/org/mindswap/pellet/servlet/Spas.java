@@ -19,6 +19,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.mindswap.pellet.jena.PelletInfGraph;
+import org.mindswap.pellet.jena.PelletQueryExecution;
 import org.mindswap.pellet.servlet.functions.IsCanonical;
 
 import com.hp.hpl.jena.query.Dataset;
@@ -95,7 +97,7 @@ public class Spas extends HttpServlet {
 		
 		long startTime = System.currentTimeMillis();
 		Dataset dataset = getDataset(request, query);
-		QueryExecution qexec = QueryExecutionFactory.create(query, dataset) ;
+		QueryExecution qexec = createQueryExecution(query, dataset);
 		
 		long dataTime = System.currentTimeMillis();
 		setContentType(request, response, query);
@@ -137,16 +139,37 @@ public class Spas extends HttpServlet {
 		}
 	}
 	
+	/**
+	 * Queries that only use the default graph of a Pellet-backed dataset are answered 
+	 * by the Pellet query engine (which falls back to ARQ for queries it cannot answer)
+	 * so that the answers are computed lazily while the XML results are written to the 
+	 * client. Queries with ORDER BY need all the answers before the first one is written
+	 * so they are left to ARQ.
+	 */
+	public QueryExecution createQueryExecution(Query query, Dataset dataset) {
+		Model model = dataset.getDefaultModel();
+		
+		if (query.isSelectType() && !query.hasOrderBy() && !dataset.listNames().hasNext()
+				&& model != null && model.getGraph() instanceof PelletInfGraph) {
+			return new PelletQueryExecution(query, model);
+		}
+		
+		return QueryExecutionFactory.create(query, dataset);
+	}
+	
 	public void execSelect(HttpServletRequest request, HttpServletResponse response, Query query, QueryExecution qexec) throws IOException {
 		ResultSet results = qexec.execSelect() ;
 
 		OutputStream out = response.getOutputStream();
 		
 		if (request.getParameterMap().containsKey("text")) {
+			// text format needs all the results to compute the column widths
 			ResultSetFormatter.out(out, results, query);
 		} else {
 			ResultSetFormatter.outputAsXML(out, results); 
 		};
+		
+		out.flush();
 	}
 	
 	public Dataset getDataset(HttpServletRequest request, Query query) {
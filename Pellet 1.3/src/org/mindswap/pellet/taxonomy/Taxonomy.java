@@ -24,6 +24,7 @@ package org.mindswap.pellet.taxonomy;
 
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -92,6 +93,38 @@ public class Taxonomy {
 		TOP_NODE.addSub( BOTTOM_NODE );
 	}
 	
+	/**
+	 * Create a copy of this taxonomy that can be changed, e.g. by classifying new 
+	 * class expressions, without changing this taxonomy. The nodes are copied with 
+	 * their equivalents, instances and the edges between them.
+	 */
+	public Taxonomy copy() {
+		Map copies = new HashMap();
+		for(Iterator i = nodes.values().iterator(); i.hasNext();) {
+			TaxonomyNode node = (TaxonomyNode) i.next();
+			if( !copies.containsKey( node ) )
+				copies.put( node, node.copy() );
+		}
+		
+		for(Iterator i = copies.entrySet().iterator(); i.hasNext();) {
+			Map.Entry entry = (Map.Entry) i.next();
+			TaxonomyNode node = (TaxonomyNode) entry.getKey();
+			TaxonomyNode copy = (TaxonomyNode) entry.getValue();
+			copy.copyEdges( node, copies );
+		}
+		
+		Taxonomy taxonomy = new Taxonomy();
+		taxonomy.nodes = new HashMap();
+		for(Iterator i = nodes.entrySet().iterator(); i.hasNext();) {
+			Map.Entry entry = (Map.Entry) i.next();
+			taxonomy.nodes.put( entry.getKey(), copies.get( entry.getValue() ) );
+		}
+		taxonomy.TOP_NODE = (TaxonomyNode) copies.get( TOP_NODE );
+		taxonomy.BOTTOM_NODE = (TaxonomyNode) copies.get( BOTTOM_NODE );
+		
+		return taxonomy;
+	}
+	
     public TaxonomyNode getBottom() {
         return BOTTOM_NODE;
     }
@@ -139,6 +172,88 @@ public class Taxonomy {
         nodes.remove( node.getName() );
 	}
 
+	/**
+	 * Remove the given classes from the taxonomy. The nodes of the classes are removed
+	 * together with all their equivalents, except TOP and BOTTOM nodes where only the 
+	 * given classes are removed. The subclasses of a removed node are connected to its 
+	 * superclasses. The entries for class expressions are also removed since they may 
+	 * have been classified using the removed classes.
+	 * 
+	 * @param classes A collection of class names
+	 */
+	public void removeClasses(Collection classes) {
+		for(Iterator i = classes.iterator(); i.hasNext();) {
+			ATermAppl c = (ATermAppl) i.next();
+			TaxonomyNode node = getNode( c );
+			if( node == null )
+				continue;
+			
+			if( node == TOP_NODE || node == BOTTOM_NODE ) {
+				node.removeEquivalent( c );
+				nodes.remove( c );
+				continue;
+			}
+			
+			List supers = new ArrayList( node.getSupers() );
+			List subs = new ArrayList( node.getSubs() );
+			
+			node.disconnect();
+			for(Iterator j = node.getEquivalents().iterator(); j.hasNext();)
+				nodes.remove( j.next() );
+			
+			for(Iterator j = supers.iterator(); j.hasNext();) {
+				TaxonomyNode sup = (TaxonomyNode) j.next();
+				for(Iterator k = subs.iterator(); k.hasNext();) {
+					TaxonomyNode sub = (TaxonomyNode) k.next();
+					if( !isAncestor( sup, sub ) )
+						sup.addSub( sub );
+				}
+			}
+		}
+		
+		for(Iterator i = nodes.keySet().iterator(); i.hasNext();) {
+			ATermAppl c = (ATermAppl) i.next();
+			if( !ATermUtils.isPrimitive( c ) && !c.equals( ATermUtils.BOTTOM ) )
+				i.remove();
+		}
+	}
+	
+	/**
+	 * Checks if sup can be reached from node by following the super links
+	 */
+	private boolean isAncestor(TaxonomyNode sup, TaxonomyNode node) {
+		Set visited = new HashSet();
+		List queue = new ArrayList( node.getSupers() );
+		while( !queue.isEmpty() ) {
+			TaxonomyNode next = (TaxonomyNode) queue.remove( queue.size() - 1 );
+			if( next == sup )
+				return true;
+			if( visited.add( next ) )
+				queue.addAll( next.getSupers() );
+		}
+		
+		return false;
+	}
+
+	/**
+	 * Remove the given individuals from the instances of all the classes. If the 
+	 * collection is null all the instances are removed.
+	 * 
+	 * @param individuals A collection of individual names or null
+	 */
+	public void removeInstances(Collection individuals) {
+		for(Iterator i = nodes.values().iterator(); i.hasNext();) {
+			TaxonomyNode node = (TaxonomyNode) i.next();
+			
+			Collection removed = (individuals == null) 
+				? new ArrayList( node.getInstances() ) 
+				: individuals;
+			
+			for(Iterator j = removed.iterator(); j.hasNext();)
+				node.removeInstance( (ATermAppl) j.next() );
+		}
+	}
+
 	/** 
 	 * Returns all the instances of concept c. If TOP concept is used every individual in the
 	 * knowledge base will be returned
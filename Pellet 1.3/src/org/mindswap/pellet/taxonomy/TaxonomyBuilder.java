@@ -25,6 +25,7 @@ package org.mindswap.pellet.taxonomy;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -37,6 +38,7 @@ import org.apache.commons.logging.LogFactory;
 import org.mindswap.pellet.Individual;
 import org.mindswap.pellet.KnowledgeBase;
 import org.mindswap.pellet.PelletOptions;
+import org.mindswap.pellet.WorkerPool;
 import org.mindswap.pellet.utils.ATermUtils;
 import org.mindswap.pellet.utils.SetUtils;
 import org.mindswap.pellet.utils.Timer;
@@ -76,6 +78,12 @@ public class TaxonomyBuilder {
 	private int count;
 	
 	private ClassifyProgress listener = new SilentClassifyProgress();
+	
+	// worker threads used for parallel classification (null for serial classification) 
+	private WorkerPool pool;
+	
+	// results of the subsumption tests computed in parallel that have not been used yet
+	private Map parallelResults;
 
 	public TaxonomyBuilder( KnowledgeBase kb ) {
 		this.kb = kb;
@@ -92,6 +100,20 @@ public class TaxonomyBuilder {
 	 * Classify the KB.
 	 */
 	public Taxonomy classify() {	
+		return classify( new Taxonomy(), Collections.EMPTY_SET );
+	}
+	
+	/**
+	 * Update a taxonomy computed before the TBox changed. The given classes and the 
+	 * classes told to be equivalent to them are removed from the taxonomy and classified 
+	 * again together with the classes that are not in the taxonomy yet. The relations 
+	 * between the remaining classes are kept so the given classes should include every 
+	 * class whose definition depends on the changes.
+	 * 
+	 * @param taxonomy The taxonomy computed before the changes
+	 * @param affected The classes affected by the changes
+	 */
+	public Taxonomy classify( Taxonomy taxonomy, Collection affected ) {	
         classes = kb.getClasses();
         
 		if( log.isInfoEnabled() ) {
@@ -105,27 +127,46 @@ public class TaxonomyBuilder {
 		
 		init();
 		
+		Set removed = new HashSet( affected );
+		for( Iterator i = affected.iterator(); i.hasNext(); ) {
+            ATermAppl c = (ATermAppl) i.next();
+            if( definitionOrder.contains( c ) )
+                removed.addAll( definitionOrder.getNode( c ).getEquivalents() );
+        }
+		
+		this.taxonomy = taxonomy;
+		taxonomy.removeInstances( null );
+		taxonomy.removeClasses( removed );
+		
 		if( log.isInfoEnabled() ) {
 		    log.info("Starting classification...");
 		    //printStats(subclass);
 		    //printArray(subclass, true);
 		}				
 		
-		Iterator i = classes.iterator();		
-		while( i.hasNext() ) {
-			if( listener.isCanceled() ) {
-			    listener.taskFinished();
-			    return null;
-			}
-			
-            ATermAppl c = (ATermAppl) i.next();		
-            
-            listener.startClass( getName( c ) );
-
-			// early detection for TOP and BOTTOM
-			if( !taxonomy.contains(c) ) 
-			    classify( c );
-		}				
+		if( PelletOptions.CLASSIFICATION_THREADS > 1 )
+		    startWorkers();
+		
+		try {
+			Iterator i = classes.iterator();		
+			while( i.hasNext() ) {
+				if( listener.isCanceled() ) {
+				    listener.taskFinished();
+				    return null;
+				}
+				
+	            ATermAppl c = (ATermAppl) i.next();		
+	            
+	            listener.startClass( getName( c ) );
+	
+				// early detection for TOP and BOTTOM
+				if( !taxonomy.contains(c) ) 
+				    classify( c );
+			}				
+		}
+		finally {
+		    stopWorkers();
+		}
 		
 		listener.taskFinished();
 
@@ -145,10 +186,6 @@ public class TaxonomyBuilder {
 		
 	    count = 0;
         
-        
-        
-        taxonomy = new Taxonomy();  
-        
 //      toldSubsumers = new HashMap();
 //      toldEquivalents = new HashMap();
         toldDisjoints = new HashMap();        
@@ -222,6 +259,85 @@ public class TaxonomyBuilder {
 	}
 	
 
+	/**
+	 * Start the worker threads for parallel classification. Satisfiability of every
+	 * class (and its negation) that is not already in the taxonomy is computed by the 
+	 * workers before the classes are inserted into the taxonomy. The cached models will 
+	 * then be available for the subsumption tests done during insertion.
+	 */
+	private void startWorkers() {
+	    pool = new WorkerPool( kb, PelletOptions.CLASSIFICATION_THREADS );
+	    parallelResults = new HashMap();
+	    
+	    List tasks = new ArrayList();
+	    for( Iterator i = classes.iterator(); i.hasNext(); ) {
+	        final ATermAppl c = (ATermAppl) i.next();	        
+	        if( taxonomy.contains( c ) )
+	            continue;
+	        tasks.add( new WorkerPool.Task() {
+	            public void run( KnowledgeBase kb ) {
+	                Timer t = kb.timers.startTimer( "classifySat" );
+	                kb.isSatisfiable( c );
+	                if( PelletOptions.USE_CACHING )
+	                    kb.isSatisfiable( ATermUtils.makeNot( c ) );
+	                t.stop();
+	            }	            
+	        });
+        }
+	    
+	    pool.execute( tasks );
+	    
+	    // workers were created before the satisfiability results were computed so
+	    // restart them with copies that include all the cached results 
+	    pool.shutdown();	    
+	    pool = new WorkerPool( kb, PelletOptions.CLASSIFICATION_THREADS );
+	}
+	
+	private void stopWorkers() {
+	    if( pool != null ) {
+	        pool.shutdown();
+	        pool = null;
+	        parallelResults = null;
+	    }
+	}
+	
+	/**
+	 * Compute the subsumption relation between c and the given nodes using the worker
+	 * threads. Only the nodes whose relation to c is not already known are tested. The
+	 * results are stored so that the following calls to {@link #subsumes(ATermAppl, ATermAppl)}
+	 * will not repeat the test. 
+	 */
+	private void testSubsumptions( boolean topSearch, final ATermAppl c, List nodes, Map marked ) {
+	    List tasks = new ArrayList();
+	    for( Iterator i = nodes.iterator(); i.hasNext(); ) {
+	        TaxonomyNode node = (TaxonomyNode) i.next();
+	        if( marked.containsKey( node ) )
+	            continue;
+	        
+	        final ATermAppl sup = topSearch ? node.getName() : c;
+	        final ATermAppl sub = topSearch ? c : node.getName();
+	        final ATermAppl key = ATermUtils.makeSub( sub, sup );
+	        if( parallelResults.containsKey( key ) )
+	            continue;
+	        
+	        tasks.add( new WorkerPool.Task() {
+	            public void run( KnowledgeBase kb ) {
+	        	    Timer t = kb.timers.startTimer( "classifySub" );
+	        	    boolean result = kb.getABox().isSubClassOf( sub, sup );
+	        		t.stop();
+	        		
+	        		synchronized( parallelResults ) {
+	        		    parallelResults.put( key, Boolean.valueOf( result ) );
+	        		}
+	            }	            
+	        });
+        }
+	    
+	    // there is no gain in running a single test in parallel
+	    if( tasks.size() > 1 )
+	        pool.execute( tasks );
+	}
+
 	private void preclassify(ATermAppl c, ATermAppl d, boolean isSame) {
 //        if( isSame ) 
 //            primitives.remove( c );
@@ -471,6 +587,10 @@ public class TaxonomyBuilder {
 		if( log.isInfoEnabled() ) 
             log.info("Classify (" + (++count) + ") " + getName(c) + "...");	
 		
+		// results computed for the previous class are not needed any more 
+		if( parallelResults != null )
+		    parallelResults.clear();
+		
 	    TaxonomyNode node = checkSatisfiability( c );	
 	    
 	    if( node != null ) return node;
@@ -548,6 +668,9 @@ public class TaxonomyBuilder {
 		visited.add(x);
 		
 		List list = topSearch ? x.getSubs() : x.getSupers();
+		if( pool != null )
+		    testSubsumptions( topSearch, c, list, marked );
+		
 		for(int i = 0; i < list.size(); i++) {
 		    TaxonomyNode next = (TaxonomyNode) list.get(i);
 
@@ -636,6 +759,12 @@ public class TaxonomyBuilder {
 	}
 	
 	private boolean subsumes(ATermAppl sup, ATermAppl sub) {
+	    if( parallelResults != null ) {
+	        Boolean result = (Boolean) parallelResults.remove( ATermUtils.makeSub( sub, sup ) );
+	        if( result != null )
+	            return result.booleanValue();
+	    }
+	    
 		long time = 0, count = 0;
 	    if( log.isDebugEnabled() ) {
 			time = System.currentTimeMillis();
@@ -672,64 +801,185 @@ public class TaxonomyBuilder {
 	}
 
 	
+	/**
+	 * Use an existing taxonomy, e.g. one loaded from a snapshot, instead of classifying
+	 * the KB. The told subsumers and disjoints that are used to classify class expressions
+	 * and to realize the KB are computed again but no subsumption test is done.
+	 */
+	public void setTaxonomy( Taxonomy taxonomy ) {
+		classes = kb.getClasses();
+		
+		init();
+		
+		this.taxonomy = taxonomy;
+	}
+	
 	/**
 	 * Realize the KB by finding the instances of each class.
 	 */
 	public Taxonomy realize() {		
+		// the taxonomy may have been realized before the ABox changed
+		taxonomy.removeInstances( null );
+		
+		List individuals = new ArrayList();
+		for( Iterator i = kb.getABox().getIndIterator(); i.hasNext(); ) {
+			Individual x = (Individual) i.next();
+			individuals.add( x.getName() );
+		}
+		
+		return realizeIndividuals( individuals );
+	}
+	
+	/**
+	 * Realize the given individuals again, e.g. after the assertions about them have 
+	 * changed. The individuals are removed from the instances of all the classes and 
+	 * their most specific types are found again. The instances of the other individuals 
+	 * are not changed.
+	 * 
+	 * @param individuals A collection of individual names
+	 */
+	public Taxonomy realize( Collection individuals ) {
+		taxonomy.removeInstances( individuals );
+		
+		return realizeIndividuals( new ArrayList( individuals ) );
+	}
+	
+	private Taxonomy realizeIndividuals( List individuals ) {
 //		if( PelletOptions.SHOW_CLASSIFICATION_PROGRESS && (listener instanceof SilentClassifyProgress))
 //		    listener = new DefaultClassifyProgress();
-	    listener.realizationStarted( kb.getIndividuals().size() );
+	    listener.realizationStarted( individuals.size() );
 	    
-		Iterator i = kb.getABox().getIndIterator();
-		for(int count = 0; i.hasNext(); count++) {
-			if( listener.isCanceled() ) {
-			    listener.taskFinished();
-			    return null;
-			}
-			
-			Individual x = (Individual) i.next();
-			            
-            listener.startIndividual( getName( x.getName() ) );
-            
-			if( log.isInfoEnabled() ) 
-                log.info(count + ") Realizing " + getName(x.getName()) + " ");
-
-			Map marked = new HashMap();
-			
-			List obviousTypes = new ArrayList();
-			List obviousNonTypes = new ArrayList();
-			
-			kb.getABox().getObviousTypes( x.getName(), obviousTypes, obviousNonTypes );
-						
-			for(Iterator j = obviousTypes.iterator(); j.hasNext();) {
-                ATermAppl c = (ATermAppl) j.next();
-                
-                // since nominals can be returned by getObviousTypes 
-                // we need the following check
-                if( !taxonomy.contains( c ) ) continue;
-                
-                mark( taxonomy.getAllEquivalents( c ), marked, Boolean.TRUE );
-                mark( taxonomy.getSupers( c, true, true ), marked, Boolean.TRUE );
-                
-                markToldDisjoints( c, marked );
-            }
-			
-			for(Iterator j = obviousNonTypes.iterator(); j.hasNext();) {
-                ATermAppl c = (ATermAppl) j.next();
-                               
-                mark( taxonomy.getAllEquivalents( c ), marked, Boolean.FALSE );
-                mark( taxonomy.getSubs( c, true, true ), marked, Boolean.FALSE );
-            }			
-			
-			realize( x.getName(), ATermUtils.TOP, marked );
-		}		
+	    if( PelletOptions.REALIZATION_THREADS > 1 ) {
+	        if( !realizeInParallel( individuals ) ) {
+	            listener.taskFinished();
+	            return null;
+	        }
+	    }
+	    else {
+			for(int count = 0; count < individuals.size(); count++) {
+				if( listener.isCanceled() ) {
+				    listener.taskFinished();
+				    return null;
+				}
+				
+				ATermAppl x = (ATermAppl) individuals.get( count );
+				            
+	            listener.startIndividual( getName( x ) );
+	            
+				if( log.isInfoEnabled() ) 
+	                log.info(count + ") Realizing " + getName( x ) + " ");
+	
+				List types = realize( kb, x );
+				addInstance( x, types );
+			}		
+	    }
 		
 		listener.taskFinished();
 		
 		return taxonomy;
 	}
 	
-	private boolean realize( ATermAppl n, ATermAppl c, Map marked ) {
+	/**
+	 * Realize the individuals in batches using a pool of worker threads. The taxonomy is 
+	 * not modified while the workers are running. The most specific types found by the 
+	 * workers are collected and the instances are added to the taxonomy nodes after all 
+	 * the individuals are processed. The listener is notified after each round of batches 
+	 * and realization is stopped if the listener cancels the task.
+	 * 
+	 * @return <code>false</code> if realization was canceled
+	 */
+	private boolean realizeInParallel( final List individuals ) {
+	    int threads = PelletOptions.REALIZATION_THREADS;
+	    int batchSize = Math.max( 1, PelletOptions.REALIZATION_BATCH_SIZE );
+	    
+	    // most specific types for each individual in the same order as the individuals
+	    final List[] types = new List[ individuals.size() ];
+	    
+	    WorkerPool pool = new WorkerPool( kb, threads );
+	    try {
+		    for( int start = 0; start < individuals.size(); start += threads * batchSize ) {
+				if( listener.isCanceled() )
+				    return false;
+				
+				int end = Math.min( individuals.size(), start + threads * batchSize );
+				
+				List tasks = new ArrayList();
+				for( int batchStart = start; batchStart < end; batchStart += batchSize ) {
+				    final int from = batchStart;
+				    final int to = Math.min( end, batchStart + batchSize );
+				    tasks.add( new WorkerPool.Task() {
+				        public void run( KnowledgeBase kb ) {
+				            for( int i = from; i < to; i++ )
+				                types[i] = realize( kb, (ATermAppl) individuals.get( i ) );
+				        }
+				    });
+	            }
+				
+				if( log.isInfoEnabled() ) 
+	                log.info("Realizing individuals " + start + " to " + end);
+				
+				pool.execute( tasks );
+				
+				for( int i = start; i < end; i++ )
+				    listener.startIndividual( getName( (ATermAppl) individuals.get( i ) ) );
+			}
+	    }
+	    finally {
+	        pool.shutdown();
+	    }
+	    
+	    for( int i = 0; i < individuals.size(); i++ )
+	        addInstance( (ATermAppl) individuals.get( i ), types[i] );
+	    
+	    return true;
+	}
+	
+	/**
+	 * Find the most specific types of the individual using the given KB for the 
+	 * instance checks. The taxonomy is not modified by this function.
+	 */
+	private List realize( KnowledgeBase kb, ATermAppl x ) {
+		Map marked = new HashMap();
+		
+		List obviousTypes = new ArrayList();
+		List obviousNonTypes = new ArrayList();
+		
+		kb.getABox().getObviousTypes( x, obviousTypes, obviousNonTypes );
+					
+		for(Iterator j = obviousTypes.iterator(); j.hasNext();) {
+            ATermAppl c = (ATermAppl) j.next();
+            
+            // since nominals can be returned by getObviousTypes 
+            // we need the following check
+            if( !taxonomy.contains( c ) ) continue;
+            
+            mark( taxonomy.getAllEquivalents( c ), marked, Boolean.TRUE );
+            mark( taxonomy.getSupers( c, true, true ), marked, Boolean.TRUE );
+            
+            markToldDisjoints( c, marked );
+        }
+		
+		for(Iterator j = obviousNonTypes.iterator(); j.hasNext();) {
+            ATermAppl c = (ATermAppl) j.next();
+                           
+            mark( taxonomy.getAllEquivalents( c ), marked, Boolean.FALSE );
+            mark( taxonomy.getSubs( c, true, true ), marked, Boolean.FALSE );
+        }			
+		
+		List types = new ArrayList();
+		realize( kb, x, ATermUtils.TOP, marked, types );
+		
+		return types;
+	}
+	
+	private void addInstance( ATermAppl x, List types ) {
+	    for(Iterator i = types.iterator(); i.hasNext();) {
+            ATermAppl c = (ATermAppl) i.next();
+            taxonomy.getNode( c ).addInstance( x );
+        }
+	}
+	
+	private boolean realize( KnowledgeBase kb, ATermAppl n, ATermAppl c, Map marked, List types ) {
 		boolean realized = false;
 		
 		if(c.equals(ATermUtils.BOTTOM)) return false;
@@ -769,13 +1019,13 @@ public class TaxonomyBuilder {
 			    TaxonomyNode sub = (TaxonomyNode) subs.next();
 				ATermAppl d = sub.getName();
 					
-				realized = realize(n, d, marked) || realized; 
+				realized = realize(kb, n, d, marked, types) || realized; 
 			}
 			
 			// this concept is the most specific concept x belongs to
-			// so add it here and return true 
+			// so add it to the types and return true 
 			if( !realized ) {	
-				taxonomy.getNode( c ).addInstance( n );
+				types.add( c );
 				realized = true;
 			}
 		}
@@ -9,6 +9,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.mindswap.pellet.utils.ATermUtils;
@@ -51,6 +52,41 @@ public class TaxonomyNode {
         }
     }
     
+    /**
+     * Create a node with the same name, equivalents and instances as this node. The 
+     * edges of the node are added by {@link #copyEdges(TaxonomyNode, Map)}.
+     */
+    TaxonomyNode copy() {
+        TaxonomyNode copy = new TaxonomyNode( name, hidden );
+        
+        if( equivalents.size() > 1 )
+            copy.equivalents = new HashSet( equivalents );
+        if( instances != null )
+            copy.instances = new HashSet( instances );
+        
+        return copy;
+    }
+    
+    /**
+     * Add the copies of the super and sub nodes of the given node to this node.
+     * 
+     * @param node The node this node was copied from
+     * @param copies Map from the original nodes to their copies
+     */
+    void copyEdges( TaxonomyNode node, Map copies ) {
+        for(Iterator i = node.supers.iterator(); i.hasNext();) {
+            TaxonomyNode sup = (TaxonomyNode) copies.get( i.next() );
+            if( sup != null )
+                supers.add( sup );
+        }
+        
+        for(Iterator i = node.subs.iterator(); i.hasNext();) {
+            TaxonomyNode sub = (TaxonomyNode) copies.get( i.next() );
+            if( sub != null )
+                subs.add( sub );
+        }
+    }
+    
     public boolean isHidden() {
         return hidden;
     }
@@ -66,6 +102,12 @@ public class TaxonomyNode {
         equivalents.add( c );
     }
     
+    public void removeEquivalent(ATermAppl c) {
+        // the name of the node is always kept
+        if( !c.equals( name ) )
+            equivalents.remove( c );
+    }
+    
     public void addSub( TaxonomyNode other ) {
         if( this.equals( other ) || subs.contains( other ) )
             return;
@@ -119,6 +161,11 @@ public class TaxonomyNode {
             instances = new HashSet();
         instances.add(ind);
     }
+    
+    public void removeInstance(ATermAppl ind) {
+        if(instances != null)
+            instances.remove(ind);
+    }
 	
     public ATermAppl getName() {
         return name;
@@ -72,5 +72,33 @@ public interface TBox {
 	
 	public Map getUnfoldingMap();	
 	
+	/**
+	 * Returns the axioms in the unfoldable part of the prepared TBox after absorption.
+	 */
+	public List getUnfoldableAxioms();
+	
+	/**
+	 * Returns the general axioms of the prepared TBox that could not be absorbed.
+	 */
+	public List getGeneralAxioms();
+	
+	/**
+	 * Restores the state of a prepared TBox, e.g. from a snapshot, without splitting,
+	 * absorbing, normalizing and internalizing the axioms again. The arguments should be
+	 * the values returned by {@link #getUnfoldableAxioms()}, {@link #getGeneralAxioms()},
+	 * {@link #getUnfoldingMap()} and {@link #getUC()} for a TBox with the same axioms.
+	 */
+	public void restore( List unfoldable, List general, Map unfoldingMap, ATermList uc );
+	
+	/**
+	 * Returns the classes whose definitions changed since the previous time this TBox 
+	 * was processed together with all the classes that depend on them. Returns null if 
+	 * the changes may affect any class, e.g. a general axiom was added, or if there is 
+	 * no previous state to compare with. The previous state is discarded by this call.
+	 * 
+	 * @return the affected classes or null
+	 */
+	public Set getAffectedClasses();
+	
 	public void print();
 }
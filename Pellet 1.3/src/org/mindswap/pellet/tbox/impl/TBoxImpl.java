@@ -35,6 +35,7 @@ import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mindswap.pellet.KnowledgeBase;
+import org.mindswap.pellet.PelletOptions;
 import org.mindswap.pellet.tbox.TBox;
 import org.mindswap.pellet.utils.ATermUtils;
 
@@ -71,6 +72,11 @@ public class TBoxImpl implements TBox {
 	public TuBox Tu = null;
 	public TgBox Tg = null;
 
+	// the unfolding map and UC before the last split, kept to find the
+	// classes affected by the TBox changes
+	private Map prevUnfoldedMap = null;
+	private ATermList prevUC = null;
+
 	// Debug - hold exception around to examine it.
 	static Exception lastException = null;
 
@@ -138,6 +144,15 @@ public class TBoxImpl implements TBox {
 	}
 	
 	public void split() {
+		if( PelletOptions.USE_INCREMENTAL_CLASSIFICATION && Tu != null ) {
+		    prevUnfoldedMap = Tu.unfoldedMap;
+		    prevUC = getUC();
+		}
+		else {
+		    prevUnfoldedMap = null;
+		    prevUC = null;
+		}
+		
 		Tu = new TuBox(kb);
 		Tu.setAllowEvenLoops(false);
 		Tg = new TgBox(kb);
@@ -469,6 +484,105 @@ public class TBoxImpl implements TBox {
     public Map getUnfoldingMap() {
         return Tu.unfoldedMap;
     }
+    
+    public List getUnfoldableAxioms() {
+        return Tu == null ? Collections.EMPTY_LIST : Tu.toList();
+    }
+    
+    public List getGeneralAxioms() {
+        return Tg == null ? Collections.EMPTY_LIST : Tg.toList();
+    }
+    
+    public void restore( List unfoldable, List general, Map unfoldingMap, ATermList uc ) {
+        prevUnfoldedMap = null;
+        prevUC = null;
+        
+        Tu = new TuBox( kb );
+        Tu.setAllowEvenLoops( false );
+        for( Iterator i = unfoldable.iterator(); i.hasNext(); )
+            Tu.addDef( (ATermAppl) i.next() );
+        Tu.unfoldedMap = unfoldingMap;
+        
+        Tg = new TgBox( kb );
+        for( Iterator i = general.iterator(); i.hasNext(); )
+            Tg.addDef( (ATermAppl) i.next() );
+        Tg.setUC( uc );
+    }
+    
+    public Set getAffectedClasses() {
+        Map prevMap = prevUnfoldedMap;
+        ATermList uc = prevUC;
+        prevUnfoldedMap = null;
+        prevUC = null;
+        
+        if( prevMap == null || Tu.unfoldedMap == null )
+            return null;
+        
+        // a change in the general axioms may affect any class 
+        if( uc == null ? getUC() != null : !uc.equals( getUC() ) )
+            return null;
+        
+        Set keys = new HashSet( prevMap.keySet() );
+        keys.addAll( Tu.unfoldedMap.keySet() );
+
+        Set affected = new HashSet();
+        List queue = new ArrayList();
+        for( Iterator i = keys.iterator(); i.hasNext(); ) {
+            ATermAppl key = (ATermAppl) i.next();
+            Object prev = prevMap.get( key );
+            Object curr = Tu.unfoldedMap.get( key );
+            if( prev == null ? curr == null : prev.equals( curr ) )
+                continue;
+            
+            ATermAppl c = ATermUtils.isNot( key ) ? (ATermAppl) key.getArgument( 0 ) : key;
+            if( c.equals( ATermUtils.TOP ) )
+                return null;
+            
+            if( affected.add( c ) )
+                queue.add( c );
+        }
+        
+        // the classes that refer to a class in their definitions
+        Map referredBy = new HashMap();
+        for( Iterator i = Tu.termhash.values().iterator(); i.hasNext(); ) {
+            TermDefinition td = (TermDefinition) i.next();
+            for( Iterator j = td.dependencies.iterator(); j.hasNext(); ) {
+                Object dep = j.next();
+                Set refs = (Set) referredBy.get( dep );
+                if( refs == null ) {
+                    refs = new HashSet();
+                    referredBy.put( dep, refs );
+                }
+                refs.add( td.getName() );
+            }
+        }
+
+        while( !queue.isEmpty() ) {
+            ATermAppl c = (ATermAppl) queue.remove( queue.size() - 1 );
+            Set refs = (Set) referredBy.get( c );
+            if( refs == null )
+                continue;
+            for( Iterator i = refs.iterator(); i.hasNext(); ) {
+                ATermAppl ref = (ATermAppl) i.next();
+                if( affected.add( ref ) )
+                    queue.add( ref );
+            }
+        }
+
+        // every class is tested against the UC so any class it uses 
+        // affects all the classes 
+        if( uc != null ) {
+            for( ATermList list = uc; !list.isEmpty(); list = list.getNext() ) {
+                Set prims = ATermUtils.findPrimitives( (ATermAppl) list.getFirst() );
+                for( Iterator i = prims.iterator(); i.hasNext(); ) {
+                    if( affected.contains( i.next() ) )
+                        return null;
+                }
+            }
+        }
+        
+        return affected;
+    }
         
     public void print() {
         Tg.print();
@@ -439,6 +439,10 @@ public class TgBox extends TBoxImpl {
 	public ATermList getUC() {
 		return UC;
 	}
+
+	void setUC( ATermList uc ) {
+		UC = uc;
+	}
 	
 	public int size() {
 	    return UC == null ? 0 : UC.getLength();
@@ -0,0 +1,163 @@
+package org.mindswap.pellet.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import aterm.AFun;
+import aterm.ATerm;
+import aterm.ATermAppl;
+import aterm.ATermFactory;
+import aterm.ATermInt;
+import aterm.ATermList;
+
+/**
+ * Writes ATerms in a compact binary format and reads them back. Every function symbol
+ * and every distinct subterm is written only once and the later occurrences are written
+ * as references to a table index. Unlike the shared text format of the ATerm library,
+ * function symbols that are not valid identifiers (e.g. URIs or the names of the built-in
+ * concepts) are supported. Lists are written as a sequence of elements so long lists do
+ * not cause deep recursion. Annotations are not written.
+ */
+public class ATermIO {
+    private static final byte REF = 0;
+    private static final byte APPL = 1;
+    private static final byte NEW_AFUN = 2;
+    private static final byte LIST = 3;
+    private static final byte INT = 4;
+
+    private Map terms = new HashMap();
+    private Map afuns = new HashMap();
+
+    private List termTable = new ArrayList();
+    private List afunTable = new ArrayList();
+
+    private ATermFactory factory = ATermUtils.getFactory();
+
+    /**
+     * Create an object that can be used either for writing or for reading a sequence of
+     * terms. The terms written with one object share the same tables so they should be
+     * read back with one object in the same order.
+     */
+    public ATermIO() {
+    }
+
+    public void write( DataOutput out, ATerm term ) throws IOException {
+        Integer index = (Integer) terms.get( term );
+        if( index != null ) {
+            out.writeByte( REF );
+            out.writeInt( index.intValue() );
+            return;
+        }
+
+        switch( term.getType() ) {
+        case ATerm.APPL:
+            ATermAppl appl = (ATermAppl) term;
+            AFun fun = appl.getAFun();
+            Integer funIndex = (Integer) afuns.get( fun );
+            if( funIndex == null ) {
+                out.writeByte( NEW_AFUN );
+                writeString( out, fun.getName() );
+                out.writeInt( fun.getArity() );
+                out.writeBoolean( fun.isQuoted() );
+                afuns.put( fun, new Integer( afuns.size() ) );
+            }
+            else {
+                out.writeByte( APPL );
+                out.writeInt( funIndex.intValue() );
+            }
+            for( int i = 0; i < fun.getArity(); i++ )
+                write( out, appl.getArgument( i ) );
+            break;
+        case ATerm.LIST:
+            ATermList list = (ATermList) term;
+            out.writeByte( LIST );
+            out.writeInt( list.getLength() );
+            for( ; !list.isEmpty(); list = list.getNext() )
+                write( out, list.getFirst() );
+            break;
+        case ATerm.INT:
+            out.writeByte( INT );
+            out.writeInt( ((ATermInt) term).getInt() );
+            break;
+        default:
+            throw new IOException( "Unsupported term type " + term.getType() + ": " + term );
+        }
+
+        terms.put( term, new Integer( terms.size() ) );
+    }
+
+    public ATerm read( DataInput in ) throws IOException {
+        byte tag = in.readByte();
+
+        ATerm term;
+        switch( tag ) {
+        case REF:
+            return (ATerm) get( termTable, in.readInt() );
+        case NEW_AFUN:
+            String name = readString( in );
+            int arity = in.readInt();
+            boolean quoted = in.readBoolean();
+            afunTable.add( factory.makeAFun( name, arity, quoted ) );
+            term = readAppl( in, (AFun) afunTable.get( afunTable.size() - 1 ) );
+            break;
+        case APPL:
+            term = readAppl( in, (AFun) get( afunTable, in.readInt() ) );
+            break;
+        case LIST:
+            ATerm[] elements = new ATerm[in.readInt()];
+            for( int i = 0; i < elements.length; i++ )
+                elements[i] = read( in );
+            ATermList list = ATermUtils.EMPTY_LIST;
+            for( int i = elements.length - 1; i >= 0; i-- )
+                list = factory.makeList( elements[i], list );
+            term = list;
+            break;
+        case INT:
+            term = factory.makeInt( in.readInt() );
+            break;
+        default:
+            throw new IOException( "Invalid term tag " + tag );
+        }
+
+        termTable.add( term );
+
+        return term;
+    }
+
+    private ATerm readAppl( DataInput in, AFun fun ) throws IOException {
+        ATerm[] args = new ATerm[fun.getArity()];
+        for( int i = 0; i < args.length; i++ )
+            args[i] = read( in );
+
+        return factory.makeAppl( fun, args );
+    }
+
+    private Object get( List table, int index ) throws IOException {
+        if( index < 0 || index >= table.size() )
+            throw new IOException( "Invalid reference " + index );
+
+        return table.get( index );
+    }
+
+    private void writeString( DataOutput out, String s ) throws IOException {
+        byte[] bytes = s.getBytes( "UTF-8" );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    private String readString( DataInput in ) throws IOException {
+        int length = in.readInt();
+        if( length < 0 )
+            throw new IOException( "Invalid string length " + length );
+
+        byte[] bytes = new byte[length];
+        in.readFully( bytes );
+
+        return new String( bytes, "UTF-8" );
+    }
+}
@@ -34,13 +34,13 @@ import java.util.Set;
 
 import org.mindswap.pellet.PelletOptions;
 
+import shared.SharedObjectWithID;
 import aterm.AFun;
 import aterm.ATerm;
 import aterm.ATermAppl;
 import aterm.ATermFactory;
 import aterm.ATermInt;
 import aterm.ATermList;
-import aterm.pure.PureFactory;
 
 
 /**
@@ -69,7 +69,7 @@ public class ATermUtils {
 	public static final String SUB  = "sub";
 	public static final String SAME = "same";
 	
-	private static final ATermFactory factory = new PureFactory();
+	private static final ATermFactory factory = new SynchronizedFactory();
 	
 	public static final AFun LITFUN  = factory.makeAFun("literal", 3, false);
 	public static final int LIT_VAL_INDEX  = 0;
@@ -426,6 +426,16 @@ public class ATermUtils {
 		return a;
 	}
 
+	/**
+	 * Returns the integer identifier the ATerm factory assigned to the term. Terms are 
+	 * maximally shared so two terms are equal if and only if they have the same
+	 * identifier. The identifier of a term that is garbage collected may be reused
+	 * so the identifiers should only be compared for terms that are still referenced.
+	 */
+	public final static int getId(ATerm term) {
+		return ((SharedObjectWithID) term).getUniqueIdentifier();
+	}
+
 	public final static void assertTrue(boolean condition) {
 		if(!condition) {
 			throw new RuntimeException("assertion failed.");
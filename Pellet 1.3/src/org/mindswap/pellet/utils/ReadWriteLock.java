@@ -0,0 +1,64 @@
+package org.mindswap.pellet.utils;
+
+import org.mindswap.pellet.exceptions.InternalReasonerException;
+
+/**
+ * A lock that can be held by any number of readers at the same time or by a single
+ * writer. A writer waiting for the lock blocks the readers that arrive after it so that
+ * a steady stream of readers cannot starve the writers. The lock is not reentrant, i.e.
+ * a thread holding the lock should not try to acquire it again.
+ */
+public class ReadWriteLock {
+    private int readers = 0;
+
+    private int waitingWriters = 0;
+
+    private boolean writing = false;
+
+    public synchronized void lockRead() {
+        while( writing || waitingWriters > 0 )
+            await();
+
+        readers++;
+    }
+
+    public synchronized void unlockRead() {
+        if( readers <= 0 )
+            throw new IllegalStateException( "Read lock is not held" );
+
+        if( --readers == 0 )
+            notifyAll();
+    }
+
+    public synchronized void lockWrite() {
+        waitingWriters++;
+        try {
+            while( writing || readers > 0 )
+                await();
+        }
+        finally {
+            waitingWriters--;
+            // if interrupted, the readers blocked by this writer may proceed now
+            notifyAll();
+        }
+
+        writing = true;
+    }
+
+    public synchronized void unlockWrite() {
+        if( !writing )
+            throw new IllegalStateException( "Write lock is not held" );
+
+        writing = false;
+        notifyAll();
+    }
+
+    private void await() {
+        try {
+            wait();
+        }
+        catch( InterruptedException e ) {
+            throw new InternalReasonerException( "Interrupted while waiting for a lock" );
+        }
+    }
+}
@@ -114,6 +114,32 @@ public class SetUtils {
 		return sub.size() <= sup.size() && sup.containsAll( sub );
 	}
 	
+	/**
+	 * Checks if one set is subset of another one where both sets are given as sorted
+	 * arrays without duplicates
+	 * 
+	 * @param sub
+	 * @param sup
+	 * @return
+	 */
+	public static boolean subset(int[] sub, int[] sup) {
+		if( sub.length > sup.length )
+			return false;
+		
+		int j = 0;
+		for(int i = 0; i < sub.length; i++) {
+			while( j < sup.length && sup[j] < sub[i] )
+				j++;
+			
+			if( j == sup.length || sup[j] != sub[i] )
+				return false;
+			
+			j++;
+		}
+		
+		return true;
+	}
+	
 	/**
 	 * Checks if one set is equal of another one
 	 * 
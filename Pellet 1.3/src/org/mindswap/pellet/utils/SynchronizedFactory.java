@@ -0,0 +1,143 @@
+package org.mindswap.pellet.utils;
+
+import shared.SharedObject;
+import aterm.AFun;
+import aterm.ATerm;
+import aterm.ATermAppl;
+import aterm.ATermBlob;
+import aterm.ATermInt;
+import aterm.ATermList;
+import aterm.ATermPlaceholder;
+import aterm.ATermReal;
+import aterm.pure.PureFactory;
+
+/**
+ * An ATerm factory that can be used by multiple threads at the same time. PureFactory
+ * keeps the hash-consing table and the prototype terms used for lookups in fields
+ * without any synchronization so concurrent term creation (which happens all the time
+ * during tableau reasoning, e.g. normalization and negation of concepts) would corrupt
+ * the table. This factory serializes every term creation on the factory object which
+ * is also the lock PureFactory itself uses for parsing. Reading terms does not require
+ * any locking because terms are immutable once created.
+ */
+public class SynchronizedFactory extends PureFactory {
+    public SynchronizedFactory() {
+        super();
+    }
+
+    public synchronized SharedObject build( SharedObject prototype ) {
+        return super.build( prototype );
+    }
+
+    public synchronized AFun makeAFun( String name, int arity, boolean isQuoted ) {
+        return super.makeAFun( name, arity, isQuoted );
+    }
+
+    public synchronized ATermInt makeInt( int value ) {
+        return super.makeInt( value );
+    }
+
+    public synchronized ATermInt makeInt( int value, ATermList annos ) {
+        return super.makeInt( value, annos );
+    }
+
+    public synchronized ATermReal makeReal( double value ) {
+        return super.makeReal( value );
+    }
+
+    public synchronized ATermReal makeReal( double value, ATermList annos ) {
+        return super.makeReal( value, annos );
+    }
+
+    public synchronized ATermList makeList() {
+        return super.makeList();
+    }
+
+    public synchronized ATermList makeList( ATerm single ) {
+        return super.makeList( single );
+    }
+
+    public synchronized ATermList makeList( ATerm first, ATermList next ) {
+        return super.makeList( first, next );
+    }
+
+    public synchronized ATermList makeList( ATerm first, ATermList next, ATermList annos ) {
+        return super.makeList( first, next, annos );
+    }
+
+    public synchronized ATermPlaceholder makePlaceholder( ATerm type ) {
+        return super.makePlaceholder( type );
+    }
+
+    public synchronized ATermPlaceholder makePlaceholder( ATerm type, ATermList annos ) {
+        return super.makePlaceholder( type, annos );
+    }
+
+    public synchronized ATermBlob makeBlob( byte[] data ) {
+        return super.makeBlob( data );
+    }
+
+    public synchronized ATermBlob makeBlob( byte[] data, ATermList annos ) {
+        return super.makeBlob( data, annos );
+    }
+
+    public synchronized ATermAppl makeAppl( AFun fun ) {
+        return super.makeAppl( fun );
+    }
+
+    public synchronized ATermAppl makeAppl( AFun fun, ATerm arg ) {
+        return super.makeAppl( fun, arg );
+    }
+
+    public synchronized ATermAppl makeAppl( AFun fun, ATerm arg1, ATerm arg2 ) {
+        return super.makeAppl( fun, arg1, arg2 );
+    }
+
+    public synchronized ATermAppl makeAppl( AFun fun, ATerm arg1, ATerm arg2, ATerm arg3 ) {
+        return super.makeAppl( fun, arg1, arg2, arg3 );
+    }
+
+    public synchronized ATermAppl makeAppl( AFun fun, ATerm arg1, ATerm arg2, ATerm arg3,
+        ATerm arg4 ) {
+        return super.makeAppl( fun, arg1, arg2, arg3, arg4 );
+    }
+
+    public synchronized ATermAppl makeAppl( AFun fun, ATerm arg1, ATerm arg2, ATerm arg3,
+        ATerm arg4, ATerm arg5 ) {
+        return super.makeAppl( fun, arg1, arg2, arg3, arg4, arg5 );
+    }
+
+    public synchronized ATermAppl makeAppl( AFun fun, ATerm arg1, ATerm arg2, ATerm arg3,
+        ATerm arg4, ATerm arg5, ATerm arg6 ) {
+        return super.makeAppl( fun, arg1, arg2, arg3, arg4, arg5, arg6 );
+    }
+
+    public synchronized ATermAppl makeAppl( AFun fun, ATerm arg1, ATerm arg2, ATerm arg3,
+        ATerm arg4, ATerm arg5, ATerm arg6, ATerm arg7 ) {
+        return super.makeAppl( fun, arg1, arg2, arg3, arg4, arg5, arg6, arg7 );
+    }
+
+    public synchronized ATermAppl makeAppl( AFun fun, ATerm[] args ) {
+        return super.makeAppl( fun, args );
+    }
+
+    public synchronized ATermAppl makeAppl( AFun fun, ATerm[] args, ATermList annos ) {
+        return super.makeAppl( fun, args, annos );
+    }
+
+    public synchronized ATermAppl makeApplList( AFun fun, ATermList args ) {
+        return super.makeApplList( fun, args );
+    }
+
+    public synchronized ATermAppl makeApplList( AFun fun, ATermList args, ATermList annos ) {
+        return super.makeApplList( fun, args, annos );
+    }
+
+    public synchronized ATerm parse( String trm ) {
+        return super.parse( trm );
+    }
+
+    public synchronized ATerm importTerm( ATerm term ) {
+        return super.importTerm( term );
+    }
+}
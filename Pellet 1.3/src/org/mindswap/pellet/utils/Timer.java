@@ -111,6 +111,14 @@ public class Timer {
 	    count += timer.count;
 	}
 	
+	/**
+	 * Increment the count of this timer without recording any time. Used for 
+	 * the timers that only count how many times an event happened.
+	 */
+	public void increment() {
+	    count++;
+	}
+	
 	/**
 	 * Start time timer by recording the time this function is called. If timer is running when
 	 * this function is called time is not recorded and only an internal counter is updated. 
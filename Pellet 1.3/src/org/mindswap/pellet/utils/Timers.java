@@ -55,9 +55,8 @@ public class Timers  {
             Timer otherTimer = other.getTimer( name );
             Timer thisTimer = getTimer( name );
             if( thisTimer == null )
-                timers.put( name, otherTimer );
-            else 
-                thisTimer.add( otherTimer );            
+                thisTimer = createTimer( name );
+            thisTimer.add( otherTimer );            
         }	    
 	}
 
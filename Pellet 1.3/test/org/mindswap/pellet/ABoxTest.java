@@ -0,0 +1,38 @@
+package org.mindswap.pellet;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.mindswap.pellet.utils.ATermUtils;
+
+import aterm.ATermAppl;
+
+/**
+ * Tests the copying of ABoxes
+ */
+public class ABoxTest extends TestCase {
+    public static TestSuite suite() {
+        return new TestSuite( ABoxTest.class );
+    }
+
+    public void testCopyMergedNodes() {
+        ATermAppl a = ATermUtils.makeTermAppl( "a" );
+        ATermAppl b = ATermUtils.makeTermAppl( "b" );
+
+        KnowledgeBase kb = new KnowledgeBase();
+        kb.addIndividual( a );
+        kb.addIndividual( b );
+
+        ABox abox = kb.getABox().copy();
+        abox.getNode( b ).setSame( abox.getNode( a ), DependencySet.INDEPENDENT );
+
+        // a restore removes the nodes created after the branch even if they have 
+        // been merged to a node that still exists
+        abox.getNodeMap().remove( b );
+        abox.getNodeNames().remove( b );
+
+        ABox copy = abox.copy();
+        assertNull( copy.getNode( b ) );
+        assertNotNull( copy.copy().getNode( a ) );
+    }
+}
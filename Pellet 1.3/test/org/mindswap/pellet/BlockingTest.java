@@ -0,0 +1,251 @@
+package org.mindswap.pellet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.mindswap.pellet.utils.ATermUtils;
+
+import aterm.ATermAppl;
+
+/**
+ * Tests the blocking strategies on completion graphs built by hand. The blocked status
+ * memoized by a strategy is compared with the status computed by a new instance of the
+ * same strategy after each change.
+ */
+public class BlockingTest extends TestCase {
+    private static ATermAppl A = ATermUtils.makeTermAppl( "A" );
+    private static ATermAppl B = ATermUtils.makeTermAppl( "B" );
+    private static ATermAppl C = ATermUtils.makeTermAppl( "C" );
+    private static ATermAppl r = ATermUtils.makeTermAppl( "r" );
+    private static ATermAppl s = ATermUtils.makeTermAppl( "s" );
+
+    private ABox abox;
+    private Role role;
+
+    /**
+     * The nodes of the completion graph, the root is the first one
+     */
+    private List nodes;
+
+    public static TestSuite suite() {
+        return new TestSuite( BlockingTest.class );
+    }
+
+    protected void setUp() {
+        ATermAppl a = ATermUtils.makeTermAppl( "a" );
+
+        KnowledgeBase kb = new KnowledgeBase();
+        kb.addClass( A );
+        kb.addClass( B );
+        kb.addClass( C );
+        kb.addObjectProperty( r );
+        kb.addObjectProperty( s );
+        kb.addIndividual( a );
+        assertTrue( kb.isConsistent() );
+
+        abox = kb.getABox();
+        role = kb.getRBox().getRole( r );
+
+        nodes = new ArrayList();
+        nodes.add( abox.getIndividual( a ) );
+    }
+
+    /**
+     * Add a chain of anonymous r-successors to the last node, each with the given types.
+     */
+    private void addChain( ATermAppl[][] types ) {
+        for( int i = 0; i < types.length; i++ ) {
+            Individual parent = (Individual) nodes.get( nodes.size() - 1 );
+            Individual node = abox.addFreshIndividual();
+            parent.addEdge( role, node, DependencySet.INDEPENDENT );
+            for( int j = 0; j < types[i].length; j++ )
+                node.addType( types[i][j], DependencySet.INDEPENDENT );
+            nodes.add( node );
+        }
+    }
+
+    private Individual node( int i ) {
+        return (Individual) nodes.get( i );
+    }
+
+    /**
+     * Check which of the anonymous nodes are blocked and that the memoized status is the
+     * same as the status computed from scratch.
+     */
+    private void assertBlocked( Blocking blocking, Blocking fresh, boolean[] blocked ) {
+        for( int i = 0; i < blocked.length; i++ ) {
+            Individual x = node( i + 1 );
+            assertEquals( "Node " + (i + 1), blocked[i], blocking.isBlocked( x ) );
+            assertEquals( "Node " + (i + 1), fresh.isBlocked( x ), blocking.isBlocked( x ) );
+        }
+    }
+
+    public void testSubsetBlocking() {
+        Blocking blocking = new SubsetBlocking();
+
+        addChain( new ATermAppl[][] { { A, B }, { A }, { A } } );
+        // the second node is blocked by the first one and the third one indirectly
+        assertBlocked( blocking, new SubsetBlocking(), new boolean[] { false, true, true } );
+
+        // the second node is not a subset of the first one anymore but the third one is
+        // a subset of both
+        node( 2 ).addType( C, DependencySet.INDEPENDENT );
+        assertBlocked( blocking, new SubsetBlocking(), new boolean[] { false, false, true } );
+        assertFalse( blocking.isIndirectlyBlocked( node( 3 ) ) );
+
+        node( 1 ).addType( C, DependencySet.INDEPENDENT );
+        assertBlocked( blocking, new SubsetBlocking(), new boolean[] { false, true, true } );
+        assertTrue( blocking.isIndirectlyBlocked( node( 3 ) ) );
+    }
+
+    /**
+     * The completion graph of a cyclic definition is a chain of nodes with the same
+     * types. Every node after the first one is blocked and all but the second one are
+     * blocked indirectly.
+     */
+    public void testCycle() {
+        Blocking blocking = new SubsetBlocking();
+
+        addChain( new ATermAppl[][] { { A }, { A }, { A }, { A }, { A } } );
+        assertBlocked( blocking, new SubsetBlocking(), new boolean[] { false, true, true, true, true } );
+        assertFalse( blocking.isIndirectlyBlocked( node( 2 ) ) );
+        for( int i = 3; i <= 5; i++ )
+            assertTrue( blocking.isIndirectlyBlocked( node( i ) ) );
+
+        // a change in the middle of the chain unblocks the node but not its descendants
+        node( 2 ).addType( B, DependencySet.INDEPENDENT );
+        assertBlocked( blocking, new SubsetBlocking(), new boolean[] { false, false, true, true, true } );
+        assertFalse( blocking.isIndirectlyBlocked( node( 3 ) ) );
+
+        node( 1 ).addType( B, DependencySet.INDEPENDENT );
+        node( 3 ).addType( B, DependencySet.INDEPENDENT );
+        assertBlocked( blocking, new SubsetBlocking(), new boolean[] { false, true, true, true, true } );
+    }
+
+    /**
+     * A node is pairwise blocked by an ancestor with the same types if their
+     * predecessors have the same types and the incoming edges have the same roles.
+     */
+    public void testPairwiseBlocking() {
+        Blocking blocking = new DoubleBlocking();
+
+        addChain( new ATermAppl[][] { { A }, { A }, { A }, { A }, { A } } );
+        // the third node has the same types as the first one but the predecessor of the
+        // first one is the root. the fourth node and its predecessor have the same types
+        // as the second node and its predecessor
+        assertBlocked( blocking, new DoubleBlocking(), new boolean[] { false, false, false, true, true } );
+
+        // the fourth node and the second node have different types now
+        node( 2 ).addType( B, DependencySet.INDEPENDENT );
+        assertBlocked( blocking, new DoubleBlocking(), new boolean[] { false, false, false, false, false } );
+
+        node( 4 ).addType( B, DependencySet.INDEPENDENT );
+        assertBlocked( blocking, new DoubleBlocking(), new boolean[] { false, false, false, true, true } );
+
+        // the fourth node has an incoming edge the second node does not have but the
+        // fifth node is now blocked by the third one
+        node( 3 ).addEdge( abox.getKB().getRBox().getRole( s ), node( 4 ), DependencySet.INDEPENDENT );
+        assertBlocked( blocking, new DoubleBlocking(), new boolean[] { false, false, false, false, true } );
+        assertFalse( blocking.isIndirectlyBlocked( node( 5 ) ) );
+    }
+
+    public void testTypeSignature() {
+        addChain( new ATermAppl[][] { { A, B }, { B, A }, { A }, { A, B, C } } );
+        Blocking blocking = new SubsetBlocking();
+
+        assertTrue( Arrays.equals( node( 1 ).getTypeIds(), node( 2 ).getTypeIds() ) );
+        assertTrue( blocking.equals( node( 1 ), node( 2 ) ) );
+        assertTrue( blocking.subset( node( 1 ), node( 2 ) ) );
+        assertTrue( blocking.subset( node( 3 ), node( 1 ) ) );
+        assertFalse( blocking.subset( node( 1 ), node( 3 ) ) );
+        assertFalse( blocking.equals( node( 1 ), node( 3 ) ) );
+        assertTrue( blocking.subset( node( 1 ), node( 4 ) ) );
+        assertFalse( blocking.subset( node( 4 ), node( 1 ) ) );
+
+        // the signature is computed again after the types change
+        node( 3 ).addType( B, DependencySet.INDEPENDENT );
+        assertTrue( blocking.equals( node( 1 ), node( 3 ) ) );
+        node( 1 ).addType( C, DependencySet.INDEPENDENT );
+        assertTrue( blocking.equals( node( 1 ), node( 4 ) ) );
+        assertFalse( blocking.equals( node( 1 ), node( 2 ) ) );
+        assertTrue( blocking.subset( node( 2 ), node( 1 ) ) );
+
+        node( 1 ).removeTypes();
+        assertEquals( 0, node( 1 ).getTypeIds().length );
+        assertEquals( 0, node( 1 ).getTypeMask() );
+        assertTrue( blocking.subset( node( 1 ), node( 3 ) ) );
+    }
+
+    /**
+     * Types whose identifiers select the same bit of the type mask cannot be told apart
+     * by the mask and the identifiers should be compared.
+     */
+    public void testTypeMaskCollision() {
+        Map terms = new HashMap();
+        ATermAppl c1 = null;
+        ATermAppl c2 = null;
+        for( int i = 0; c2 == null; i++ ) {
+            ATermAppl c = ATermUtils.makeTermAppl( "C" + i );
+            Integer bit = new Integer( ATermUtils.getId( c ) & 63 );
+            c1 = (ATermAppl) terms.get( bit );
+            if( c1 != null )
+                c2 = c;
+            else
+                terms.put( bit, c );
+        }
+
+        addChain( new ATermAppl[][] { { A, c1 }, { A, c2 }, { A, c1, c2 } } );
+        assertEquals( node( 1 ).getTypeMask(), node( 2 ).getTypeMask() );
+        assertEquals( node( 1 ).getTypeMask(), node( 3 ).getTypeMask() );
+
+        Blocking blocking = new SubsetBlocking();
+        assertFalse( blocking.equals( node( 1 ), node( 2 ) ) );
+        assertFalse( blocking.subset( node( 2 ), node( 1 ) ) );
+        assertFalse( blocking.subset( node( 3 ), node( 1 ) ) );
+        assertTrue( blocking.subset( node( 1 ), node( 3 ) ) );
+        assertTrue( blocking.subset( node( 2 ), node( 3 ) ) );
+        assertFalse( blocking.equals( node( 1 ), node( 3 ) ) );
+
+        node( 1 ).addType( c2, DependencySet.INDEPENDENT );
+        assertTrue( blocking.equals( node( 1 ), node( 3 ) ) );
+        assertTrue( blocking.subset( node( 3 ), node( 1 ) ) );
+        assertFalse( blocking.equals( node( 1 ), node( 2 ) ) );
+
+    }
+
+    /**
+     * Checks the satisfiability of cyclic definitions with inverse roles which need
+     * pairwise blocking to terminate.
+     */
+    public void testCyclicDefinitions() {
+        KnowledgeBase kb = new KnowledgeBase();
+        kb.addClass( A );
+        kb.addClass( B );
+        kb.addClass( C );
+        kb.addObjectProperty( r );
+        kb.addFunctionalProperty( r );
+        // A needs an infinite chain of r-successors and each successor requires its
+        // predecessor to be B through the inverse role
+        kb.addSubClass( A, ATermUtils.makeAnd( B, ATermUtils.makeSomeValues( r, A ) ) );
+        kb.addSubClass( A, ATermUtils.makeAllValues( r, ATermUtils.makeAllValues( ATermUtils.makeInv( r ), B ) ) );
+        kb.addSubClass( C, ATermUtils.makeAnd( A, ATermUtils.makeSomeValues( r, ATermUtils.makeNot( A ) ) ) );
+
+        assertTrue( kb.isSatisfiable( A ) );
+        assertFalse( kb.isSatisfiable( C ) );
+        assertFalse( kb.isSatisfiable( ATermUtils.makeAnd( A, ATermUtils.makeAllValues( r, ATermUtils.makeNot( B ) ) ) ) );
+        assertTrue( kb.isSatisfiable( ATermUtils.makeAnd( A, ATermUtils.makeAllValues( r, ATermUtils.makeAllValues( r, B ) ) ) ) );
+
+        ATermAppl a = ATermUtils.makeTermAppl( "a" );
+        kb.addIndividual( a );
+        kb.addType( a, A );
+        assertTrue( kb.isConsistent() );
+        assertTrue( kb.isType( a, B ) );
+        assertFalse( kb.isType( a, C ) );
+    }
+}
@@ -0,0 +1,130 @@
+package org.mindswap.pellet;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.mindswap.pellet.utils.ATermUtils;
+import org.mindswap.pellet.utils.Timers;
+
+import aterm.ATermAppl;
+
+/**
+ * Tests the eviction policies of the concept cache
+ */
+public class ConceptCacheTest extends TestCase {
+    private int capacity;
+    private String policy;
+
+    private Timers timers;
+    private ConceptCache cache;
+
+    public static TestSuite suite() {
+        return new TestSuite( ConceptCacheTest.class );
+    }
+
+    protected void setUp() {
+        capacity = PelletOptions.CACHE_CAPACITY;
+        policy = PelletOptions.CACHE_EVICTION_POLICY;
+
+        timers = new Timers();
+        cache = new ConceptCache( timers );
+    }
+
+    protected void tearDown() {
+        PelletOptions.CACHE_CAPACITY = capacity;
+        PelletOptions.CACHE_EVICTION_POLICY = policy;
+    }
+
+    private static ATermAppl concept( int i ) {
+        return ATermUtils.makeTermAppl( "C" + i );
+    }
+
+    private CachedNode put( ATermAppl c, int cost ) {
+        CachedNode cached = new CachedNode( ABox.DUMMY_IND, DependencySet.INDEPENDENT );
+        cached.cost = cost;
+        cache.put( c, cached );
+
+        return cached;
+    }
+
+    private long evictions() {
+        return timers.getTimer( "conceptCacheEviction" ).getCount();
+    }
+
+    /**
+     * Fills the cache with TOP, BOTTOM and C0, ..., C7 and then adds C8 which
+     * exceeds the capacity of 10 and evicts two entries.
+     */
+    private void fill( String policy, int[] uses, int[] costs ) {
+        PelletOptions.CACHE_CAPACITY = 10;
+        PelletOptions.CACHE_EVICTION_POLICY = policy;
+
+        put( ATermUtils.TOP, 0 );
+        put( ATermUtils.BOTTOM, 0 );
+        for( int i = 0; i < 8; i++ )
+            put( concept( i ), costs[i] );
+        for( int i = 0; i < 8; i++ ) {
+            for( int j = 0; j < uses[i]; j++ )
+                cache.get( concept( i ) );
+        }
+        assertEquals( 10, cache.size() );
+        assertEquals( 0, evictions() );
+
+        put( concept( 8 ), 0 );
+
+        assertEquals( 9, cache.size() );
+        assertEquals( 2, evictions() );
+        assertTrue( cache.contains( ATermUtils.TOP ) );
+        assertTrue( cache.contains( ATermUtils.BOTTOM ) );
+        assertTrue( cache.contains( concept( 8 ) ) );
+    }
+
+    private void assertEvicted( int[] evicted ) {
+        for( int i = 0; i < 8; i++ ) {
+            boolean isEvicted = i == evicted[0] || i == evicted[1];
+            assertEquals( concept( i ).toString(), !isEvicted, cache.contains( concept( i ) ) );
+        }
+    }
+
+    public void testUnbounded() {
+        PelletOptions.CACHE_CAPACITY = 0;
+
+        for( int i = 0; i < 100; i++ )
+            put( concept( i ), 0 );
+
+        assertEquals( 100, cache.size() );
+        assertEquals( 0, evictions() );
+    }
+
+    public void testLRU() {
+        // C3 and C5 have not been used since they were added
+        fill( PelletOptions.LRU, new int[] { 1, 1, 1, 0, 1, 0, 1, 1 }, new int[8] );
+
+        assertEvicted( new int[] { 3, 5 } );
+    }
+
+    public void testLFU() {
+        // C6 and C2 have been used least often, C0 has been used least recently
+        fill( PelletOptions.LFU, new int[] { 2, 3, 1, 2, 4, 2, 1, 3 }, new int[8] );
+
+        assertEvicted( new int[] { 2, 6 } );
+    }
+
+    public void testCost() {
+        // C4 and C1 were cheapest to compute
+        fill( PelletOptions.COST, new int[8], new int[] { 5, 2, 7, 9, 1, 4, 8, 3 } );
+
+        assertEvicted( new int[] { 1, 4 } );
+    }
+
+    public void testHitsAndMisses() {
+        put( concept( 0 ), 0 );
+
+        assertNotNull( cache.get( concept( 0 ) ) );
+        assertNull( cache.get( concept( 1 ) ) );
+        assertNotNull( cache.peek( concept( 0 ) ) );
+
+        assertEquals( 1, timers.getTimer( "conceptCacheHit" ).getCount() );
+        assertEquals( 1, timers.getTimer( "conceptCacheMiss" ).getCount() );
+    }
+}
@@ -0,0 +1,147 @@
+package org.mindswap.pellet;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.mindswap.pellet.utils.ATermUtils;
+
+import aterm.ATermAppl;
+
+/**
+ * Tests the disjuncts learned to be unsatisfiable by the nogood store
+ */
+public class NogoodStoreTest extends TestCase {
+    private static ATermAppl D = ATermUtils.makeTermAppl( "D" );
+    private static ATermAppl X = ATermUtils.makeTermAppl( "X" );
+    private static ATermAppl r = ATermUtils.makeTermAppl( "r" );
+
+    private boolean learning;
+    private int threshold;
+
+    private KnowledgeBase kb;
+    private ABox abox;
+    private NogoodStore nogoods;
+
+    public static TestSuite suite() {
+        return new TestSuite( NogoodStoreTest.class );
+    }
+
+    protected void setUp() {
+        learning = PelletOptions.USE_DISJUNCT_LEARNING;
+        threshold = PelletOptions.DISJUNCT_LEARNING_THRESHOLD;
+
+        // D is unsatisfiable but the clash is found only after the r-successor of a
+        // D instance is created
+        kb = new KnowledgeBase();
+        kb.addObjectProperty( r );
+        kb.addClass( D );
+        kb.addClass( X );
+        kb.addSubClass( D, ATermUtils.makeSomeValues( r, X ) );
+        kb.addSubClass( D, ATermUtils.makeAllValues( r, ATermUtils.makeNot( X ) ) );
+        for( int i = 0; i < 6; i++ ) {
+            kb.addClass( concept( "C", i ) );
+            kb.addClass( concept( "E", i ) );
+            kb.addSubClass( concept( "C", i ), ATermUtils.makeOr( D, concept( "E", i ) ) );
+        }
+        kb.prepare();
+
+        abox = kb.getABox();
+        nogoods = abox.nogoods;
+    }
+
+    protected void tearDown() {
+        PelletOptions.USE_DISJUNCT_LEARNING = learning;
+        PelletOptions.DISJUNCT_LEARNING_THRESHOLD = threshold;
+    }
+
+    private static ATermAppl concept( String name, int i ) {
+        return ATermUtils.makeTermAppl( name + i );
+    }
+
+    private ATermAppl[] disjuncts() {
+        return new ATermAppl[] { D, concept( "E", 0 ), concept( "E", 1 ) };
+    }
+
+    public void testThreshold() {
+        PelletOptions.DISJUNCT_LEARNING_THRESHOLD = 3;
+
+        ATermAppl[] disj = disjuncts();
+        for( int i = 0; i < 2; i++ )
+            nogoods.clash( abox, D );
+        nogoods.learn( abox );
+        assertNull( abox.getCached( D ) );
+        assertSame( disj, nogoods.prune( abox, disj ) );
+
+        nogoods.clash( abox, D );
+        nogoods.learn( abox );
+        assertNotNull( abox.getCached( D ) );
+        assertTrue( abox.getCached( D ).isBottom() );
+
+        ATermAppl[] pruned = nogoods.prune( abox, disj );
+        assertEquals( 2, pruned.length );
+        assertEquals( concept( "E", 0 ), pruned[0] );
+        assertEquals( concept( "E", 1 ), pruned[1] );
+
+        // all the disjuncts are unsatisfiable
+        assertNull( nogoods.prune( abox, new ATermAppl[] { D } ) );
+    }
+
+    public void testSatisfiableDisjunct() {
+        PelletOptions.DISJUNCT_LEARNING_THRESHOLD = 1;
+
+        ATermAppl[] disj = disjuncts();
+        nogoods.clash( abox, concept( "E", 0 ) );
+        nogoods.learn( abox );
+
+        // the disjunct is satisfiable so it is not pruned
+        assertNotNull( abox.getCached( concept( "E", 0 ) ) );
+        assertFalse( abox.getCached( concept( "E", 0 ) ).isBottom() );
+        assertSame( disj, nogoods.prune( abox, disj ) );
+    }
+
+    /**
+     * A disjunct is counted only when it clashes as soon as it is added to a node, which
+     * is the case for D in the tests below because the node is not D. These tests fail
+     * for both disjuncts so D is counted in each test and after a few of them it is
+     * learned to be unsatisfiable. The answers are the same as the answers without
+     * learning.
+     */
+    public void testLearnedDisjunct() {
+        PelletOptions.USE_DISJUNCT_LEARNING = true;
+        PelletOptions.DISJUNCT_LEARNING_THRESHOLD = 3;
+
+        for( int i = 0; i < 3; i++ )
+            assertFalse( kb.isSatisfiable( notDE( i ) ) );
+        assertNotNull( abox.getCached( D ) );
+        assertTrue( abox.getCached( D ).isBottom() );
+        assertEquals( 2, nogoods.prune( abox, disjuncts() ).length );
+
+        String expected = answers();
+
+        setUp();
+        PelletOptions.USE_DISJUNCT_LEARNING = false;
+        for( int i = 0; i < 3; i++ )
+            assertFalse( kb.isSatisfiable( notDE( i ) ) );
+        assertNull( abox.getCached( D ) );
+        assertEquals( expected, answers() );
+    }
+
+    private ATermAppl notDE( int i ) {
+        return ATermUtils.makeAnd( concept( "C", i ), ATermUtils.makeNot( ATermUtils.makeOr( D, concept( "E", i ) ) ) );
+    }
+
+    private String answers() {
+        StringBuffer sb = new StringBuffer();
+        for( int i = 0; i < 6; i++ ) {
+            ATermAppl c = concept( "C", i );
+            sb.append( kb.isSatisfiable( c ) ).append( ' ' );
+            sb.append( kb.isSatisfiable( notDE( i ) ) ).append( ' ' );
+            sb.append( kb.isSatisfiable( ATermUtils.makeAnd( c, ATermUtils.makeNot( D ) ) ) ).append( ' ' );
+            sb.append( kb.isSubClassOf( c, concept( "E", i ) ) ).append( ' ' );
+            sb.append( kb.isSubClassOf( c, concept( "E", (i + 1) % 6 ) ) ).append( ' ' );
+            sb.append( kb.isSatisfiable( ATermUtils.makeAnd( c, D ) ) ).append( '\n' );
+        }
+
+        return sb.toString();
+    }
+}
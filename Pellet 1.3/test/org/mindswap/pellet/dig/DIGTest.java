@@ -0,0 +1,245 @@
+package org.mindswap.pellet.dig;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests for the DIG reasoner
+ */
+public class DIGTest extends TestCase {
+    private static final String NS = "http://dl.kr.org/dig/2003/02/lang";
+
+    private static final String TELLS =
+          "<defconcept name='A'/><defconcept name='B'/><defconcept name='C'/>"
+        + "<defconcept name='D'/><defconcept name='E'/><defrole name='r'/>"
+        + "<impliesc><catom name='B'/><catom name='A'/></impliesc>"
+        + "<impliesc><catom name='C'/><catom name='B'/></impliesc>"
+        + "<equalc><catom name='D'/>"
+        + "  <and><catom name='A'/><some><ratom name='r'/><catom name='C'/></some></and></equalc>"
+        + "<impliesc><catom name='E'/>"
+        + "  <and><catom name='B'/><some><ratom name='r'/><catom name='B'/></some></and></impliesc>"
+        + "<defindividual name='a'/><defindividual name='b'/>"
+        + "<instanceof><individual name='a'/><catom name='C'/></instanceof>"
+        + "<related><individual name='b'/><ratom name='r'/><individual name='a'/></related>";
+
+    private static final String ASKS =
+          "<allConceptNames id='c'/><allRoleNames id='r'/><allIndividuals id='i'/>"
+        + "<satisfiable id='s'><and><catom name='D'/><not><catom name='C'/></not></and></satisfiable>"
+        + "<subsumes id='sub'><catom name='A'/><catom name='E'/></subsumes>"
+        + "<children id='ch'><catom name='A'/></children>"
+        + "<descendants id='de'><catom name='A'/></descendants>"
+        + "<types id='t'><individual name='b'/></types>"
+        + "<instance id='in'><individual name='b'/><catom name='D'/></instance>"
+        + "<instances id='ins'><catom name='B'/></instances>"
+        + "<roleFillers id='rf'><individual name='b'/><ratom name='r'/></roleFillers>"
+        + "<relatedIndividuals id='ri'><ratom name='r'/></relatedIndividuals>";
+
+    private PelletDIGReasoner reasoner;
+
+    public static TestSuite suite() {
+        return new TestSuite( DIGTest.class );
+    }
+
+    protected void setUp() {
+        reasoner = new PelletDIGReasoner();
+    }
+
+    private static Document parse( String xml ) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+
+        return factory.newDocumentBuilder().parse( new InputSource( new StringReader( xml ) ) );
+    }
+
+    private static String tells( String uri ) {
+        return "<tells xmlns='" + NS + "' uri='" + uri + "'>" + TELLS + "</tells>";
+    }
+
+    /**
+     * The asks about the class expression <code>B and (r some X)</code>. A different
+     * <code>X</code> is used for each <code>i</code> so the expressions are not in the
+     * taxonomy.
+     */
+    private static String asks( String uri, int i ) {
+        String[] fillers = { "A", "B", "C", "D", "E" };
+        String c = "<and><catom name='B'/><some><ratom name='r'/>"
+            + "<and><catom name='" + fillers[i % fillers.length] + "'/>"
+            + "<not><some><ratom name='r'/><catom name='" + fillers[i / fillers.length % fillers.length] + "'/>"
+            + "</some></not></and></some></and>";
+
+        return "<asks xmlns='" + NS + "' uri='" + uri + "'>"
+            + "<parents id='p'>" + c + "</parents>"
+            + "<children id='c'>" + c + "</children>"
+            + "<ancestors id='a'>" + c + "</ancestors>"
+            + "<descendants id='d'>" + c + "</descendants>"
+            + "<equivalents id='e'>" + c + "</equivalents>"
+            + "<instances id='i'>" + c + "</instances>"
+            + "</asks>";
+    }
+
+    private String process( PelletDIGReasoner reasoner, String xml ) throws Exception {
+        return reasoner.serialize( reasoner.process( parse( xml ) ) );
+    }
+
+    /**
+     * Process the request with the streaming parser and return the response in the same
+     * form as {@link #process(PelletDIGReasoner, String)}.
+     */
+    private String stream( PelletDIGReasoner reasoner, String xml ) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reasoner.process( new ByteArrayInputStream( xml.getBytes( "UTF-8" ) ), out );
+
+        Document doc = parse( out.toString( "UTF-8" ) );
+        removeWhitespace( doc.getDocumentElement() );
+
+        return reasoner.serialize( doc );
+    }
+
+    /**
+     * Remove the indentation of the streamed response which is not in the responses
+     * built as documents.
+     */
+    private static void removeWhitespace( Element element ) {
+        Node child = element.getFirstChild();
+        while( child != null ) {
+            Node next = child.getNextSibling();
+            if( child instanceof Text && child.getNodeValue().trim().length() == 0 )
+                element.removeChild( child );
+            else if( child instanceof Element )
+                removeWhitespace( (Element) child );
+            child = next;
+        }
+    }
+
+    private String newKB() throws Exception {
+        String uri = reasoner.newKB();
+        String response = process( reasoner, tells( uri ) );
+        assertTrue( response, response.indexOf( "ok" ) != -1 );
+
+        return uri;
+    }
+
+    private static String asks( String uri, String asks ) {
+        return "<asks xmlns='" + NS + "' uri='" + uri + "'>" + asks + "</asks>";
+    }
+
+    public void testStreamedTells() throws Exception {
+        String uri = reasoner.newKB();
+        String streamedURI = reasoner.newKB();
+        assertEquals( process( reasoner, tells( uri ) ), stream( reasoner, tells( streamedURI ) ) );
+
+        assertEquals( process( reasoner, asks( uri, ASKS ) ), process( reasoner, asks( streamedURI, ASKS ) ) );
+        for( int i = 0; i < 5; i++ )
+            assertEquals( process( reasoner, asks( uri, i ) ), process( reasoner, asks( streamedURI, i ) ) );
+    }
+
+    public void testStreamedAsks() throws Exception {
+        String uri = newKB();
+
+        String expected = process( reasoner, asks( uri, ASKS ) );
+        assertTrue( expected, expected.indexOf( "error" ) == -1 );
+        assertEquals( expected, stream( reasoner, asks( uri, ASKS ) ) );
+        for( int i = 0; i < 5; i++ )
+            assertEquals( process( reasoner, asks( uri, i ) ), stream( reasoner, asks( uri, i ) ) );
+
+        // an empty request is answered with ok
+        assertEquals( process( reasoner, asks( uri, "" ) ), stream( reasoner, asks( uri, "" ) ) );
+    }
+
+    public void testStreamedUnknownKB() throws Exception {
+        String uri = "urn:unknown";
+
+        assertEquals( process( reasoner, asks( uri, ASKS ) ), stream( reasoner, asks( uri, ASKS ) ) );
+        assertEquals( process( reasoner, tells( uri ) ), stream( reasoner, tells( uri ) ) );
+    }
+
+    /**
+     * An ask that fails after it has started to build its result is answered with an error
+     * element and nothing else. The other asks of the request are answered normally.
+     */
+    public void testStreamedAskError() throws Exception {
+        String uri = newKB();
+        PelletDIGReasoner failing = new PelletDIGReasoner( reasoner ) {
+            public Element allIndividuals() {
+                super.allIndividuals();
+                throw new RuntimeException( "failed" );
+            }
+        };
+
+        String response = stream( failing, asks( uri, "<allRoleNames id='r'/><allIndividuals id='i'/><types id='t'><individual name='b'/></types>" ) );
+        Element root = parse( response ).getDocumentElement();
+        List children = new ArrayList();
+        for( Node child = root.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            if( child instanceof Element )
+                children.add( child );
+        }
+
+        assertEquals( response, 3, children.size() );
+        assertEquals( "roleSet", ((Element) children.get( 0 )).getTagName() );
+        assertEquals( "error", ((Element) children.get( 1 )).getTagName() );
+        assertEquals( "i", ((Element) children.get( 1 )).getAttribute( "id" ) );
+        assertEquals( "conceptSet", ((Element) children.get( 2 )).getTagName() );
+        assertEquals( "t", ((Element) children.get( 2 )).getAttribute( "id" ) );
+    }
+
+    /**
+     * Asks about class expressions that are not in the taxonomy are answered by several
+     * threads at the same time. The answers should be the same as the answers computed
+     * on a KB that is used by a single thread.
+     */
+    public void testConcurrentAsks() throws Exception {
+        final int threadCount = 4;
+        final int askCount = 25;
+
+        final String uri = newKB();
+        final String[] expected = new String[askCount];
+        String serialURI = newKB();
+        for( int i = 0; i < askCount; i++ ) {
+            expected[i] = process( reasoner, asks( serialURI, i ) );
+            assertTrue( expected[i], expected[i].indexOf( "error" ) == -1 );
+        }
+
+        final List failures = Collections.synchronizedList( new ArrayList() );
+        Thread[] threads = new Thread[threadCount];
+        for( int t = 0; t < threadCount; t++ ) {
+            final PelletDIGReasoner threadReasoner = new PelletDIGReasoner( reasoner );
+            final int offset = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        for( int j = 0; j < askCount; j++ ) {
+                            int i = (j + offset * 7) % askCount;
+                            String response = process( threadReasoner, asks( uri, i ) );
+                            if( !expected[i].equals( response ) )
+                                failures.add( "Ask " + i + ":\n" + response );
+                        }
+                    }
+                    catch( Throwable e ) {
+                        failures.add( e.toString() );
+                    }
+                }
+            };
+        }
+
+        for( int t = 0; t < threadCount; t++ )
+            threads[t].start();
+        for( int t = 0; t < threadCount; t++ )
+            threads[t].join();
+
+        assertTrue( failures.toString(), failures.isEmpty() );
+    }
+}
@@ -25,6 +25,8 @@ import org.semanticweb.owl.model.OWLException;
 import org.semanticweb.owl.model.OWLOntology;
 import org.semanticweb.owl.model.helper.OntologyHelper;
 
+import aterm.ATermAppl;
+
 import com.hp.hpl.jena.datatypes.TypeMapper;
 import com.hp.hpl.jena.ontology.DatatypeProperty;
 import com.hp.hpl.jena.ontology.Individual;
@@ -426,6 +428,48 @@ public class MiscTests extends PelletTestCase {
         assertTrue( kb.getSames( term( "x2" ) ).contains( term( "x4" ) ) );
     }
 
+    /**
+     * Under E none of the three r-successors of x can be merged with the one that
+     * is A. Merging the other two causes a clash only after their s-successors are
+     * created and that clash does not depend on E. After all the merges fail the
+     * reasoner should still try F instead of E.
+     */
+    public void testExhaustedMaxBranch() {
+        ATermAppl[] cs = { term( "A" ), term( "B" ), term( "C" ) };
+        for( int i = 0; i < cs.length; i++ ) {
+            ATermAppl a = cs[i];
+            ATermAppl b = cs[(i + 1) % cs.length];
+            ATermAppl c = cs[(i + 2) % cs.length];
+            for( int j = 0; j < 2; j++ ) {
+                KnowledgeBase kb = new KnowledgeBase();
+
+                kb.addObjectProperty( term( "r" ) );
+                kb.addObjectProperty( term( "s" ) );
+
+                for( int k = 0; k < cs.length; k++ )
+                    kb.addClass( cs[k] );
+                kb.addClass( term( "E" ) );
+                kb.addClass( term( "F" ) );
+                kb.addClass( term( "K" ) );
+                kb.addClass( term( "L" ) );
+                kb.addSubClass( b, some( term( "s" ), term( "K" ) ) );
+                kb.addSubClass( c, all( term( "s" ), term( "L" ) ) );
+                kb.addSubClass( term( "L" ), not( term( "K" ) ) );
+                kb.addSubClass( term( "E" ), all( term( "r" ), or( not( a ), and( not( b ), not( c ) ) ) ) );
+
+                ATermAppl choice = j == 0
+                    ? or( term( "E" ), term( "F" ) )
+                    : or( term( "F" ), term( "E" ) );
+                ATermAppl x = and( new ATermAppl[] {
+                    choice, some( term( "r" ), a ), some( term( "r" ), b ), some( term( "r" ), c ),
+                    max( term( "r" ), 2 ) } );
+
+                assertTrue( kb.isSatisfiable( x ) );
+                assertFalse( kb.isSatisfiable( and( x, not( term( "F" ) ) ) ) );
+            }
+        }
+    }
+
     public void testAnonTypes() {
         String ns = "urn:test:";
         OntModel model = ModelFactory.createOntologyModel( PelletReasonerFactory.THE_SPEC );
@@ -1455,4 +1499,78 @@ public class MiscTests extends PelletTestCase {
         assertIteratorValues( this, Adult.listInstances(), new Resource[] { Dad, Grandpa } );
 
     }
+
+    public void testSameVariableQuery() {
+        String ns = "urn:test:";
+
+        OntModel model = ModelFactory.createOntologyModel( PelletReasonerFactory.THE_SPEC );
+
+        Individual a = model.createIndividual( ns + "a", OWL.Thing );
+        Individual b = model.createIndividual( ns + "b", OWL.Thing );
+
+        ObjectProperty p = model.createObjectProperty( ns + "p" );
+        a.addProperty( p, b );
+        b.addProperty( p, b );
+
+        Query query = QueryFactory.create( "SELECT * WHERE { ?x <" + p + "> ?x }" );
+
+        ResultSet results = new PelletQueryExecution( query, model ).execSelect();
+        testResultSet( results, 
+            createBindings( new String[] { "x" }, new RDFNode[][] { { b } } ) );
+    }
+
+    public void testDisconnectedQuery() {
+        String ns = "urn:test:";
+
+        OntModel model = ModelFactory.createOntologyModel( PelletReasonerFactory.THE_SPEC );
+
+        OntClass C = model.createClass( ns + "C" );
+        OntClass D = model.createClass( ns + "D" );
+        OntClass E = model.createClass( ns + "E" );
+
+        Individual c1 = model.createIndividual( ns + "c1", C );
+        Individual c2 = model.createIndividual( ns + "c2", C );
+        Individual d1 = model.createIndividual( ns + "d1", D );
+        Individual d2 = model.createIndividual( ns + "d2", D );
+        Individual d3 = model.createIndividual( ns + "d3", D );
+
+        // the query is split into two independent queries whose results are combined
+        Query query1 = QueryFactory.create( 
+            "SELECT * WHERE { ?x a <" + C + "> . ?y a <" + D + "> }" );
+        Query query2 = QueryFactory.create( 
+            "SELECT * WHERE { ?x a <" + C + "> . ?y a <" + E + "> }" );
+
+        ResultSet results1 = new PelletQueryExecution( query1, model ).execSelect();
+        testResultSet( results1, 
+            createBindings( new String[] { "x", "y" }, 
+                new RDFNode[][] { 
+                    { c1, d1 }, { c1, d2 }, { c1, d3 }, 
+                    { c2, d1 }, { c2, d2 }, { c2, d3 } } ) );
+
+        ResultSet results2 = new PelletQueryExecution( query2, model ).execSelect();
+        assertFalse( results2.hasNext() );
+    }
+
+    public void testRemoveObjectPropertyValue() {
+        ATermAppl C = term( "C" );
+        ATermAppl p = term( "p" );
+        ATermAppl a = term( "a" );
+        ATermAppl b = term( "b" );
+
+        KnowledgeBase kb = new KnowledgeBase();
+        kb.addClass( C );
+        kb.addObjectProperty( p );
+        kb.addIndividual( a );
+        kb.addIndividual( b );
+        kb.addType( a, all( p, not( C ) ) );
+        kb.addType( b, C );
+        kb.addPropertyValue( p, a, b );
+
+        assertFalse( kb.isConsistent() );
+
+        assertTrue( kb.removeObjectPropertyValue( p, a, b ) );
+
+        assertTrue( kb.isConsistent() );
+        assertFalse( kb.hasPropertyValue( a, p, b ) );
+    }
 }
@@ -0,0 +1,1485 @@
+package org.mindswap.pellet.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.TestSuite;
+
+import org.mindswap.pellet.ABox;
+import org.mindswap.pellet.DependencySet;
+import org.mindswap.pellet.Edge;
+import org.mindswap.pellet.EdgeList;
+import org.mindswap.pellet.Individual;
+import org.mindswap.pellet.KnowledgeBase;
+import org.mindswap.pellet.KnowledgeBaseSnapshot;
+import org.mindswap.pellet.Node;
+import org.mindswap.pellet.PelletOptions;
+import org.mindswap.pellet.QuerySnapshot;
+import org.mindswap.pellet.Role;
+import org.mindswap.pellet.SatisfiabilityCache;
+import org.mindswap.pellet.datatypes.XSDDecimal;
+import org.mindswap.pellet.exceptions.TimeoutException;
+import org.mindswap.pellet.jena.BulkLoader;
+import org.mindswap.pellet.jena.OWLLoader;
+import org.mindswap.pellet.query.Query;
+import org.mindswap.pellet.query.QueryCost;
+import org.mindswap.pellet.query.QueryEngine;
+import org.mindswap.pellet.query.QueryPattern;
+import org.mindswap.pellet.query.QueryResultBinding;
+import org.mindswap.pellet.query.QueryResults;
+import org.mindswap.pellet.query.impl.QueryImpl;
+import org.mindswap.pellet.query.impl.QueryPatternImpl;
+import org.mindswap.pellet.query.impl.StreamingQueryResults;
+import org.mindswap.pellet.taxonomy.Taxonomy;
+import org.mindswap.pellet.utils.ATermUtils;
+import org.mindswap.pellet.utils.Namespaces;
+
+import aterm.ATermAppl;
+import aterm.ATermList;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+
+/**
+ * Checks that the optimized reasoning paths give the same answers as the basic ones. 
+ * Each test generates random KBs and compares the answers computed for the same KB 
+ * with an optimization enabled and disabled.
+ */
+public class OptimizationTests extends PelletTestCase {
+    /**
+     * Number of random KBs generated by each test
+     */
+    public static int SEEDS = 40;
+
+    private static ATermAppl[] roles = { term( "p" ), term( "q" ), term( "r" ), term( "s" ) };
+
+    private Random random;
+
+    private int classCount;
+
+    private List individuals;
+
+    public static TestSuite suite() {
+        TestSuite s = new TestSuite( "OptimizationTests" );
+        s.addTestSuite( OptimizationTests.class );
+
+        return s;
+    }
+
+    private ATermAppl concept( int depth ) {
+        int k = depth <= 0 ? random.nextInt( 2 ) : random.nextInt( 8 );
+        ATermAppl r = roles[random.nextInt( roles.length )];
+        switch( k ) {
+            case 0:
+            case 1: return term( "C" + random.nextInt( classCount ) );
+            case 2: return not( concept( depth - 1 ) );
+            case 3: return and( concept( depth - 1 ), concept( depth - 1 ) );
+            case 4: return or( concept( depth - 1 ), concept( depth - 1 ) );
+            case 5: return some( r, concept( depth - 1 ) );
+            case 6: return all( r, concept( depth - 1 ) );
+            default: return random.nextBoolean() ? max( r, 1 + random.nextInt( 2 ) ) : min( r, 1 + random.nextInt( 2 ) );
+        }
+    }
+
+    /**
+     * Create a random KB. The same seed always creates the same KB.
+     *
+     * @param seed Seed of the random number generator
+     * @param disjunctions Number of disjunctive types asserted for individuals
+     */
+    private KnowledgeBase createKB( long seed, int disjunctions ) {
+        random = new Random( seed );
+        classCount = 6 + random.nextInt( 6 );
+
+        KnowledgeBase kb = new KnowledgeBase();
+        kb.setTimeout( 10000 );
+
+        for( int i = 0; i < roles.length; i++ )
+            kb.addObjectProperty( roles[i] );
+        if( random.nextBoolean() )
+            kb.addInverseProperty( roles[3], roles[0] );
+        if( random.nextBoolean() )
+            kb.addTransitiveProperty( roles[1] );
+        if( random.nextBoolean() )
+            kb.addSubProperty( roles[1], roles[0] );
+        if( random.nextInt( 3 ) == 0 )
+            kb.addFunctionalProperty( roles[2] );
+
+        for( int i = 0; i < classCount; i++ )
+            kb.addClass( term( "C" + i ) );
+        for( int i = 0; i < classCount; i++ ) {
+            ATermAppl c = term( "C" + random.nextInt( classCount ) );
+            if( random.nextInt( 4 ) == 0 )
+                kb.addEquivalentClass( c, concept( 2 ) );
+            else
+                kb.addSubClass( c, concept( 2 ) );
+        }
+
+        individuals = new ArrayList();
+        int count = 10 + random.nextInt( 20 );
+        for( int i = 0; i < count; i++ ) {
+            ATermAppl ind = term( "i" + i );
+            individuals.add( ind );
+            kb.addIndividual( ind );
+            if( random.nextBoolean() )
+                kb.addType( ind, concept( 1 ) );
+            if( i > 0 && random.nextBoolean() )
+                kb.addPropertyValue( roles[random.nextInt( roles.length )], ind, term( "i" + random.nextInt( i ) ) );
+        }
+        for( int i = 0; i < disjunctions; i++ ) {
+            ATermAppl ind = (ATermAppl) individuals.get( random.nextInt( count ) );
+            ATermAppl c1 = concept( 1 );
+            ATermAppl c2 = concept( 1 );
+            kb.addType( ind, or( new ATermAppl[] { c1, c2, not( c1 ) } ) );
+            kb.addType( ind, or( c2, concept( 1 ) ) );
+        }
+
+        return kb;
+    }
+
+    /**
+     * Return a string describing the consistency of the KB, the subclasses and the
+     * instances of all the named classes. The instances are found by instance retrieval
+     * without realizing the KB.
+     */
+    private String answers( KnowledgeBase kb ) {
+        StringBuffer sb = new StringBuffer();
+
+        boolean consistent = kb.isConsistent();
+        sb.append( consistent ).append( '\n' );
+        if( !consistent )
+            return sb.toString();
+
+        for( int i = 0; i < classCount; i++ ) {
+            ATermAppl c = term( "C" + i );
+            sb.append( c ).append( " subs" );
+            for( int j = 0; j < classCount; j++ ) {
+                if( kb.isSubClassOf( term( "C" + j ), c ) )
+                    sb.append( ' ' ).append( j );
+            }
+            sb.append( " instances " ).append( sort( kb.getInstances( c ) ) ).append( '\n' );
+        }
+
+        return sb.toString();
+    }
+
+    private static TreeSet sort( Collection terms ) {
+        TreeSet sorted = new TreeSet();
+        for( Iterator i = terms.iterator(); i.hasNext(); )
+            sorted.add( i.next().toString() );
+
+        return sorted;
+    }
+
+    /**
+     * Compare the answers for random KBs with many disjunctions computed with the given
+     * boolean option of {@link PelletOptions} disabled and enabled.
+     */
+    private void assertSameAnswers( String option ) throws Exception {
+        Field field = PelletOptions.class.getField( option );
+        boolean value = field.getBoolean( null );
+        try {
+            for( int seed = 0; seed < SEEDS; seed++ ) {
+                String expected;
+                String actual;
+                try {
+                    field.setBoolean( null, false );
+                    expected = answers( createKB( seed, 10 ) );
+                    field.setBoolean( null, true );
+                    actual = answers( createKB( seed, 10 ) );
+                }
+                catch( TimeoutException e ) {
+                    continue;
+                }
+
+                assertEquals( option + " seed " + seed, expected, actual );
+            }
+        }
+        finally {
+            field.setBoolean( null, value );
+        }
+    }
+
+    public void testTrailRestore() throws Exception {
+        assertSameAnswers( "USE_TRAIL_RESTORE" );
+    }
+
+    /**
+     * Return a string describing the answers and the realization of a random KB after
+     * each round of random ABox changes. Most changes are additions which can be used to
+     * update the pseudo model but some assertions are removed as well.
+     */
+    private String incrementalAnswers( long seed ) {
+        KnowledgeBase kb = createKB( seed, 0 );
+        List types = new ArrayList();
+        List values = new ArrayList();
+
+        StringBuffer sb = new StringBuffer();
+        for( int round = 0; round < 4; round++ ) {
+            sb.append( answers( kb ) );
+            if( !kb.isConsistent() )
+                break;
+
+            for( Iterator i = individuals.iterator(); i.hasNext(); ) {
+                ATermAppl ind = (ATermAppl) i.next();
+                TreeSet sorted = new TreeSet();
+                for( Iterator j = kb.getTypes( ind ).iterator(); j.hasNext(); )
+                    sorted.addAll( sort( (Set) j.next() ) );
+                sb.append( ind ).append( ' ' ).append( sorted ).append( '\n' );
+            }
+
+            for( int i = 0; i < 3; i++ ) {
+                ATermAppl s = (ATermAppl) individuals.get( random.nextInt( individuals.size() ) );
+                ATermAppl o = (ATermAppl) individuals.get( random.nextInt( individuals.size() ) );
+                switch( random.nextInt( 6 ) ) {
+                    case 0:
+                        if( !types.isEmpty() ) {
+                            ATermAppl[] type = (ATermAppl[]) types.remove( random.nextInt( types.size() ) );
+                            kb.removeType( type[0], type[1] );
+                            break;
+                        }
+                    case 1:
+                        if( !values.isEmpty() ) {
+                            ATermAppl[] value = (ATermAppl[]) values.remove( random.nextInt( values.size() ) );
+                            kb.removeObjectPropertyValue( value[0], value[1], value[2] );
+                            break;
+                        }
+                    case 2:
+                    case 3:
+                        // removeType expects the normalized form that is stored
+                        ATermAppl c = ATermUtils.normalize( concept( 1 ) );
+                        types.add( new ATermAppl[] { s, c } );
+                        kb.addType( s, c );
+                        break;
+                    default:
+                        ATermAppl p = roles[random.nextInt( roles.length )];
+                        values.add( new ATermAppl[] { p, s, o } );
+                        kb.addPropertyValue( p, s, o );
+                }
+            }
+        }
+
+        return sb.toString();
+    }
+
+    public void testIncrementalABox() {
+        boolean value = PelletOptions.USE_INCREMENTAL_ABOX;
+        try {
+            for( int seed = 0; seed < SEEDS; seed++ ) {
+                String expected;
+                String actual;
+                try {
+                    PelletOptions.USE_INCREMENTAL_ABOX = false;
+                    expected = incrementalAnswers( seed );
+                    PelletOptions.USE_INCREMENTAL_ABOX = true;
+                    actual = incrementalAnswers( seed );
+                }
+                catch( TimeoutException e ) {
+                    continue;
+                }
+
+                assertEquals( "seed " + seed, expected, actual );
+            }
+        }
+        finally {
+            PelletOptions.USE_INCREMENTAL_ABOX = value;
+        }
+    }
+
+    /**
+     * Return a string describing the class hierarchy of the KB: the satisfiability, the 
+     * direct superclasses and the equivalent classes of each named class.
+     */
+    private static String hierarchy( KnowledgeBase kb ) {
+        StringBuffer sb = new StringBuffer();
+        for( Iterator i = sort( kb.getClasses() ).iterator(); i.hasNext(); ) {
+            ATermAppl c = term( (String) i.next() );
+            sb.append( c ).append( ' ' ).append( kb.isSatisfiable( c ) );
+
+            TreeSet supers = new TreeSet();
+            for( Iterator j = kb.getSuperClasses( c, true ).iterator(); j.hasNext(); )
+                supers.addAll( sort( (Set) j.next() ) );
+            sb.append( " supers " ).append( supers );
+            sb.append( " equivalents " ).append( sort( kb.getAllEquivalentClasses( c ) ) );
+            sb.append( '\n' );
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Return a string describing the class hierarchy of a random KB after each round of
+     * random class axioms added to the KB. Some of the axioms define new classes.
+     */
+    private String incrementalHierarchy( long seed ) {
+        KnowledgeBase kb = createKB( seed, 0 );
+
+        StringBuffer sb = new StringBuffer();
+        for( int round = 0; round < 4; round++ ) {
+            boolean consistent = kb.isConsistent();
+            sb.append( consistent ).append( '\n' );
+            if( !consistent )
+                break;
+            sb.append( hierarchy( kb ) );
+
+            for( int i = 0; i < 2; i++ ) {
+                if( random.nextInt( 3 ) == 0 )
+                    kb.addClass( term( "C" + classCount++ ) );
+                ATermAppl c = term( "C" + random.nextInt( classCount ) );
+                if( random.nextInt( 4 ) == 0 )
+                    kb.addEquivalentClass( c, concept( 2 ) );
+                else
+                    kb.addSubClass( c, concept( 2 ) );
+            }
+        }
+
+        return sb.toString();
+    }
+
+    public void testIncrementalClassification() {
+        boolean value = PelletOptions.USE_INCREMENTAL_CLASSIFICATION;
+        try {
+            for( int seed = 0; seed < SEEDS; seed++ ) {
+                String expected;
+                String actual;
+                try {
+                    PelletOptions.USE_INCREMENTAL_CLASSIFICATION = false;
+                    expected = incrementalHierarchy( seed );
+                    PelletOptions.USE_INCREMENTAL_CLASSIFICATION = true;
+                    actual = incrementalHierarchy( seed );
+                }
+                catch( TimeoutException e ) {
+                    continue;
+                }
+
+                assertEquals( "seed " + seed, expected, actual );
+            }
+        }
+        finally {
+            PelletOptions.USE_INCREMENTAL_CLASSIFICATION = value;
+        }
+    }
+
+    /**
+     * Classify a KB where D is defined using C which is defined using B and return the 
+     * hierarchy after each change: B gets a new superclass, B becomes unsatisfiable
+     * which makes C and D unsatisfiable and B is defined again as an equivalent class.
+     */
+    private String dependentHierarchy( boolean incremental ) {
+        ATermAppl A = term( "A" ), B = term( "B" ), C = term( "C" ), D = term( "D" );
+        ATermAppl E = term( "E" ), F = term( "F" ), r = term( "r" );
+
+        KnowledgeBase kb = new KnowledgeBase();
+        kb.addObjectProperty( r );
+        ATermAppl[] classes = { A, B, C, D, E, F };
+        for( int i = 0; i < classes.length; i++ )
+            kb.addClass( classes[i] );
+        kb.addSubClass( B, A );
+        kb.addEquivalentClass( C, and( A, some( r, B ) ) );
+        kb.addSubClass( D, C );
+        kb.addSubClass( E, some( r, A ) );
+
+        StringBuffer sb = new StringBuffer( hierarchy( kb ) );
+        Taxonomy taxonomy = kb.getTaxonomy();
+
+        ATermAppl[][] changes = { 
+            { B, F }, 
+            { F, not( A ) }, 
+            { A, some( r, E ) } };
+        for( int i = 0; i < changes.length; i++ ) {
+            kb.addSubClass( changes[i][0], changes[i][1] );
+            sb.append( hierarchy( kb ) );
+
+            // the taxonomy is updated only if the classification is incremental
+            assertEquals( incremental, taxonomy == kb.getTaxonomy() );
+            taxonomy = kb.getTaxonomy();
+        }
+
+        return sb.toString();
+    }
+
+    public void testIncrementalClassificationDependents() {
+        boolean value = PelletOptions.USE_INCREMENTAL_CLASSIFICATION;
+        try {
+            PelletOptions.USE_INCREMENTAL_CLASSIFICATION = false;
+            String expected = dependentHierarchy( false );
+            PelletOptions.USE_INCREMENTAL_CLASSIFICATION = true;
+            String actual = dependentHierarchy( true );
+
+            assertEquals( expected, actual );
+            // B, C and D are unsatisfiable after the second change
+            assertTrue( expected, expected.indexOf( "D false" ) != -1 );
+        }
+        finally {
+            PelletOptions.USE_INCREMENTAL_CLASSIFICATION = value;
+        }
+    }
+
+    public void testCompletionQueue() throws Exception {
+        assertSameAnswers( "USE_COMPLETION_QUEUE" );
+    }
+
+    /**
+     * Compare the answers computed with a small bounded cache for each eviction policy 
+     * with the answers computed with an unbounded cache. Instance retrieval with cached
+     * models may depend on which concepts are cached so the KBs for which the answers 
+     * with the unbounded cache differ from the answers without caching are skipped.
+     */
+    public void testCacheEviction() {
+        String[] policies = { PelletOptions.LRU, PelletOptions.LFU, PelletOptions.COST };
+
+        boolean caching = PelletOptions.USE_CACHING;
+        int capacity = PelletOptions.CACHE_CAPACITY;
+        String policy = PelletOptions.CACHE_EVICTION_POLICY;
+        long[] evictions = new long[policies.length];
+        try {
+            for( int seed = 0; seed < SEEDS; seed++ ) {
+                String expected;
+                try {
+                    PelletOptions.CACHE_CAPACITY = 0;
+                    PelletOptions.USE_CACHING = false;
+                    String uncached = answers( createKB( seed, 10 ) );
+                    PelletOptions.USE_CACHING = true;
+                    expected = answers( createKB( seed, 10 ) );
+                    if( !expected.equals( uncached ) )
+                        continue;
+                }
+                catch( TimeoutException e ) {
+                    continue;
+                }
+
+                for( int i = 0; i < policies.length; i++ ) {
+                    PelletOptions.CACHE_CAPACITY = 5;
+                    PelletOptions.CACHE_EVICTION_POLICY = policies[i];
+
+                    KnowledgeBase kb = createKB( seed, 10 );
+                    String actual;
+                    try {
+                        actual = answers( kb );
+                    }
+                    catch( TimeoutException e ) {
+                        continue;
+                    }
+
+                    assertEquals( policies[i] + " seed " + seed, expected, actual );
+                    evictions[i] += kb.timers.getTimer( "conceptCacheEviction" ).getCount();
+                }
+            }
+
+            for( int i = 0; i < policies.length; i++ )
+                assertTrue( policies[i], evictions[i] > 0 );
+        }
+        finally {
+            PelletOptions.USE_CACHING = caching;
+            PelletOptions.CACHE_CAPACITY = capacity;
+            PelletOptions.CACHE_EVICTION_POLICY = policy;
+        }
+    }
+
+    /**
+     * Return a string describing the subsumptions between random class expressions. 
+     * The satisfiability of the expressions and their negations is checked first so 
+     * that the subsumption tests can be answered by merging the cached models.
+     */
+    private String subsumptions( long seed ) {
+        KnowledgeBase kb = createKB( seed, 0 );
+        if( !kb.isConsistent() )
+            return "inconsistent";
+
+        List concepts = new ArrayList();
+        for( int i = 0; i < 20; i++ )
+            concepts.add( concept( 2 ) );
+
+        StringBuffer sb = new StringBuffer();
+        for( Iterator i = concepts.iterator(); i.hasNext(); ) {
+            ATermAppl c = (ATermAppl) i.next();
+            sb.append( kb.isSatisfiable( c ) ).append( kb.isSatisfiable( not( c ) ) );
+        }
+        sb.append( '\n' );
+
+        for( int i = 0; i < concepts.size(); i++ ) {
+            for( int j = 0; j < concepts.size(); j++ ) {
+                if( kb.isSubClassOf( (ATermAppl) concepts.get( i ), (ATermAppl) concepts.get( j ) ) )
+                    sb.append( i ).append( ' ' ).append( j ).append( '\n' );
+            }
+        }
+
+        return sb.toString();
+    }
+
+    public void testMergeSignatures() {
+        boolean signatures = PelletOptions.USE_MERGE_SIGNATURES;
+        try {
+            for( int seed = 0; seed < SEEDS; seed++ ) {
+                String expected;
+                String actual;
+                try {
+                    PelletOptions.USE_MERGE_SIGNATURES = false;
+                    expected = subsumptions( seed );
+                    PelletOptions.USE_MERGE_SIGNATURES = true;
+                    actual = subsumptions( seed );
+                }
+                catch( TimeoutException e ) {
+                    continue;
+                }
+
+                assertEquals( "Seed " + seed, expected, actual );
+            }
+        }
+        finally {
+            PelletOptions.USE_MERGE_SIGNATURES = signatures;
+        }
+    }
+
+    private static void assertSameBranches( String msg, BitSet expected, DependencySet ds ) {
+        for( int b = -1; b < 260; b++ )
+            assertEquals( msg + " contains " + b, b >= 0 && expected.get( b ), ds.contains( b ) );
+        assertEquals( msg + " size", expected.cardinality(), ds.size() );
+        assertEquals( msg + " max", expected.length() - 1, ds.max() );
+        assertEquals( msg + " independent", expected.length() <= 1, ds.isIndependent() );
+    }
+
+    /**
+     * Apply random operations to dependency sets and compare them with the same
+     * operations applied to BitSets. The sets are copied and joined so that they share
+     * words and modifying a set should never change another one.
+     */
+    public void testDependencySet() {
+        for( int seed = 0; seed < SEEDS; seed++ ) {
+            random = new Random( seed );
+
+            List sets = new ArrayList();
+            List bitSets = new ArrayList();
+            sets.add( DependencySet.EMPTY.copy() );
+            bitSets.add( new BitSet() );
+
+            for( int i = 0; i < 150; i++ ) {
+                int k = random.nextInt( sets.size() );
+                DependencySet ds = (DependencySet) sets.get( k );
+                BitSet bits = (BitSet) bitSets.get( k );
+                int b = random.nextInt( 4 ) == 0 ? random.nextInt( 256 ) : random.nextInt( 70 );
+
+                switch( random.nextInt( 6 ) ) {
+                    case 0:
+                    case 1:
+                        ds.add( b );
+                        bits.set( b );
+                        break;
+                    case 2:
+                        ds.remove( b );
+                        bits.clear( b );
+                        break;
+                    case 3:
+                        sets.add( ds.copy() );
+                        bitSets.add( bits.clone() );
+                        break;
+                    case 4:
+                        int j = random.nextInt( sets.size() );
+                        BitSet union = (BitSet) bits.clone();
+                        union.or( (BitSet) bitSets.get( j ) );
+                        sets.add( ds.union( (DependencySet) sets.get( j ) ) );
+                        bitSets.add( union );
+                        break;
+                    default:
+                        BitSet single = new BitSet();
+                        single.set( b );
+                        sets.add( random.nextBoolean() ? new DependencySet( b ) : new DependencySet( single ) );
+                        bitSets.add( single );
+                }
+
+                for( int j = 0; j < sets.size(); j++ )
+                    assertSameBranches( "Seed " + seed + " step " + i + " set " + j, 
+                        (BitSet) bitSets.get( j ), (DependencySet) sets.get( j ) );
+            }
+        }
+
+        assertSameBranches( "EMPTY", new BitSet(), DependencySet.EMPTY );
+    }
+
+    private static List toList( EdgeList edges ) {
+        List list = new ArrayList();
+        for( int i = 0; i < edges.size(); i++ )
+            list.add( edges.edgeAt( i ) );
+
+        return list;
+    }
+
+    /**
+     * Find the edges by scanning the given list of edges, null arguments match any value.
+     */
+    private static List scan( List edges, Role role, Individual from, Node to ) {
+        List result = new ArrayList();
+        for( Iterator i = edges.iterator(); i.hasNext(); ) {
+            Edge e = (Edge) i.next();
+            if( (from == null || from.equals( e.getFrom() ))
+                && (role == null || e.getRole().isSubRoleOf( role ))
+                && (to == null || to.equals( e.getTo() )) )
+                result.add( e );
+        }
+
+        return result;
+    }
+
+    /**
+     * Modify an edge list randomly so that it grows large enough to be indexed and 
+     * compare the edges found with the ones found by scanning a copy of the edges.
+     */
+    public void testEdgeIndex() {
+        KnowledgeBase kb = new KnowledgeBase();
+        for( int i = 0; i < roles.length; i++ )
+            kb.addObjectProperty( roles[i] );
+        kb.addSubProperty( roles[1], roles[0] );
+        kb.addSubProperty( roles[2], roles[1] );
+        for( int i = 0; i < 8; i++ )
+            kb.addIndividual( term( "i" + i ) );
+        assertTrue( kb.isConsistent() );
+
+        ABox abox = kb.getABox();
+        Role[] roleList = new Role[roles.length];
+        for( int i = 0; i < roles.length; i++ )
+            roleList[i] = abox.getRole( roles[i] );
+        Individual[] inds = new Individual[8];
+        for( int i = 0; i < inds.length; i++ )
+            inds[i] = abox.getIndividual( term( "i" + i ) );
+
+        for( int seed = 0; seed < SEEDS; seed++ ) {
+            random = new Random( seed );
+            EdgeList edges = new EdgeList();
+            List expected = new ArrayList();
+
+            for( int step = 0; step < 150; step++ ) {
+                Role role = roleList[random.nextInt( roleList.length )];
+                Individual from = inds[random.nextInt( inds.length )];
+                Individual to = inds[random.nextInt( inds.length )];
+
+                int k = random.nextInt( 10 );
+                if( k < 6 ) {
+                    Edge e = new Edge( role, from, to, DependencySet.INDEPENDENT );
+                    edges.addEdge( e );
+                    expected.add( e );
+                }
+                else if( k < 8 ) {
+                    // equal edges are removed, not necessarily the identical one
+                    Edge e = new Edge( role, from, to, DependencySet.INDEPENDENT );
+                    assertEquals( expected.remove( e ), edges.removeEdge( e ) );
+                }
+                else if( k < 9 ) {
+                    for( Iterator i = edges.iterator(); i.hasNext(); ) {
+                        Edge e = (Edge) i.next();
+                        if( e.getFrom() == from && e.getTo() == to )
+                            i.remove();
+                    }
+                    for( Iterator i = expected.iterator(); i.hasNext(); ) {
+                        Edge e = (Edge) i.next();
+                        if( e.getFrom() == from && e.getTo() == to )
+                            i.remove();
+                    }
+                }
+                else {
+                    EdgeList other = new EdgeList();
+                    for( int i = 0; i < 3; i++ ) {
+                        Edge e = new Edge( role, inds[random.nextInt( inds.length )], to, DependencySet.INDEPENDENT );
+                        other.addEdge( e );
+                        expected.add( e );
+                    }
+                    edges.addEdgeList( other );
+                }
+
+                String msg = "Seed " + seed + " step " + step;
+                assertEquals( msg, expected, toList( edges ) );
+                assertEquals( msg, scan( expected, role, null, null ), toList( edges.getEdges( role ) ) );
+                assertEquals( msg, scan( expected, null, from, null ), toList( edges.getEdgesFrom( from ) ) );
+                assertEquals( msg, scan( expected, null, null, to ), toList( edges.getEdgesTo( to ) ) );
+                assertEquals( msg, scan( expected, null, from, to ), toList( edges.getEdgesFromTo( from, to ) ) );
+                assertEquals( msg, !scan( expected, role, null, null ).isEmpty(), edges.hasEdge( role ) );
+                assertEquals( msg, !scan( expected, role, from, null ).isEmpty(), edges.hasEdgeFrom( from, role ) );
+                assertEquals( msg, !scan( expected, role, null, to ).isEmpty(), edges.hasEdgeTo( role, to ) );
+                assertEquals( msg, !scan( expected, role, from, to ).isEmpty(), edges.hasEdge( from, role, to ) );
+
+                List containing = new ArrayList();
+                for( Iterator i = expected.iterator(); i.hasNext(); ) {
+                    Edge e = (Edge) i.next();
+                    if( e.getFrom().equals( to ) || e.getTo().equals( to ) )
+                        containing.add( e );
+                }
+                assertEquals( msg, containing, toList( edges.getEdgesContaining( to ) ) );
+            }
+        }
+    }
+
+    public void testCopiedTypes() {
+        KnowledgeBase kb = new KnowledgeBase();
+        ATermAppl a = term( "a" );
+        kb.addClass( term( "C" ) );
+        kb.addClass( term( "D" ) );
+        kb.addClass( term( "E" ) );
+        kb.addIndividual( a );
+        kb.addType( a, term( "C" ) );
+        kb.addType( a, term( "D" ) );
+        assertTrue( kb.isConsistent() );
+
+        ABox abox = kb.getABox();
+        Individual original = abox.getIndividual( a );
+        int[] typeIds = (int[]) original.getTypeIds().clone();
+
+        // the types are shared by the copies until one of them is modified
+        ABox copy1 = abox.copy();
+        ABox copy2 = copy1.copy();
+        Individual ind1 = copy1.getIndividual( a );
+        Individual ind2 = copy2.getIndividual( a );
+
+        ind1.addType( term( "E" ), DependencySet.INDEPENDENT );
+        assertTrue( ind1.hasType( term( "E" ) ) );
+        assertFalse( original.hasType( term( "E" ) ) );
+        assertFalse( ind2.hasType( term( "E" ) ) );
+
+        ind2.removeType( term( "C" ) );
+        assertFalse( ind2.hasType( term( "C" ) ) );
+        assertTrue( original.hasType( term( "C" ) ) );
+        assertTrue( ind1.hasType( term( "C" ) ) );
+
+        original.removeType( term( "D" ) );
+        assertFalse( original.hasType( term( "D" ) ) );
+        assertTrue( ind1.hasType( term( "D" ) ) );
+        assertTrue( ind2.hasType( term( "D" ) ) );
+
+        // the signatures of the copies are computed from their own types
+        assertFalse( Arrays.equals( typeIds, original.getTypeIds() ) );
+        assertEquals( original.getTypes().size(), original.getTypeIds().length );
+        assertEquals( ind1.getTypes().size(), ind1.getTypeIds().length );
+        assertEquals( ind2.getTypes().size(), ind2.getTypeIds().length );
+        assertTrue( ind1.getTypeIds().length > typeIds.length );
+    }
+
+    public void testParallelRetrieval() {
+        int threads = PelletOptions.RETRIEVAL_THREADS;
+        int threshold = PelletOptions.PARALLEL_RETRIEVAL_THRESHOLD;
+        try {
+            for( int seed = 0; seed < SEEDS; seed++ ) {
+                PelletOptions.RETRIEVAL_THREADS = 1;
+                String expected;
+                KnowledgeBase kb = createKB( seed, 0 );
+                try {
+                    expected = answers( kb );
+                }
+                catch( TimeoutException e ) {
+                    continue;
+                }
+
+                PelletOptions.RETRIEVAL_THREADS = 3;
+                PelletOptions.PARALLEL_RETRIEVAL_THRESHOLD = 2;
+                kb = createKB( seed, 0 );
+                assertEquals( "Seed " + seed, expected, answers( kb ) );
+
+                // the workers of the KB should see the changes
+                kb.addType( (ATermAppl) individuals.get( 0 ), term( "C0" ) );
+                String changed = answers( kb );
+
+                PelletOptions.RETRIEVAL_THREADS = 1;
+                kb = createKB( seed, 0 );
+                kb.addType( (ATermAppl) individuals.get( 0 ), term( "C0" ) );
+                assertEquals( "Seed " + seed, answers( kb ), changed );
+            }
+        }
+        finally {
+            PelletOptions.RETRIEVAL_THREADS = threads;
+            PelletOptions.PARALLEL_RETRIEVAL_THRESHOLD = threshold;
+        }
+    }
+
+    public void testParallelRetrievalThreshold() {
+        int threads = PelletOptions.RETRIEVAL_THREADS;
+        int threshold = PelletOptions.PARALLEL_RETRIEVAL_THRESHOLD;
+        try {
+            for( int seed = 0; seed < 5; seed++ ) {
+                PelletOptions.RETRIEVAL_THREADS = 1;
+                String expected;
+                try {
+                    expected = answers( createKB( seed, 0 ) );
+                }
+                catch( TimeoutException e ) {
+                    continue;
+                }
+
+                // a threshold less than one is treated as one
+                PelletOptions.RETRIEVAL_THREADS = 3;
+                PelletOptions.PARALLEL_RETRIEVAL_THRESHOLD = 0;
+                assertEquals( "Seed " + seed, expected, answers( createKB( seed, 0 ) ) );
+            }
+        }
+        finally {
+            PelletOptions.RETRIEVAL_THREADS = threads;
+            PelletOptions.PARALLEL_RETRIEVAL_THRESHOLD = threshold;
+        }
+    }
+
+    public void testParallelClassification() {
+        int threads = PelletOptions.CLASSIFICATION_THREADS;
+        try {
+            for( int seed = 0; seed < SEEDS; seed++ ) {
+                String expected;
+                String actual;
+                try {
+                    PelletOptions.CLASSIFICATION_THREADS = 1;
+                    KnowledgeBase kb = createKB( seed, 0 );
+                    if( !kb.isConsistent() )
+                        continue;
+                    kb.classify();
+                    expected = hierarchy( kb );
+
+                    PelletOptions.CLASSIFICATION_THREADS = 3;
+                    kb = createKB( seed, 0 );
+                    kb.classify();
+                    actual = hierarchy( kb );
+                }
+                catch( TimeoutException e ) {
+                    continue;
+                }
+
+                assertEquals( "Seed " + seed, expected, actual );
+            }
+        }
+        finally {
+            PelletOptions.CLASSIFICATION_THREADS = threads;
+        }
+    }
+
+    /**
+     * Return a string describing the direct types of all the individuals of the KB found
+     * by realization.
+     */
+    private String realization( KnowledgeBase kb ) {
+        kb.realize();
+
+        StringBuffer sb = new StringBuffer();
+        for( Iterator i = individuals.iterator(); i.hasNext(); ) {
+            ATermAppl ind = (ATermAppl) i.next();
+
+            TreeSet types = new TreeSet();
+            for( Iterator j = kb.getTypes( ind, true ).iterator(); j.hasNext(); )
+                types.addAll( sort( (Set) j.next() ) );
+            sb.append( ind ).append( ' ' ).append( types ).append( '\n' );
+        }
+
+        return sb.toString();
+    }
+
+    public void testParallelRealization() {
+        int threads = PelletOptions.REALIZATION_THREADS;
+        int batchSize = PelletOptions.REALIZATION_BATCH_SIZE;
+        try {
+            for( int seed = 0; seed < SEEDS; seed++ ) {
+                String expected;
+                String actual;
+                try {
+                    PelletOptions.REALIZATION_THREADS = 1;
+                    KnowledgeBase kb = createKB( seed, 0 );
+                    if( !kb.isConsistent() )
+                        continue;
+                    expected = realization( kb );
+
+                    // several rounds of batches smaller than the number of individuals
+                    PelletOptions.REALIZATION_THREADS = 3;
+                    PelletOptions.REALIZATION_BATCH_SIZE = 2;
+                    kb = createKB( seed, 0 );
+                    actual = realization( kb );
+                }
+                catch( TimeoutException e ) {
+                    continue;
+                }
+
+                assertEquals( "Seed " + seed, expected, actual );
+            }
+        }
+        finally {
+            PelletOptions.REALIZATION_THREADS = threads;
+            PelletOptions.REALIZATION_BATCH_SIZE = batchSize;
+        }
+    }
+
+    public void testSnapshotTypes() {
+        for( int seed = 0; seed < SEEDS; seed++ ) {
+            KnowledgeBase kb = createKB( seed, 0 );
+            try {
+                if( !kb.isConsistent() )
+                    continue;
+                kb.realize();
+            }
+            catch( TimeoutException e ) {
+                continue;
+            }
+
+            QuerySnapshot snapshot = new QuerySnapshot( kb );
+            for( Iterator i = kb.getClasses().iterator(); i.hasNext(); ) {
+                ATermAppl c = (ATermAppl) i.next();
+                Set instances = kb.getInstances( c );
+                for( Iterator j = individuals.iterator(); j.hasNext(); ) {
+                    ATermAppl ind = (ATermAppl) j.next();
+                    assertEquals( "Seed " + seed + " " + ind + " " + c, 
+                        instances.contains( ind ), snapshot.isType( ind, c ) );
+                }
+            }
+        }
+    }
+
+    public void testSnapshotRelease() throws InterruptedException {
+        KnowledgeBase kb = createKB( 0, 0 );
+        final QuerySnapshot snapshot = new QuerySnapshot( kb );
+
+        KnowledgeBase copy = snapshot.getKB();
+        assertSame( copy, snapshot.getKB() );
+
+        // each thread gets its own copy
+        final KnowledgeBase[] threadCopy = new KnowledgeBase[1];
+        Thread thread = new Thread() {
+            public void run() {
+                threadCopy[0] = snapshot.getKB();
+                snapshot.release();
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNotNull( threadCopy[0] );
+        assertNotSame( copy, threadCopy[0] );
+
+        // a released copy is replaced by a new one
+        snapshot.release();
+        KnowledgeBase newCopy = snapshot.getKB();
+        assertNotSame( copy, newCopy );
+        assertEquals( kb.getInstances( term( "C0" ) ), newCopy.getInstances( term( "C0" ) ) );
+
+        // the taxonomy of the copy can be extended with class expressions
+        ATermAppl c = and( term( "C0" ), some( roles[0], term( "C1" ) ) );
+        assertEquals( kb.getSuperClasses( c, true ), newCopy.getSuperClasses( c, true ) );
+
+        snapshot.close();
+        try {
+            snapshot.getKB();
+            fail( "A closed snapshot should not create copies" );
+        }
+        catch( IllegalStateException e ) {
+        }
+        // the taxonomy is still available
+        assertEquals( kb.getInstances( term( "C0" ) ), snapshot.getInstances( term( "C0" ) ) );
+    }
+
+    /**
+     * Create queries that ask for the pairs of individuals connected by a role where 
+     * one of the individuals is an instance of a named class.
+     */
+    private List createQueries( KnowledgeBase kb ) {
+        ATermAppl x = ATermUtils.makeVar( "x" );
+        ATermAppl y = ATermUtils.makeVar( "y" );
+
+        List queries = new ArrayList();
+        for( int i = 0; i < classCount; i++ ) {
+            for( int j = 0; j < roles.length; j++ ) {
+                Query query = new QueryImpl( kb );
+                query.addResultVar( x );
+                query.addResultVar( y );
+                query.addTypePattern( x, term( "C" + i ) );
+                query.addEdgePattern( x, roles[j], y );
+                queries.add( query );
+
+                query = new QueryImpl( kb );
+                query.addResultVar( x );
+                query.addResultVar( y );
+                query.addEdgePattern( x, roles[j], y );
+                query.addTypePattern( y, term( "C" + i ) );
+                queries.add( query );
+            }
+        }
+
+        return queries;
+    }
+
+    private static String answers( List queries, KnowledgeBase kb ) {
+        StringBuffer sb = new StringBuffer();
+        for( Iterator i = queries.iterator(); i.hasNext(); ) {
+            Query query = (Query) i.next();
+            Query copy = new QueryImpl( kb );
+            for( Iterator j = query.getResultVars().iterator(); j.hasNext(); )
+                copy.addResultVar( (ATermAppl) j.next() );
+            for( Iterator j = query.getQueryPatterns().iterator(); j.hasNext(); )
+                copy.addPattern( (QueryPattern) j.next() );
+
+            QueryResults results = QueryEngine.exec( copy );
+            TreeSet bindings = new TreeSet();
+            for( Iterator j = results.iterator(); j.hasNext(); ) {
+                QueryResultBinding binding = (QueryResultBinding) j.next();
+                StringBuffer values = new StringBuffer();
+                for( Iterator k = query.getResultVars().iterator(); k.hasNext(); ) 
+                    values.append( binding.getValue( (ATermAppl) k.next() ) ).append( ' ' );
+                bindings.add( values.toString() );
+            }
+            sb.append( bindings ).append( '\n' );
+        }
+
+        return sb.toString();
+    }
+
+    public void testConcurrentSnapshotQueries() throws InterruptedException {
+        for( int seed = 0; seed < SEEDS; seed += 2 ) {
+            KnowledgeBase kb = createKB( seed, 0 );
+            final List queries;
+            final String expected;
+            try {
+                if( !kb.isConsistent() )
+                    continue;
+                kb.realize();
+                queries = createQueries( kb );
+                expected = answers( queries, kb );
+            }
+            catch( TimeoutException e ) {
+                continue;
+            }
+
+            final QuerySnapshot snapshot = new QuerySnapshot( kb );
+            final String[] actual = new String[4];
+            Thread[] threads = new Thread[actual.length];
+            for( int i = 0; i < threads.length; i++ ) {
+                final int index = i;
+                threads[i] = new Thread() {
+                    public void run() {
+                        actual[index] = answers( queries, snapshot.getKB() );
+                    }
+                };
+                threads[i].start();
+            }
+            for( int i = 0; i < threads.length; i++ ) {
+                threads[i].join();
+                assertEquals( "Seed " + seed, expected, actual[i] );
+            }
+        }
+    }
+
+    public void testPropertyValues() {
+        for( int seed = 0; seed < SEEDS; seed += 2 ) {
+            KnowledgeBase kb = createKB( seed, 0 );
+            try {
+                if( !kb.isConsistent() )
+                    continue;
+            }
+            catch( TimeoutException e ) {
+                continue;
+            }
+
+            // the values found using the completed ABox should be the same as
+            // the ones found by checking each pair with a separate instance check
+            for( int i = 0; i < roles.length; i++ ) {
+                for( Iterator j = individuals.iterator(); j.hasNext(); ) {
+                    ATermAppl s = (ATermAppl) j.next();
+                    TreeSet expected = new TreeSet();
+                    for( Iterator k = individuals.iterator(); k.hasNext(); ) {
+                        ATermAppl o = (ATermAppl) k.next();
+                        if( kb.isType( s, ATermUtils.makeHasValue( roles[i], o ) ) )
+                            expected.add( o.toString() );
+                    }
+                    String msg = "Seed " + seed + " " + s + " " + roles[i];
+                    assertEquals( msg, expected, sort( kb.getObjectPropertyValues( roles[i], s ) ) );
+                    for( Iterator k = individuals.iterator(); k.hasNext(); ) {
+                        ATermAppl o = (ATermAppl) k.next();
+                        assertEquals( msg + " " + o, expected.contains( o.toString() ), 
+                            kb.hasPropertyValue( s, roles[i], o ) );
+                    }
+                }
+            }
+        }
+    }
+
+    public void testBulkQueryEvaluation() {
+        boolean bulk = PelletOptions.BULK_QUERY_EVALUATION;
+        try {
+            for( int seed = 0; seed < SEEDS; seed += 2 ) {
+                KnowledgeBase kb = createKB( seed, 0 );
+                List queries;
+                String expected;
+                try {
+                    if( !kb.isConsistent() )
+                        continue;
+                    queries = createQueries( kb );
+                    PelletOptions.BULK_QUERY_EVALUATION = false;
+                    expected = answers( queries, kb );
+                }
+                catch( TimeoutException e ) {
+                    continue;
+                }
+
+                PelletOptions.BULK_QUERY_EVALUATION = true;
+                assertEquals( "Seed " + seed, expected, answers( queries, createKB( seed, 0 ) ) );
+            }
+        }
+        finally {
+            PelletOptions.BULK_QUERY_EVALUATION = bulk;
+        }
+    }
+
+    /**
+     * Create random queries whose variables are connected by a path of edge patterns.
+     * Each query has a random number of type patterns for its variables and the patterns
+     * are shuffled so that most queries are not in a good order. The number of patterns
+     * goes up to {@link QueryCost#MAX_EXACT_REORDER} + 4 so both the exact and the greedy
+     * reordering are used.
+     */
+    private List createRandomQueries( KnowledgeBase kb ) {
+        // the classes without instances would make most answers empty
+        List classes = new ArrayList();
+        for( int i = 0; i < classCount; i++ ) {
+            if( !kb.getInstances( term( "C" + i ) ).isEmpty() )
+                classes.add( term( "C" + i ) );
+        }
+        if( classes.isEmpty() )
+            classes.add( ATermUtils.TOP );
+
+        List queries = new ArrayList();
+        for( int n = 2; n <= QueryCost.MAX_EXACT_REORDER + 4; n++ ) {
+            for( int k = 0; k < 3; k++ ) {
+                ATermAppl[] vars = new ATermAppl[ 1 + random.nextInt( 3 ) ];
+                List patterns = new ArrayList();
+                for( int i = 0; i < vars.length; i++ ) {
+                    vars[i] = ATermUtils.makeVar( "x" + i );
+                    if( i > 0 ) {
+                        ATermAppl r = roles[random.nextInt( roles.length )];
+                        if( random.nextBoolean() )
+                            patterns.add( new QueryPatternImpl( vars[i - 1], r, vars[i] ) );
+                        else
+                            patterns.add( new QueryPatternImpl( vars[i], r, vars[i - 1] ) );
+                    }
+                }
+                while( patterns.size() < n ) {
+                    ATermAppl var = vars[random.nextInt( vars.length )];
+                    ATermAppl c = (ATermAppl) classes.get( random.nextInt( classes.size() ) );
+                    patterns.add( new QueryPatternImpl( var, c ) );
+                }
+                Collections.shuffle( patterns, random );
+
+                Query query = new QueryImpl( kb );
+                for( int i = 0; i < vars.length; i++ )
+                    query.addResultVar( vars[i] );
+                for( Iterator i = patterns.iterator(); i.hasNext(); )
+                    query.addPattern( (QueryPattern) i.next() );
+                queries.add( query );
+            }
+        }
+
+        return queries;
+    }
+
+    public void testQueryReordering() {
+        boolean reorder = PelletOptions.REORDER_QUERY;
+        try {
+            for( int seed = 0; seed < SEEDS; seed += 4 ) {
+                KnowledgeBase kb = createKB( seed, 0 );
+                List queries;
+                String expected;
+                try {
+                    if( !kb.isConsistent() )
+                        continue;
+                    queries = createRandomQueries( kb );
+                    PelletOptions.REORDER_QUERY = false;
+                    expected = answers( queries, kb );
+                }
+                catch( TimeoutException e ) {
+                    continue;
+                }
+
+                PelletOptions.REORDER_QUERY = true;
+                assertEquals( "Seed " + seed, expected, answers( queries, createKB( seed, 0 ) ) );
+            }
+        }
+        finally {
+            PelletOptions.REORDER_QUERY = reorder;
+        }
+    }
+
+    public void testQueryResultsStreamedByDefault() {
+        KnowledgeBase kb = createKB( 0, 0 );
+        Query query = (Query) createQueries( kb ).get( 0 );
+        
+        // results are computed as they are consumed unless bulk evaluation is enabled
+        assertTrue( QueryEngine.exec( query ) instanceof StreamingQueryResults );
+    }
+
+    /**
+     * Create a KB where the satisfiability of the class C depends on the values of 
+     * the enumerated datatypes D and E.
+     */
+    private KnowledgeBase createDatatypeKB( String[] d, String[] e ) {
+        KnowledgeBase kb = new KnowledgeBase();
+        ATermAppl p = term( "p" );
+        ATermAppl c = term( "C" );
+
+        kb.addDatatypeProperty( p );
+        kb.addDataRange( "http://example.org/D", literals( d ) );
+        kb.addDataRange( "http://example.org/E", literals( e ) );
+        kb.addClass( c );
+        kb.addSubClass( c, and( some( p, term( "http://example.org/D" ) ), all( p, not( term( "http://example.org/E" ) ) ) ) );
+
+        return kb;
+    }
+
+    private static ATermList literals( String[] values ) {
+        List literals = new ArrayList();
+        for( int i = 0; i < values.length; i++ )
+            literals.add( ATermUtils.makePlainLiteral( values[i] ) );
+
+        return ATermUtils.makeList( literals );
+    }
+
+    public void testSatisfiabilityCacheDatatypes() throws IOException {
+        File file = File.createTempFile( "pellet", SatisfiabilityCache.FILE_EXTENSION );
+        try {
+            KnowledgeBase kb = createDatatypeKB( new String[] { "a" }, new String[] { "a" } );
+            assertFalse( kb.isSatisfiable( term( "C" ) ) );
+            assertTrue( kb.saveSatisfiabilityCache( file ) > 0 );
+
+            kb = createDatatypeKB( new String[] { "a" }, new String[] { "a" } );
+            assertTrue( kb.loadSatisfiabilityCache( file ) > 0 );
+            assertFalse( kb.isSatisfiable( term( "C" ) ) );
+
+            // the results should not be reused if the same datatype has different values
+            kb = createDatatypeKB( new String[] { "a" }, new String[] { "b" } );
+            assertEquals( 0, kb.loadSatisfiabilityCache( file ) );
+            assertTrue( kb.isSatisfiable( term( "C" ) ) );
+
+            // the definition of a datatype created from a Datatype object is not known
+            kb = createDatatypeKB( new String[] { "a" }, new String[] { "a" } );
+            kb.getDatatypeReasoner().defineDatatype( "http://example.org/F", XSDDecimal.instance );
+            assertEquals( 0, kb.saveSatisfiabilityCache( file ) );
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Return a string describing the instances of the class expressions that are not 
+     * in the taxonomy so that they are found with the TBox and RBox.
+     */
+    private String complexAnswers( KnowledgeBase kb ) {
+        StringBuffer sb = new StringBuffer();
+        for( int i = 0; i < classCount; i++ ) {
+            for( int j = 0; j < roles.length; j++ ) {
+                ATermAppl c = some( roles[j], term( "C" + i ) );
+                sb.append( c ).append( ' ' ).append( sort( kb.getInstances( c ) ) ).append( '\n' );
+            }
+        }
+
+        return sb.toString();
+    }
+
+    public void testSnapshot() throws IOException {
+        File file = File.createTempFile( "pellet", ".snapshot" );
+        // the instances of complex classes found with the cached pseudo models depend on 
+        // the order of the earlier instance checks so the answers are compared without caching
+        boolean caching = PelletOptions.USE_CACHING;
+        try {
+            for( int seed = 0; seed < SEEDS; seed += 2 ) {
+                KnowledgeBase kb = createKB( seed, 0 );
+                String expected;
+                try {
+                    if( !kb.isConsistent() )
+                        continue;
+                    kb.realize();
+                    expected = answers( kb );
+                    PelletOptions.USE_CACHING = false;
+                    expected += complexAnswers( kb );
+                    PelletOptions.USE_CACHING = caching;
+                }
+                catch( TimeoutException e ) {
+                    continue;
+                }
+
+                KnowledgeBaseSnapshot.save( kb, file );
+                kb = KnowledgeBaseSnapshot.load( file );
+                assertTrue( kb.isRealized() );
+                String actual = answers( kb );
+                PelletOptions.USE_CACHING = false;
+                actual += complexAnswers( kb );
+                PelletOptions.USE_CACHING = caching;
+                assertEquals( "Seed " + seed, expected, actual );
+            }
+        }
+        finally {
+            PelletOptions.USE_CACHING = caching;
+            file.delete();
+        }
+    }
+
+    public void testSnapshotDatatypes() throws IOException {
+        File schema = File.createTempFile( "pellet", ".xsd" );
+        File file = File.createTempFile( "pellet", ".snapshot" );
+        try {
+            FileWriter out = new FileWriter( schema );
+            out.write( "<?xml version=\"1.0\"?>\n" 
+                + "<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" "
+                + "targetNamespace=\"" + schema.toURL() + "\">\n"
+                + "  <xsd:simpleType name=\"age\">\n"
+                + "    <xsd:restriction base=\"xsd:integer\">\n"
+                + "      <xsd:minInclusive value=\"0\"/>\n"
+                + "      <xsd:maxInclusive value=\"150\"/>\n"
+                + "    </xsd:restriction>\n"
+                + "  </xsd:simpleType>\n"
+                + "</xsd:schema>\n" );
+            out.close();
+
+            ATermAppl age = term( schema.toURL() + "#age" );
+            ATermAppl p = term( "p" );
+            ATermAppl a = term( "a" );
+            ATermAppl b = term( "b" );
+
+            KnowledgeBase kb = new KnowledgeBase();
+            kb.loadDatatype( age );
+            kb.addDatatypeProperty( p );
+            kb.addIndividual( a );
+            kb.addIndividual( b );
+            kb.addPropertyValue( p, a, ATermUtils.makeTypedLiteral( "20", Namespaces.XSD + "integer" ) );
+            kb.addPropertyValue( p, b, ATermUtils.makeTypedLiteral( "200", Namespaces.XSD + "integer" ) );
+            assertTrue( kb.isType( a, some( p, age ) ) );
+            assertFalse( kb.isType( b, some( p, age ) ) );
+
+            KnowledgeBaseSnapshot.save( kb, file );
+
+            // the datatype is defined from the snapshot without loading the schema
+            schema.delete();
+            kb = KnowledgeBaseSnapshot.load( file );
+            assertTrue( kb.isType( a, some( p, age ) ) );
+            assertFalse( kb.isType( b, some( p, age ) ) );
+        }
+        finally {
+            schema.delete();
+            file.delete();
+        }
+    }
+
+    /**
+     * Create a random N-Triples document with class and property definitions and
+     * instance data. Some of the triples are not simple ABox assertions and some of
+     * the properties are used without being defined.
+     */
+    private String createTriples( long seed ) {
+        random = new Random( seed );
+
+        String ns = "http://example.org/test#";
+        String type = "<" + Namespaces.RDF + "type>";
+        String cls = "<" + Namespaces.OWL + "Class>";
+        String subClassOf = "<" + Namespaces.RDFS + "subClassOf>";
+        String d = "<" + ns + "d>";
+
+        StringBuffer sb = new StringBuffer();
+        for( int i = 0; i < 6; i++ ) {
+            sb.append( "<" + ns + "C" + i + "> " + type + " " + cls + " .\n" );
+            if( i > 0 )
+                sb.append( "<" + ns + "C" + i + "> " + subClassOf + " <" + ns + "C" + random.nextInt( i ) + "> .\n" );
+        }
+        sb.append( "<" + ns + "p> " + type + " <" + Namespaces.OWL + "ObjectProperty> .\n" );
+        sb.append( "<" + ns + "q> " + type + " <" + Namespaces.OWL + "TransitiveProperty> .\n" );
+        sb.append( d + " " + type + " <" + Namespaces.OWL + "DatatypeProperty> .\n" );
+
+        int count = 200;
+        for( int i = 0; i < count; i++ ) {
+            String ind = "<" + ns + "i" + i + ">";
+            switch( random.nextInt( 3 ) ) {
+                case 0: sb.append( ind + " " + type + " <" + Namespaces.OWL + "Thing> .\n" ); break;
+                case 1: sb.append( ind + " " + type + " <" + ns + "C" + random.nextInt( 6 ) + "> .\n" ); break;
+                default: sb.append( "_:b" + i + " <" + ns + "p> " + ind + " .\n" );
+            }
+            String[] properties = { "p", "q", "u" };
+            for( int j = random.nextInt( 3 ); j > 0; j-- ) {
+                String p = properties[random.nextInt( properties.length )];
+                sb.append( ind + " <" + ns + p + "> <" + ns + "i" + random.nextInt( count ) + "> .\n" );
+            }
+            if( random.nextBoolean() )
+                sb.append( ind + " " + d + " \"" + random.nextInt( 10 ) + "\"^^<" + Namespaces.XSD + "int> .\n" );
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Return a string describing the classes, properties, individuals and the types and
+     * property values of all the named individuals of the KB.
+     */
+    private static String loaded( KnowledgeBase kb ) {
+        StringBuffer sb = new StringBuffer();
+        sb.append( kb.isConsistent() ).append( '\n' );
+        sb.append( sort( kb.getClasses() ) ).append( '\n' );
+        sb.append( sort( kb.getObjectProperties() ) ).append( '\n' );
+        sb.append( sort( kb.getDataProperties() ) ).append( '\n' );
+
+        // the names of anonymous individuals are different for each load so only their
+        // number is compared
+        int anonCount = 0;
+        Set properties = kb.getProperties();
+        for( Iterator i = sort( kb.getIndividuals() ).iterator(); i.hasNext(); ) {
+            ATermAppl ind = term( (String) i.next() );
+            if( ATermUtils.isBnode( ind ) ) {
+                anonCount++;
+                continue;
+            }
+
+            TreeSet types = new TreeSet();
+            for( Iterator j = kb.getTypes( ind ).iterator(); j.hasNext(); )
+                types.addAll( sort( (Set) j.next() ) );
+            sb.append( ind ).append( ' ' ).append( types );
+
+            for( Iterator j = properties.iterator(); j.hasNext(); ) {
+                ATermAppl p = (ATermAppl) j.next();
+                if( kb.isObjectProperty( p ) || kb.isDatatypeProperty( p ) )
+                    sb.append( ' ' ).append( p ).append( sort( kb.getPropertyValues( p, ind ) ) );
+            }
+            sb.append( '\n' );
+        }
+        sb.append( anonCount ).append( '\n' );
+
+        return sb.toString();
+    }
+
+    public void testBulkLoader() throws Exception {
+        int threads = PelletOptions.LOADER_THREADS;
+        int batchSize = PelletOptions.LOADER_BATCH_SIZE;
+        String base = "http://example.org/test";
+        try {
+            for( int seed = 0; seed < 5; seed++ ) {
+                byte[] triples = createTriples( seed ).getBytes( "UTF-8" );
+
+                Model model = ModelFactory.createDefaultModel();
+                model.read( new ByteArrayInputStream( triples ), base, "N-TRIPLE" );
+                KnowledgeBase kb = new KnowledgeBase();
+                new OWLLoader().load( model.getGraph(), kb );
+                String expected = loaded( kb );
+
+                PelletOptions.LOADER_THREADS = 1;
+                kb = new KnowledgeBase();
+                new BulkLoader().load( new ByteArrayInputStream( triples ), "N-TRIPLE", base, kb );
+                assertEquals( "Seed " + seed, expected, loaded( kb ) );
+
+                // batches much smaller than the number of triples converted by the workers
+                PelletOptions.LOADER_THREADS = 3;
+                PelletOptions.LOADER_BATCH_SIZE = 7;
+                kb = new KnowledgeBase();
+                new BulkLoader().load( new ByteArrayInputStream( triples ), "N-TRIPLE", base, kb );
+                assertEquals( "Seed " + seed, expected, loaded( kb ) );
+
+                PelletOptions.LOADER_BATCH_SIZE = batchSize;
+            }
+        }
+        finally {
+            PelletOptions.LOADER_THREADS = threads;
+            PelletOptions.LOADER_BATCH_SIZE = batchSize;
+        }
+    }
+}
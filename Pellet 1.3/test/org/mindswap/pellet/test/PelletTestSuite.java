@@ -6,6 +6,12 @@ package org.mindswap.pellet.test;
 
 import junit.framework.TestSuite;
 
+import org.mindswap.pellet.ABoxTest;
+import org.mindswap.pellet.BlockingTest;
+import org.mindswap.pellet.ConceptCacheTest;
+import org.mindswap.pellet.NogoodStoreTest;
+import org.mindswap.pellet.dig.DIGTest;
+
 public class PelletTestSuite extends TestSuite {
     public static String base = "test_data/";
     
@@ -16,6 +22,12 @@ public class PelletTestSuite extends TestSuite {
         suite.addTest( DLTestSuite.suite() );
         suite.addTest( MiscTests.suite() );
         suite.addTest( OWLAPITests.suite() );
+        suite.addTest( OptimizationTests.suite() );
+        suite.addTest( ABoxTest.suite() );
+        suite.addTest( ConceptCacheTest.suite() );
+        suite.addTest( BlockingTest.suite() );
+        suite.addTest( NogoodStoreTest.suite() );
+        suite.addTest( DIGTest.suite() );
         
         return suite;
     }